@@ -1,6 +1,6 @@
 package org.gbif.pipelines.common.configs;
 
-import org.apache.avro.file.CodecFactory;
+import org.gbif.pipelines.core.utils.AvroCodecUtils;
 
 import com.beust.jcommander.Parameter;
 import javax.validation.constraints.NotNull;
@@ -9,11 +9,16 @@ import lombok.ToString;
 @ToString
 public class AvroWriteConfiguration {
 
+  /** Codec of written avro files, like snappy, deflate-9 or xz-6, see AvroCodecUtils */
   @Parameter(names = "--compression-type")
   @NotNull
-  public String compressionType = CodecFactory.snappyCodec().toString();
+  public String compressionType = AvroCodecUtils.DEFAULT_CODEC;
 
   @Parameter(names = "--sync-interval")
   @NotNull
   public int syncInterval = 2 * 1024 * 1024;
+
+  /** Verbatim records are written with the term keys as ids of a term dictionary, see TermDictionaryEncoding */
+  @Parameter(names = "--term-dictionary", arity = 1)
+  public boolean termDictionary = false;
 }
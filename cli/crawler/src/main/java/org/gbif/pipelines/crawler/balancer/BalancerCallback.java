@@ -32,6 +32,8 @@ public class BalancerCallback extends AbstractMessageCallback<PipelinesBalancerM
   @NonNull
   private final BalancerConfiguration config;
   private final MessagePublisher publisher;
+  // null if the runner is computed by the thresholds only
+  private final RunnerHistory history;
 
   /** Handles a MQ {@link PipelinesBalancerMessage} message */
   @Override
@@ -43,9 +45,9 @@ public class BalancerCallback extends AbstractMessageCallback<PipelinesBalancerM
     // Select handler by message class name
     try {
       if (PipelinesVerbatimMessage.class.getSimpleName().equals(className)) {
-        VerbatimMessageHandler.handle(config, publisher, message);
+        VerbatimMessageHandler.handle(config, publisher, history, message);
       } else if (PipelinesInterpretedMessage.class.getSimpleName().equals(className)) {
-        InterpretedMessageHandler.handle(config, publisher, message);
+        InterpretedMessageHandler.handle(config, publisher, history, message);
       } else if (PipelinesIndexedMessage.class.getSimpleName().equals(className)) {
         PipelinesIndexedMessageHandler.handle(config, publisher, message);
       } else if (PipelinesHdfsViewBuiltMessage.class.getSimpleName().equals(className)) {
@@ -56,4 +56,15 @@ public class BalancerConfiguration {
   @Min(1)
   public int switchRecordsNumber;
 
+  @Parameter(names = "--runner-history-path")
+  public String runnerHistoryPath;
+
+  @Parameter(names = "--runner-history-min-samples")
+  @Min(1)
+  public int runnerHistoryMinSamples = 10;
+
+  @Parameter(names = "--runner-history-max-samples")
+  @Min(1)
+  public int runnerHistoryMaxSamples = 1000;
+
 }
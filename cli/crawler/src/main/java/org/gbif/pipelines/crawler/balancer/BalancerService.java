@@ -16,6 +16,7 @@ public class BalancerService extends AbstractIdleService {
   private final BalancerConfiguration config;
   private MessageListener listener;
   private MessagePublisher publisher;
+  private RunnerHistory history;
 
   public BalancerService(BalancerConfiguration config) {
     this.config = config;
@@ -27,8 +28,9 @@ public class BalancerService extends AbstractIdleService {
     // Prefetch is one, since this is a long-running process.
     listener = new MessageListener(config.messaging.getConnectionParameters(), 1);
     publisher = new DefaultMessagePublisher(config.messaging.getConnectionParameters());
+    history = RunnerHistory.create(config).orElse(null);
 
-    listener.listen(config.queueName, config.poolSize, new BalancerCallback(config, publisher));
+    listener.listen(config.queueName, config.poolSize, new BalancerCallback(config, publisher, history));
   }
 
   @Override
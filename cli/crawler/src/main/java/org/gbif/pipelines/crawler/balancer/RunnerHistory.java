@@ -0,0 +1,359 @@
+package org.gbif.pipelines.crawler.balancer;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.gbif.api.model.pipelines.StepRunner;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Local history of the verbatim-to-interpreted runs, which predicts the duration of a run for a runner.
+ *
+ * <p>A run starts when the balancer sends the PipelinesVerbatimMessage and finishes when the balancer receives the
+ * PipelinesInterpretedMessage of the same dataset and attempt, the duration includes the time in the queue of the
+ * runner. The finished runs are appended to a json lines file, the runs in progress are kept in memory only.
+ *
+ * <p>The duration of a runner is a linear function of the number of records, the number of extension records and the
+ * verbatim file size, fitted by least squares to the last runs of the runner. The intercept is the fixed cost of the
+ * runner, like the Spark startup. The balancer sends small datasets to one runner and large datasets to the other, so
+ * the runs of a runner cover only a part of the features and the duration is predicted only within the range of the
+ * features of the runs, the thresholds choose the runner outside of it.
+ *
+ * <p>Shortened runs, like an incremental interpretation or an interpretation with skipped record types, are kept to
+ * estimate the extension records, but are not used to predict the duration.
+ */
+@Slf4j
+public class RunnerHistory {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  private static final long PENDING_EXPIRE_MS = TimeUnit.DAYS.toMillis(2);
+  private static final int FEATURES = 4;
+  private static final double RIDGE = 1e-6;
+
+  private final Path path;
+  private final int minSamples;
+  private final int maxSamples;
+  private final Clock clock;
+  private final LinkedList<Sample> samples = new LinkedList<>();
+  private final Map<String, Pending> pending = new HashMap<>();
+
+  private RunnerHistory(Path path, int minSamples, int maxSamples, Clock clock) {
+    this.path = path;
+    this.minSamples = minSamples;
+    this.maxSamples = maxSamples;
+    this.clock = clock;
+  }
+
+  /**
+   * Loads the last runs of the history file, the file is created by the first finished run
+   *
+   * @param minSamples minimum number of runs of a runner to predict the duration of the runner
+   * @param maxSamples number of the last runs to keep
+   */
+  public static RunnerHistory create(String path, int minSamples, int maxSamples) throws IOException {
+    return create(path, minSamples, maxSamples, Clock.systemUTC());
+  }
+
+  static RunnerHistory create(String path, int minSamples, int maxSamples, Clock clock) throws IOException {
+    RunnerHistory history = new RunnerHistory(Paths.get(path), minSamples, maxSamples, clock);
+    history.load();
+    return history;
+  }
+
+  /** Creates the history of the balancer config, empty if the history path isn't set */
+  public static Optional<RunnerHistory> create(BalancerConfiguration config) throws IOException {
+    if (config.runnerHistoryPath == null || config.runnerHistoryPath.isEmpty()) {
+      return Optional.empty();
+    }
+    return Optional.of(create(config.runnerHistoryPath, config.runnerHistoryMinSamples,
+        config.runnerHistoryMaxSamples));
+  }
+
+  /** Loads the last runs, the file is rewritten with the last runs only if it has twice as many runs */
+  private void load() throws IOException {
+    if (!Files.exists(path)) {
+      return;
+    }
+    List<Sample> runs;
+    try (Stream<String> stream = Files.lines(path, StandardCharsets.UTF_8)) {
+      runs = stream.filter(line -> !line.isEmpty())
+          .map(this::parse)
+          .filter(Optional::isPresent)
+          .map(Optional::get)
+          .collect(Collectors.toList());
+    } catch (UncheckedIOException ex) {
+      throw ex.getCause();
+    }
+    runs.forEach(this::add);
+    if (runs.size() > 2L * maxSamples) {
+      List<String> kept = new ArrayList<>(samples.size());
+      for (Sample sample : samples) {
+        kept.add(MAPPER.writeValueAsString(sample));
+      }
+      Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+      Files.write(tmp, kept, StandardCharsets.UTF_8);
+      Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    log.info("Loaded {} runs of the runner history - {}", samples.size(), path);
+  }
+
+  private Optional<Sample> parse(String line) {
+    try {
+      return Optional.of(MAPPER.readValue(line, Sample.class));
+    } catch (IOException ex) {
+      log.warn("Skipping the line of the runner history - {}", line);
+      return Optional.empty();
+    }
+  }
+
+  private void add(Sample sample) {
+    samples.add(sample);
+    if (samples.size() > maxSamples) {
+      samples.removeFirst();
+    }
+  }
+
+  /** Starts a run of the dataset attempt, the run is finished by {@link #finished} */
+  public synchronized void started(String datasetId, int attempt, StepRunner runner, Features features) {
+    long now = clock.millis();
+    pending.values().removeIf(p -> now - p.startedAt > PENDING_EXPIRE_MS);
+    pending.put(key(datasetId, attempt), new Pending(runner, features, now));
+  }
+
+  /** Checks if a run of the dataset attempt was started and isn't finished */
+  public synchronized boolean isPending(String datasetId, int attempt) {
+    return pending.containsKey(key(datasetId, attempt));
+  }
+
+  /**
+   * Finishes a run of the dataset attempt and appends it to the history file
+   *
+   * @param extensionRecords actual number of extension records of the run
+   * @param shortened true if the run didn't interpret all records, like an incremental interpretation
+   * @return duration of the run in milliseconds, empty if the run wasn't started by the balancer
+   */
+  public synchronized OptionalDouble finished(String datasetId, int attempt, long extensionRecords,
+      boolean shortened) throws IOException {
+    Pending p = pending.remove(key(datasetId, attempt));
+    if (p == null) {
+      return OptionalDouble.empty();
+    }
+    long durationMs = clock.millis() - p.startedAt;
+    Features f = p.features;
+    Sample sample = new Sample(datasetId, attempt, p.runner.name(), f.getRecords(), extensionRecords,
+        f.getFileSizeByte(), durationMs, shortened);
+    add(sample);
+
+    try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+        StandardOpenOption.APPEND)) {
+      writer.write(MAPPER.writeValueAsString(sample));
+      writer.newLine();
+    }
+    log.info("Finished run of {} attempt {} - {}", datasetId, attempt, sample);
+    return OptionalDouble.of(durationMs);
+  }
+
+  /**
+   * Estimates the extension records of a dataset by the ratio of extension records to records of the last run of the
+   * dataset, 0 if the dataset has no runs
+   */
+  public synchronized long estimateExtensionRecords(String datasetId, long records) {
+    Iterator<Sample> iterator = samples.descendingIterator();
+    while (iterator.hasNext()) {
+      Sample sample = iterator.next();
+      if (sample.getDatasetId().equals(datasetId) && sample.getRecords() > 0) {
+        return Math.round((double) sample.getExtensionRecords() / sample.getRecords() * records);
+      }
+    }
+    return 0L;
+  }
+
+  /**
+   * Predicts the duration of a run in milliseconds
+   *
+   * @return duration, empty if the runner has fewer full runs than the minimum or the features are outside the range
+   * of the features of the runs
+   */
+  public synchronized OptionalDouble predict(StepRunner runner, Features features) {
+    List<Sample> runs = getFullRuns(runner);
+    if (runs.size() < minSamples) {
+      return OptionalDouble.empty();
+    }
+    double[] x = vector(features.getRecords(), features.getExtensionRecords(), features.getFileSizeByte());
+    for (int i = 1; i < FEATURES; i++) {
+      int feature = i;
+      double min = runs.stream().mapToDouble(run -> toVector(run)[feature]).min().orElse(0d);
+      double max = runs.stream().mapToDouble(run -> toVector(run)[feature]).max().orElse(0d);
+      if (x[i] < min || x[i] > max) {
+        return OptionalDouble.empty();
+      }
+    }
+    return fit(runs).map(c -> Math.max(0d, dot(c, x))).map(OptionalDouble::of).orElse(OptionalDouble.empty());
+  }
+
+  /** Number of full runs of the runner in the history, see {@link #predict} */
+  public synchronized int size(StepRunner runner) {
+    return getFullRuns(runner).size();
+  }
+
+  private List<Sample> getFullRuns(StepRunner runner) {
+    return samples.stream()
+        .filter(s -> runner.name().equals(s.getRunner()) && !s.isShortened())
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Least squares coefficients of the runs, the features are scaled by their maximum and the normal equations have a
+   * small ridge, so the equations are solvable if a feature doesn't vary, like datasets without extensions
+   */
+  private static Optional<double[]> fit(List<Sample> runs) {
+    double[] scale = new double[FEATURES];
+    List<double[]> xs = new ArrayList<>(runs.size());
+    for (Sample run : runs) {
+      double[] x = toVector(run);
+      for (int i = 0; i < FEATURES; i++) {
+        scale[i] = Math.max(scale[i], Math.abs(x[i]));
+      }
+      xs.add(x);
+    }
+    for (int i = 0; i < FEATURES; i++) {
+      scale[i] = scale[i] == 0d ? 1d : scale[i];
+    }
+
+    // normal equations: (X'X + ridge * I) c = X'y
+    double[][] a = new double[FEATURES][FEATURES + 1];
+    for (int r = 0; r < runs.size(); r++) {
+      double[] x = xs.get(r);
+      double y = runs.get(r).getDurationMs();
+      for (int i = 0; i < FEATURES; i++) {
+        for (int j = 0; j < FEATURES; j++) {
+          a[i][j] += x[i] / scale[i] * x[j] / scale[j];
+        }
+        a[i][FEATURES] += x[i] / scale[i] * y;
+      }
+    }
+    for (int i = 0; i < FEATURES; i++) {
+      a[i][i] += RIDGE * runs.size();
+    }
+
+    Optional<double[]> solution = solve(a);
+    solution.ifPresent(c -> {
+      for (int i = 0; i < FEATURES; i++) {
+        c[i] /= scale[i];
+      }
+    });
+    return solution;
+  }
+
+  /** Gaussian elimination with partial pivoting of the augmented matrix */
+  private static Optional<double[]> solve(double[][] a) {
+    int n = a.length;
+    for (int col = 0; col < n; col++) {
+      int pivot = col;
+      for (int row = col + 1; row < n; row++) {
+        if (Math.abs(a[row][col]) > Math.abs(a[pivot][col])) {
+          pivot = row;
+        }
+      }
+      if (Math.abs(a[pivot][col]) < 1e-12) {
+        return Optional.empty();
+      }
+      double[] tmp = a[col];
+      a[col] = a[pivot];
+      a[pivot] = tmp;
+      for (int row = col + 1; row < n; row++) {
+        double factor = a[row][col] / a[col][col];
+        for (int k = col; k <= n; k++) {
+          a[row][k] -= factor * a[col][k];
+        }
+      }
+    }
+    double[] c = new double[n];
+    for (int row = n - 1; row >= 0; row--) {
+      double sum = a[row][n];
+      for (int k = row + 1; k < n; k++) {
+        sum -= a[row][k] * c[k];
+      }
+      c[row] = sum / a[row][row];
+    }
+    return Optional.of(c);
+  }
+
+  private static double[] vector(long records, long extensionRecords, long fileSizeByte) {
+    return new double[]{1d, records, extensionRecords, fileSizeByte};
+  }
+
+  private static double[] toVector(Sample run) {
+    return vector(run.getRecords(), run.getExtensionRecords(), run.getFileSizeByte());
+  }
+
+  private static double dot(double[] a, double[] b) {
+    double result = 0d;
+    for (int i = 0; i < a.length; i++) {
+      result += a[i] * b[i];
+    }
+    return result;
+  }
+
+  private static String key(String datasetId, int attempt) {
+    return datasetId + "_" + attempt;
+  }
+
+  /** Inputs of a run */
+  @Data
+  @AllArgsConstructor
+  public static class Features {
+
+    private final long records;
+    private final long extensionRecords;
+    private final long fileSizeByte;
+  }
+
+  /** Finished run, a line of the history file */
+  @Data
+  @NoArgsConstructor
+  @AllArgsConstructor
+  public static class Sample {
+
+    private String datasetId;
+    private int attempt;
+    private String runner;
+    private long records;
+    private long extensionRecords;
+    private long fileSizeByte;
+    private long durationMs;
+    private boolean shortened;
+  }
+
+  @AllArgsConstructor
+  private static class Pending {
+
+    private final StepRunner runner;
+    private final Features features;
+    private final long startedAt;
+  }
+}
@@ -1,6 +1,9 @@
 package org.gbif.pipelines.crawler.balancer.handler;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.OptionalDouble;
 
 import org.gbif.api.model.pipelines.StepRunner;
 import org.gbif.common.messaging.api.MessagePublisher;
@@ -11,6 +14,7 @@ import org.gbif.pipelines.common.PipelinesVariables.Pipeline;
 import org.gbif.pipelines.common.PipelinesVariables.Pipeline.Conversion;
 import org.gbif.pipelines.common.utils.HdfsUtils;
 import org.gbif.pipelines.crawler.balancer.BalancerConfiguration;
+import org.gbif.pipelines.crawler.balancer.RunnerHistory;
 import org.gbif.pipelines.crawler.interpret.InterpreterConfiguration;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -26,11 +30,27 @@ import lombok.extern.slf4j.Slf4j;
 @NoArgsConstructor(access = AccessLevel.PRIVATE)
 public class InterpretedMessageHandler {
 
+  private static final List<String> EXTENSION_COUNTS = Arrays.asList(
+      Metrics.MULTIMEDIA_RECORDS_COUNT,
+      Metrics.IMAGE_RECORDS_COUNT,
+      Metrics.AUDUBON_RECORDS_COUNT,
+      Metrics.MEASUREMENT_OR_FACT_RECORDS_COUNT,
+      Metrics.AMPLIFICATION_RECORDS_COUNT
+  );
+
+  // counts of an interpretation which didn't interpret all records
+  private static final List<String> SHORTENED_COUNTS = Arrays.asList(
+      Metrics.INCREMENTAL_UNCHANGED_COUNT,
+      Metrics.SKIPPED_TYPES_COUNT
+  );
+
   /**
    * Main handler, basically computes the runner type and sends to the same consumer
+   *
+   * @param history runs of the runners, the interpretation run of the message is finished, can be null
    */
-  public static void handle(BalancerConfiguration config, MessagePublisher publisher, PipelinesBalancerMessage message)
-      throws IOException {
+  public static void handle(BalancerConfiguration config, MessagePublisher publisher, RunnerHistory history,
+      PipelinesBalancerMessage message) throws IOException {
 
     log.info("Process PipelinesInterpretedMessage - {}", message);
 
@@ -38,6 +58,10 @@ public class InterpretedMessageHandler {
     ObjectMapper mapper = new ObjectMapper();
     PipelinesInterpretedMessage m = mapper.readValue(message.getPayload(), PipelinesInterpretedMessage.class);
 
+    if (history != null) {
+      finished(config, history, m);
+    }
+
     long recordsNumber = getRecordNumber(config, m);
 
     String runner = computeRunner(config, m, recordsNumber).name();
@@ -96,6 +120,45 @@ public class InterpretedMessageHandler {
     throw new IllegalStateException("Runner computation is failed " + datasetId);
   }
 
+  /**
+   * Finishes the interpretation run of the message, if the run was started by the balancer, a failure of the history
+   * is only logged and doesn't stop the message
+   */
+  private static void finished(BalancerConfiguration config, RunnerHistory history, PipelinesInterpretedMessage m) {
+    String datasetId = m.getDatasetUuid().toString();
+    if (!history.isPending(datasetId, m.getAttempt())) {
+      return;
+    }
+    try {
+      long extensionRecords = sumCounts(config, m, EXTENSION_COUNTS);
+      boolean shortened = sumCounts(config, m, SHORTENED_COUNTS) > 0;
+      OptionalDouble duration = history.finished(datasetId, m.getAttempt(), extensionRecords, shortened);
+      duration.ifPresent(d -> log.info("Interpretation of {} attempt {} took {} ms", datasetId, m.getAttempt(), d));
+    } catch (IOException | RuntimeException ex) {
+      log.warn("Can't finish the run of {} attempt {} in the runner history", datasetId, m.getAttempt(), ex);
+    }
+  }
+
+  /**
+   * Sums the counts of a verbatim-to-interpreted metadata file, like the numbers of extension records
+   */
+  private static long sumCounts(BalancerConfiguration config, PipelinesInterpretedMessage message, List<String> keys)
+      throws IOException {
+    String datasetId = message.getDatasetUuid().toString();
+    String attempt = Integer.toString(message.getAttempt());
+    String metaFileName = new InterpreterConfiguration().metaFileName;
+    String metaPath = String.join("/", config.repositoryPath, datasetId, attempt, metaFileName);
+
+    long count = 0L;
+    for (String key : keys) {
+      String value = HdfsUtils.getValueByKey(config.hdfsSiteConfig, metaPath, key + "Attempted");
+      if (value != null && !value.isEmpty()) {
+        count += Long.parseLong(value.trim());
+      }
+    }
+    return count;
+  }
+
   /**
    * Reads number of records from a archive-to-avro metadata file, verbatim-to-interpreted contains attempted records
    * count, which is not accurate enough
@@ -1,8 +1,10 @@
 package org.gbif.pipelines.crawler.balancer.handler;
 
 import java.io.IOException;
+import java.util.OptionalDouble;
 
 import org.gbif.api.model.pipelines.StepRunner;
+import org.gbif.api.model.pipelines.StepType;
 import org.gbif.common.messaging.api.MessagePublisher;
 import org.gbif.common.messaging.api.messages.PipelinesBalancerMessage;
 import org.gbif.common.messaging.api.messages.PipelinesVerbatimMessage;
@@ -12,6 +14,8 @@ import org.gbif.pipelines.common.PipelinesVariables.Pipeline;
 import org.gbif.pipelines.common.PipelinesVariables.Pipeline.Conversion;
 import org.gbif.pipelines.common.utils.HdfsUtils;
 import org.gbif.pipelines.crawler.balancer.BalancerConfiguration;
+import org.gbif.pipelines.crawler.balancer.RunnerHistory;
+import org.gbif.pipelines.crawler.balancer.RunnerHistory.Features;
 import org.gbif.pipelines.crawler.dwca.DwcaToAvroConfiguration;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -20,6 +24,7 @@ import lombok.NoArgsConstructor;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 
+import static org.gbif.pipelines.common.PipelinesVariables.Pipeline.Interpretation.RecordType.ALL;
 import static org.gbif.pipelines.common.PipelinesVariables.Pipeline.Interpretation.RecordType.METADATA;
 
 /**
@@ -32,9 +37,11 @@ public class VerbatimMessageHandler {
 
   /**
    * Main handler, basically computes the runner type and sends to the same consumer
+   *
+   * @param history runs of the runners, null to compute the runner by the thresholds only
    */
-  public static void handle(BalancerConfiguration config, MessagePublisher publisher, PipelinesBalancerMessage message)
-      throws IOException {
+  public static void handle(BalancerConfiguration config, MessagePublisher publisher, RunnerHistory history,
+      PipelinesBalancerMessage message) throws IOException {
 
     log.info("Process PipelinesVerbatimMessage - {}", message);
 
@@ -49,7 +56,9 @@ public class VerbatimMessageHandler {
     }
 
     long recordsNumber = getRecordNumber(config, m);
-    String runner = computeRunner(config, m, recordsNumber).name();
+    Features features = history != null ? getFeatures(config, history, m, recordsNumber) : null;
+    StepRunner stepRunner = computeRunner(config, history, features, m, recordsNumber);
+    String runner = stepRunner.name();
 
     ValidationResult result = m.getValidationResult();
     if (result.getNumberOfRecords() == null) {
@@ -73,15 +82,23 @@ public class VerbatimMessageHandler {
     publisher.send(outputMessage);
 
     log.info("The message has been sent - {}", outputMessage);
+
+    // Only complete interpretations are comparable
+    if (history != null && m.getInterpretTypes().contains(ALL.name())
+        && m.getPipelineSteps().contains(StepType.VERBATIM_TO_INTERPRETED.name())) {
+      history.started(m.getDatasetUuid().toString(), m.getAttempt(), stepRunner, features);
+    }
   }
 
   /**
    * Computes runner type:
+   * Strategy 0 - Chooses a runner type with the shorter predicted duration, if the history has enough runs of both
+   * runners
    * Strategy 1 - Chooses a runner type by number of records in a dataset
    * Strategy 2 - Chooses a runner type by calculating verbatim.avro file size
    */
-  private static StepRunner computeRunner(BalancerConfiguration config, PipelinesVerbatimMessage message,
-      long recordsNumber) throws IOException {
+  private static StepRunner computeRunner(BalancerConfiguration config, RunnerHistory history, Features features,
+      PipelinesVerbatimMessage message, long recordsNumber) throws IOException {
 
     String datasetId = message.getDatasetUuid().toString();
     String attempt = String.valueOf(message.getAttempt());
@@ -94,6 +111,22 @@ public class VerbatimMessageHandler {
       return runner;
     }
 
+    // Strategy 0: Chooses a runner type with the shorter predicted duration
+    if (history != null && recordsNumber > 0) {
+      OptionalDouble standalone = history.predict(StepRunner.STANDALONE, features);
+      OptionalDouble distributed = history.predict(StepRunner.DISTRIBUTED, features);
+      if (standalone.isPresent() && distributed.isPresent()) {
+        runner = standalone.getAsDouble() <= distributed.getAsDouble() ? StepRunner.STANDALONE : StepRunner.DISTRIBUTED;
+        log.info("Records number - {}, extension records number - {}, file size - {}, predicted standalone - {} ms, "
+                + "predicted distributed - {} ms, Spark Runner type - {}", features.getRecords(),
+            features.getExtensionRecords(), features.getFileSizeByte(), Math.round(standalone.getAsDouble()),
+            Math.round(distributed.getAsDouble()), runner);
+        return runner;
+      }
+      log.info("Runner history has {} standalone and {} distributed full runs or the dataset is outside of their "
+          + "range, using the thresholds", history.size(StepRunner.STANDALONE), history.size(StepRunner.DISTRIBUTED));
+    }
+
     // Strategy 1: Chooses a runner type by number of records in a dataset
     if (recordsNumber > 0) {
       runner = recordsNumber >= config.switchRecordsNumber ? StepRunner.DISTRIBUTED : StepRunner.STANDALONE;
@@ -115,6 +148,21 @@ public class VerbatimMessageHandler {
     throw new IllegalStateException("Runner computation is failed " + datasetId);
   }
 
+  /**
+   * Collects the inputs of the duration prediction, the number of extension records is estimated by the last run of
+   * the dataset
+   */
+  private static Features getFeatures(BalancerConfiguration config, RunnerHistory history,
+      PipelinesVerbatimMessage message, long recordsNumber) throws IOException {
+    String datasetId = message.getDatasetUuid().toString();
+    String attempt = String.valueOf(message.getAttempt());
+    String verbatim = Conversion.FILE_NAME + Pipeline.AVRO_EXTENSION;
+    String verbatimPath = String.join("/", config.repositoryPath, datasetId, attempt, verbatim);
+    long fileSizeByte = HdfsUtils.getFileSizeByte(verbatimPath, config.hdfsSiteConfig);
+    long extensionRecords = history.estimateExtensionRecords(datasetId, recordsNumber);
+    return new Features(recordsNumber, extensionRecords, Math.max(fileSizeByte, 0L));
+  }
+
   /**
    * Reads number of records from a archive-to-avro metadata file
    */
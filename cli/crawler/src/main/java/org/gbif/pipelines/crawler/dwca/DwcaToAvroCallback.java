@@ -16,11 +16,11 @@ import org.gbif.common.messaging.api.messages.PipelinesVerbatimMessage.Validatio
 import org.gbif.common.messaging.api.messages.Platform;
 import org.gbif.converters.DwcaToAvroConverter;
 import org.gbif.pipelines.common.utils.HdfsUtils;
+import org.gbif.pipelines.core.utils.AvroCodecUtils;
 import org.gbif.pipelines.crawler.PipelinesCallback;
 import org.gbif.pipelines.crawler.StepHandler;
 import org.gbif.registry.ws.client.pipelines.PipelinesHistoryWsClient;
 
-import org.apache.avro.file.CodecFactory;
 import org.apache.curator.framework.CuratorFramework;
 
 import lombok.extern.slf4j.Slf4j;
@@ -97,8 +97,10 @@ public class DwcaToAvroCallback extends AbstractMessageCallback<PipelinesDwcaMes
 
       // Run main conversion process
       DwcaToAvroConverter.create()
-          .codecFactory(CodecFactory.fromString(config.avroConfig.compressionType))
+          .parallelism(config.converterParallelism)
+          .codecFactory(AvroCodecUtils.fromString(config.avroConfig.compressionType))
           .syncInterval(config.avroConfig.syncInterval)
+          .termDictionary(config.avroConfig.termDictionary)
           .hdfsSiteConfig(config.stepConfig.hdfsSiteConfig)
           .inputPath(inputPath)
           .outputPath(outputPath)
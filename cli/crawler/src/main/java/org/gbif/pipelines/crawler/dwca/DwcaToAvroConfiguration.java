@@ -13,6 +13,7 @@ import org.gbif.pipelines.common.configs.StepConfiguration;
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.ParametersDelegate;
 import javax.validation.Valid;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 import lombok.ToString;
 
@@ -47,6 +48,10 @@ public class DwcaToAvroConfiguration implements BaseConfiguration {
   @NotNull
   public String fileName = Conversion.FILE_NAME + Pipeline.AVRO_EXTENSION;
 
+  @Parameter(names = "--converter-parallelism")
+  @Min(1)
+  public int converterParallelism = 1;
+
   @Override
   public String getHdfsSiteConfig() {
     return stepConfig.hdfsSiteConfig;
@@ -1,6 +1,7 @@
 package org.gbif.pipelines.crawler.hdfs;
 
 import org.gbif.pipelines.common.PipelinesVariables.Pipeline;
+import org.gbif.pipelines.common.configs.AvroWriteConfiguration;
 import org.gbif.pipelines.common.configs.BaseConfiguration;
 import org.gbif.pipelines.common.configs.StepConfiguration;
 
@@ -21,6 +22,11 @@ public class HdfsViewConfiguration implements BaseConfiguration {
   @NotNull
   public StepConfiguration stepConfig = new StepConfiguration();
 
+  @ParametersDelegate
+  @Valid
+  @NotNull
+  public AvroWriteConfiguration avroConfig = new AvroWriteConfiguration();
+
   @Parameter(names = "--repository-target-path")
   @NotNull
   public String repositoryTargetPath;
@@ -113,6 +113,8 @@ final class ProcessRunnerBuilder {
         .add("--metaFileName=" + Objects.requireNonNull(config.metaFileName))
         .add("--inputPath=" + Objects.requireNonNull(config.stepConfig.repositoryPath))
         .add("--targetPath=" + Objects.requireNonNull(config.repositoryTargetPath))
+        .add("--avroCompressionType=" + Objects.requireNonNull(config.avroConfig.compressionType))
+        .add("--avroSyncInterval=" + config.avroConfig.syncInterval)
         .add("--hdfsSiteConfig=" + Objects.requireNonNull(config.stepConfig.hdfsSiteConfig))
         .add("--coreSiteConfig=" + Objects.requireNonNull(config.stepConfig.coreSiteConfig))
         .add("--numberOfShards=" + numberOfShards)
@@ -3,7 +3,6 @@ package org.gbif.pipelines.crawler.xml;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.avro.file.CodecFactory;
 import org.apache.curator.framework.CuratorFramework;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.HttpClient;
@@ -19,6 +18,7 @@ import org.gbif.common.messaging.api.messages.Platform;
 import org.gbif.converters.XmlToAvroConverter;
 import org.gbif.pipelines.common.PipelinesVariables.Metrics;
 import org.gbif.pipelines.common.utils.HdfsUtils;
+import org.gbif.pipelines.core.utils.AvroCodecUtils;
 import org.gbif.pipelines.crawler.PipelinesCallback;
 import org.gbif.pipelines.crawler.StepHandler;
 import org.gbif.pipelines.crawler.dwca.DwcaToAvroConfiguration;
@@ -99,8 +99,10 @@ public class XmlToAvroCallback extends AbstractMessageCallback<PipelinesXmlMessa
       // Run main conversion process
       boolean isConverted = XmlToAvroConverter.create()
           .executor(executor)
-          .codecFactory(CodecFactory.fromString(config.avroConfig.compressionType))
+          .expectedIds(expectedRecords)
+          .codecFactory(AvroCodecUtils.fromString(config.avroConfig.compressionType))
           .syncInterval(config.avroConfig.syncInterval)
+          .termDictionary(config.avroConfig.termDictionary)
           .hdfsSiteConfig(config.stepConfig.hdfsSiteConfig)
           .inputPath(inputPath)
           .outputPath(outputPath)
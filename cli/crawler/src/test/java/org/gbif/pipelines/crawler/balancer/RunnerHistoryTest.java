@@ -0,0 +1,183 @@
+package org.gbif.pipelines.crawler.balancer;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.OptionalDouble;
+
+import org.gbif.api.model.pipelines.StepRunner;
+import org.gbif.pipelines.crawler.balancer.RunnerHistory.Features;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RunnerHistoryTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  /** Clock which is moved by the tests */
+  private static class TestClock extends Clock {
+
+    private long millis;
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      return this;
+    }
+
+    @Override
+    public Instant instant() {
+      return Instant.ofEpochMilli(millis);
+    }
+  }
+
+  // the standalone runner is slow per record and per extension record
+  private static long standaloneMs(long records, long extensionRecords) {
+    return 5_000L + records / 10 + extensionRecords;
+  }
+
+  // the distributed runner pays the Spark startup
+  private static long distributedMs(long records, long extensionRecords) {
+    return 120_000L + records / 100 + extensionRecords / 20;
+  }
+
+  /** Records runs of both runners for datasets of 1k to 2M records, every third dataset has extensions */
+  private static void run(RunnerHistory history, TestClock clock) throws IOException {
+    for (int i = 0; i < 20; i++) {
+      long records = 1_000L + i * 100_000L;
+      long extensionRecords = i % 3 == 0 ? records * 2 : 0L;
+      long fileSizeByte = records * 500L;
+      Features features = new Features(records, 0L, fileSizeByte);
+
+      history.started("standalone-" + i, 1, StepRunner.STANDALONE, features);
+      history.started("distributed-" + i, 1, StepRunner.DISTRIBUTED, features);
+      long start = clock.millis;
+
+      clock.millis = start + standaloneMs(records, extensionRecords);
+      history.finished("standalone-" + i, 1, extensionRecords, false);
+
+      clock.millis = start + distributedMs(records, extensionRecords);
+      history.finished("distributed-" + i, 1, extensionRecords, false);
+
+      clock.millis = start + 1_000_000L;
+    }
+  }
+
+  private static StepRunner faster(RunnerHistory history, Features features) {
+    double standalone = history.predict(StepRunner.STANDALONE, features).getAsDouble();
+    double distributed = history.predict(StepRunner.DISTRIBUTED, features).getAsDouble();
+    return standalone <= distributed ? StepRunner.STANDALONE : StepRunner.DISTRIBUTED;
+  }
+
+  @Test
+  public void coldStartTest() throws IOException {
+    // State
+    TestClock clock = new TestClock();
+    RunnerHistory history = RunnerHistory.create(new File(folder.getRoot(), "history").toString(), 10, 100, clock);
+    Features features = new Features(1_000L, 0L, 500_000L);
+
+    // When
+    history.started("dataset", 1, StepRunner.STANDALONE, features);
+    boolean pending = history.isPending("dataset", 1);
+    clock.millis = 1_000L;
+    OptionalDouble duration = history.finished("dataset", 1, 0L, false);
+    OptionalDouble unknown = history.finished("dataset", 2, 0L, false);
+
+    // Should
+    assertTrue(pending);
+    assertFalse(history.isPending("dataset", 1));
+    assertEquals(1_000d, duration.getAsDouble(), 0d);
+    assertFalse(unknown.isPresent());
+    assertFalse(history.predict(StepRunner.STANDALONE, features).isPresent());
+    assertFalse(history.predict(StepRunner.DISTRIBUTED, features).isPresent());
+  }
+
+  @Test
+  public void predictTest() throws IOException {
+    // State
+    TestClock clock = new TestClock();
+    RunnerHistory history = RunnerHistory.create(new File(folder.getRoot(), "history").toString(), 10, 100, clock);
+
+    // When
+    run(history, clock);
+
+    // Should
+    Features small = new Features(10_000L, 0L, 5_000_000L);
+    Features large = new Features(1_500_000L, 0L, 750_000_000L);
+    Features smallWithExtensions = new Features(100_000L, 400_000L, 50_000_000L);
+
+    assertEquals(standaloneMs(10_000L, 0L), history.predict(StepRunner.STANDALONE, small).getAsDouble(), 1_000d);
+    assertEquals(distributedMs(1_500_000L, 0L), history.predict(StepRunner.DISTRIBUTED, large).getAsDouble(), 1_000d);
+    assertEquals(StepRunner.STANDALONE, faster(history, small));
+    assertEquals(StepRunner.DISTRIBUTED, faster(history, large));
+    assertEquals(StepRunner.DISTRIBUTED, faster(history, smallWithExtensions));
+  }
+
+  @Test
+  public void outOfRangeTest() throws IOException {
+    // State
+    TestClock clock = new TestClock();
+    RunnerHistory history = RunnerHistory.create(new File(folder.getRoot(), "history").toString(), 10, 100, clock);
+
+    // When
+    run(history, clock);
+
+    // Should
+    assertFalse(history.predict(StepRunner.STANDALONE, new Features(500L, 0L, 250_000L)).isPresent());
+    assertFalse(history.predict(StepRunner.DISTRIBUTED, new Features(5_000_000L, 0L, 2_500_000_000L)).isPresent());
+    assertFalse(history.predict(StepRunner.DISTRIBUTED, new Features(10_000L, 10_000_000L, 5_000_000L)).isPresent());
+  }
+
+  @Test
+  public void shortenedRunsTest() throws IOException {
+    // State
+    TestClock clock = new TestClock();
+    RunnerHistory history = RunnerHistory.create(new File(folder.getRoot(), "history").toString(), 10, 100, clock);
+    Features features = new Features(1_000L, 0L, 500_000L);
+
+    // When
+    for (int i = 0; i < 20; i++) {
+      history.started("incremental-" + i, 1, StepRunner.STANDALONE, features);
+      clock.millis += 1_000L;
+      history.finished("incremental-" + i, 1, 0L, true);
+    }
+
+    // Should
+    assertEquals(0, history.size(StepRunner.STANDALONE));
+    assertFalse(history.predict(StepRunner.STANDALONE, features).isPresent());
+  }
+
+  @Test
+  public void reloadTest() throws IOException {
+    // State
+    String path = new File(folder.getRoot(), "history").toString();
+    TestClock clock = new TestClock();
+    run(RunnerHistory.create(path, 10, 100, clock), clock);
+
+    // When
+    RunnerHistory history = RunnerHistory.create(path, 10, 100, clock);
+
+    // Should
+    assertEquals(20, history.size(StepRunner.STANDALONE));
+    assertEquals(20, history.size(StepRunner.DISTRIBUTED));
+    assertTrue(history.predict(StepRunner.STANDALONE, new Features(1_000L, 0L, 500_000L)).isPresent());
+    // standalone-3 has twice as many extension records as records
+    assertEquals(20_000L, history.estimateExtensionRecords("standalone-3", 10_000L));
+    assertEquals(0L, history.estimateExtensionRecords("standalone-4", 10_000L));
+    assertEquals(0L, history.estimateExtensionRecords("unknown", 10_000L));
+  }
+}
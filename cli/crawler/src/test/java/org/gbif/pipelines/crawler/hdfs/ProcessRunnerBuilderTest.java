@@ -36,7 +36,8 @@ public class ProcessRunnerBuilderTest {
         "java -XX:+UseG1GC -Xms1G -Xmx1G -Dlog4j.configuration=file:/home/crap/config/log4j-pipelines.properties "
             + "-cp java.jar org.gbif.Test --pipelineStep=INTERPRETED_TO_HDFS --datasetId=de7ffb5e-c07b-42dc-8a88-f67a4465fe3d "
             + "--attempt=1 --runner=SparkRunner --metaFileName=interpreted-to-hdfs.yml --inputPath=tmp "
-            + "--targetPath=target --hdfsSiteConfig=hdfs.xml --coreSiteConfig=core.xml --numberOfShards=0 "
+            + "--targetPath=target --avroCompressionType=snappy --avroSyncInterval=2097152 "
+            + "--hdfsSiteConfig=hdfs.xml --coreSiteConfig=core.xml --numberOfShards=0 "
             + "--properties=/path/ws.config";
 
     HdfsViewConfiguration config = new HdfsViewConfiguration();
@@ -80,7 +81,8 @@ public class ProcessRunnerBuilderTest {
         + "--conf spark.dynamicAllocation.enabled=false "
         + "--class org.gbif.Test --master yarn --deploy-mode cluster --executor-memory 1G --executor-cores 1 --num-executors 1 "
         + "--driver-memory 4G java.jar --datasetId=de7ffb5e-c07b-42dc-8a88-f67a4465fe3d --attempt=1 --runner=SparkRunner "
-        + "--metaFileName=interpreted-to-hdfs.yml --inputPath=tmp --targetPath=target --hdfsSiteConfig=hdfs.xml "
+        + "--metaFileName=interpreted-to-hdfs.yml --inputPath=tmp --targetPath=target "
+        + "--avroCompressionType=snappy --avroSyncInterval=2097152 --hdfsSiteConfig=hdfs.xml "
         + "--coreSiteConfig=core.xml --numberOfShards=10 --properties=/path/ws.config";
 
     HdfsViewConfiguration config = new HdfsViewConfiguration();
@@ -135,7 +137,8 @@ public class ProcessRunnerBuilderTest {
             + "--conf spark.executor.memoryOverhead=1 --conf spark.dynamicAllocation.enabled=false "
             + "--class org.gbif.Test --master yarn --deploy-mode cluster "
             + "--executor-memory 1G --executor-cores 1 --num-executors 1 --driver-memory 4G java.jar --datasetId=de7ffb5e-c07b-42dc-8a88-f67a4465fe3d "
-            + "--attempt=1 --runner=SparkRunner --metaFileName=interpreted-to-hdfs.yml --inputPath=tmp --targetPath=target --hdfsSiteConfig=hdfs.xml "
+            + "--attempt=1 --runner=SparkRunner --metaFileName=interpreted-to-hdfs.yml --inputPath=tmp --targetPath=target "
+            + "--avroCompressionType=snappy --avroSyncInterval=2097152 --hdfsSiteConfig=hdfs.xml "
             + "--coreSiteConfig=core.xml --numberOfShards=10 --properties=/path/ws.config";
 
     HdfsViewConfiguration config = new HdfsViewConfiguration();
@@ -1,16 +1,24 @@
 package org.apache.beam.runners.spark.coders;
 
+import java.io.IOException;
+import java.lang.reflect.Modifier;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 
+import org.gbif.pipelines.common.beam.AvroKryoSerializer;
+import org.gbif.pipelines.core.io.TermDictionary;
+import org.gbif.pipelines.core.io.TermDictionaryEncoding;
 import org.gbif.pipelines.io.avro.AmplificationRecord;
 import org.gbif.pipelines.io.avro.AudubonRecord;
-import org.gbif.pipelines.io.avro.LocationFeatureRecord;
 import org.gbif.pipelines.io.avro.BasicRecord;
 import org.gbif.pipelines.io.avro.ExtendedRecord;
 import org.gbif.pipelines.io.avro.ImageRecord;
 import org.gbif.pipelines.io.avro.IssueRecord;
+import org.gbif.pipelines.io.avro.LocationFeatureRecord;
 import org.gbif.pipelines.io.avro.LocationRecord;
 import org.gbif.pipelines.io.avro.MeasurementOrFact;
 import org.gbif.pipelines.io.avro.MetadataRecord;
@@ -21,6 +29,8 @@ import org.gbif.pipelines.io.avro.TemporalRecord;
 
 import org.apache.avro.Schema;
 import org.apache.avro.SchemaNormalization;
+import org.apache.avro.specific.SpecificRecord;
+import org.apache.avro.specific.SpecificRecordBase;
 import org.apache.beam.runners.spark.io.MicrobatchSource;
 import org.apache.beam.runners.spark.stateful.SparkGroupAlsoByWindowViaWindowSet.StateAndTimers;
 import org.apache.beam.runners.spark.translation.ValueAndCoderKryoSerializer;
@@ -34,6 +44,8 @@ import org.apache.spark.serializer.GenericAvroSerializer;
 import org.apache.spark.serializer.KryoRegistrator;
 
 import com.esotericsoftware.kryo.Kryo;
+import com.google.common.reflect.ClassPath;
+import com.google.common.reflect.ClassPath.ClassInfo;
 import scala.Tuple2;
 import scala.collection.mutable.WrappedArray;
 
@@ -70,6 +82,11 @@ public class SparkRunnerKryoRegistrator implements KryoRegistrator {
     AVRO_SCHEMAS.$plus(TUPLE_SCHEMA.apply(LocationFeatureRecord.SCHEMA$));
   }
 
+  private static final String AVRO_PACKAGE = "org.gbif.pipelines.io.avro";
+
+  // all classes generated from the avro schemas of sdks/models
+  private static final List<Class<? extends SpecificRecordBase>> SPECIFIC_RECORDS = findSpecificRecords();
+
   /** Copied from BEAM, except last line */
   @Override
   public void registerClasses(Kryo kryo) {
@@ -102,6 +119,14 @@ public class SparkRunnerKryoRegistrator implements KryoRegistrator {
 
   /** GBIF custom classes for registration */
   private void customRegister(Kryo kryo) {
+    // avro specific records are written with avro binary encoding
+    SPECIFIC_RECORDS.stream()
+        .filter(clazz -> clazz != ExtendedRecord.class)
+        .forEach(clazz -> registerSpecific(kryo, clazz));
+    // verbatim term keys are written as ids of the dictionary, all executors of a job run the same dictionary
+    kryo.register(ExtendedRecord.class, AvroKryoSerializer.create(ExtendedRecord.class,
+        TermDictionaryEncoding.writer(TermDictionary.DEFAULT), TermDictionaryEncoding.reader(TermDictionary.DEFAULT)));
+
     try {
       // custom types added
       kryo.register(Class.forName("org.apache.avro.generic.GenericData"), new GenericAvroSerializer(AVRO_SCHEMAS));
@@ -113,4 +138,28 @@ public class SparkRunnerKryoRegistrator implements KryoRegistrator {
       throw new IllegalStateException("Unable to register classes with kryo.", e);
     }
   }
+
+  /**
+   * Finds the avro specific record classes of the models package on the classpath, sorted by name, because the driver
+   * and all executors must register the classes in the same order
+   */
+  private static List<Class<? extends SpecificRecordBase>> findSpecificRecords() {
+    try {
+      return ClassPath.from(SparkRunnerKryoRegistrator.class.getClassLoader())
+          .getTopLevelClasses(AVRO_PACKAGE)
+          .stream()
+          .map(ClassInfo::load)
+          .filter(clazz -> SpecificRecordBase.class.isAssignableFrom(clazz))
+          .filter(clazz -> !Modifier.isAbstract(clazz.getModifiers()))
+          .map(clazz -> clazz.asSubclass(SpecificRecordBase.class))
+          .sorted(Comparator.comparing(Class::getName))
+          .collect(Collectors.toList());
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to find the avro classes for kryo.", e);
+    }
+  }
+
+  private static <T extends SpecificRecord> void registerSpecific(Kryo kryo, Class<T> clazz) {
+    kryo.register(clazz, AvroKryoSerializer.create(clazz));
+  }
 }
@@ -0,0 +1,90 @@
+package org.gbif.pipelines.common.beam;
+
+import java.io.IOException;
+
+import org.apache.avro.Schema;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DatumReader;
+import org.apache.avro.io.DatumWriter;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.specific.SpecificData;
+import org.apache.avro.specific.SpecificDatumReader;
+import org.apache.avro.specific.SpecificDatumWriter;
+import org.apache.avro.specific.SpecificRecord;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+/**
+ * Kryo serializer for Avro specific records, which writes a record using Avro binary encoding instead of the Kryo
+ * field serializer, walking fields and maps by reflection.
+ *
+ * <p>The datum writer and reader are created once per schema, the encoder and decoder are reused. A Kryo instance is
+ * not shared between threads, so neither is the serializer registered in it.
+ *
+ * <pre>{@code
+ * kryo.register(ExtendedRecord.class, AvroKryoSerializer.create(ExtendedRecord.class));
+ * }</pre>
+ */
+public class AvroKryoSerializer<T extends SpecificRecord> extends Serializer<T> {
+
+  private final Schema schema;
+  private final DatumWriter<T> writer;
+  private final DatumReader<T> reader;
+
+  private BinaryEncoder encoder;
+  private BinaryDecoder decoder;
+
+  private AvroKryoSerializer(Schema schema, DatumWriter<T> writer, DatumReader<T> reader) {
+    this.schema = schema;
+    this.writer = writer;
+    this.reader = reader;
+  }
+
+  public static <T extends SpecificRecord> AvroKryoSerializer<T> create(Class<T> clazz) {
+    Schema schema = SpecificData.get().getSchema(clazz);
+    return new AvroKryoSerializer<>(schema, new SpecificDatumWriter<>(schema), new SpecificDatumReader<>(schema));
+  }
+
+  /**
+   * Serializer with a custom binary encoding of the record, for example the term dictionary encoding of {@link
+   * org.gbif.pipelines.io.avro.ExtendedRecord}, the reader must read what the writer writes
+   */
+  public static <T extends SpecificRecord> AvroKryoSerializer<T> create(Class<T> clazz, DatumWriter<T> writer,
+      DatumReader<T> reader) {
+    return new AvroKryoSerializer<>(SpecificData.get().getSchema(clazz), writer, reader);
+  }
+
+  @Override
+  public void write(Kryo kryo, Output output, T record) {
+    try {
+      // The direct encoder writes straight into the Kryo output buffer
+      encoder = EncoderFactory.get().directBinaryEncoder(output, encoder);
+      writer.write(record, encoder);
+      encoder.flush();
+    } catch (IOException ex) {
+      throw new KryoException("Unable to write the avro record, schema - " + schema.getFullName(), ex);
+    }
+  }
+
+  @Override
+  public T read(Kryo kryo, Input input, Class<T> type) {
+    try {
+      // The direct decoder does not read ahead, the input is left at the end of the record
+      decoder = DecoderFactory.get().directBinaryDecoder(input, decoder);
+      return reader.read(null, decoder);
+    } catch (IOException ex) {
+      throw new KryoException("Unable to read the avro record, schema - " + schema.getFullName(), ex);
+    }
+  }
+
+  @Override
+  public T copy(Kryo kryo, T original) {
+    return SpecificData.get().deepCopy(schema, original);
+  }
+}
@@ -1,10 +1,18 @@
 package org.gbif.pipelines.common.beam;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Collections;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import org.gbif.dwc.DwcFiles;
 import org.gbif.pipelines.core.io.DwcaReader;
+import org.gbif.pipelines.core.io.DwcaSplit;
+import org.gbif.pipelines.core.io.DwcaSplitter;
 import org.gbif.pipelines.io.avro.ExtendedRecord;
 
 import org.apache.beam.sdk.coders.AvroCoder;
@@ -13,7 +21,11 @@ import org.apache.beam.sdk.io.BoundedSource;
 import org.apache.beam.sdk.metrics.Counter;
 import org.apache.beam.sdk.metrics.Metrics;
 import org.apache.beam.sdk.options.PipelineOptions;
+import org.apache.beam.sdk.transforms.Create;
+import org.apache.beam.sdk.transforms.DoFn;
 import org.apache.beam.sdk.transforms.PTransform;
+import org.apache.beam.sdk.transforms.ParDo;
+import org.apache.beam.sdk.transforms.Wait;
 import org.apache.beam.sdk.transforms.display.DisplayData;
 import org.apache.beam.sdk.values.PBegin;
 import org.apache.beam.sdk.values.PCollection;
@@ -21,16 +33,17 @@ import org.apache.beam.sdk.values.PCollection;
 import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 
 import static org.gbif.pipelines.common.PipelinesVariables.Metrics.ARCHIVE_TO_ER_COUNT;
 
 /**
  * IO operations for DwC-A formats.
  *
- * <p>Provides the ability to read a DwC-A as a bounded source, but in a non splittable manner. This
- * means that a single threaded approach to reading is enforced.
- *
- * <p>This is intended only for demonstration usage, and not for production.
+ * <p>Provides the ability to read a DwC-A as a bounded source. The source is split into byte ranges of the core data
+ * file, a compressed archive is expanded to the working directory first. The extensions are sorted by the core id
+ * into a directory next to the working directory, which must be readable by all workers. The directory is deleted once
+ * all records are read. Archives which can't be divided are read by a single reader, see {@link DwcaSplitter}.
  *
  * <p>To use this:
  *
@@ -44,6 +57,8 @@ public class DwcaIO {
 
   public static class Read extends PTransform<PBegin, PCollection<ExtendedRecord>> {
 
+    private static final String INDEX_DIR_SUFFIX = "_split-index";
+
     private final String path;
     private final String workingPath;
     private final boolean unCompressed;
@@ -91,8 +106,20 @@ public class DwcaIO {
 
     @Override
     public PCollection<ExtendedRecord> expand(PBegin input) {
-      DwcaSource source = new DwcaSource(this);
-      return input.getPipeline().apply(org.apache.beam.sdk.io.Read.from(source));
+      DwcaSource source = new DwcaSource(this, null);
+      PCollection<ExtendedRecord> records = input.getPipeline().apply(org.apache.beam.sdk.io.Read.from(source));
+
+      input.getPipeline()
+          .apply("Split index directory", Create.of(getIndexDir()))
+          .apply("Wait for the records", Wait.on(records))
+          .apply("Delete the split indexes", ParDo.of(new DeleteIndexesFn()));
+
+      return records;
+    }
+
+    /** The extension indexes of the splits, known before the source is split so it can be deleted after the read */
+    private String getIndexDir() {
+      return Paths.get(workingPath).toAbsolutePath().normalize() + INDEX_DIR_SUFFIX;
     }
 
     @Override
@@ -102,26 +129,63 @@ public class DwcaIO {
     }
   }
 
-  /** A non-splittable bounded source. */
+  /** Deletes the extension indexes of the splits once all records are read. */
+  @Slf4j
+  private static class DeleteIndexesFn extends DoFn<String, Void> {
+
+    @ProcessElement
+    public void processElement(ProcessContext c) throws IOException {
+      log.info("Deleting the split indexes {}", c.element());
+      DwcaSplitter.deleteIndexes(Paths.get(c.element()));
+    }
+  }
+
+  /** A bounded source of the whole archive, which is split into {@link DwcaSplit}s. */
+  @Slf4j
   @AllArgsConstructor(access = AccessLevel.PACKAGE)
   private static class DwcaSource extends BoundedSource<ExtendedRecord> {
 
     private final Read read;
+    // null for the source of the whole archive before it is split
+    private final DwcaSplit split;
 
     @Override
     public Coder<ExtendedRecord> getOutputCoder() {
       return AvroCoder.of(ExtendedRecord.class);
     }
 
-    /** Will always return a single entry list of just ourselves. This is not splittable. */
+    /** Splits the core data file into byte ranges, returns itself if the archive can't be divided. */
     @Override
-    public List<? extends BoundedSource<ExtendedRecord>> split(long desiredBundleSizeBytes, PipelineOptions options) {
-      return Collections.singletonList(this);
+    public List<? extends BoundedSource<ExtendedRecord>> split(long desiredBundleSizeBytes, PipelineOptions options)
+        throws IOException {
+      if (split != null) {
+        return Collections.singletonList(this);
+      }
+      Path archiveDir = read.unCompressed
+          ? Paths.get(read.workingPath)
+          : DwcFiles.fromCompressed(Paths.get(read.path), Paths.get(read.workingPath)).getLocation().toPath();
+      Path indexDir = Paths.get(read.getIndexDir());
+
+      List<DwcaSplit> splits = DwcaSplitter.split(archiveDir, indexDir, desiredBundleSizeBytes);
+      if (splits.size() == 1 && splits.get(0).isWholeArchive()) {
+        return Collections.singletonList(this);
+      }
+      log.info("DwC-A {} is split into [{}] sources", archiveDir, splits.size());
+      return splits.stream().map(s -> new DwcaSource(read, s)).collect(Collectors.toList());
     }
 
     @Override
-    public long getEstimatedSizeBytes(PipelineOptions options) {
-      return 0; // unknown
+    public long getEstimatedSizeBytes(PipelineOptions options) throws IOException {
+      if (split != null) {
+        return split.getEstimatedSize();
+      }
+      Path path = Paths.get(read.unCompressed ? read.workingPath : read.path);
+      if (Files.isRegularFile(path)) {
+        return Files.size(path);
+      }
+      try (Stream<Path> files = Files.walk(path)) {
+        return files.filter(Files::isRegularFile).mapToLong(p -> p.toFile().length()).sum();
+      }
     }
 
     @Override
@@ -144,10 +208,14 @@ public class DwcaIO {
 
     @Override
     public boolean start() throws IOException {
-      reader =
-          source.read.unCompressed
-              ? DwcaReader.fromLocation(source.read.workingPath)
-              : DwcaReader.fromCompressed(source.read.path, source.read.workingPath);
+      if (source.split != null) {
+        reader = DwcaReader.fromSplit(source.split);
+      } else {
+        reader =
+            source.read.unCompressed
+                ? DwcaReader.fromLocation(source.read.workingPath)
+                : DwcaReader.fromCompressed(source.read.path, source.read.workingPath);
+      }
       return reader.advance();
     }
 
@@ -0,0 +1,332 @@
+package org.gbif.pipelines.common.beam;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.beam.sdk.metrics.Counter;
+import org.apache.beam.sdk.metrics.Metrics;
+import org.apache.beam.sdk.transforms.DoFn;
+import org.apache.beam.sdk.transforms.MapElements;
+import org.apache.beam.sdk.transforms.PTransform;
+import org.apache.beam.sdk.transforms.ParDo;
+import org.apache.beam.sdk.util.BackOff;
+import org.apache.beam.sdk.util.BackOffUtils;
+import org.apache.beam.sdk.util.FluentBackoff;
+import org.apache.beam.sdk.util.Sleeper;
+import org.apache.beam.sdk.values.KV;
+import org.apache.beam.sdk.values.PCollection;
+import org.apache.beam.sdk.values.PDone;
+import org.apache.beam.sdk.values.TypeDescriptor;
+import org.apache.beam.sdk.values.TypeDescriptors;
+import org.apache.http.HttpHost;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseException;
+import org.elasticsearch.client.RestClient;
+import org.joda.time.Duration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.AccessLevel;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import static org.gbif.pipelines.common.PipelinesVariables.Metrics.ES_BULK_REJECTION_COUNT;
+import static org.gbif.pipelines.common.PipelinesVariables.Metrics.ES_BULK_RETRY_COUNT;
+import static org.gbif.pipelines.common.PipelinesVariables.Metrics.ES_BULK_SUCCESS_COUNT;
+
+/**
+ * Composite transformation, IO operation for indexing documents into Elasticsearch using the bulk API.
+ *
+ * <p>Consumes documents as key - document id, value - json document bytes, so the document is never parsed again to
+ * find the id. Documents are batched by count and by bytes, the documents failed by a full queue or an unavailable
+ * node are retried with an exponential backoff, the other failed documents are rejected. Successful, retried and
+ * rejected documents are counted as Beam metrics. {@link #deletes()} deletes documents by id using the same batching
+ * and retries.
+ *
+ * <p>To use this:
+ *
+ * <pre>{@code
+ * PCollection<KV<String, byte[]>> documents = ...
+ *
+ * documents.apply("Push to Elasticsearch",
+ *     EsBulkIO.write(new String[]{"http://localhost:9200"}, "index", "record")
+ *         .withMaxBatchSize(1_500L)
+ *         .withMaxBatchSizeBytes(8_388_608L));
+ * }</pre>
+ */
+@Slf4j
+@Builder(toBuilder = true, access = AccessLevel.PRIVATE)
+public class EsBulkIO extends PTransform<PCollection<KV<String, byte[]>>, PDone> {
+
+  private static final long serialVersionUID = 5474235637455357125L;
+
+  @NonNull
+  private final String[] hosts;
+  @NonNull
+  private final String index;
+  @NonNull
+  private final String type;
+  private final long maxBatchSize;
+  private final long maxBatchSizeBytes;
+  private final int maxRetries;
+  @NonNull
+  private final Duration initialBackoff;
+  private final boolean usePartialUpdate;
+  private final boolean docAsUpsert;
+  private final boolean failOnRejection;
+  private final boolean delete;
+
+  public static EsBulkIO write(String[] hosts, String index, String type) {
+    return EsBulkIO.builder()
+        .hosts(hosts)
+        .index(index)
+        .type(type)
+        .maxBatchSize(1_000L)
+        .maxBatchSizeBytes(5_242_880L)
+        .maxRetries(5)
+        .initialBackoff(Duration.standardSeconds(1))
+        .usePartialUpdate(false)
+        .docAsUpsert(true)
+        .failOnRejection(true)
+        .delete(false)
+        .build();
+  }
+
+  /** Max number of documents in one bulk request */
+  public EsBulkIO withMaxBatchSize(long maxBatchSize) {
+    return toBuilder().maxBatchSize(maxBatchSize).build();
+  }
+
+  /** Max size of documents in one bulk request, the request is sent once the size is reached */
+  public EsBulkIO withMaxBatchSizeBytes(long maxBatchSizeBytes) {
+    return toBuilder().maxBatchSizeBytes(maxBatchSizeBytes).build();
+  }
+
+  /** Max number of retries of a failed document, the bundle fails once the retries are exhausted */
+  public EsBulkIO withMaxRetries(int maxRetries) {
+    return toBuilder().maxRetries(maxRetries).build();
+  }
+
+  /** Backoff before the first retry, every next retry backs off exponentially longer */
+  public EsBulkIO withInitialBackoff(Duration initialBackoff) {
+    return toBuilder().initialBackoff(initialBackoff).build();
+  }
+
+  /** Updates the fields of existing documents instead of replacing documents, missing documents are created */
+  public EsBulkIO withUsePartialUpdate(boolean usePartialUpdate) {
+    return toBuilder().usePartialUpdate(usePartialUpdate).build();
+  }
+
+  /**
+   * Creates a missing document from the fields of a partial update, enabled by default, otherwise the update of a
+   * missing document is rejected
+   */
+  public EsBulkIO withDocAsUpsert(boolean docAsUpsert) {
+    return toBuilder().docAsUpsert(docAsUpsert).build();
+  }
+
+  /** Fails the bundle if a document is rejected, otherwise the rejected document is only logged and counted */
+  public EsBulkIO withFailOnRejection(boolean failOnRejection) {
+    return toBuilder().failOnRejection(failOnRejection).build();
+  }
+
+  /**
+   * Deletes the documents of the consumed ids instead of indexing documents, a document missing in the index is not a
+   * rejection
+   */
+  public PTransform<PCollection<String>, PDone> deletes() {
+    EsBulkIO spec = toBuilder().delete(true).build();
+    return new PTransform<PCollection<String>, PDone>() {
+      @Override
+      public PDone expand(PCollection<String> input) {
+        return input
+            .apply("Map ids to documents", MapElements.into(
+                TypeDescriptors.kvs(TypeDescriptors.strings(), TypeDescriptor.of(byte[].class)))
+                .via((String id) -> KV.of(id, new byte[0])))
+            .apply("Bulk delete documents", spec);
+      }
+    };
+  }
+
+  @Override
+  public PDone expand(PCollection<KV<String, byte[]>> input) {
+    input.apply("Bulk index documents", ParDo.of(new BulkFn(this)));
+    return PDone.in(input.getPipeline());
+  }
+
+  /** 429 - the bulk queue is full, 502, 503, 504 - the node is temporarily unavailable */
+  private static boolean isRetryable(int status) {
+    return status == 429 || status == 502 || status == 503 || status == 504;
+  }
+
+  private static class BulkFn extends DoFn<KV<String, byte[]>, Void> {
+
+    private static final long serialVersionUID = -1939429151391574544L;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final byte[] PARTIAL_START = "{\"doc\":".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] PARTIAL_UPSERT_END = ",\"doc_as_upsert\":true}".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] PARTIAL_END = "}".getBytes(StandardCharsets.UTF_8);
+
+    private final Counter successCounter = Metrics.counter(EsBulkIO.class, ES_BULK_SUCCESS_COUNT);
+    private final Counter retryCounter = Metrics.counter(EsBulkIO.class, ES_BULK_RETRY_COUNT);
+    private final Counter rejectionCounter = Metrics.counter(EsBulkIO.class, ES_BULK_REJECTION_COUNT);
+
+    private final EsBulkIO spec;
+    private final String action;
+
+    private transient RestClient client;
+    private transient List<KV<String, byte[]>> batch;
+    private transient long batchBytes;
+
+    private BulkFn(EsBulkIO spec) {
+      this.spec = spec;
+      if (spec.delete) {
+        this.action = "delete";
+      } else {
+        this.action = spec.usePartialUpdate ? "update" : "index";
+      }
+    }
+
+    @Setup
+    public void setup() {
+      HttpHost[] hosts = Arrays.stream(spec.hosts).map(HttpHost::create).toArray(HttpHost[]::new);
+      client = RestClient.builder(hosts).build();
+    }
+
+    @StartBundle
+    public void startBundle() {
+      batch = new ArrayList<>();
+      batchBytes = 0L;
+    }
+
+    @ProcessElement
+    public void processElement(@Element KV<String, byte[]> document) throws IOException, InterruptedException {
+      batch.add(document);
+      batchBytes += document.getValue().length;
+      if (batch.size() >= spec.maxBatchSize || batchBytes >= spec.maxBatchSizeBytes) {
+        flush();
+      }
+    }
+
+    @FinishBundle
+    public void finishBundle() throws IOException, InterruptedException {
+      flush();
+    }
+
+    @Teardown
+    public void teardown() throws IOException {
+      if (client != null) {
+        client.close();
+      }
+    }
+
+    /** Sends the batch and retries the failed documents until all are indexed or rejected */
+    private void flush() throws IOException, InterruptedException {
+      if (batch.isEmpty()) {
+        return;
+      }
+      BackOff backOff =
+          FluentBackoff.DEFAULT
+              .withMaxRetries(spec.maxRetries)
+              .withInitialBackoff(spec.initialBackoff)
+              .backoff();
+
+      List<KV<String, byte[]>> pending = bulk(batch);
+      while (!pending.isEmpty()) {
+        if (!BackOffUtils.next(Sleeper.DEFAULT, backOff)) {
+          throw new IOException(
+              String.format("%d documents failed after %d retries, index - %s", pending.size(), spec.maxRetries,
+                  spec.index));
+        }
+        retryCounter.inc(pending.size());
+        pending = bulk(pending);
+      }
+
+      batch = new ArrayList<>();
+      batchBytes = 0L;
+    }
+
+    /** Sends one bulk request, returns the documents to retry */
+    private List<KV<String, byte[]>> bulk(List<KV<String, byte[]>> documents) throws IOException {
+      Request request = new Request("POST", "/_bulk");
+      request.setEntity(new ByteArrayEntity(toNdJson(documents), ContentType.create("application/x-ndjson")));
+
+      JsonNode items;
+      try {
+        Response response = client.performRequest(request);
+        try (InputStream is = response.getEntity().getContent()) {
+          items = MAPPER.readTree(is).path("items");
+        }
+      } catch (ResponseException ex) {
+        if (isRetryable(ex.getResponse().getStatusLine().getStatusCode())) {
+          log.warn("Bulk request of {} documents failed, retrying - {}", documents.size(), ex.getMessage());
+          return documents;
+        }
+        throw ex;
+      }
+
+      List<KV<String, byte[]>> retry = new ArrayList<>();
+      int rejected = 0;
+      for (int i = 0; i < documents.size(); i++) {
+        JsonNode item = items.path(i).path(action);
+        int status = item.path("status").asInt();
+        if ((status >= 200 && status < 300) || (spec.delete && status == 404)) {
+          successCounter.inc();
+        } else if (isRetryable(status)) {
+          retry.add(documents.get(i));
+        } else {
+          log.error("Document id - {} was rejected, status - {}, error - {}", documents.get(i).getKey(), status,
+              item.path("error"));
+          rejectionCounter.inc();
+          rejected++;
+        }
+      }
+
+      if (rejected > 0 && spec.failOnRejection) {
+        throw new IOException(String.format("%d documents were rejected, index - %s", rejected, spec.index));
+      }
+      return retry.isEmpty() ? Collections.emptyList() : retry;
+    }
+
+    /**
+     * Action line and document per document, an update or an upsert of the document fields for a partial update, only
+     * the action line for a delete
+     */
+    private byte[] toNdJson(List<KV<String, byte[]>> documents) throws IOException {
+      ByteArrayOutputStream out = new ByteArrayOutputStream((int) Math.min(batchBytes * 2, Integer.MAX_VALUE - 8));
+      for (KV<String, byte[]> document : documents) {
+        ObjectNode meta = MAPPER.createObjectNode();
+        meta.putObject(action)
+            .put("_index", spec.index)
+            .put("_type", spec.type)
+            .put("_id", document.getKey());
+        out.write(MAPPER.writeValueAsBytes(meta));
+        out.write('\n');
+        if (spec.delete) {
+          continue;
+        }
+        if (spec.usePartialUpdate) {
+          out.write(PARTIAL_START);
+          out.write(document.getValue());
+          out.write(spec.docAsUpsert ? PARTIAL_UPSERT_END : PARTIAL_END);
+        } else {
+          out.write(document.getValue());
+        }
+        out.write('\n');
+      }
+      return out.toByteArray();
+    }
+  }
+}
@@ -0,0 +1,212 @@
+package org.gbif.pipelines.common.beam;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.IndexedRecord;
+import org.apache.beam.sdk.io.FileIO;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.parquet.avro.AvroParquetWriter;
+import org.apache.parquet.avro.AvroWriteSupport;
+import org.apache.parquet.hadoop.ParquetFileWriter;
+import org.apache.parquet.hadoop.ParquetWriter;
+import org.apache.parquet.hadoop.metadata.CompressionCodecName;
+import org.apache.parquet.io.OutputFile;
+import org.apache.parquet.io.PositionOutputStream;
+
+import lombok.NonNull;
+
+/**
+ * Sink of {@link FileIO}, writes avro records as parquet files with the same schema, using parquet-avro. The
+ * compression codec, the row group size, the page size and the dictionary encoding of the files can be configured.
+ * Lists are written with the 3-level structure, which supports null elements.
+ *
+ * <p>To use this:
+ *
+ * <pre>{@code
+ * PCollection<OccurrenceHdfsRecord> records = ...
+ *
+ * records.apply("Write parquet", FileIO.<OccurrenceHdfsRecord>write()
+ *     .via(ParquetSink.<OccurrenceHdfsRecord>create(OccurrenceHdfsRecord.getClassSchema())
+ *         .withCompressionCodec("snappy")
+ *         .withRowGroupSize(134_217_728))
+ *     .to("/some/directory")
+ *     .withPrefix("name")
+ *     .withSuffix(".parquet"));
+ * }</pre>
+ */
+public class ParquetSink<T extends IndexedRecord> implements FileIO.Sink<T> {
+
+  private static final long serialVersionUID = -3581962733394615802L;
+
+  // Schema is not serializable
+  private final String schema;
+  private final String compressionCodec;
+  private final int rowGroupSize;
+  private final int pageSize;
+  private final int dictionaryPageSize;
+  private final boolean dictionaryEncoding;
+
+  private transient ParquetWriter<T> writer;
+
+  private ParquetSink(String schema, String compressionCodec, int rowGroupSize, int pageSize,
+      int dictionaryPageSize, boolean dictionaryEncoding) {
+    this.schema = schema;
+    this.compressionCodec = compressionCodec;
+    this.rowGroupSize = rowGroupSize;
+    this.pageSize = pageSize;
+    this.dictionaryPageSize = dictionaryPageSize;
+    this.dictionaryEncoding = dictionaryEncoding;
+  }
+
+  /** Snappy compression and the default sizes of parquet, 128MB row groups, 1MB pages and dictionary encoding */
+  public static <T extends IndexedRecord> ParquetSink<T> create(@NonNull Schema schema) {
+    return new ParquetSink<>(schema.toString(), CompressionCodecName.SNAPPY.name(), ParquetWriter.DEFAULT_BLOCK_SIZE,
+        ParquetWriter.DEFAULT_PAGE_SIZE, ParquetWriter.DEFAULT_PAGE_SIZE, ParquetWriter.DEFAULT_IS_DICTIONARY_ENABLED);
+  }
+
+  /**
+   * @param compressionCodec name of the parquet codec, case insensitive: uncompressed, snappy, gzip, lzo, brotli, lz4
+   * or zstd
+   * @throws IllegalArgumentException for an unknown codec
+   */
+  public ParquetSink<T> withCompressionCodec(@NonNull String compressionCodec) {
+    String codec = CompressionCodecName.fromConf(compressionCodec.trim()).name();
+    return new ParquetSink<>(schema, codec, rowGroupSize, pageSize, dictionaryPageSize, dictionaryEncoding);
+  }
+
+  /** @param rowGroupSize size of the row groups in bytes, the unit of parallelism of a reader */
+  public ParquetSink<T> withRowGroupSize(int rowGroupSize) {
+    checkPositive("Row group size", rowGroupSize);
+    return new ParquetSink<>(schema, compressionCodec, rowGroupSize, pageSize, dictionaryPageSize, dictionaryEncoding);
+  }
+
+  /** @param pageSize size of the pages in bytes, the unit of compression and encoding */
+  public ParquetSink<T> withPageSize(int pageSize) {
+    checkPositive("Page size", pageSize);
+    return new ParquetSink<>(schema, compressionCodec, rowGroupSize, pageSize, dictionaryPageSize, dictionaryEncoding);
+  }
+
+  /** @param dictionaryPageSize maximum size of a dictionary in bytes, a column falls back to plain encoding above it */
+  public ParquetSink<T> withDictionaryPageSize(int dictionaryPageSize) {
+    checkPositive("Dictionary page size", dictionaryPageSize);
+    return new ParquetSink<>(schema, compressionCodec, rowGroupSize, pageSize, dictionaryPageSize, dictionaryEncoding);
+  }
+
+  /** @param dictionaryEncoding enables the dictionary encoding of columns with a few distinct values */
+  public ParquetSink<T> withDictionaryEncoding(boolean dictionaryEncoding) {
+    return new ParquetSink<>(schema, compressionCodec, rowGroupSize, pageSize, dictionaryPageSize, dictionaryEncoding);
+  }
+
+  /**
+   * Creates a parquet writer with the settings of the sink, can be used without Beam, like
+   * {@code sink.createWriter(HadoopOutputFile.fromPath(path, conf))}, existing files are overwritten
+   */
+  public ParquetWriter<T> createWriter(OutputFile file) throws IOException {
+    Configuration conf = new Configuration();
+    conf.setBoolean(AvroWriteSupport.WRITE_OLD_LIST_STRUCTURE, false);
+    return AvroParquetWriter.<T>builder(file)
+        .withSchema(new Schema.Parser().parse(schema))
+        .withConf(conf)
+        .withCompressionCodec(CompressionCodecName.valueOf(compressionCodec))
+        .withRowGroupSize(rowGroupSize)
+        .withPageSize(pageSize)
+        .withDictionaryPageSize(dictionaryPageSize)
+        .withDictionaryEncoding(dictionaryEncoding)
+        .withWriteMode(ParquetFileWriter.Mode.OVERWRITE)
+        .build();
+  }
+
+  @Override
+  public void open(WritableByteChannel channel) throws IOException {
+    writer = createWriter(new ChannelOutputFile(channel));
+  }
+
+  @Override
+  public void write(T element) throws IOException {
+    writer.write(element);
+  }
+
+  /** Parquet writes the footer of the file only on close */
+  @Override
+  public void flush() throws IOException {
+    writer.close();
+  }
+
+  private static void checkPositive(String name, int value) {
+    if (value <= 0) {
+      throw new IllegalArgumentException(name + " must be positive, but was " + value);
+    }
+  }
+
+  /** Parquet file of a channel opened by {@link FileIO} */
+  private static class ChannelOutputFile implements OutputFile {
+
+    private final OutputStream out;
+
+    private ChannelOutputFile(WritableByteChannel channel) {
+      this.out = Channels.newOutputStream(channel);
+    }
+
+    @Override
+    public PositionOutputStream create(long blockSizeHint) {
+      return new ChannelPositionOutputStream(out);
+    }
+
+    @Override
+    public PositionOutputStream createOrOverwrite(long blockSizeHint) {
+      return new ChannelPositionOutputStream(out);
+    }
+
+    @Override
+    public boolean supportsBlockSize() {
+      return false;
+    }
+
+    @Override
+    public long defaultBlockSize() {
+      return 0L;
+    }
+  }
+
+  /** Parquet needs the position of the stream to write the offsets of the row groups */
+  private static class ChannelPositionOutputStream extends PositionOutputStream {
+
+    private final OutputStream out;
+    private long position;
+
+    private ChannelPositionOutputStream(OutputStream out) {
+      this.out = out;
+    }
+
+    @Override
+    public long getPos() {
+      return position;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+      position++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+      position += len;
+    }
+
+    @Override
+    public void flush() throws IOException {
+      out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+      out.close();
+    }
+  }
+}
@@ -3,9 +3,8 @@ package org.gbif.pipelines.common.beam;
 import java.io.InputStream;
 import java.nio.channels.Channels;
 
-import org.gbif.converters.parser.xml.OccurrenceParser;
+import org.gbif.converters.parser.xml.StaxOccurrenceParser;
 import org.gbif.converters.parser.xml.parsing.extendedrecord.ExtendedRecordConverter;
-import org.gbif.converters.parser.xml.parsing.xml.XmlFragmentParser;
 import org.gbif.pipelines.io.avro.ExtendedRecord;
 
 import org.apache.beam.sdk.io.FileSystems;
@@ -79,8 +78,8 @@ public class XmlIO extends PTransform<PBegin, PCollection<ExtendedRecord>> {
       @ProcessElement
       public void processElement(@Element ResourceId resourceId, OutputReceiver<ExtendedRecord> out) {
         try (InputStream is = Channels.newInputStream(FileSystems.open(resourceId))) {
-          new OccurrenceParser().parseStream(is).forEach(rxo ->
-              XmlFragmentParser.parseRecord(rxo).stream()
+          new StaxOccurrenceParser().parseStream(is, (rxo, records) ->
+              records.stream()
                   .map(ExtendedRecordConverter::from)
                   .forEach(er -> {
                     xmlCount.inc();
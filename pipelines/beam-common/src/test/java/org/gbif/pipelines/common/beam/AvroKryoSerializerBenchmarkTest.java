@@ -0,0 +1,104 @@
+package org.gbif.pipelines.common.beam;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.gbif.pipelines.io.avro.ExtendedRecord;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.google.common.base.Stopwatch;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Compares the Kryo field serializer, which was used for the avro records before, and the {@link AvroKryoSerializer}
+ * for records with a typical number of terms and extension rows. Logs the serialized size and records per second.
+ */
+@Slf4j
+public class AvroKryoSerializerBenchmarkTest {
+
+  // increase it to benchmark with a higher volume of data
+  private static final int N = 5_000;
+
+  private static List<ExtendedRecord> records() {
+    List<ExtendedRecord> records = new ArrayList<>(N);
+    for (int i = 0; i < N; i++) {
+      Map<String, String> core = new HashMap<>();
+      for (int t = 0; t < 40; t++) {
+        core.put("http://rs.tdwg.org/dwc/terms/term" + t, "value " + t + " of record " + i);
+      }
+      List<Map<String, String>> rows = new ArrayList<>();
+      for (int r = 0; r < i % 4; r++) {
+        Map<String, String> row = new HashMap<>();
+        row.put("http://purl.org/dc/terms/identifier", "http://media.org/" + i + "/" + r + ".jpg");
+        row.put("http://purl.org/dc/terms/format", "image/jpeg");
+        rows.add(row);
+      }
+      Map<String, List<Map<String, String>>> extensions = new HashMap<>();
+      extensions.put("http://rs.gbif.org/terms/1.0/Multimedia", rows);
+      records.add(ExtendedRecord.newBuilder().setId("id-" + i).setCoreTerms(core).setExtensions(extensions).build());
+    }
+    return records;
+  }
+
+  private static byte[] write(Kryo kryo, List<ExtendedRecord> records) {
+    Output output = new Output(64 * 1024, -1);
+    records.forEach(record -> kryo.writeObject(output, record));
+    return output.toBytes();
+  }
+
+  private static List<ExtendedRecord> read(Kryo kryo, byte[] bytes) {
+    List<ExtendedRecord> records = new ArrayList<>(N);
+    Input input = new Input(bytes);
+    for (int i = 0; i < N; i++) {
+      records.add(kryo.readObject(input, ExtendedRecord.class));
+    }
+    return records;
+  }
+
+  private static long perSecond(Stopwatch watch) {
+    return N * 1000L / Math.max(watch.elapsed(TimeUnit.MILLISECONDS), 1L);
+  }
+
+  @Test
+  public void fieldVsAvroSerializerTest() {
+    // State
+    List<ExtendedRecord> records = records();
+
+    Kryo fieldKryo = new Kryo();
+    Kryo avroKryo = new Kryo();
+    avroKryo.register(ExtendedRecord.class, AvroKryoSerializer.create(ExtendedRecord.class));
+
+    // warm up
+    for (int i = 0; i < 5; i++) {
+      read(fieldKryo, write(fieldKryo, records));
+      read(avroKryo, write(avroKryo, records));
+    }
+
+    // When
+    Stopwatch fieldWatch = Stopwatch.createStarted();
+    byte[] fieldBytes = write(fieldKryo, records);
+    List<ExtendedRecord> fieldResult = read(fieldKryo, fieldBytes);
+    fieldWatch.stop();
+
+    Stopwatch avroWatch = Stopwatch.createStarted();
+    byte[] avroBytes = write(avroKryo, records);
+    List<ExtendedRecord> avroResult = read(avroKryo, avroBytes);
+    avroWatch.stop();
+
+    log.info("Field serializer {} bytes, {} records/s, avro serializer {} bytes, {} records/s", fieldBytes.length,
+        perSecond(fieldWatch), avroBytes.length, perSecond(avroWatch));
+
+    // Should
+    Assert.assertEquals(records, fieldResult);
+    Assert.assertEquals(records, avroResult);
+    Assert.assertTrue(avroBytes.length < fieldBytes.length);
+  }
+}
@@ -0,0 +1,111 @@
+package org.gbif.pipelines.common.beam;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.gbif.pipelines.core.io.TermDictionary;
+import org.gbif.pipelines.core.io.TermDictionaryEncoding;
+import org.gbif.pipelines.io.avro.ExtendedRecord;
+import org.gbif.pipelines.io.avro.IssueRecord;
+import org.gbif.pipelines.io.avro.Rank;
+import org.gbif.pipelines.io.avro.RankedName;
+import org.gbif.pipelines.io.avro.TaxonRecord;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+public class AvroKryoSerializerTest {
+
+  private static Kryo kryo() {
+    Kryo kryo = new Kryo();
+    kryo.register(ExtendedRecord.class, AvroKryoSerializer.create(ExtendedRecord.class));
+    kryo.register(TaxonRecord.class, AvroKryoSerializer.create(TaxonRecord.class));
+    kryo.register(RankedName.class, AvroKryoSerializer.create(RankedName.class));
+    return kryo;
+  }
+
+  private static ExtendedRecord extendedRecord(String id) {
+    Map<String, String> core = new HashMap<>();
+    core.put("http://rs.tdwg.org/dwc/terms/scientificName", "Puma concolor " + id);
+    core.put("http://rs.tdwg.org/dwc/terms/locality", "");
+    Map<String, String> identifier = Collections.singletonMap("http://purl.org/dc/terms/identifier", "urn:" + id);
+    return ExtendedRecord.newBuilder()
+        .setId(id)
+        .setCoreTerms(core)
+        .setExtensions(Collections.singletonMap("http://rs.gbif.org/terms/1.0/Identifier",
+            Arrays.asList(identifier, identifier)))
+        .build();
+  }
+
+  @Test
+  public void roundTripTest() {
+    // State
+    Kryo kryo = kryo();
+    RankedName usage = RankedName.newBuilder().setKey(1).setName("Puma concolor").setRank(Rank.SPECIES).build();
+    TaxonRecord taxon = TaxonRecord.newBuilder()
+        .setId("1")
+        .setUsage(usage)
+        .setClassification(Collections.singletonList(usage))
+        .setIssues(IssueRecord.newBuilder().setIssueList(Collections.singletonList("TAXON_MATCH_FUZZY")).build())
+        .build();
+
+    // When
+    Output output = new Output(1024, -1);
+    kryo.writeObject(output, extendedRecord("1"));
+    kryo.writeClassAndObject(output, taxon);
+    kryo.writeObject(output, extendedRecord("2"));
+    kryo.writeObject(output, usage);
+
+    Input input = new Input(output.toBytes());
+
+    // Should
+    Assert.assertEquals(extendedRecord("1"), kryo.readObject(input, ExtendedRecord.class));
+    Assert.assertEquals(taxon, kryo.readClassAndObject(input));
+    Assert.assertEquals(extendedRecord("2"), kryo.readObject(input, ExtendedRecord.class));
+    Assert.assertEquals(usage, kryo.readObject(input, RankedName.class));
+    Assert.assertTrue(input.eof());
+  }
+
+  @Test
+  public void termDictionaryTest() {
+    // State
+    Kryo plain = kryo();
+    Kryo encoded = new Kryo();
+    encoded.register(ExtendedRecord.class, AvroKryoSerializer.create(ExtendedRecord.class,
+        TermDictionaryEncoding.writer(TermDictionary.DEFAULT), TermDictionaryEncoding.reader(TermDictionary.DEFAULT)));
+
+    // When
+    Output plainOutput = new Output(1024, -1);
+    plain.writeObject(plainOutput, extendedRecord("1"));
+    Output encodedOutput = new Output(1024, -1);
+    encoded.writeObject(encodedOutput, extendedRecord("1"));
+    encoded.writeObject(encodedOutput, extendedRecord("2"));
+
+    Input input = new Input(encodedOutput.toBytes());
+
+    // Should
+    Assert.assertEquals(extendedRecord("1"), encoded.readObject(input, ExtendedRecord.class));
+    Assert.assertEquals(extendedRecord("2"), encoded.readObject(input, ExtendedRecord.class));
+    Assert.assertTrue(input.eof());
+    Assert.assertTrue(encodedOutput.total() < plainOutput.total() * 2);
+  }
+
+  @Test
+  public void copyTest() {
+    // State
+    ExtendedRecord record = extendedRecord("1");
+
+    // When
+    ExtendedRecord copy = kryo().copy(record);
+
+    // Should
+    Assert.assertEquals(record, copy);
+    Assert.assertNotSame(record.getCoreTerms(), copy.getCoreTerms());
+  }
+}
@@ -0,0 +1,234 @@
+package org.gbif.pipelines.common.beam;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.apache.beam.sdk.Pipeline.PipelineExecutionException;
+import org.apache.beam.sdk.PipelineResult;
+import org.apache.beam.sdk.coders.ByteArrayCoder;
+import org.apache.beam.sdk.coders.KvCoder;
+import org.apache.beam.sdk.coders.StringUtf8Coder;
+import org.apache.beam.sdk.metrics.MetricNameFilter;
+import org.apache.beam.sdk.metrics.MetricResult;
+import org.apache.beam.sdk.metrics.MetricsFilter;
+import org.apache.beam.sdk.testing.NeedsRunner;
+import org.apache.beam.sdk.testing.TestPipeline;
+import org.apache.beam.sdk.transforms.Create;
+import org.apache.beam.sdk.values.KV;
+import org.joda.time.Duration;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import static org.gbif.pipelines.common.PipelinesVariables.Metrics.ES_BULK_REJECTION_COUNT;
+import static org.gbif.pipelines.common.PipelinesVariables.Metrics.ES_BULK_RETRY_COUNT;
+import static org.gbif.pipelines.common.PipelinesVariables.Metrics.ES_BULK_SUCCESS_COUNT;
+
+@RunWith(JUnit4.class)
+@Category(NeedsRunner.class)
+public class EsBulkIOTest {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  // The stub answers 429 the first time these ids come and 400 every time for the rejected id
+  private static final Set<String> RETRY_IDS = new HashSet<>(Arrays.asList("3", "13", "42"));
+  private static final String REJECTED_ID = "7";
+
+  @Rule
+  public final transient TestPipeline p = TestPipeline.create();
+
+  private final Set<String> indexed = ConcurrentHashMap.newKeySet();
+  private final Set<String> deleted = ConcurrentHashMap.newKeySet();
+  private final Set<String> upserted = ConcurrentHashMap.newKeySet();
+  private final Set<String> retried = ConcurrentHashMap.newKeySet();
+  private final Set<String> actions = ConcurrentHashMap.newKeySet();
+  private HttpServer server;
+
+  @Before
+  public void startServer() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/_bulk", this::bulk);
+    server.start();
+  }
+
+  @After
+  public void stopServer() {
+    server.stop(0);
+  }
+
+  /** Elasticsearch bulk API stub, responds with a status per document */
+  private void bulk(HttpExchange exchange) throws IOException {
+    ObjectNode response = MAPPER.createObjectNode();
+    ArrayNode items = response.putArray("items");
+    boolean errors = false;
+    try (BufferedReader reader =
+        new BufferedReader(new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        JsonNode meta = MAPPER.readTree(line);
+        String action = meta.fieldNames().next();
+        String id = meta.path(action).path("_id").asText();
+        actions.add(action);
+        // A delete has no document line
+        JsonNode document = "delete".equals(action) ? null : MAPPER.readTree(reader.readLine());
+
+        int status = 201;
+        if (document == null) {
+          // The rejected id is not found
+          status = deleted.add(id) && !REJECTED_ID.equals(id) ? 200 : 404;
+        } else if (REJECTED_ID.equals(id)) {
+          status = 400;
+        } else if (RETRY_IDS.contains(id) && retried.add(id)) {
+          status = 429;
+        } else {
+          JsonNode source = "update".equals(action) ? document.path("doc") : document;
+          if (id.equals(source.path("id").asText())) {
+            indexed.add(id);
+          }
+          if (document.path("doc_as_upsert").asBoolean()) {
+            upserted.add(id);
+          }
+        }
+        errors |= status >= 300;
+        items.addObject().putObject(action).put("_id", id).put("status", status);
+      }
+    }
+    response.put("errors", errors);
+
+    byte[] body = MAPPER.writeValueAsBytes(response);
+    exchange.getResponseHeaders().add("Content-Type", "application/json");
+    exchange.sendResponseHeaders(200, body.length);
+    try (OutputStream os = exchange.getResponseBody()) {
+      os.write(body);
+    }
+  }
+
+  private static List<KV<String, byte[]>> documents(int count) {
+    return IntStream.range(0, count)
+        .mapToObj(String::valueOf)
+        .map(id -> KV.of(id, ("{\"id\":\"" + id + "\",\"value\":\"v" + id + "\"}").getBytes(StandardCharsets.UTF_8)))
+        .collect(Collectors.toList());
+  }
+
+  private EsBulkIO write() {
+    String host = "http://localhost:" + server.getAddress().getPort();
+    return EsBulkIO.write(new String[] {host}, "index", "record")
+        .withMaxBatchSize(10L)
+        .withInitialBackoff(Duration.millis(10));
+  }
+
+  private static long counter(PipelineResult result, String name) {
+    MetricsFilter filter =
+        MetricsFilter.builder().addNameFilter(MetricNameFilter.named(EsBulkIO.class, name)).build();
+    long sum = 0L;
+    for (MetricResult<Long> counter : result.metrics().queryMetrics(filter).getCounters()) {
+      sum += counter.getAttempted();
+    }
+    return sum;
+  }
+
+  @Test
+  public void retryFailedDocumentsTest() {
+    // State
+    List<KV<String, byte[]>> documents =
+        documents(100).stream().filter(kv -> !REJECTED_ID.equals(kv.getKey())).collect(Collectors.toList());
+
+    // When
+    p.apply(Create.of(documents).withCoder(KvCoder.of(StringUtf8Coder.of(), ByteArrayCoder.of())))
+        .apply(write());
+    PipelineResult result = p.run();
+    result.waitUntilFinish();
+
+    // Should
+    Assert.assertEquals(99, indexed.size());
+    Assert.assertEquals(99L, counter(result, ES_BULK_SUCCESS_COUNT));
+    Assert.assertEquals(3L, counter(result, ES_BULK_RETRY_COUNT));
+    Assert.assertEquals(0L, counter(result, ES_BULK_REJECTION_COUNT));
+    Assert.assertEquals(Collections.singleton("index"), actions);
+  }
+
+  @Test
+  public void countRejectedDocumentsTest() {
+    // When
+    p.apply(Create.of(documents(100)).withCoder(KvCoder.of(StringUtf8Coder.of(), ByteArrayCoder.of())))
+        .apply(write().withFailOnRejection(false).withUsePartialUpdate(true));
+    PipelineResult result = p.run();
+    result.waitUntilFinish();
+
+    // Should
+    Assert.assertEquals(99, indexed.size());
+    Assert.assertFalse(indexed.contains(REJECTED_ID));
+    Assert.assertEquals(indexed, upserted);
+    Assert.assertEquals(99L, counter(result, ES_BULK_SUCCESS_COUNT));
+    Assert.assertEquals(3L, counter(result, ES_BULK_RETRY_COUNT));
+    Assert.assertEquals(1L, counter(result, ES_BULK_REJECTION_COUNT));
+    Assert.assertEquals(Collections.singleton("update"), actions);
+  }
+
+  @Test
+  public void updateWithoutUpsertTest() {
+    // State
+    List<KV<String, byte[]>> documents = documents(20);
+
+    // When
+    p.apply(Create.of(documents).withCoder(KvCoder.of(StringUtf8Coder.of(), ByteArrayCoder.of())))
+        .apply(write().withFailOnRejection(false).withUsePartialUpdate(true).withDocAsUpsert(false));
+    PipelineResult result = p.run();
+    result.waitUntilFinish();
+
+    // Should
+    Assert.assertEquals(19, indexed.size());
+    Assert.assertTrue(upserted.isEmpty());
+    Assert.assertEquals(Collections.singleton("update"), actions);
+  }
+
+  @Test
+  public void deleteDocumentsTest() {
+    // State
+    List<String> ids = IntStream.range(0, 25).mapToObj(String::valueOf).collect(Collectors.toList());
+
+    // When
+    p.apply(Create.of(ids)).apply(write().deletes());
+    PipelineResult result = p.run();
+    result.waitUntilFinish();
+
+    // Should
+    Assert.assertEquals(new HashSet<>(ids), deleted);
+    Assert.assertTrue(indexed.isEmpty());
+    Assert.assertEquals(25L, counter(result, ES_BULK_SUCCESS_COUNT));
+    Assert.assertEquals(0L, counter(result, ES_BULK_REJECTION_COUNT));
+    Assert.assertEquals(Collections.singleton("delete"), actions);
+  }
+
+  @Test(expected = PipelineExecutionException.class)
+  public void failOnRejectedDocumentTest() {
+    // When
+    p.apply(Create.of(documents(20)).withCoder(KvCoder.of(StringUtf8Coder.of(), ByteArrayCoder.of())))
+        .apply(write());
+    p.run();
+  }
+}
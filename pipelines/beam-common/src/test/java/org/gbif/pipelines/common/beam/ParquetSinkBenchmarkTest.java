@@ -0,0 +1,168 @@
+package org.gbif.pipelines.common.beam;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.gbif.pipelines.io.avro.OccurrenceHdfsRecord;
+
+import org.apache.avro.Schema;
+import org.apache.avro.file.CodecFactory;
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.specific.SpecificDatumReader;
+import org.apache.avro.specific.SpecificDatumWriter;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.parquet.avro.AvroParquetReader;
+import org.apache.parquet.avro.AvroReadSupport;
+import org.apache.parquet.hadoop.ParquetReader;
+import org.apache.parquet.hadoop.ParquetWriter;
+import org.apache.parquet.hadoop.util.HadoopOutputFile;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.base.Stopwatch;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Compares the avro and parquet files of the HDFS occurrence view, logs the file sizes and the time to scan a few
+ * columns, which is the typical query of the view
+ */
+@Slf4j
+public class ParquetSinkBenchmarkTest {
+
+  // increase it to benchmark with a higher volume of data
+  private static final int N = 20_000;
+
+  private static final String[] COUNTRIES = {"DK", "SE", "NO", "DE", "GB", "US", "AU", "BR"};
+  private static final String[] KINGDOMS = {"Animalia", "Plantae", "Fungi"};
+
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  private static OccurrenceHdfsRecord record(int i) {
+    OccurrenceHdfsRecord record = new OccurrenceHdfsRecord();
+    record.setGbifid((long) i);
+    record.setDatasetkey("7a3679ef-5582-4aaa-81f0-8c2545cafc81");
+    record.setBasisofrecord("HUMAN_OBSERVATION");
+    record.setCountrycode(COUNTRIES[i % COUNTRIES.length]);
+    record.setKingdom(KINGDOMS[i % KINGDOMS.length]);
+    record.setScientificname("Species " + (i % 500) + " L.");
+    record.setYear(1950 + i % 70);
+    record.setDecimallatitude(-90d + (i % 18_000) / 100d);
+    record.setIssue(Arrays.asList("GEODETIC_DATUM_ASSUMED_WGS84", "COUNTRY_DERIVED_FROM_COORDINATES"));
+    return record;
+  }
+
+  private static Schema projection() {
+    Schema schema = OccurrenceHdfsRecord.getClassSchema();
+    return Schema.createRecord(schema.getName(), schema.getDoc(), schema.getNamespace(), false, Arrays.asList(
+        copy(schema.getField("gbifid")),
+        copy(schema.getField("countrycode")),
+        copy(schema.getField("kingdom")),
+        copy(schema.getField("year")),
+        copy(schema.getField("decimallatitude"))));
+  }
+
+  private static Schema.Field copy(Schema.Field field) {
+    return new Schema.Field(field.name(), field.schema(), field.doc(), field.defaultVal());
+  }
+
+  private static long perSecond(Stopwatch watch) {
+    return N * 1000L / Math.max(watch.elapsed(TimeUnit.MILLISECONDS), 1L);
+  }
+
+  private void writeAvro(File file) throws IOException {
+    try (DataFileWriter<OccurrenceHdfsRecord> writer =
+        new DataFileWriter<>(new SpecificDatumWriter<>(OccurrenceHdfsRecord.class))) {
+      writer.setCodec(CodecFactory.snappyCodec());
+      writer.create(OccurrenceHdfsRecord.getClassSchema(), file);
+      for (int i = 0; i < N; i++) {
+        writer.append(record(i));
+      }
+    }
+  }
+
+  private void writeParquet(File file, Configuration conf) throws IOException {
+    ParquetSink<OccurrenceHdfsRecord> sink = ParquetSink.create(OccurrenceHdfsRecord.getClassSchema());
+    try (ParquetWriter<OccurrenceHdfsRecord> writer =
+        sink.createWriter(HadoopOutputFile.fromPath(new Path(file.toURI()), conf))) {
+      for (int i = 0; i < N; i++) {
+        writer.write(record(i));
+      }
+    }
+  }
+
+  private static long scanAvro(File file) throws IOException {
+    long sum = 0;
+    try (DataFileReader<OccurrenceHdfsRecord> reader =
+        new DataFileReader<>(file, new SpecificDatumReader<>(OccurrenceHdfsRecord.class))) {
+      for (OccurrenceHdfsRecord record : reader) {
+        sum += record.getYear();
+      }
+    }
+    return sum;
+  }
+
+  private static long scanParquet(File file, Configuration conf) throws IOException {
+    long sum = 0;
+    try (ParquetReader<GenericRecord> reader = AvroParquetReader.<GenericRecord>builder(new Path(file.toURI()))
+        .withDataModel(GenericData.get())
+        .withConf(conf)
+        .build()) {
+      for (GenericRecord record = reader.read(); record != null; record = reader.read()) {
+        sum += (Integer) record.get("year");
+      }
+    }
+    return sum;
+  }
+
+  @Test
+  public void avroVsParquetTest() throws IOException {
+    // State
+    File avroFile = new File(folder.getRoot(), "view.avro");
+    File parquetFile = new File(folder.getRoot(), "view.parquet");
+
+    Configuration conf = new Configuration();
+    Configuration projectionConf = new Configuration();
+    AvroReadSupport.setRequestedProjection(projectionConf, projection());
+
+    // When
+    Stopwatch avroWriteWatch = Stopwatch.createStarted();
+    writeAvro(avroFile);
+    avroWriteWatch.stop();
+
+    Stopwatch parquetWriteWatch = Stopwatch.createStarted();
+    writeParquet(parquetFile, conf);
+    parquetWriteWatch.stop();
+
+    // warm up
+    for (int i = 0; i < 3; i++) {
+      scanAvro(avroFile);
+      scanParquet(parquetFile, projectionConf);
+    }
+
+    Stopwatch avroScanWatch = Stopwatch.createStarted();
+    long avroSum = scanAvro(avroFile);
+    avroScanWatch.stop();
+
+    Stopwatch parquetScanWatch = Stopwatch.createStarted();
+    long parquetSum = scanParquet(parquetFile, projectionConf);
+    parquetScanWatch.stop();
+
+    log.info("Avro {} bytes, written {} records/s, scanned {} records/s", avroFile.length(),
+        perSecond(avroWriteWatch), perSecond(avroScanWatch));
+    log.info("Parquet {} bytes, written {} records/s, scanned 5 columns {} records/s", parquetFile.length(),
+        perSecond(parquetWriteWatch), perSecond(parquetScanWatch));
+
+    // Should
+    Assert.assertEquals(avroSum, parquetSum);
+    Assert.assertTrue(parquetFile.length() < avroFile.length());
+  }
+}
@@ -0,0 +1,108 @@
+package org.gbif.pipelines.common.beam;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.gbif.pipelines.io.avro.OccurrenceHdfsRecord;
+
+import org.apache.beam.sdk.coders.AvroCoder;
+import org.apache.beam.sdk.io.FileIO;
+import org.apache.beam.sdk.testing.NeedsRunner;
+import org.apache.beam.sdk.testing.TestPipeline;
+import org.apache.beam.sdk.transforms.Create;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.parquet.avro.AvroParquetReader;
+import org.apache.parquet.hadoop.ParquetReader;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+@Category(NeedsRunner.class)
+public class ParquetSinkTest {
+
+  @Rule
+  public final transient TestPipeline p = TestPipeline.create();
+
+  @Rule
+  public final transient TemporaryFolder folder = new TemporaryFolder();
+
+  private static OccurrenceHdfsRecord record(long id, String countryCode, List<String> issues) {
+    // the schema has no defaults, the builder can't be used
+    OccurrenceHdfsRecord record = new OccurrenceHdfsRecord();
+    record.setGbifid(id);
+    record.setCountrycode(countryCode);
+    record.setKingdom("Animalia");
+    record.setYear(2000 + (int) id);
+    record.setIssue(issues);
+    return record;
+  }
+
+  private static List<OccurrenceHdfsRecord> read(File directory) throws IOException {
+    List<OccurrenceHdfsRecord> result = new ArrayList<>();
+    File[] files = directory.listFiles((dir, name) -> name.endsWith(".parquet"));
+    Assert.assertNotNull(files);
+    for (File file : files) {
+      try (ParquetReader<OccurrenceHdfsRecord> reader = AvroParquetReader.<OccurrenceHdfsRecord>builder(
+          new Path(file.toURI())).withConf(new Configuration()).build()) {
+        for (OccurrenceHdfsRecord r = reader.read(); r != null; r = reader.read()) {
+          result.add(r);
+        }
+      }
+    }
+    return result;
+  }
+
+  @Test
+  public void writeTest() throws IOException {
+    // State
+    List<OccurrenceHdfsRecord> records = Arrays.asList(
+        record(1L, "DK", Arrays.asList("ZERO_COORDINATE", "COUNTRY_COORDINATE_MISMATCH")),
+        record(2L, "DK", Collections.emptyList()),
+        record(3L, null, Collections.singletonList("RECORDED_DATE_INVALID")));
+    File directory = folder.newFolder("parquet");
+
+    ParquetSink<OccurrenceHdfsRecord> sink = ParquetSink.<OccurrenceHdfsRecord>create(
+        OccurrenceHdfsRecord.getClassSchema())
+        .withCompressionCodec("gzip")
+        .withRowGroupSize(1024 * 1024)
+        .withPageSize(64 * 1024)
+        .withDictionaryPageSize(64 * 1024);
+
+    // When
+    p.apply(Create.of(records).withCoder(AvroCoder.of(OccurrenceHdfsRecord.class)))
+        .apply(FileIO.<OccurrenceHdfsRecord>write()
+            .via(sink)
+            .to(directory.toString())
+            .withPrefix("view_occurrence")
+            .withSuffix(".parquet")
+            .withNumShards(2));
+    p.run().waitUntilFinish();
+
+    // Should
+    List<OccurrenceHdfsRecord> result = read(directory);
+    result.sort((a, b) -> Long.compare(a.getGbifid(), b.getGbifid()));
+    Assert.assertEquals(records, result);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void unknownCodecTest() {
+    // When
+    ParquetSink.create(OccurrenceHdfsRecord.getClassSchema()).withCompressionCodec("unknown");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void negativeRowGroupSizeTest() {
+    // When
+    ParquetSink.create(OccurrenceHdfsRecord.getClassSchema()).withRowGroupSize(-1);
+  }
+}
@@ -15,6 +15,7 @@ public class PipelinesVariables {
   public static class Pipeline {
 
     public static final String AVRO_EXTENSION = ".avro";
+    public static final String PARQUET_EXTENSION = ".parquet";
 
     public static final String ARCHIVE_TO_VERBATIM = "archive-to-verbatim";
     public static final String VERBATIM_TO_INTERPRETED = "verbatim-to-interpreted";
@@ -34,6 +35,9 @@ public class PipelinesVariables {
 
       public static final String DIRECTORY_NAME = "interpreted";
       public static final String FILE_NAME = "interpret-";
+      public static final String HASH_DIRECTORY_NAME = "hash";
+      public static final String DELETED_DIRECTORY_NAME = "deleted";
+      public static final String FINGERPRINT_DIRECTORY_NAME = "fingerprint";
 
       public interface InterpretationType extends Serializable {
 
@@ -76,6 +80,8 @@ public class PipelinesVariables {
 
       public static final String INDEX_TYPE = "record";
       public static final String GBIF_ID = "gbifId";
+      public static final String HASH_DIRECTORY_NAME = "index_hash";
+      public static final String SUCCESS_FILE_NAME = "_SUCCESS";
     }
 
 
@@ -83,6 +89,8 @@ public class PipelinesVariables {
     public static class HdfsView {
 
       public static final String VIEW_OCCURRENCE = "view_occurrence";
+      public static final String AVRO_FORMAT = "AVRO";
+      public static final String PARQUET_FORMAT = "PARQUET";
     }
 
   }
@@ -92,6 +100,8 @@ public class PipelinesVariables {
 
     public static final String AVRO_TO_JSON_COUNT = "avroToJsonCount";
     public static final String ARCHIVE_TO_ER_COUNT = "archiveToErCount";
+    // order independent content hash of the converted verbatim records, written with the count
+    public static final String ARCHIVE_TO_ER_HASH = "archiveToErHash";
     public static final String AVRO_TO_HDFS_COUNT = "avroToHdfsCount";
 
     public static final String UNIQUE_IDS_COUNT = "uniqueIdsCount";
@@ -107,6 +117,19 @@ public class PipelinesVariables {
     public static final String OCCURRENCE_EXT_COUNT = "occurrenceExtCount";
     public static final String HASH_ID_COUNT = "hashIdCount";
     public static final String INVALID_GBIF_ID_COUNT = "invalidGbifIdCount";
+    public static final String BUCKET_JOIN_COUNT = "bucketJoinCount";
+    public static final String ES_BULK_SUCCESS_COUNT = "esBulkSuccessCount";
+    public static final String ES_BULK_RETRY_COUNT = "esBulkRetryCount";
+    public static final String ES_BULK_REJECTION_COUNT = "esBulkRejectionCount";
+    public static final String INCREMENTAL_NEW_COUNT = "incrementalNewCount";
+    public static final String INCREMENTAL_CHANGED_COUNT = "incrementalChangedCount";
+    public static final String INCREMENTAL_UNCHANGED_COUNT = "incrementalUnchangedCount";
+    public static final String INCREMENTAL_DELETED_COUNT = "incrementalDeletedCount";
+    public static final String ES_NEW_COUNT = "esNewCount";
+    public static final String ES_CHANGED_COUNT = "esChangedCount";
+    public static final String ES_UNCHANGED_COUNT = "esUnchangedCount";
+    public static final String ES_DELETED_COUNT = "esDeletedCount";
+    public static final String SKIPPED_TYPES_COUNT = "skippedTypesCount";
     // Core types
     public static final String METADATA_RECORDS_COUNT = "metadataRecordsCount";
     public static final String TAGGED_VALUES_RECORDS_COUNT = "taggedValuesRecordsCount";
@@ -19,6 +19,12 @@ public interface ExportHBaseOptions extends HadoopFileSystemOptions {
 
   void setExportPath(String exportPath);
 
+  @Description("Avro compression type of the exported files")
+  @Default.String("snappy")
+  String getAvroCompressionType();
+
+  void setAvroCompressionType(String compressionType);
+
   @Description("Batch size of documents to be read from HBase")
   @Default.Integer(10000)
   int getBatchSize();
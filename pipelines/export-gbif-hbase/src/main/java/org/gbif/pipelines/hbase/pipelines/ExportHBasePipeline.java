@@ -2,11 +2,11 @@ package org.gbif.pipelines.hbase.pipelines;
 
 import org.gbif.api.model.occurrence.VerbatimOccurrence;
 import org.gbif.pipelines.common.PipelinesVariables;
+import org.gbif.pipelines.core.utils.AvroCodecUtils;
 import org.gbif.pipelines.hbase.options.ExportHBaseOptions;
 import org.gbif.pipelines.hbase.utils.OccurrenceConverter;
 import org.gbif.pipelines.io.avro.ExtendedRecord;
 
-import org.apache.avro.file.CodecFactory;
 import org.apache.beam.runners.spark.SparkRunner;
 import org.apache.beam.sdk.Pipeline;
 import org.apache.beam.sdk.coders.StringUtf8Coder;
@@ -35,8 +35,6 @@ import static org.apache.beam.sdk.io.FileIO.Write.defaultNaming;
 @NoArgsConstructor(access = AccessLevel.PRIVATE)
 public class ExportHBasePipeline {
 
-  private static final CodecFactory BASE_CODEC = CodecFactory.snappyCodec();
-
   public static void main(String[] args) {
     PipelineOptionsFactory.register(ExportHBaseOptions.class);
     ExportHBaseOptions options = PipelineOptionsFactory.fromArgs(args).as(ExportHBaseOptions.class);
@@ -48,6 +46,7 @@ public class ExportHBasePipeline {
 
     //Params
     String exportPath = options.getExportPath();
+    String codec = options.getAvroCompressionType();
     String table = options.getTable();
 
     Configuration hbaseConfig = HBaseConfiguration.create();
@@ -81,7 +80,8 @@ public class ExportHBasePipeline {
 
     records.apply("Write avro file per dataset", FileIO.<String, KV<String, ExtendedRecord>>writeDynamic()
         .by(KV::getKey)
-        .via(Contextful.fn(KV::getValue), Contextful.fn(x -> AvroIO.sink(ExtendedRecord.class).withCodec(BASE_CODEC)))
+        .via(Contextful.fn(KV::getValue),
+            Contextful.fn(x -> AvroIO.sink(ExtendedRecord.class).withCodec(AvroCodecUtils.fromString(codec))))
         .to(exportPath)
         .withDestinationCoder(StringUtf8Coder.of())
         .withNaming(key -> defaultNaming(key + "/verbatimHBaseExport", PipelinesVariables.Pipeline.AVRO_EXTENSION)));
@@ -1,12 +1,12 @@
 package org.gbif.pipelines.hbase.pipelines;
 
 import org.gbif.api.model.occurrence.VerbatimOccurrence;
+import org.gbif.pipelines.core.utils.AvroCodecUtils;
 import org.gbif.pipelines.hbase.options.ExportHBaseOptions;
 import org.gbif.pipelines.hbase.utils.ConfigurationFactory;
 import org.gbif.pipelines.hbase.utils.OccurrenceConverter;
 import org.gbif.pipelines.io.avro.ExtendedRecord;
 
-import org.apache.avro.file.CodecFactory;
 import org.apache.beam.runners.spark.SparkRunner;
 import org.apache.beam.sdk.Pipeline;
 import org.apache.beam.sdk.io.AvroIO;
@@ -29,8 +29,6 @@ import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
  */
 public class ExportHBaseSnapshotSinglePipeline {
 
-  private static final CodecFactory BASE_CODEC = CodecFactory.snappyCodec();
-
   public static void main(String[] args) {
     PipelineOptionsFactory.register(ExportHBaseOptions.class);
     ExportHBaseOptions options = PipelineOptionsFactory.fromArgs(args).as(ExportHBaseOptions.class);
@@ -42,6 +40,7 @@ public class ExportHBaseSnapshotSinglePipeline {
 
     //Params
     String exportPath = options.getExportPath();
+    String codec = options.getAvroCompressionType();
     Configuration hbaseConfig = ConfigurationFactory.create(options);
 
     PCollection<KV<ImmutableBytesWritable, Result>> rows =
@@ -67,7 +66,7 @@ public class ExportHBaseSnapshotSinglePipeline {
 
     records.apply("Write single avro file",
         FileIO.<ExtendedRecord>write()
-            .via(AvroIO.sink(ExtendedRecord.class).withCodec(BASE_CODEC))
+            .via(AvroIO.sink(ExtendedRecord.class).withCodec(AvroCodecUtils.fromString(codec)))
             .to(exportPath));
 
     p.run().waitUntilFinish();
@@ -1,5 +1,6 @@
 package org.gbif.pipelines.fragmenter.record;
 
+import java.util.List;
 import java.util.Optional;
 
 import org.gbif.converters.parser.xml.model.IdentifierRecord;
@@ -31,10 +32,20 @@ public class XmlOccurrenceRecord implements OccurrenceRecord {
             .orElse(null);
   }
 
+  private XmlOccurrenceRecord(RawXmlOccurrence xmlOccurrence, List<RawOccurrenceRecord> rawOccurrences) {
+    this.xmlOccurrence = xmlOccurrence;
+    this.rawOccurrence = rawOccurrences.isEmpty() ? null : rawOccurrences.get(0);
+  }
+
   public static XmlOccurrenceRecord create(RawXmlOccurrence xmlOccurrence) {
     return new XmlOccurrenceRecord(xmlOccurrence);
   }
 
+  /** Creates a record from already parsed raw occurrences, see {@link org.gbif.converters.parser.xml.StaxOccurrenceParser} */
+  public static XmlOccurrenceRecord create(RawXmlOccurrence xmlOccurrence, List<RawOccurrenceRecord> rawOccurrences) {
+    return new XmlOccurrenceRecord(xmlOccurrence, rawOccurrences);
+  }
+
   @Override
   public String toStringRecord() {
     return xmlOccurrence.getXml();
@@ -8,7 +8,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.gbif.pipelines.core.io.StringCache;
+import org.gbif.pipelines.core.io.TermDictionaryEncoding;
 import org.gbif.pipelines.ingest.utils.FsUtils;
+import org.gbif.pipelines.io.avro.ExtendedRecord;
 import org.gbif.pipelines.io.avro.Record;
 
 import org.apache.avro.file.DataFileReader;
@@ -68,10 +71,11 @@ public class AvroReader {
 
     Map<String, T> map = new HashMap<>();
     Set<String> duplicateSet = new HashSet<>();
+    StringCache cache = StringCache.create();
 
     for (Path path : paths) {
       // Read avro record from disk/hdfs
-      DatumReader<T> reader = new SpecificDatumReader<>(clazz);
+      DatumReader<T> reader = createDatumReader(clazz, cache);
       try (SeekableInput input = new AvroFSInput(fs.open(path), fs.getContentSummary(path).getLength());
           DataFileReader<T> dataFileReader = new DataFileReader<>(input, reader)) {
         while (dataFileReader.hasNext()) {
@@ -103,10 +107,11 @@ public class AvroReader {
   private static <T extends Record> Map<String, T> readRecords(FileSystem fs, Class<T> clazz, List<Path> paths) {
 
     Map<String, T> map = new HashMap<>();
+    StringCache cache = StringCache.create();
 
     for (Path path : paths) {
       // Deserialize ExtendedRecord from disk
-      DatumReader<T> reader = new SpecificDatumReader<>(clazz);
+      DatumReader<T> reader = createDatumReader(clazz, cache);
       try (SeekableInput input = new AvroFSInput(fs.open(path), fs.getContentSummary(path).getLength());
           DataFileReader<T> dataFileReader = new DataFileReader<>(input, reader)) {
         while (dataFileReader.hasNext()) {
@@ -119,6 +124,18 @@ public class AvroReader {
     return map;
   }
 
+  /**
+   * {@link ExtendedRecord} files can be plain or term dictionary encoded, see {@link TermDictionaryEncoding}, the
+   * records stay in memory for the whole run, so the repeated keys and values are deduplicated by the cache
+   */
+  @SuppressWarnings("unchecked")
+  private static <T extends Record> DatumReader<T> createDatumReader(Class<T> clazz, StringCache cache) {
+    if (ExtendedRecord.class.equals(clazz)) {
+      return (DatumReader<T>) TermDictionaryEncoding.reader(cache);
+    }
+    return new SpecificDatumReader<>(clazz);
+  }
+
   /** Read multiple files, with the wildcard in the path */
   @SneakyThrows
   private static List<Path> parseWildcardPath(FileSystem fs, String path) {
@@ -15,9 +15,9 @@ import java.util.function.Function;
 
 import org.apache.http.HttpHost;
 import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.action.DocWriteRequest;
 import org.elasticsearch.action.bulk.BulkRequest;
 import org.elasticsearch.action.bulk.BulkResponse;
-import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.client.RequestOptions;
 import org.elasticsearch.client.RestClient;
 import org.elasticsearch.client.RestHighLevelClient;
@@ -33,7 +33,8 @@ public class ElasticsearchWriter<T> {
 
   private String[] esHosts;
   private boolean useSyncMode;
-  private Function<T, IndexRequest> indexRequestFn;
+  // Index or delete request of a record, a null request skips the record
+  private Function<T, ? extends DocWriteRequest<?>> indexRequestFn;
   private ExecutorService executor;
   private Collection<T> records;
   private long esMaxBatchSize;
@@ -53,7 +54,7 @@ public class ElasticsearchWriter<T> {
       requests.add(new BulkRequest().timeout(TimeValue.timeValueMinutes(5L)));
 
       Consumer<T> addIndexRequestFn = br -> Optional.ofNullable(requests.peek())
-          .ifPresent(req -> req.add(indexRequestFn.apply(br)));
+          .ifPresent(req -> Optional.ofNullable(indexRequestFn.apply(br)).ifPresent(req::add));
 
       Consumer<BulkRequest> clientBulkFn = br -> {
         try {
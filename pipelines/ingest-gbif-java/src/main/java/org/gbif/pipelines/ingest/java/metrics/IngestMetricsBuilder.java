@@ -1,6 +1,9 @@
 package org.gbif.pipelines.ingest.java.metrics;
 
+import org.gbif.pipelines.ingest.java.pipelines.VerbatimToInterpretedPipeline;
 import org.gbif.pipelines.transforms.common.FilterExtendedRecordTransform;
+import org.gbif.pipelines.transforms.common.IncrementalIndexTransform;
+import org.gbif.pipelines.transforms.common.IncrementalTransform;
 import org.gbif.pipelines.transforms.common.UniqueGbifIdTransform;
 import org.gbif.pipelines.transforms.common.UniqueIdTransform;
 import org.gbif.pipelines.transforms.converters.GbifJsonTransform;
@@ -26,16 +29,25 @@ import static org.gbif.pipelines.common.PipelinesVariables.Metrics.AVRO_TO_JSON_
 import static org.gbif.pipelines.common.PipelinesVariables.Metrics.BASIC_RECORDS_COUNT;
 import static org.gbif.pipelines.common.PipelinesVariables.Metrics.DUPLICATE_GBIF_IDS_COUNT;
 import static org.gbif.pipelines.common.PipelinesVariables.Metrics.DUPLICATE_IDS_COUNT;
+import static org.gbif.pipelines.common.PipelinesVariables.Metrics.ES_CHANGED_COUNT;
+import static org.gbif.pipelines.common.PipelinesVariables.Metrics.ES_DELETED_COUNT;
+import static org.gbif.pipelines.common.PipelinesVariables.Metrics.ES_NEW_COUNT;
+import static org.gbif.pipelines.common.PipelinesVariables.Metrics.ES_UNCHANGED_COUNT;
 import static org.gbif.pipelines.common.PipelinesVariables.Metrics.FILTER_ER_BASED_ON_GBIF_ID;
 import static org.gbif.pipelines.common.PipelinesVariables.Metrics.IDENTICAL_GBIF_OBJECTS_COUNT;
 import static org.gbif.pipelines.common.PipelinesVariables.Metrics.IDENTICAL_OBJECTS_COUNT;
 import static org.gbif.pipelines.common.PipelinesVariables.Metrics.IMAGE_RECORDS_COUNT;
+import static org.gbif.pipelines.common.PipelinesVariables.Metrics.INCREMENTAL_CHANGED_COUNT;
+import static org.gbif.pipelines.common.PipelinesVariables.Metrics.INCREMENTAL_DELETED_COUNT;
+import static org.gbif.pipelines.common.PipelinesVariables.Metrics.INCREMENTAL_NEW_COUNT;
+import static org.gbif.pipelines.common.PipelinesVariables.Metrics.INCREMENTAL_UNCHANGED_COUNT;
 import static org.gbif.pipelines.common.PipelinesVariables.Metrics.INVALID_GBIF_ID_COUNT;
 import static org.gbif.pipelines.common.PipelinesVariables.Metrics.LOCATION_RECORDS_COUNT;
 import static org.gbif.pipelines.common.PipelinesVariables.Metrics.MEASUREMENT_OR_FACT_RECORDS_COUNT;
 import static org.gbif.pipelines.common.PipelinesVariables.Metrics.METADATA_RECORDS_COUNT;
 import static org.gbif.pipelines.common.PipelinesVariables.Metrics.MULTIMEDIA_RECORDS_COUNT;
 import static org.gbif.pipelines.common.PipelinesVariables.Metrics.OCCURRENCE_EXT_COUNT;
+import static org.gbif.pipelines.common.PipelinesVariables.Metrics.SKIPPED_TYPES_COUNT;
 import static org.gbif.pipelines.common.PipelinesVariables.Metrics.TAXON_RECORDS_COUNT;
 import static org.gbif.pipelines.common.PipelinesVariables.Metrics.TEMPORAL_RECORDS_COUNT;
 import static org.gbif.pipelines.common.PipelinesVariables.Metrics.UNIQUE_GBIF_IDS_COUNT;
@@ -66,13 +78,22 @@ public class IngestMetricsBuilder {
         .addMetric(UniqueIdTransform.class, UNIQUE_IDS_COUNT)
         .addMetric(UniqueIdTransform.class, DUPLICATE_IDS_COUNT)
         .addMetric(UniqueIdTransform.class, IDENTICAL_OBJECTS_COUNT)
-        .addMetric(OccurrenceExtensionTransform.class, OCCURRENCE_EXT_COUNT);
+        .addMetric(OccurrenceExtensionTransform.class, OCCURRENCE_EXT_COUNT)
+        .addMetric(IncrementalTransform.class, INCREMENTAL_NEW_COUNT)
+        .addMetric(IncrementalTransform.class, INCREMENTAL_CHANGED_COUNT)
+        .addMetric(IncrementalTransform.class, INCREMENTAL_UNCHANGED_COUNT)
+        .addMetric(IncrementalTransform.class, INCREMENTAL_DELETED_COUNT)
+        .addMetric(VerbatimToInterpretedPipeline.class, SKIPPED_TYPES_COUNT);
   }
 
   /** {@link IngestMetrics} for {@link org.gbif.pipelines.ingest.java.pipelines.InterpretedToEsIndexExtendedPipeline} */
   public static IngestMetrics createInterpretedToEsIndexMetrics() {
     return IngestMetrics.create()
-        .addMetric(GbifJsonTransform.class, AVRO_TO_JSON_COUNT);
+        .addMetric(GbifJsonTransform.class, AVRO_TO_JSON_COUNT)
+        .addMetric(IncrementalIndexTransform.class, ES_NEW_COUNT)
+        .addMetric(IncrementalIndexTransform.class, ES_CHANGED_COUNT)
+        .addMetric(IncrementalIndexTransform.class, ES_UNCHANGED_COUNT)
+        .addMetric(IncrementalIndexTransform.class, ES_DELETED_COUNT);
   }
 
   /** {@link IngestMetrics} for {@link org.gbif.pipelines.ingest.java.pipelines.InterpretedToHdfsViewPipeline} */
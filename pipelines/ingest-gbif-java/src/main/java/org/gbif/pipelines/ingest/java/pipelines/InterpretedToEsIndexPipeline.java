@@ -1,14 +1,23 @@
 package org.gbif.pipelines.ingest.java.pipelines;
 
 import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.function.Function;
 import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
 
 import org.gbif.api.model.pipelines.StepType;
+import org.gbif.pipelines.common.PipelinesVariables.Pipeline.Interpretation.RecordType;
+import org.gbif.converters.converter.SyncDataFileWriter;
+import org.gbif.converters.converter.SyncDataFileWriterBuilder;
 import org.gbif.pipelines.core.converters.GbifJsonConverter;
 import org.gbif.pipelines.core.converters.MultimediaConverter;
 import org.gbif.pipelines.ingest.java.io.AvroReader;
@@ -17,6 +26,7 @@ import org.gbif.pipelines.ingest.java.metrics.IngestMetrics;
 import org.gbif.pipelines.ingest.java.metrics.IngestMetricsBuilder;
 import org.gbif.pipelines.ingest.options.EsIndexingPipelineOptions;
 import org.gbif.pipelines.ingest.options.PipelinesOptionsFactory;
+import org.gbif.pipelines.ingest.utils.EsIndexUtils;
 import org.gbif.pipelines.ingest.utils.FsUtils;
 import org.gbif.pipelines.ingest.utils.MetricsHandler;
 import org.gbif.pipelines.io.avro.AudubonRecord;
@@ -27,9 +37,11 @@ import org.gbif.pipelines.io.avro.LocationRecord;
 import org.gbif.pipelines.io.avro.MeasurementOrFactRecord;
 import org.gbif.pipelines.io.avro.MetadataRecord;
 import org.gbif.pipelines.io.avro.MultimediaRecord;
+import org.gbif.pipelines.io.avro.RecordHash;
 import org.gbif.pipelines.io.avro.TaggedValueRecord;
 import org.gbif.pipelines.io.avro.TaxonRecord;
 import org.gbif.pipelines.io.avro.TemporalRecord;
+import org.gbif.pipelines.transforms.converters.GbifJsonTransform;
 import org.gbif.pipelines.transforms.core.BasicTransform;
 import org.gbif.pipelines.transforms.core.LocationTransform;
 import org.gbif.pipelines.transforms.metadata.MetadataTransform;
@@ -42,7 +54,12 @@ import org.gbif.pipelines.transforms.extension.ImageTransform;
 import org.gbif.pipelines.transforms.extension.MeasurementOrFactTransform;
 import org.gbif.pipelines.transforms.extension.MultimediaTransform;
 
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.DocWriteRequest;
 import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.update.UpdateRequest;
 import org.slf4j.MDC;
 
 import com.fasterxml.jackson.databind.node.ObjectNode;
@@ -53,6 +70,10 @@ import lombok.extern.slf4j.Slf4j;
 
 import static org.elasticsearch.common.xcontent.XContentType.JSON;
 import static org.gbif.pipelines.common.PipelinesVariables.Metrics.AVRO_TO_JSON_COUNT;
+import static org.gbif.pipelines.common.PipelinesVariables.Metrics.ES_CHANGED_COUNT;
+import static org.gbif.pipelines.common.PipelinesVariables.Metrics.ES_DELETED_COUNT;
+import static org.gbif.pipelines.common.PipelinesVariables.Metrics.ES_NEW_COUNT;
+import static org.gbif.pipelines.common.PipelinesVariables.Metrics.ES_UNCHANGED_COUNT;
 import static org.gbif.pipelines.common.PipelinesVariables.Pipeline.AVRO_EXTENSION;
 import static org.gbif.pipelines.common.PipelinesVariables.Pipeline.Indexing.GBIF_ID;
 import static org.gbif.pipelines.common.PipelinesVariables.Pipeline.Indexing.INDEX_TYPE;
@@ -74,7 +95,9 @@ import static org.gbif.pipelines.common.PipelinesVariables.Pipeline.Indexing.IND
  *      {@link org.gbif.pipelines.io.avro.LocationRecord}
  *    2) Joins avro files
  *    3) Converts to json model (resources/elasticsearch/es-occurrence-schema.json)
- *    4) Pushes data to Elasticsearch instance
+ *    4) Pushes data to Elasticsearch instance, only new and changed documents if the incremental indexing is enabled,
+ *    deletes the documents of deleted ids and writes the document hashes for the next incremental indexing, or
+ *    updates only the fields of the reinterpreted record types if the partial update is enabled
  * </pre>
  *
  * <p>How to run:
@@ -137,6 +160,10 @@ public class InterpretedToEsIndexPipeline {
 
     String esDocumentId = options.getEsDocumentId();
     String hdfsSiteConfig = options.getHdfsSiteConfig();
+    // The partial update doesn't use the verbatim and tagged values records, they are not read
+    boolean partialUpdate = EsIndexUtils.isPartialUpdate(options);
+    Set<RecordType> partialUpdateTypes =
+        partialUpdate ? GbifJsonTransform.getPartialUpdateTypes(options.getEsPartialUpdateTypes()) : null;
 
     log.info("Creating transformations");
     // Core
@@ -164,13 +191,17 @@ public class InterpretedToEsIndexPipeline {
         () -> AvroReader.readRecords(hdfsSiteConfig, MetadataRecord.class, pathFn.apply(metadataTransform.getBaseName())),
         executor);
 
-    CompletableFuture<Map<String, ExtendedRecord>> verbatimMapFeature = CompletableFuture.supplyAsync(
-        () -> AvroReader.readRecords(hdfsSiteConfig, ExtendedRecord.class, pathFn.apply(verbatimTransform.getBaseName())),
-        executor);
+    CompletableFuture<Map<String, ExtendedRecord>> verbatimMapFeature = partialUpdate
+        ? CompletableFuture.completedFuture(Collections.emptyMap())
+        : CompletableFuture.supplyAsync(
+            () -> AvroReader.readRecords(hdfsSiteConfig, ExtendedRecord.class, pathFn.apply(verbatimTransform.getBaseName())),
+            executor);
 
-    CompletableFuture<Map<String, TaggedValueRecord>> taggedValuesMapFeature = CompletableFuture.supplyAsync(
-      () -> AvroReader.readRecords(hdfsSiteConfig, TaggedValueRecord.class, pathFn.apply(taggedValuesTransform.getBaseName())),
-      executor);
+    CompletableFuture<Map<String, TaggedValueRecord>> taggedValuesMapFeature = partialUpdate
+        ? CompletableFuture.completedFuture(Collections.emptyMap())
+        : CompletableFuture.supplyAsync(
+            () -> AvroReader.readRecords(hdfsSiteConfig, TaggedValueRecord.class, pathFn.apply(taggedValuesTransform.getBaseName())),
+            executor);
 
     CompletableFuture<Map<String, BasicRecord>> basicMapFeature = CompletableFuture.supplyAsync(
         () -> AvroReader.readRecords(hdfsSiteConfig, BasicRecord.class, pathFn.apply(basicTransform.getBaseName())),
@@ -219,14 +250,27 @@ public class InterpretedToEsIndexPipeline {
     Map<String, AudubonRecord> audubonMap = audubonMapFeature.get();
     Map<String, MeasurementOrFactRecord> measurementMap = measurementMapFeature.get();
 
+    // Incremental indexing, compares the document hashes with the hashes of the previous attempt
+    boolean incremental = !partialUpdate && EsIndexUtils.isIncrementalIndexing(options);
+    Optional<Integer> previousAttempt = incremental ? FsUtils.getPreviousIndexedAttempt(options) : Optional.empty();
+    previousAttempt.ifPresent(a -> log.info("Incremental indexing, the previous attempt is {}", a));
+
+    Map<String, RecordHash> previousHashMap = previousAttempt
+        .map(a -> String.join("/", FsUtils.buildPathIndexHashUsingTargetPath(options, a), "*" + AVRO_EXTENSION))
+        .map(path -> AvroReader.readRecords(hdfsSiteConfig, RecordHash.class, path))
+        .orElse(Collections.emptyMap());
+    Map<String, Long> hashMap = new ConcurrentHashMap<>();
+    if (incremental) {
+      FsUtils.createIndexHashDirectory(options);
+    }
+
     log.info("Joining avro files...");
-    // Join all records, convert into string json and IndexRequest for ES
-    Function<BasicRecord, IndexRequest> indexRequestFn = br -> {
+    // Join all records, convert into string json and IndexRequest for ES, null for an unchanged document, which keeps the
+    // crawl fields of the attempt that indexed it, or UpdateRequest of the reinterpreted fields for a partial update
+    Function<BasicRecord, DocWriteRequest<?>> indexRequestFn = br -> {
 
       String k = br.getId();
       // Core
-      ExtendedRecord er = verbatimMap.getOrDefault(k, ExtendedRecord.newBuilder().setId(k).build());
-      TaggedValueRecord tvr = taggedValueRecordMap.getOrDefault(k, TaggedValueRecord.newBuilder().setId(k).build());
       TemporalRecord tr = temporalMap.getOrDefault(k, TemporalRecord.newBuilder().setId(k).build());
       LocationRecord lr = locationMap.getOrDefault(k, LocationRecord.newBuilder().setId(k).build());
       TaxonRecord txr = taxonMap.getOrDefault(k, TaxonRecord.newBuilder().setId(k).build());
@@ -237,12 +281,40 @@ public class InterpretedToEsIndexPipeline {
       MeasurementOrFactRecord mfr = measurementMap.getOrDefault(k, MeasurementOrFactRecord.newBuilder().setId(k).build());
 
       MultimediaRecord mmr = MultimediaConverter.merge(mr, ir, ar);
+
+      if (partialUpdate) {
+        ObjectNode json =
+            GbifJsonTransform.toPartialUpdateJson(partialUpdateTypes, metadata, br, tr, lr, txr, mmr, mfr);
+
+        metrics.incMetric(AVRO_TO_JSON_COUNT);
+
+        String docId = esDocumentId.equals(GBIF_ID) ? br.getGbifId().toString()
+            : GbifJsonConverter.toPartialJson(br).get(esDocumentId).asText();
+        return new UpdateRequest(options.getEsIndexName(), INDEX_TYPE, docId).doc(json.toString(), JSON);
+      }
+
+      ExtendedRecord er = verbatimMap.getOrDefault(k, ExtendedRecord.newBuilder().setId(k).build());
+      TaggedValueRecord tvr = taggedValueRecordMap.getOrDefault(k, TaggedValueRecord.newBuilder().setId(k).build());
       ObjectNode json = GbifJsonConverter.toJson(metadata, br, tr, lr, txr, mmr, mfr, tvr, er);
 
       metrics.incMetric(AVRO_TO_JSON_COUNT);
 
       String docId = esDocumentId.equals(GBIF_ID) ? br.getGbifId().toString() : json.get(esDocumentId).asText();
 
+      if (incremental) {
+        long hash = GbifJsonConverter.getContentHash(json);
+        hashMap.put(docId, hash);
+        RecordHash previous = previousHashMap.get(docId);
+        if (previous == null) {
+          metrics.incMetric(ES_NEW_COUNT);
+        } else if (previous.getHash() != hash) {
+          metrics.incMetric(ES_CHANGED_COUNT);
+        } else {
+          metrics.incMetric(ES_UNCHANGED_COUNT);
+          return null;
+        }
+      }
+
       return new IndexRequest(options.getEsIndexName(), INDEX_TYPE, docId).source(json.toString(), JSON);
     };
 
@@ -260,8 +332,46 @@ public class InterpretedToEsIndexPipeline {
         .build()
         .write();
 
+    if (incremental) {
+      List<String> deletedIds = previousHashMap.keySet().stream()
+          .filter(docId -> !hashMap.containsKey(docId))
+          .collect(Collectors.toList());
+      deletedIds.forEach(docId -> metrics.incMetric(ES_DELETED_COUNT));
+
+      log.info("Deleting {} documents from Elasticsearch", deletedIds.size());
+      ElasticsearchWriter.<String>builder()
+          .esHosts(options.getEsHosts())
+          .esMaxBatchSize(options.getEsMaxBatchSize())
+          .esMaxBatchSizeBytes(options.getEsMaxBatchSizeBytes())
+          .executor(executor)
+          .useSyncMode(useSyncMode)
+          .indexRequestFn(docId -> new DeleteRequest(options.getEsIndexName(), INDEX_TYPE, docId))
+          .records(deletedIds)
+          .build()
+          .write();
+
+      writeHashes(options, hashMap);
+    }
+
     MetricsHandler.saveCountersToTargetPathFile(options, metrics.getMetricsResult());
     log.info("Pipeline has been finished - {}", LocalDateTime.now());
 
   }
+
+  /** Writes the document hashes, the next incremental indexing compares hashes with them */
+  @SneakyThrows
+  private static void writeHashes(EsIndexingPipelineOptions options, Map<String, Long> hashMap) {
+    String path = String.join("/", FsUtils.buildPathIndexHashUsingTargetPath(options, options.getAttempt()),
+        "hash" + AVRO_EXTENSION);
+    FileSystem fs = FsUtils.getFileSystem(options.getHdfsSiteConfig(), path);
+    try (SyncDataFileWriter<RecordHash> writer = SyncDataFileWriterBuilder.builder()
+        .schema(RecordHash.getClassSchema())
+        .codec(options.getAvroCompressionType())
+        .outputStream(fs.create(new Path(path)))
+        .syncInterval(options.getAvroSyncInterval())
+        .build()
+        .createSyncDataFileWriter()) {
+      hashMap.forEach((docId, hash) -> writer.append(RecordHash.newBuilder().setId(docId).setHash(hash).build()));
+    }
+  }
 }
@@ -1,10 +1,12 @@
   package org.gbif.pipelines.ingest.java.pipelines;
 
   import java.time.LocalDateTime;
+  import java.util.Collection;
   import java.util.Map;
   import java.util.concurrent.CompletableFuture;
   import java.util.concurrent.ExecutorService;
   import java.util.concurrent.Executors;
+  import java.util.function.Consumer;
   import java.util.function.Function;
   import java.util.function.UnaryOperator;
 
@@ -47,6 +49,8 @@
 
   import org.apache.hadoop.fs.FileSystem;
   import org.apache.hadoop.fs.Path;
+  import org.apache.parquet.hadoop.ParquetWriter;
+  import org.apache.parquet.hadoop.util.HadoopOutputFile;
   import org.slf4j.MDC;
 
   import lombok.AccessLevel;
@@ -57,6 +61,7 @@
   import static org.gbif.converters.converter.FsUtils.createParentDirectories;
   import static org.gbif.pipelines.common.PipelinesVariables.Metrics.AVRO_TO_HDFS_COUNT;
   import static org.gbif.pipelines.common.PipelinesVariables.Pipeline.AVRO_EXTENSION;
+  import static org.gbif.pipelines.common.PipelinesVariables.Pipeline.PARQUET_EXTENSION;
 
 /**
  * Pipeline sequence:
@@ -73,7 +78,7 @@
  *      {@link TaxonRecord},
  *      {@link LocationRecord}
  *    2) Joins avro files
- *    3) Converts to a {@link OccurrenceHdfsRecord} based on the input files
+ *    3) Converts to a {@link OccurrenceHdfsRecord} based on the input files, writes an avro or a parquet file
  *    4) Moves the produced files to a directory where the latest version of HDFS records are kept
  * </pre>
  *
@@ -236,15 +241,14 @@ public class InterpretedToHdfsViewPipeline {
 
     boolean useSyncMode = options.getSyncThreshold() > basicMap.size();
 
-    try (SyncDataFileWriter<OccurrenceHdfsRecord> writer = createWriter(options)) {
-      if (useSyncMode) {
-        basicMap.values().stream().map(occurrenceHdfsRecordFn).forEach(writer::append);
-      } else {
-        CompletableFuture[] futures = basicMap.values().stream()
-            .map(br -> CompletableFuture.runAsync(() -> writer.append(occurrenceHdfsRecordFn.apply(br)), executor))
-            .toArray(CompletableFuture[]::new);
-        // Wait for all futures
-        CompletableFuture.allOf(futures).get();
+    if (FsUtils.isParquetHdfsView(options)) {
+      try (ParquetWriter<OccurrenceHdfsRecord> writer = createParquetWriter(options)) {
+        Consumer<OccurrenceHdfsRecord> writeFn = r -> write(writer, r);
+        writeRecords(basicMap.values(), occurrenceHdfsRecordFn, writeFn, useSyncMode, executor);
+      }
+    } else {
+      try (SyncDataFileWriter<OccurrenceHdfsRecord> writer = createWriter(options)) {
+        writeRecords(basicMap.values(), occurrenceHdfsRecordFn, writer::append, useSyncMode, executor);
       }
     }
 
@@ -254,6 +258,40 @@ public class InterpretedToHdfsViewPipeline {
     log.info("Pipeline has been finished - {}", LocalDateTime.now());
   }
 
+  /** Converts and writes the records, in the current thread or in parallel */
+  @SneakyThrows
+  private static void writeRecords(Collection<BasicRecord> records, Function<BasicRecord, OccurrenceHdfsRecord> fn,
+      Consumer<OccurrenceHdfsRecord> writeFn, boolean useSyncMode, ExecutorService executor) {
+    if (useSyncMode) {
+      records.stream().map(fn).forEach(writeFn);
+    } else {
+      CompletableFuture[] futures = records.stream()
+          .map(br -> CompletableFuture.runAsync(() -> writeFn.accept(fn.apply(br)), executor))
+          .toArray(CompletableFuture[]::new);
+      // Wait for all futures
+      CompletableFuture.allOf(futures).get();
+    }
+  }
+
+  /** {@link ParquetWriter} is not thread safe, unlike the {@link SyncDataFileWriter} */
+  @SneakyThrows
+  private static void write(ParquetWriter<OccurrenceHdfsRecord> writer, OccurrenceHdfsRecord record) {
+    synchronized (writer) {
+      writer.write(record);
+    }
+  }
+
+  /** Create a parquet file writer */
+  @SneakyThrows
+  private static ParquetWriter<OccurrenceHdfsRecord> createParquetWriter(InterpretationPipelineOptions options) {
+    String id = options.getDatasetId() + '_' + options.getAttempt();
+    String targetTempPath = FsUtils.buildFilePathHdfsViewUsingInputPath(options, id + PARQUET_EXTENSION);
+    Path path = new Path(targetTempPath);
+    FileSystem verbatimFs = createParentDirectories(path, options.getHdfsSiteConfig());
+    return org.gbif.pipelines.ingest.pipelines.InterpretedToHdfsViewPipeline.createParquetSink(options)
+        .createWriter(HadoopOutputFile.fromPath(path, verbatimFs.getConf()));
+  }
+
   /** Create an AVRO file writer */
   @SneakyThrows
   private static SyncDataFileWriter<OccurrenceHdfsRecord> createWriter(InterpretationPipelineOptions options) {
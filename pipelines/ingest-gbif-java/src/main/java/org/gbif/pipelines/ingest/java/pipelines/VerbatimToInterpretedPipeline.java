@@ -4,18 +4,24 @@ import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.util.function.UnaryOperator;
 import java.util.stream.Stream;
 
 import org.gbif.api.model.pipelines.StepType;
 import org.gbif.converters.converter.SyncDataFileWriter;
 import org.gbif.converters.converter.SyncDataFileWriterBuilder;
+import org.gbif.pipelines.common.PipelinesVariables.Pipeline.Interpretation.RecordType;
+import org.gbif.pipelines.core.utils.HashUtils;
 import org.gbif.pipelines.factory.GeocodeKvStoreFactory;
 import org.gbif.pipelines.factory.KeygenServiceFactory;
 import org.gbif.pipelines.factory.MetadataServiceClientFactory;
@@ -29,6 +35,7 @@ import org.gbif.pipelines.ingest.java.transforms.UniqueGbifIdTransform;
 import org.gbif.pipelines.ingest.java.utils.ConfigFactory;
 import org.gbif.pipelines.ingest.options.InterpretationPipelineOptions;
 import org.gbif.pipelines.ingest.options.PipelinesOptionsFactory;
+import org.gbif.pipelines.ingest.utils.FingerprintUtils;
 import org.gbif.pipelines.ingest.utils.FsUtils;
 import org.gbif.pipelines.ingest.utils.MetricsHandler;
 import org.gbif.pipelines.io.avro.AudubonRecord;
@@ -39,12 +46,15 @@ import org.gbif.pipelines.io.avro.LocationRecord;
 import org.gbif.pipelines.io.avro.MeasurementOrFactRecord;
 import org.gbif.pipelines.io.avro.MetadataRecord;
 import org.gbif.pipelines.io.avro.MultimediaRecord;
+import org.gbif.pipelines.io.avro.Record;
+import org.gbif.pipelines.io.avro.RecordHash;
 import org.gbif.pipelines.io.avro.TaggedValueRecord;
 import org.gbif.pipelines.io.avro.TaxonRecord;
 import org.gbif.pipelines.io.avro.TemporalRecord;
 import org.gbif.pipelines.parsers.config.model.PipelinesConfig;
 import org.gbif.pipelines.transforms.SerializableConsumer;
 import org.gbif.pipelines.transforms.Transform;
+import org.gbif.pipelines.transforms.common.IncrementalTransform;
 import org.gbif.pipelines.transforms.core.BasicTransform;
 import org.gbif.pipelines.transforms.core.LocationTransform;
 import org.gbif.pipelines.transforms.core.TaxonomyTransform;
@@ -58,6 +68,7 @@ import org.gbif.pipelines.transforms.metadata.MetadataTransform;
 import org.gbif.pipelines.transforms.metadata.TaggedValuesTransform;
 
 import org.apache.avro.Schema;
+import org.apache.avro.specific.SpecificRecordBase;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.slf4j.MDC;
@@ -68,7 +79,14 @@ import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 
 import static org.gbif.converters.converter.FsUtils.createParentDirectories;
+import static org.gbif.pipelines.common.PipelinesVariables.Metrics.INCREMENTAL_CHANGED_COUNT;
+import static org.gbif.pipelines.common.PipelinesVariables.Metrics.INCREMENTAL_DELETED_COUNT;
+import static org.gbif.pipelines.common.PipelinesVariables.Metrics.INCREMENTAL_NEW_COUNT;
+import static org.gbif.pipelines.common.PipelinesVariables.Metrics.INCREMENTAL_UNCHANGED_COUNT;
+import static org.gbif.pipelines.common.PipelinesVariables.Metrics.SKIPPED_TYPES_COUNT;
 import static org.gbif.pipelines.common.PipelinesVariables.Pipeline.AVRO_EXTENSION;
+import static org.gbif.pipelines.common.PipelinesVariables.Pipeline.Interpretation.DELETED_DIRECTORY_NAME;
+import static org.gbif.pipelines.common.PipelinesVariables.Pipeline.Interpretation.HASH_DIRECTORY_NAME;
 import static org.gbif.pipelines.common.PipelinesVariables.Pipeline.Interpretation.RecordType.ALL;
 
 /**
@@ -89,6 +107,13 @@ import static org.gbif.pipelines.common.PipelinesVariables.Pipeline.Interpretati
  *    3) Writes data to independent files
  * </pre>
  *
+ * <p>With --incrementalInterpretation=true only new and changed records are interpreted, see {@link
+ * IncrementalTransform}, the records of unchanged ids are copied from the latest previous attempt.
+ *
+ * <p>With --interpretationFingerprintSkip=true the interpretation is skipped, if the fingerprints of all record types
+ * are equal to the fingerprints of the latest previous attempt, see {@link FingerprintUtils}, the records are copied
+ * from the attempt.
+ *
  * <p>How to run:
  *
  * <pre>{@code
@@ -152,6 +177,13 @@ public class VerbatimToInterpretedPipeline {
     PipelinesConfig config =
         ConfigFactory.getInstance(hdfsSiteConfig, options.getProperties(), PipelinesConfig.class)
             .get();
+    Optional<String> codeVersion = IncrementalTransform.getCodeVersion();
+    Optional<String> lookupVersions = FingerprintUtils.getLookupVersions(config);
+    boolean incremental = options.isIncrementalInterpretation() && codeVersion.isPresent()
+        && lookupVersions.isPresent();
+    if (options.isIncrementalInterpretation() && !incremental) {
+      log.warn("Incremental interpretation is disabled, it needs the pipelines and lookup versions");
+    }
 
     FsUtils.deleteInterpretIfExist(hdfsSiteConfig, targetPath, datasetId, attempt, types);
 
@@ -159,7 +191,15 @@ public class VerbatimToInterpretedPipeline {
     MDC.put("attempt", attempt.toString());
     MDC.put("step", StepType.VERBATIM_TO_INTERPRETED.name());
 
+    // Incremental interpretation, compares the records with the hash index of the previous attempt
+    Optional<String> previousPath = incremental ?
+        FsUtils.getPreviousIncrementalAttempt(options).map(a -> FsUtils.buildPathInterpretUsingTargetPath(options, a)) :
+        Optional.empty();
+    previousPath.ifPresent(path -> log.info("Incremental interpretation, the previous interpretation is {}", path));
+
     String id = Long.toString(LocalDateTime.now().toEpochSecond(ZoneOffset.UTC));
+    // "created" timestamp of the records carried over from the previous attempt
+    long created = System.currentTimeMillis();
 
     log.info("Init metrics");
     IngestMetrics metrics = IngestMetricsBuilder.createVerbatimToInterpretedMetrics();
@@ -234,6 +274,52 @@ public class VerbatimToInterpretedPipeline {
     metadataTransform.setup();
     defaultValuesTransform.setup();
 
+    // Create MetadataRecord
+    MetadataRecord mdr = metadataTransform.processElement(options.getDatasetId())
+        .orElseThrow(() -> new IllegalArgumentException("MetadataRecord can't be null"));
+
+    // Skips the interpretation, if the fingerprints of all record types are equal to the previous attempt
+    boolean fingerprintSkip = options.isInterpretationFingerprintSkip() && !incremental;
+    Map<RecordType, String> fingerprints =
+        fingerprintSkip ? FingerprintUtils.createFingerprints(options, config, mdr) : Collections.emptyMap();
+    Optional<Integer> fingerprintAttempt =
+        fingerprintSkip ? FingerprintUtils.getPreviousAttempt(options) : Optional.empty();
+    if (fingerprintAttempt.isPresent() && FingerprintUtils.getUnchangedTypes(options, fingerprintAttempt.get(),
+        fingerprints).containsAll(FingerprintUtils.TYPES)) {
+      try (SyncDataFileWriter<MetadataRecord> metadataWriter =
+          createWriter(options, MetadataRecord.getClassSchema(), metadataTransform, id)) {
+        metadataWriter.append(mdr);
+      } catch (Exception e) {
+        log.error("Failed performing conversion on {}", e.getMessage());
+        throw new IllegalStateException("Failed performing conversion on ", e);
+      } finally {
+        Shutdown.doOnExit(metadataTransform, basicTransform, locationTransform, taxonomyTransform, defaultValuesTransform);
+      }
+
+      FingerprintUtils.copyRecords(options, fingerprintAttempt.get(), fingerprints.keySet());
+      String path = FsUtils.buildPathInterpretUsingTargetPath(options, attempt);
+      countRecords(hdfsSiteConfig, path, ExtendedRecord.class, verbatimTransform);
+      countRecords(hdfsSiteConfig, path, TaggedValueRecord.class, taggedValuesTransform);
+      countRecords(hdfsSiteConfig, path, BasicRecord.class, basicTransform);
+      countRecords(hdfsSiteConfig, path, TemporalRecord.class, temporalTransform);
+      countRecords(hdfsSiteConfig, path, MultimediaRecord.class, multimediaTransform);
+      countRecords(hdfsSiteConfig, path, ImageRecord.class, imageTransform);
+      countRecords(hdfsSiteConfig, path, AudubonRecord.class, audubonTransform);
+      countRecords(hdfsSiteConfig, path, MeasurementOrFactRecord.class, measurementTransform);
+      countRecords(hdfsSiteConfig, path, TaxonRecord.class, taxonomyTransform);
+      countRecords(hdfsSiteConfig, path, LocationRecord.class, locationTransform);
+      fingerprints.keySet().forEach(type -> metrics.incMetric(SKIPPED_TYPES_COUNT));
+
+      MetricsHandler.saveCountersToTargetPathFile(options, metrics.getMetricsResult());
+      FingerprintUtils.writeFingerprints(options, fingerprints);
+      // the copied files are rewritten, the indexes of the previous attempt aren't copied
+      if (options.isAvroIdIndex()) {
+        FsUtils.writeInterpretedIndexes(options);
+      }
+      log.info("Pipeline has been finished, all record types were skipped - {}", LocalDateTime.now());
+      return;
+    }
+
     try (
         SyncDataFileWriter<ExtendedRecord> verbatimWriter =
             createWriter(options, ExtendedRecord.getClassSchema(), verbatimTransform, id);
@@ -258,12 +344,13 @@ public class VerbatimToInterpretedPipeline {
         SyncDataFileWriter<TaxonRecord> taxonWriter =
             createWriter(options, TaxonRecord.getClassSchema(), taxonomyTransform, id);
         SyncDataFileWriter<LocationRecord> locationWriter =
-            createWriter(options, LocationRecord.getClassSchema(), locationTransform, id)
+            createWriter(options, LocationRecord.getClassSchema(), locationTransform, id);
+        SyncDataFileWriter<RecordHash> hashWriter =
+            incremental ? createWriter(options, RecordHash.getClassSchema(), HASH_DIRECTORY_NAME, id) : null;
+        SyncDataFileWriter<RecordHash> deletedWriter =
+            incremental ? createWriter(options, RecordHash.getClassSchema(), DELETED_DIRECTORY_NAME, id) : null
     ) {
 
-      // Create MetadataRecord
-      MetadataRecord mdr = metadataTransform.processElement(options.getDatasetId())
-          .orElseThrow(() -> new IllegalArgumentException("MetadataRecord can't be null"));
       metadataWriter.append(mdr);
 
       // Read DWCA and replace default values
@@ -273,11 +360,56 @@ public class VerbatimToInterpretedPipeline {
 
       boolean useSyncMode = options.getSyncThreshold() > erExtMap.size();
 
+      // Only new and changed records are interpreted, the records of unchanged ids are carried over
+      Map<String, RecordHash> hashMap = new HashMap<>();
+      Map<String, ExtendedRecord> changedErMap = erExtMap;
+      Set<String> unchangedIds = new HashSet<>();
+      if (incremental) {
+        String seed = IncrementalTransform.createSeed(mdr, codeVersion.get(), lookupVersions.get(), tripletValid,
+            occIdValid, useErdId);
+        erExtMap.values().forEach(er -> hashMap.put(er.getId(),
+            RecordHash.newBuilder().setId(er.getId()).setHash(HashUtils.getContentHash(er, seed)).build()));
+
+        Map<String, RecordHash> previousMap = previousPath
+            .map(path -> AvroReader.readRecords(hdfsSiteConfig, RecordHash.class, getPath(path, HASH_DIRECTORY_NAME)))
+            .orElse(Collections.emptyMap());
+
+        changedErMap = new HashMap<>();
+        for (ExtendedRecord er : erExtMap.values()) {
+          RecordHash previous = previousMap.get(er.getId());
+          if (previous == null) {
+            changedErMap.put(er.getId(), er);
+            metrics.incMetric(INCREMENTAL_NEW_COUNT);
+          } else if (!previous.getHash().equals(hashMap.get(er.getId()).getHash())) {
+            changedErMap.put(er.getId(), er);
+            metrics.incMetric(INCREMENTAL_CHANGED_COUNT);
+          } else {
+            unchangedIds.add(er.getId());
+            metrics.incMetric(INCREMENTAL_UNCHANGED_COUNT);
+          }
+        }
+
+        for (RecordHash previous : previousMap.values()) {
+          if (!hashMap.containsKey(previous.getId())) {
+            deletedWriter.append(previous);
+            metrics.incMetric(INCREMENTAL_DELETED_COUNT);
+          }
+        }
+      }
+
+      Collection<BasicRecord> carriedOverBr = previousPath
+          .map(path -> AvroReader.readRecords(hdfsSiteConfig, BasicRecord.class, getPath(path, basicTransform)))
+          .map(Map::values)
+          .orElse(Collections.emptyList());
+      carriedOverBr.removeIf(br -> !unchangedIds.contains(br.getId()));
+      carriedOverBr.forEach(br -> br.setCreated(created));
+
       // Filter GBIF id duplicates
       UniqueGbifIdTransform gbifIdTransform =
           UniqueGbifIdTransform.builder()
               .executor(executor)
-              .erMap(erExtMap)
+              .erMap(changedErMap)
+              .carriedOver(carriedOverBr)
               .basicTransform(basicTransform)
               .useSyncMode(useSyncMode)
               .skipTransform(useErdId)
@@ -287,7 +419,9 @@ public class VerbatimToInterpretedPipeline {
       // Create interpretation function
       Consumer<ExtendedRecord> interpretAllFn = er -> {
         BasicRecord br = gbifIdTransform.getBrInvalidMap().get(er.getId());
-        if (br == null) {
+        if (br == null && unchangedIds.contains(er.getId())) {
+          verbatimWriter.append(er);
+        } else if (br == null) {
           verbatimWriter.append(er);
           taggedValuesTransform.processElement(er, mdr).ifPresent(taggedValueWriter::append);
           temporalTransform.processElement(er).ifPresent(temporalWriter::append);
@@ -325,6 +459,30 @@ public class VerbatimToInterpretedPipeline {
       CompletableFuture[] futures = Stream.concat(streamBr, streamAll).toArray(CompletableFuture[]::new);
       CompletableFuture.allOf(futures).get();
 
+      // Copy the records of unchanged ids with valid GBIF ids and write the hash index
+      if (incremental) {
+        Map<String, BasicRecord> brInvalidMap = gbifIdTransform.getBrInvalidMap();
+        Predicate<String> carryOverFn = k -> unchangedIds.contains(k) && !brInvalidMap.containsKey(k);
+        previousPath.ifPresent(path -> {
+          carryOver(hdfsSiteConfig, path, TaggedValueRecord.class, taggedValuesTransform, carryOverFn, created,
+              taggedValueWriter);
+          carryOver(hdfsSiteConfig, path, TemporalRecord.class, temporalTransform, carryOverFn, created,
+              temporalWriter);
+          carryOver(hdfsSiteConfig, path, MultimediaRecord.class, multimediaTransform, carryOverFn, created,
+              multimediaWriter);
+          carryOver(hdfsSiteConfig, path, ImageRecord.class, imageTransform, carryOverFn, created, imageWriter);
+          carryOver(hdfsSiteConfig, path, AudubonRecord.class, audubonTransform, carryOverFn, created, audubonWriter);
+          carryOver(hdfsSiteConfig, path, MeasurementOrFactRecord.class, measurementTransform, carryOverFn, created,
+              measurementWriter);
+          carryOver(hdfsSiteConfig, path, TaxonRecord.class, taxonomyTransform, carryOverFn, created, taxonWriter);
+          carryOver(hdfsSiteConfig, path, LocationRecord.class, locationTransform, carryOverFn, created,
+              locationWriter);
+        });
+
+        // Ids with invalid GBIF ids are not in the index and will be interpreted by the next run again
+        hashMap.values().stream().filter(rh -> !brInvalidMap.containsKey(rh.getId())).forEach(hashWriter::append);
+      }
+
     } catch (Exception e) {
       log.error("Failed performing conversion on {}", e.getMessage());
       throw new IllegalStateException("Failed performing conversion on ", e);
@@ -333,15 +491,61 @@ public class VerbatimToInterpretedPipeline {
     }
 
     MetricsHandler.saveCountersToTargetPathFile(options, metrics.getMetricsResult());
+    if (fingerprintSkip) {
+      FingerprintUtils.writeFingerprints(options, fingerprints);
+    }
+    if (options.getAvroCompactionFileThreshold() > 0) {
+      FsUtils.compactInterpreted(options);
+    }
+    if (options.isAvroIdIndex()) {
+      FsUtils.writeInterpretedIndexes(options);
+    }
     log.info("Pipeline has been finished - {}", LocalDateTime.now());
   }
 
+  /** Path of all files of a record type in the previous interpretation */
+  private static String getPath(String previousPath, String baseName) {
+    return String.join("/", previousPath, baseName, "*" + AVRO_EXTENSION);
+  }
+
+  private static String getPath(String previousPath, Transform transform) {
+    return getPath(previousPath, transform.getBaseName());
+  }
+
+  /** Copies the records of the previous interpretation with a new "created", counted as interpreted records */
+  private static <T extends SpecificRecordBase & Record> void carryOver(String hdfsSiteConfig, String previousPath,
+      Class<T> clazz, Transform transform, Predicate<String> idFilter, long created, SyncDataFileWriter<T> writer) {
+    AvroReader.readRecords(hdfsSiteConfig, clazz, getPath(previousPath, transform))
+        .values()
+        .stream()
+        .filter(r -> idFilter.test(r.getId()))
+        .forEach(r -> {
+          IncrementalTransform.setCreated(r, created);
+          transform.incCounter();
+          writer.append(r);
+        });
+  }
+
+  /** Counts the records of a record type, copied from the previous attempt, as interpreted records */
+  private static <T extends Record> void countRecords(String hdfsSiteConfig, String interpretedPath, Class<T> clazz,
+      Transform transform) {
+    AvroReader.readRecords(hdfsSiteConfig, clazz, getPath(interpretedPath, transform))
+        .values()
+        .forEach(r -> transform.incCounter());
+  }
+
   /** Create an AVRO file writer */
-  @SneakyThrows
   private static <T> SyncDataFileWriter<T> createWriter(InterpretationPipelineOptions options, Schema schema,
       Transform transform, String id, boolean useInvalidName) {
-    UnaryOperator<String> pathFn = t -> FsUtils.buildPathInterpretUsingTargetPath(options, t, id + AVRO_EXTENSION);
     String baseName = useInvalidName ? transform.getBaseInvalidName() : transform.getBaseName();
+    return createWriter(options, schema, baseName, id);
+  }
+
+  /** Create an AVRO file writer */
+  @SneakyThrows
+  private static <T> SyncDataFileWriter<T> createWriter(InterpretationPipelineOptions options, Schema schema,
+      String baseName, String id) {
+    UnaryOperator<String> pathFn = t -> FsUtils.buildPathInterpretUsingTargetPath(options, t, id + AVRO_EXTENSION);
     Path path = new Path(pathFn.apply(baseName));
     FileSystem fs = createParentDirectories(path, options.getHdfsSiteConfig());
     return SyncDataFileWriterBuilder.builder()
@@ -1,5 +1,7 @@
 package org.gbif.pipelines.ingest.java.transforms;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
@@ -22,6 +24,9 @@ import lombok.SneakyThrows;
  * Splits collection into two:
  * 1 - normal collection with regular GBIF ids
  * 2 - contains invalid records with GBIF ids, as duplicates or missed GBIF ids
+ * <p>
+ * Records interpreted before, like the records carried over by an incremental interpretation, are filtered together
+ * with the interpreted records
  */
 @Slf4j
 @Getter
@@ -37,6 +42,9 @@ public class UniqueGbifIdTransform {
   @NonNull
   private Map<String, ExtendedRecord> erMap;
 
+  @Builder.Default
+  private Collection<BasicRecord> carriedOver = Collections.emptyList();
+
   @Builder.Default
   private ExecutorService executor = Executors.newWorkStealingPool();
 
@@ -61,6 +69,7 @@ public class UniqueGbifIdTransform {
         .map(v -> CompletableFuture.runAsync(() -> interpretBrFn.accept(v), executor))
         .toArray(CompletableFuture[]::new);
     CompletableFuture.allOf(brFutures).get();
+    carriedOver.forEach(filterCarriedOver());
 
     return this;
   }
@@ -68,24 +77,33 @@ public class UniqueGbifIdTransform {
   @SneakyThrows
   private UniqueGbifIdTransform runSync() {
     erMap.values().forEach(filterByGbifId());
+    carriedOver.forEach(filterCarriedOver());
 
     return this;
   }
 
   /** Process GBIF id duplicates */
   private Consumer<ExtendedRecord> filterByGbifId() {
-    return er ->
-        basicTransform.processElement(er)
-            .ifPresent(br -> {
-              if (skipTransform) {
-                brMap.put(br.getId(), br);
-              } else if (br.getGbifId() != null) {
-                filter(br);
-              } else {
-                brInvalidMap.put(br.getId(), br);
-                log.error("GBIF ID is null, occurrenceId - {}", br.getId());
-              }
-            });
+    return er -> basicTransform.processElement(er).ifPresent(this::accept);
+  }
+
+  /** Process GBIF id duplicates of records interpreted before, counted as interpreted records */
+  private Consumer<BasicRecord> filterCarriedOver() {
+    return br -> {
+      basicTransform.incCounter();
+      accept(br);
+    };
+  }
+
+  private void accept(BasicRecord br) {
+    if (skipTransform) {
+      brMap.put(br.getId(), br);
+    } else if (br.getGbifId() != null) {
+      filter(br);
+    } else {
+      brInvalidMap.put(br.getId(), br);
+      log.error("GBIF ID is null, occurrenceId - {}", br.getId());
+    }
   }
 
   /** Filter GBIF id duplicates if it is exist */
@@ -46,6 +46,29 @@ public class AvroReaderTest {
     Files.deleteIfExists(Paths.get(verbatimPath1.toString()));
   }
 
+  @Test
+  public void termDictionaryExtendedRecordsTest() throws IOException {
+
+    // State
+    ExtendedRecord expectedOne = ExtendedRecord.newBuilder().setId("1")
+        .setCoreTerms(Collections.singletonMap("http://rs.tdwg.org/dwc/terms/scientificName", "Puma concolor"))
+        .build();
+    ExtendedRecord expectedTwo = ExtendedRecord.newBuilder().setId("2")
+        .setCoreTerms(Collections.singletonMap("http://unknown.org/terms/something", "value"))
+        .build();
+    writeExtendedRecords(verbatimPath1, true, expectedOne, expectedTwo);
+
+    // When
+    Map<String, ExtendedRecord> result =
+        AvroReader.readUniqueRecords("", ExtendedRecord.class, verbatimPath1.toString());
+
+    // Should
+    assertMap(result, expectedOne, expectedTwo);
+
+    // Post
+    Files.deleteIfExists(Paths.get(verbatimPath1.toString()));
+  }
+
   @Test
   public void regularExtendedRecordsWildcardTest() throws IOException {
 
@@ -192,13 +215,18 @@ public class AvroReaderTest {
     });
   }
 
-  @SneakyThrows
   private void writeExtendedRecords(Path path, ExtendedRecord... records) {
+    writeExtendedRecords(path, false, records);
+  }
+
+  @SneakyThrows
+  private void writeExtendedRecords(Path path, boolean termDictionary, ExtendedRecord... records) {
     try (SyncDataFileWriter<ExtendedRecord> verbatimWriter = SyncDataFileWriterBuilder.builder()
         .schema(ExtendedRecord.getClassSchema())
         .codec("snappy")
         .outputStream(verbatimFs.create(path))
         .syncInterval(2_097_152)
+        .termDictionary(termDictionary)
         .build()
         .createSyncDataFileWriter()) {
       Arrays.stream(records).forEach(verbatimWriter::append);
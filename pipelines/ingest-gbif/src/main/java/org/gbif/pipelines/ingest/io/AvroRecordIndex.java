@@ -0,0 +1,275 @@
+package org.gbif.pipelines.ingest.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.avro.Schema;
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.file.SeekableInput;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.hadoop.fs.AvroFSInput;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.google.common.io.CountingInputStream;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+
+import static org.gbif.pipelines.common.PipelinesVariables.Pipeline.AVRO_EXTENSION;
+
+/**
+ * Sidecar index of the avro files of one record type directory, like {@code .../interpreted/basic}, maps a record id
+ * to the file, the offset of the avro block and the position of the record in the block. A record is read by seeking
+ * straight to its block and skipping the records before it, see {@link IndexedAvroReader}.
+ *
+ * <p>The index is written to the {@value #INDEX_FILE_NAME} file of the directory, it does not match the {@code *.avro}
+ * patterns of the readers. The file contains the names and lengths of the indexed files and a 64-bit hash of the id,
+ * the packed file number and block offset and the position in the block per record, 20 bytes per record. The index of
+ * a directory, which files have changed since the index was written, is rejected.
+ *
+ * <p>Two ids can have the same hash, a lookup returns all blocks of the hash and the reader checks the ids.
+ */
+@Slf4j
+public final class AvroRecordIndex {
+
+  public static final String INDEX_FILE_NAME = "_id_index";
+
+  private static final int MAGIC = 0x47494458;
+  private static final int VERSION = 1;
+  private static final String ID = "id";
+  private static final int ENTRY_BYTES = 2 * Long.BYTES + Integer.BYTES;
+
+  // a location is the number of the file in the upper bits and the block offset in the lower 40 bits
+  private static final int OFFSET_BITS = 40;
+  private static final long OFFSET_MASK = (1L << OFFSET_BITS) - 1;
+  private static final int MAX_FILES = 1 << (Long.SIZE - OFFSET_BITS - 1);
+
+  private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+  private final Path[] files;
+  // open addressing table of hashes, locations and positions in the blocks, a zero location is an empty slot
+  private final long[] hashes;
+  private final long[] locations;
+  private final int[] positions;
+  private final int mask;
+  private final long size;
+
+  private AvroRecordIndex(Path[] files, long[] hashes, long[] locations, int[] positions, long size) {
+    this.files = files;
+    this.hashes = hashes;
+    this.locations = locations;
+    this.positions = positions;
+    this.mask = hashes.length - 1;
+    this.size = size;
+  }
+
+  /**
+   * File, the offset of the avro block, which can be passed to {@link DataFileReader#seek(long)}, and the position of
+   * the record in the block
+   */
+  @Getter
+  @ToString
+  @EqualsAndHashCode
+  @AllArgsConstructor
+  public static class Location {
+
+    private final Path path;
+    private final long offset;
+    private final int position;
+  }
+
+  /**
+   * Writes the indexes of all record type directories of the directory, like {@code .../{attempt}/interpreted}, skips
+   * the hidden directories, the directories without avro files and the records without an id
+   */
+  public static void writeAll(FileSystem fs, Path directory) throws IOException {
+    if (!fs.exists(directory)) {
+      return;
+    }
+    for (FileStatus status : fs.listStatus(directory)) {
+      String name = status.getPath().getName();
+      if (status.isDirectory() && !name.startsWith(".") && !name.startsWith("_")) {
+        long count = write(fs, status.getPath());
+        log.info("Indexed {} records of {}", count, status.getPath());
+      }
+    }
+  }
+
+  /**
+   * Writes the index of the avro files of the directory, the files must have a string id field
+   *
+   * @return number of the indexed records
+   */
+  public static long write(FileSystem fs, Path directory) throws IOException {
+    List<FileStatus> statuses = listAvroFiles(fs, directory);
+    if (statuses.size() >= MAX_FILES) {
+      throw new IllegalArgumentException("Too many files to index in " + directory + " - " + statuses.size());
+    }
+
+    long count = 0;
+    Path indexPath = new Path(directory, INDEX_FILE_NAME);
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fs.create(indexPath, true)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(statuses.size());
+      for (FileStatus status : statuses) {
+        out.writeUTF(status.getPath().getName());
+        out.writeLong(status.getLen());
+      }
+
+      for (int i = 0; i < statuses.size(); i++) {
+        count += writeFile(fs, statuses.get(i), i, out);
+      }
+    }
+
+    if (count == 0) {
+      fs.delete(indexPath, false);
+    }
+    return count;
+  }
+
+  /** Reads the ids of the file with a projection and writes the hash and the block location of every record */
+  private static long writeFile(FileSystem fs, FileStatus status, long fileNumber, DataOutputStream out)
+      throws IOException {
+    GenericDatumReader<GenericRecord> datumReader = new GenericDatumReader<>();
+    try (SeekableInput input = new AvroFSInput(fs.open(status.getPath()), status.getLen());
+        DataFileReader<GenericRecord> reader = new DataFileReader<>(input, datumReader)) {
+      Schema schema = reader.getSchema();
+      Schema.Field idField = schema.getType() == Schema.Type.RECORD ? schema.getField(ID) : null;
+      if (idField == null || idField.schema().getType() != Schema.Type.STRING) {
+        log.warn("Skipping the index of {}, the records have no string id", status.getPath());
+        return 0;
+      }
+      Schema projection = Schema.createRecord(schema.getName(), null, schema.getNamespace(), false,
+          Collections.singletonList(new Schema.Field(ID, idField.schema(), null, (Object) null)));
+      datumReader.setExpected(projection);
+
+      long count = 0;
+      GenericRecord record = null;
+      while (reader.hasNext()) {
+        long blockStart = reader.previousSync();
+        long blockCount = reader.getBlockCount();
+        for (int i = 0; i < blockCount; i++) {
+          record = reader.next(record);
+          out.writeLong(hash(record.get(ID).toString()));
+          out.writeLong(fileNumber << OFFSET_BITS | blockStart);
+          out.writeInt(i);
+        }
+        count += blockCount;
+      }
+      return count;
+    }
+  }
+
+  /**
+   * Reads the index of the directory
+   *
+   * @throws IllegalStateException if the index is out of date, the indexed files have changed
+   */
+  public static AvroRecordIndex read(FileSystem fs, Path directory) throws IOException {
+    Path indexPath = new Path(directory, INDEX_FILE_NAME);
+    long length = fs.getFileStatus(indexPath).getLen();
+    try (FSDataInputStream stream = fs.open(indexPath);
+        CountingInputStream counting = new CountingInputStream(new BufferedInputStream(stream));
+        DataInputStream in = new DataInputStream(counting)) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        throw new IllegalStateException("File " + indexPath + " is not an avro record index");
+      }
+
+      Path[] files = new Path[in.readInt()];
+      for (int i = 0; i < files.length; i++) {
+        String name = in.readUTF();
+        long fileLength = in.readLong();
+        files[i] = new Path(directory, name);
+        if (!fs.exists(files[i]) || fs.getFileStatus(files[i]).getLen() != fileLength) {
+          throw new IllegalStateException("Index " + indexPath + " is out of date, file " + name + " has changed");
+        }
+      }
+
+      long size = (length - counting.getCount()) / ENTRY_BYTES;
+      if (size > Integer.MAX_VALUE / 2) {
+        throw new IllegalStateException("Index " + indexPath + " is too large to load - " + size + " records");
+      }
+
+      int capacity = Integer.highestOneBit((int) Math.max(size * 2, 16) - 1) << 1;
+      long[] hashes = new long[capacity];
+      long[] locations = new long[capacity];
+      int[] positions = new int[capacity];
+      int mask = capacity - 1;
+      for (long i = 0; i < size; i++) {
+        long hash = in.readLong();
+        long location = in.readLong();
+        int position = in.readInt();
+        int slot = slot(hash, mask);
+        while (locations[slot] != 0) {
+          slot = (slot + 1) & mask;
+        }
+        hashes[slot] = hash;
+        locations[slot] = location;
+        positions[slot] = position;
+      }
+      return new AvroRecordIndex(files, hashes, locations, positions, size);
+    }
+  }
+
+  /** @return locations of the records, which can be the record of the id, empty if the id is not indexed */
+  public List<Location> locate(String id) {
+    long hash = hash(id);
+    List<Location> result = Collections.emptyList();
+    for (int slot = slot(hash, mask); locations[slot] != 0; slot = (slot + 1) & mask) {
+      if (hashes[slot] == hash) {
+        Location location = toLocation(locations[slot], positions[slot]);
+        if (result.isEmpty()) {
+          result = Collections.singletonList(location);
+        } else {
+          result = new ArrayList<>(result);
+          result.add(location);
+        }
+      }
+    }
+    return result;
+  }
+
+  /** @return number of the indexed records */
+  public long size() {
+    return size;
+  }
+
+  private Location toLocation(long location, int position) {
+    return new Location(files[(int) (location >>> OFFSET_BITS)], location & OFFSET_MASK, position);
+  }
+
+  private static List<FileStatus> listAvroFiles(FileSystem fs, Path directory) throws IOException {
+    List<FileStatus> result = new ArrayList<>();
+    for (FileStatus status : fs.listStatus(directory)) {
+      if (status.isFile() && status.getPath().getName().endsWith(AVRO_EXTENSION)) {
+        result.add(status);
+      }
+    }
+    result.sort((a, b) -> a.getPath().getName().compareTo(b.getPath().getName()));
+    return result;
+  }
+
+  private static long hash(String id) {
+    return HASH_FUNCTION.hashString(id, StandardCharsets.UTF_8).asLong();
+  }
+
+  private static int slot(long hash, int mask) {
+    return (int) (hash ^ (hash >>> 32)) & mask;
+  }
+}
@@ -0,0 +1,153 @@
+package org.gbif.pipelines.ingest.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.gbif.pipelines.ingest.io.AvroRecordIndex.Location;
+import org.gbif.pipelines.ingest.utils.FsUtils;
+import org.gbif.pipelines.io.avro.Record;
+
+import org.apache.avro.Schema;
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.specific.SpecificDatumReader;
+import org.apache.hadoop.fs.AvroFSInput;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+import lombok.AllArgsConstructor;
+
+/**
+ * Reads {@link Record} based objects by id, seeking straight to the avro blocks of the ids by the {@link
+ * AvroRecordIndex} of the directory. Only the records of the ids are decoded, the records before them in the block are
+ * skipped. A batch of ids is read block by block in the order of the files, every block is read once.
+ *
+ * <pre>{@code
+ * try (IndexedAvroReader<BasicRecord> reader =
+ *     IndexedAvroReader.create(hdfsSiteConfig, BasicRecord.class, ".../interpreted/basic")) {
+ *   Optional<BasicRecord> record = reader.get("1");
+ * }
+ * }</pre>
+ *
+ * <p>The reader keeps the files open and is not thread-safe.
+ */
+public class IndexedAvroReader<T extends Record> implements Closeable {
+
+  // the order of the blocks in the files, the position is not a part of a block
+  private static final Comparator<Location> BLOCK_ORDER =
+      Comparator.comparing((Location l) -> l.getPath().getName()).thenComparingLong(Location::getOffset);
+
+  private final FileSystem fs;
+  private final Class<T> clazz;
+  private final AvroRecordIndex index;
+  private final Map<Path, FileReader<T>> readers = new HashMap<>();
+
+  private BinaryDecoder decoder;
+
+  private IndexedAvroReader(FileSystem fs, Class<T> clazz, AvroRecordIndex index) {
+    this.fs = fs;
+    this.clazz = clazz;
+    this.index = index;
+  }
+
+  /**
+   * @param clazz instance of {@link Record}
+   * @param directory record type directory with an index, see {@link AvroRecordIndex#write(FileSystem, Path)}
+   */
+  public static <T extends Record> IndexedAvroReader<T> create(String hdfsSiteConfig, Class<T> clazz,
+      String directory) throws IOException {
+    FileSystem fs = FsUtils.getFileSystem(hdfsSiteConfig, directory);
+    return new IndexedAvroReader<>(fs, clazz, AvroRecordIndex.read(fs, new Path(directory)));
+  }
+
+  /** Point lookup, reads one avro block and skips the records before the record */
+  public Optional<T> get(String id) throws IOException {
+    return Optional.ofNullable(get(Collections.singleton(id)).get(id));
+  }
+
+  /**
+   * Batched lookup, reads every block of the ids once
+   *
+   * @return records of the found ids
+   */
+  public Map<String, T> get(Collection<String> ids) throws IOException {
+    // block -> position in the block -> ids, which can be the id of the record
+    Map<Location, Map<Integer, Set<String>>> blocks = new TreeMap<>(BLOCK_ORDER);
+    for (String id : ids) {
+      for (Location location : index.locate(id)) {
+        blocks.computeIfAbsent(location, l -> new TreeMap<>())
+            .computeIfAbsent(location.getPosition(), p -> new HashSet<>())
+            .add(id);
+      }
+    }
+
+    Map<String, T> result = new HashMap<>();
+    for (Map.Entry<Location, Map<Integer, Set<String>>> block : blocks.entrySet()) {
+      readBlock(block.getKey(), block.getValue(), result);
+    }
+    return result;
+  }
+
+  /** Decodes only the records at the positions, skips the other records of the block */
+  private void readBlock(Location location, Map<Integer, Set<String>> positions, Map<String, T> result)
+      throws IOException {
+    FileReader<T> fileReader = getReader(location.getPath());
+    fileReader.reader.seek(location.getOffset());
+    ByteBuffer block = fileReader.reader.nextBlock();
+    decoder = DecoderFactory.get()
+        .binaryDecoder(block.array(), block.arrayOffset() + block.position(), block.remaining(), decoder);
+
+    int current = 0;
+    for (Map.Entry<Integer, Set<String>> position : positions.entrySet()) {
+      for (; current < position.getKey(); current++) {
+        GenericDatumReader.skip(fileReader.schema, decoder);
+      }
+      T record = fileReader.datumReader.read(null, decoder);
+      current++;
+      if (position.getValue().contains(record.getId())) {
+        result.putIfAbsent(record.getId(), record);
+      }
+    }
+  }
+
+  private FileReader<T> getReader(Path path) throws IOException {
+    FileReader<T> reader = readers.get(path);
+    if (reader == null) {
+      long length = fs.getFileStatus(path).getLen();
+      SpecificDatumReader<T> datumReader = new SpecificDatumReader<>(clazz);
+      DataFileReader<T> dataFileReader = new DataFileReader<>(new AvroFSInput(fs.open(path), length), datumReader);
+      reader = new FileReader<>(dataFileReader, datumReader, dataFileReader.getSchema());
+      readers.put(path, reader);
+    }
+    return reader;
+  }
+
+  /** Open file, the datum reader with the schema of the file */
+  @AllArgsConstructor
+  private static class FileReader<T> {
+
+    private final DataFileReader<T> reader;
+    private final SpecificDatumReader<T> datumReader;
+    private final Schema schema;
+  }
+
+  @Override
+  public void close() throws IOException {
+    for (FileReader<T> reader : readers.values()) {
+      reader.reader.close();
+    }
+    readers.clear();
+  }
+}
@@ -3,6 +3,8 @@ package org.gbif.pipelines.ingest.options;
 import java.util.List;
 import java.util.Optional;
 
+import org.gbif.pipelines.core.utils.AvroCodecUtils;
+
 import org.apache.beam.sdk.io.hdfs.HadoopFileSystemOptions;
 import org.apache.beam.sdk.options.Default;
 import org.apache.beam.sdk.options.DefaultValueFactory;
@@ -48,8 +50,9 @@ public interface BasePipelineOptions extends PipelineOptions {
 
   void setWriteOutput(boolean writeOutput);
 
-  @Description("Avro compression type")
-  @Default.String("snappy")
+  @Description("Avro compression type of all written avro files: null, snappy, bzip2, deflate, xz or deflate and xz "
+      + "with a level, like deflate-9 or xz-6")
+  @Default.String(AvroCodecUtils.DEFAULT_CODEC)
   String getAvroCompressionType();
 
   void setAvroCompressionType(String compressionType);
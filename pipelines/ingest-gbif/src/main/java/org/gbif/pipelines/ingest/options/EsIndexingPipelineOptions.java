@@ -1,9 +1,38 @@
 package org.gbif.pipelines.ingest.options;
 
+import java.util.Set;
+
 import org.apache.beam.sdk.io.hdfs.HadoopFileSystemOptions;
+import org.apache.beam.sdk.options.Default;
+import org.apache.beam.sdk.options.Description;
 
 /**
  * Pipeline options (configuration) for GBIF based data indexing pipelines. Optionally can use a
  * {@link HadoopFileSystemOptions} when exporting/reading files.
  */
-public interface EsIndexingPipelineOptions extends EsPipelineOptions, InterpretationPipelineOptions {}
+public interface EsIndexingPipelineOptions extends EsPipelineOptions, InterpretationPipelineOptions {
+
+  @Description("Joins the interpreted records bucket by bucket if all of them are bucketed with the same number of "
+      + "buckets, otherwise or if disabled they are joined by CoGroupByKey")
+  @Default.Boolean(true)
+  boolean isBucketJoin();
+
+  void setBucketJoin(boolean bucketJoin);
+
+  @Description("Indexes only new and changed documents into a default/regular index, shared by many datasets, and "
+      + "deletes only the documents of deleted ids, comparing the document hashes with the hashes of the previous "
+      + "finished indexing into the same index, instead of deleting all documents of the dataset and indexing all "
+      + "documents. Must be used for every indexing into the index, the hashes are written only if enabled")
+  @Default.Boolean(false)
+  boolean isEsIncrementalIndexing();
+
+  void setEsIncrementalIndexing(boolean esIncrementalIndexing);
+
+  @Description("Updates only the fields of the existing documents of the index built from the given reinterpreted "
+      + "record types - TEMPORAL, LOCATION, TAXONOMY, MULTIMEDIA, IMAGE, AUDUBON or MEASUREMENT_OR_FACT, using partial "
+      + "updates instead of indexing the full documents, the index is not created or swapped. Empty for the full "
+      + "indexing")
+  Set<String> getEsPartialUpdateTypes();
+
+  void setEsPartialUpdateTypes(Set<String> esPartialUpdateTypes);
+}
@@ -21,6 +21,12 @@ public interface EsPipelineOptions extends PipelineOptions {
 
   void setEsMaxBatchSize(long esBatchSize);
 
+  @Description("Es max retries of a document failed by a full bulk queue or an unavailable node")
+  @Default.Integer(5)
+  int getEsMaxRetries();
+
+  void setEsMaxRetries(int esMaxRetries);
+
   @Description("List of Elasticsearch hosts. Required for the DWCA_TO_ES_INDEX step.")
   String[] getEsHosts();
 
@@ -87,6 +87,85 @@ public interface InterpretationPipelineOptions
 
   void setNumberOfShards(Integer numberOfShards);
 
+  @Description("Number of buckets to write the interpreted records bucketed and sorted by id, the indexing joins them "
+      + "bucket by bucket. 0 writes unbucketed files")
+  @Default.Integer(0)
+  int getInterpretationBuckets();
+
+  void setInterpretationBuckets(int buckets);
+
+  @Description("Interprets only new and changed records of a dataset, if all types are interpreted, copies the records "
+      + "of unchanged ids from the latest previous attempt and writes the ids of deleted records. Requires the "
+      + "pipelines version and the versions of the name usage match and geocode stores")
+  @Default.Boolean(false)
+  boolean isIncrementalInterpretation();
+
+  void setIncrementalInterpretation(boolean incrementalInterpretation);
+
+  @Description("Skips the interpretation of record types, if all types are interpreted and the fingerprint of a type, "
+      + "the hash of the verbatim records, the code version, the options and the versions of the lookups, is equal "
+      + "to the fingerprint of the latest previous attempt, the records of the type are copied from the attempt")
+  @Default.Boolean(false)
+  boolean isInterpretationFingerprintSkip();
+
+  void setInterpretationFingerprintSkip(boolean interpretationFingerprintSkip);
+
+  @Description("Writes a sidecar index of every interpreted record type, which maps a record id to the avro file and "
+      + "block, to read records by id without a scan of the files, see AvroRecordIndex")
+  @Default.Boolean(false)
+  boolean isAvroIdIndex();
+
+  void setAvroIdIndex(boolean avroIdIndex);
+
+  @Description("Merges the avro files of an interpreted record type into files of the avro compaction target size, "
+      + "if the type has more files than the threshold and the files are small. 0 disables the compaction")
+  @Default.Integer(0)
+  int getAvroCompactionFileThreshold();
+
+  void setAvroCompactionFileThreshold(int avroCompactionFileThreshold);
+
+  @Description("Target size of a merged avro file in bytes, like the HDFS block size")
+  @Default.Long(134_217_728L)
+  long getAvroCompactionTargetSize();
+
+  void setAvroCompactionTargetSize(long avroCompactionTargetSize);
+
+  @Description("File format of the HDFS view - AVRO or PARQUET")
+  @Default.String("AVRO")
+  String getHdfsViewFormat();
+
+  void setHdfsViewFormat(String hdfsViewFormat);
+
+  @Description("Parquet compression codec of the HDFS view - uncompressed, snappy, gzip, lzo, brotli, lz4 or zstd")
+  @Default.String("snappy")
+  String getParquetCompressionType();
+
+  void setParquetCompressionType(String parquetCompressionType);
+
+  @Description("Parquet row group size of the HDFS view in bytes")
+  @Default.Integer(134_217_728)
+  int getParquetRowGroupSize();
+
+  void setParquetRowGroupSize(int parquetRowGroupSize);
+
+  @Description("Parquet page size of the HDFS view in bytes")
+  @Default.Integer(1_048_576)
+  int getParquetPageSize();
+
+  void setParquetPageSize(int parquetPageSize);
+
+  @Description("Parquet maximum dictionary page size of the HDFS view in bytes")
+  @Default.Integer(1_048_576)
+  int getParquetDictionaryPageSize();
+
+  void setParquetDictionaryPageSize(int parquetDictionaryPageSize);
+
+  @Description("Parquet dictionary encoding of the HDFS view")
+  @Default.Boolean(true)
+  boolean isParquetDictionaryEnabled();
+
+  void setParquetDictionaryEnabled(boolean parquetDictionaryEnabled);
+
   /** A {@link DefaultValueFactory} which locates a default directory. */
   class TempDirectoryFactory implements DefaultValueFactory<String> {
 
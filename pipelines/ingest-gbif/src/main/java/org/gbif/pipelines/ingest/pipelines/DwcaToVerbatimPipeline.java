@@ -68,11 +68,14 @@ public class DwcaToVerbatimPipeline {
 
     DwcaIO.Read reader = isDir ? DwcaIO.Read.fromLocation(inputPath) : DwcaIO.Read.fromCompressed(inputPath, tmpPath);
 
+    VerbatimTransform verbatimTransform = VerbatimTransform.create();
+    verbatimTransform.setCodec(options.getAvroCompressionType());
+
     log.info("Adding step 2: Pipeline steps");
     Pipeline p = Pipeline.create(options);
 
     p.apply("Read from Darwin Core Archive", reader)
-        .apply("Write to avro", VerbatimTransform.create().write(targetPath).withoutSharding());
+        .apply("Write to avro", verbatimTransform.write(targetPath).withoutSharding());
 
     log.info("Running the pipeline");
     PipelineResult result = p.run();
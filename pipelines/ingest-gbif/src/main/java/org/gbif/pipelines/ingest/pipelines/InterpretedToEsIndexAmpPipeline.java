@@ -1,9 +1,11 @@
 package org.gbif.pipelines.ingest.pipelines;
 
+import java.nio.charset.StandardCharsets;
 import java.util.function.UnaryOperator;
 
 import org.gbif.api.model.pipelines.StepType;
 import org.gbif.pipelines.common.PipelinesVariables.Pipeline.Indexing;
+import org.gbif.pipelines.common.beam.EsBulkIO;
 import org.gbif.pipelines.core.converters.GbifJsonConverter;
 import org.gbif.pipelines.ingest.options.EsIndexingPipelineOptions;
 import org.gbif.pipelines.ingest.options.PipelinesOptionsFactory;
@@ -13,14 +15,15 @@ import org.gbif.pipelines.transforms.extension.AmplificationTransform;
 
 import org.apache.beam.sdk.Pipeline;
 import org.apache.beam.sdk.PipelineResult;
-import org.apache.beam.sdk.io.elasticsearch.ElasticsearchIO;
 import org.apache.beam.sdk.metrics.Counter;
 import org.apache.beam.sdk.metrics.Metrics;
 import org.apache.beam.sdk.transforms.DoFn;
 import org.apache.beam.sdk.transforms.ParDo;
+import org.apache.beam.sdk.values.KV;
 import org.apache.beam.sdk.values.PCollection;
 import org.slf4j.MDC;
 
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import lombok.AccessLevel;
 import lombok.NoArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -81,32 +84,27 @@ public class InterpretedToEsIndexAmpPipeline {
     Pipeline p = Pipeline.create(options);
 
     log.info("Adding step 2: Reading avros and converting into a json object");
-    PCollection<String> jsonCollection =
+    PCollection<KV<String, byte[]>> jsonCollection =
         p.apply("Read Amplification", AmplificationTransform.builder().create().read(pathFn))
-            .apply("Merging into json", ParDo.of(new DoFn<AmplificationRecord, String>() {
+            .apply("Merging into json", ParDo.of(new DoFn<AmplificationRecord, KV<String, byte[]>>() {
 
               private final Counter counter = Metrics.counter(GbifJsonConverter.class, AVRO_TO_JSON_COUNT);
 
               @ProcessElement
               public void processElement(ProcessContext c) {
-                String json = GbifJsonConverter.toStringPartialJson(c.element());
-                c.output(json);
+                ObjectNode json = GbifJsonConverter.toPartialJson(c.element());
+                c.output(KV.of(json.get(GBIF_ID).asText(), json.toString().getBytes(StandardCharsets.UTF_8)));
                 counter.inc();
               }
             }));
 
     log.info("Adding step 4: Elasticsearch indexing");
-    ElasticsearchIO.ConnectionConfiguration esConfig =
-        ElasticsearchIO.ConnectionConfiguration.create(
-            options.getEsHosts(), options.getEsIndexName(), Indexing.INDEX_TYPE);
-
     jsonCollection.apply(
-        ElasticsearchIO.write()
+        EsBulkIO.write(options.getEsHosts(), options.getEsIndexName(), Indexing.INDEX_TYPE)
             .withUsePartialUpdate(true)
-            .withConnectionConfiguration(esConfig)
             .withMaxBatchSizeBytes(options.getEsMaxBatchSizeBytes())
             .withMaxBatchSize(options.getEsMaxBatchSize())
-            .withIdFn(input -> input.get(GBIF_ID).asText()));
+            .withMaxRetries(options.getEsMaxRetries()));
 
     log.info("Running the pipeline");
     PipelineResult result = p.run();
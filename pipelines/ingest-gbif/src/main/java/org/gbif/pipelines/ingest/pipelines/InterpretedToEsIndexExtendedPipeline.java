@@ -1,5 +1,6 @@
 package org.gbif.pipelines.ingest.pipelines;
 
+import java.util.Optional;
 import java.util.Set;
 
 import org.gbif.api.model.pipelines.StepType;
@@ -38,6 +39,13 @@ import lombok.extern.slf4j.Slf4j;
  *    7) Deletes temporal files
  * </pre>
  *
+ * <p>Before indexing all records of the dataset are deleted from the default/regular index, unless the incremental
+ * indexing is enabled and the previous attempt indexed the dataset into the same index, then only new and changed
+ * records are indexed, unchanged records keep the crawl fields of the attempt which indexed them and records of
+ * deleted ids are deleted, see
+ * {@link org.gbif.pipelines.transforms.common.IncrementalIndexTransform}. The document hashes of older attempts are
+ * deleted, because only the hashes of the previous attempt match the index
+ *
  * <p>How to run:
  *
  * <pre>{@code
@@ -82,10 +90,28 @@ public class InterpretedToEsIndexExtendedPipeline {
   }
 
   public static void run(EsIndexingPipelineOptions options, Runnable pipeline) {
+    // The partial update changes the fields of the existing documents, the index and aliases stay the same
+    if (EsIndexUtils.isPartialUpdate(options)) {
+      log.info("Partial update of {} fields, index - {}", options.getEsPartialUpdateTypes(), options.getEsIndexName());
+      FsUtils.deleteIndexHashes(options, Optional.empty());
+      pipeline.run();
+      return;
+    }
+
     EsIndexUtils.createIndexAndAliasForDefault(options);
 
+    // The incremental indexing deletes the records of the index by id, if the previous attempt is finished
+    boolean incremental = EsIndexUtils.isIncrementalIndexing(options);
+    Optional<Integer> previousAttempt = incremental ? FsUtils.getPreviousIndexedAttempt(options) : Optional.empty();
+    previousAttempt.ifPresent(a -> log.info("Incremental indexing, the previous attempt is {}", a));
+
+    // Only the hashes of the previous attempt match the index, all documents of the dataset are indexed otherwise
+    FsUtils.deleteIndexHashes(options, previousAttempt);
+
     // Returns indices names in case of swapping
-    Set<String> indices = EsIndexUtils.deleteRecordsByDatasetId(options);
+    Set<String> indices = previousAttempt.isPresent()
+        ? EsIndexUtils.deleteRecordsByDatasetIdInOtherIndexes(options)
+        : EsIndexUtils.deleteRecordsByDatasetId(options);
 
     pipeline.run();
 
@@ -97,5 +123,9 @@ public class InterpretedToEsIndexExtendedPipeline {
     config.getIndexLock().setZkConnectionString(zk);
 
     EsIndexUtils.updateAlias(options, indices, config.getIndexLock());
+
+    if (incremental) {
+      FsUtils.createIndexHashSuccessFile(options);
+    }
   }
 }
@@ -1,11 +1,14 @@
 package org.gbif.pipelines.ingest.pipelines;
 
+import java.util.Optional;
 import java.util.function.UnaryOperator;
 
 import org.gbif.api.model.pipelines.StepType;
 import org.gbif.pipelines.common.PipelinesVariables.Pipeline.Indexing;
+import org.gbif.pipelines.common.beam.EsBulkIO;
 import org.gbif.pipelines.ingest.options.EsIndexingPipelineOptions;
 import org.gbif.pipelines.ingest.options.PipelinesOptionsFactory;
+import org.gbif.pipelines.ingest.utils.EsIndexUtils;
 import org.gbif.pipelines.ingest.utils.FsUtils;
 import org.gbif.pipelines.ingest.utils.MetricsHandler;
 import org.gbif.pipelines.io.avro.AudubonRecord;
@@ -19,6 +22,8 @@ import org.gbif.pipelines.io.avro.MultimediaRecord;
 import org.gbif.pipelines.io.avro.TaggedValueRecord;
 import org.gbif.pipelines.io.avro.TaxonRecord;
 import org.gbif.pipelines.io.avro.TemporalRecord;
+import org.gbif.pipelines.transforms.common.IncrementalIndexTransform;
+import org.gbif.pipelines.transforms.common.SortedBucketIO;
 import org.gbif.pipelines.transforms.converters.GbifJsonTransform;
 import org.gbif.pipelines.transforms.core.BasicTransform;
 import org.gbif.pipelines.transforms.core.LocationTransform;
@@ -34,14 +39,13 @@ import org.gbif.pipelines.transforms.metadata.TaggedValuesTransform;
 
 import org.apache.beam.sdk.Pipeline;
 import org.apache.beam.sdk.PipelineResult;
-import org.apache.beam.sdk.io.elasticsearch.ElasticsearchIO;
-import org.apache.beam.sdk.transforms.ParDo.SingleOutput;
 import org.apache.beam.sdk.transforms.View;
 import org.apache.beam.sdk.transforms.join.CoGbkResult;
 import org.apache.beam.sdk.transforms.join.CoGroupByKey;
 import org.apache.beam.sdk.transforms.join.KeyedPCollectionTuple;
 import org.apache.beam.sdk.values.KV;
 import org.apache.beam.sdk.values.PCollection;
+import org.apache.beam.sdk.values.PCollectionTuple;
 import org.apache.beam.sdk.values.PCollectionView;
 import org.slf4j.MDC;
 
@@ -65,9 +69,11 @@ import static org.gbif.pipelines.common.PipelinesVariables.Pipeline.AVRO_EXTENSI
  *      {@link org.gbif.pipelines.io.avro.MeasurementOrFactRecord},
  *      {@link org.gbif.pipelines.io.avro.TaxonRecord},
  *      {@link org.gbif.pipelines.io.avro.LocationRecord}
- *    2) Joins avro files
+ *    2) Joins avro files, bucket by bucket if they are bucketed and sorted by id, else by CoGroupByKey
  *    3) Converts to json model (resources/elasticsearch/es-occurrence-schema.json)
- *    4) Pushes data to Elasticsearch instance
+ *    4) Pushes data to Elasticsearch instance, only new and changed documents if the incremental indexing is enabled,
+ *    see {@link IncrementalIndexTransform}, or only the fields of the reinterpreted record types of the existing
+ *    documents if the partial update is enabled, see {@link GbifJsonTransform#partialUpdateConverter}
  * </pre>
  *
  * <p>How to run:
@@ -109,9 +115,12 @@ public class InterpretedToEsIndexPipeline {
     MDC.put("step", StepType.INTERPRETED_TO_INDEX.name());
 
     String esDocumentId = options.getEsDocumentId();
+    // The partial update doesn't use the verbatim and tagged values records, they are not read
+    boolean partialUpdate = EsIndexUtils.isPartialUpdate(options);
 
     log.info("Adding step 1: Options");
     UnaryOperator<String> pathFn = t -> FsUtils.buildPathInterpretUsingTargetPath(options, t, "*" + AVRO_EXTENSION);
+    UnaryOperator<String> bucketPathFn = t -> FsUtils.buildPathInterpretUsingTargetPath(options, t, "*");
 
     Pipeline p = Pipeline.create(options);
 
@@ -136,92 +145,157 @@ public class InterpretedToEsIndexPipeline {
         p.apply("Read Metadata", metadataTransform.read(pathFn))
             .apply("Convert to view", View.asSingleton());
 
-    PCollection<KV<String, ExtendedRecord>> verbatimCollection =
-        p.apply("Read Verbatim", verbatimTransform.read(pathFn))
-            .apply("Map Verbatim to KV", verbatimTransform.toKv());
-
-    PCollection<KV<String, TaggedValueRecord>> taggedValuesCollection =
-        p.apply("Interpret TaggedValueRecords/MachinesTags interpretation", taggedValuesTransform.read(pathFn))
-            .apply("Map TaggedValueRecord to KV", taggedValuesTransform.toKv());
-
-    PCollection<KV<String, BasicRecord>> basicCollection =
-        p.apply("Read Basic", basicTransform.read(pathFn))
-            .apply("Map Basic to KV", basicTransform.toKv());
-
-    PCollection<KV<String, TemporalRecord>> temporalCollection =
-        p.apply("Read Temporal", temporalTransform.read(pathFn))
-            .apply("Map Temporal to KV", temporalTransform.toKv());
-
-    PCollection<KV<String, LocationRecord>> locationCollection =
-        p.apply("Read Location", locationTransform.read(pathFn))
-            .apply("Map Location to KV", locationTransform.toKv());
-
-    PCollection<KV<String, TaxonRecord>> taxonCollection =
-        p.apply("Read Taxon", taxonomyTransform.read(pathFn))
-            .apply("Map Taxon to KV", taxonomyTransform.toKv());
-
-    PCollection<KV<String, MultimediaRecord>> multimediaCollection =
-        p.apply("Read Multimedia", multimediaTransform.read(pathFn))
-            .apply("Map Multimedia to KV", multimediaTransform.toKv());
-
-    PCollection<KV<String, ImageRecord>> imageCollection =
-        p.apply("Read Image", imageTransform.read(pathFn))
-            .apply("Map Image to KV", imageTransform.toKv());
-
-    PCollection<KV<String, AudubonRecord>> audubonCollection =
-        p.apply("Read Audubon", audubonTransform.read(pathFn))
-            .apply("Map Audubon to KV", audubonTransform.toKv());
+    SortedBucketIO.CoGroup bucketJoin =
+        SortedBucketIO.coGroup()
+            // Core
+            .and(basicTransform.readBucketed(bucketPathFn))
+            .and(temporalTransform.readBucketed(bucketPathFn))
+            .and(locationTransform.readBucketed(bucketPathFn))
+            .and(taxonomyTransform.readBucketed(bucketPathFn))
+            // Extension
+            .and(multimediaTransform.readBucketed(bucketPathFn))
+            .and(imageTransform.readBucketed(bucketPathFn))
+            .and(audubonTransform.readBucketed(bucketPathFn))
+            .and(measurementOrFactTransform.readBucketed(bucketPathFn));
+
+    if (!partialUpdate) {
+      bucketJoin = bucketJoin
+          .and(taggedValuesTransform.readBucketed(bucketPathFn))
+          // Raw
+          .and(verbatimTransform.readBucketed(bucketPathFn));
+    }
+
+    PCollection<KV<String, CoGbkResult>> groupedCollection;
+    if (options.isBucketJoin() && bucketJoin.isBucketed()) {
+      log.info("Joining bucketed and sorted records bucket by bucket");
+      groupedCollection = p.apply("Joining buckets", bucketJoin);
+    } else {
+      PCollection<KV<String, BasicRecord>> basicCollection =
+          p.apply("Read Basic", basicTransform.read(pathFn))
+              .apply("Map Basic to KV", basicTransform.toKv());
+
+      PCollection<KV<String, TemporalRecord>> temporalCollection =
+          p.apply("Read Temporal", temporalTransform.read(pathFn))
+              .apply("Map Temporal to KV", temporalTransform.toKv());
+
+      PCollection<KV<String, LocationRecord>> locationCollection =
+          p.apply("Read Location", locationTransform.read(pathFn))
+              .apply("Map Location to KV", locationTransform.toKv());
+
+      PCollection<KV<String, TaxonRecord>> taxonCollection =
+          p.apply("Read Taxon", taxonomyTransform.read(pathFn))
+              .apply("Map Taxon to KV", taxonomyTransform.toKv());
+
+      PCollection<KV<String, MultimediaRecord>> multimediaCollection =
+          p.apply("Read Multimedia", multimediaTransform.read(pathFn))
+              .apply("Map Multimedia to KV", multimediaTransform.toKv());
+
+      PCollection<KV<String, ImageRecord>> imageCollection =
+          p.apply("Read Image", imageTransform.read(pathFn))
+              .apply("Map Image to KV", imageTransform.toKv());
+
+      PCollection<KV<String, AudubonRecord>> audubonCollection =
+          p.apply("Read Audubon", audubonTransform.read(pathFn))
+              .apply("Map Audubon to KV", audubonTransform.toKv());
+
+      PCollection<KV<String, MeasurementOrFactRecord>> measurementCollection =
+          p.apply("Read Measurement", measurementOrFactTransform.read(pathFn))
+              .apply("Map Measurement to KV", measurementOrFactTransform.toKv());
+
+      KeyedPCollectionTuple<String> tuple =
+          KeyedPCollectionTuple
+              // Core
+              .of(basicTransform.getTag(), basicCollection)
+              .and(temporalTransform.getTag(), temporalCollection)
+              .and(locationTransform.getTag(), locationCollection)
+              .and(taxonomyTransform.getTag(), taxonCollection)
+              // Extension
+              .and(multimediaTransform.getTag(), multimediaCollection)
+              .and(imageTransform.getTag(), imageCollection)
+              .and(audubonTransform.getTag(), audubonCollection)
+              .and(measurementOrFactTransform.getTag(), measurementCollection);
+
+      if (!partialUpdate) {
+        PCollection<KV<String, ExtendedRecord>> verbatimCollection =
+            p.apply("Read Verbatim", verbatimTransform.read(pathFn))
+                .apply("Map Verbatim to KV", verbatimTransform.toKv());
+
+        PCollection<KV<String, TaggedValueRecord>> taggedValuesCollection =
+            p.apply("Interpret TaggedValueRecords/MachinesTags interpretation", taggedValuesTransform.read(pathFn))
+                .apply("Map TaggedValueRecord to KV", taggedValuesTransform.toKv());
+
+        tuple = tuple
+            .and(taggedValuesTransform.getTag(), taggedValuesCollection)
+            // Raw
+            .and(verbatimTransform.getTag(), verbatimCollection);
+      }
 
-    PCollection<KV<String, MeasurementOrFactRecord>> measurementCollection =
-        p.apply("Read Measurement", measurementOrFactTransform.read(pathFn))
-            .apply("Map Measurement to KV", measurementOrFactTransform.toKv());
+      groupedCollection = tuple.apply("Grouping objects", CoGroupByKey.create());
+    }
 
     log.info("Adding step 3: Converting into a json object");
-    SingleOutput<KV<String, CoGbkResult>, String> gbifJsonDoFn =
+    GbifJsonTransform gbifJsonTransform =
         GbifJsonTransform.create(
-                verbatimTransform.getTag(),
-                basicTransform.getTag(),
-                temporalTransform.getTag(),
-                locationTransform.getTag(),
-                taxonomyTransform.getTag(),
-                multimediaTransform.getTag(),
-                imageTransform.getTag(),
-                audubonTransform.getTag(),
-                measurementOrFactTransform.getTag(),
-                taggedValuesTransform.getTag(),
-                metadataView)
-            .converter();
-
-    PCollection<String> jsonCollection =
-        KeyedPCollectionTuple
-            // Core
-            .of(basicTransform.getTag(), basicCollection)
-            .and(temporalTransform.getTag(), temporalCollection)
-            .and(locationTransform.getTag(), locationCollection)
-            .and(taxonomyTransform.getTag(), taxonCollection)
-            .and(taggedValuesTransform.getTag(), taggedValuesCollection)
-            // Extension
-            .and(multimediaTransform.getTag(), multimediaCollection)
-            .and(imageTransform.getTag(), imageCollection)
-            .and(audubonTransform.getTag(), audubonCollection)
-            .and(measurementOrFactTransform.getTag(), measurementCollection)
-            // Raw
-            .and(verbatimTransform.getTag(), verbatimCollection)
-            // Apply
-            .apply("Grouping objects", CoGroupByKey.create())
-            .apply("Merging to json", gbifJsonDoFn);
-
-    log.info("Adding step 4: Elasticsearch indexing");
-    ElasticsearchIO.ConnectionConfiguration esConfig =
-        ElasticsearchIO.ConnectionConfiguration.create(
-            options.getEsHosts(), options.getEsIndexName(), Indexing.INDEX_TYPE);
-
-    jsonCollection.apply(
-        ElasticsearchIO.write()
-            .withConnectionConfiguration(esConfig)
+            verbatimTransform.getTag(),
+            basicTransform.getTag(),
+            temporalTransform.getTag(),
+            locationTransform.getTag(),
+            taxonomyTransform.getTag(),
+            multimediaTransform.getTag(),
+            imageTransform.getTag(),
+            audubonTransform.getTag(),
+            measurementOrFactTransform.getTag(),
+            taggedValuesTransform.getTag(),
+            metadataView);
+
+    EsBulkIO esBulkIO =
+        EsBulkIO.write(options.getEsHosts(), options.getEsIndexName(), Indexing.INDEX_TYPE)
             .withMaxBatchSizeBytes(options.getEsMaxBatchSizeBytes())
             .withMaxBatchSize(options.getEsMaxBatchSize())
-            .withIdFn(input -> input.get(esDocumentId).asText()));
+            .withMaxRetries(options.getEsMaxRetries());
+
+    if (partialUpdate) {
+      // Partial update, changes only the fields of the reinterpreted record types, the documents must exist
+      PCollection<KV<String, byte[]>> jsonCollection =
+          groupedCollection.apply("Merging to partial json",
+              gbifJsonTransform.partialUpdateConverter(esDocumentId, options.getEsPartialUpdateTypes()));
+
+      log.info("Adding step 4: Elasticsearch partial update of {} fields", options.getEsPartialUpdateTypes());
+      jsonCollection.apply(esBulkIO.withUsePartialUpdate(true).withDocAsUpsert(false));
+    } else if (EsIndexUtils.isIncrementalIndexing(options)) {
+      // Incremental indexing, compares the document hashes with the hashes of the previous attempt
+      Optional<Integer> previousAttempt = FsUtils.getPreviousIndexedAttempt(options);
+      previousAttempt.ifPresent(a -> log.info("Incremental indexing, the previous attempt is {}", a));
+
+      String hashPath = FsUtils.buildPathIndexHashUsingTargetPath(options, options.getAttempt());
+      String previousHashPath =
+          previousAttempt.map(a -> FsUtils.buildPathIndexHashUsingTargetPath(options, a)).orElse(null);
+
+      IncrementalIndexTransform incrementalIndexTransform =
+          IncrementalIndexTransform.builder()
+              .previousPath(previousHashPath)
+              .codec(options.getAvroCompressionType())
+              .create();
+
+      FsUtils.createIndexHashDirectory(options);
+
+      PCollectionTuple diff =
+          groupedCollection
+              .apply("Merging to json", gbifJsonTransform.indexDocHashConverter(esDocumentId))
+              .apply("Compare with the previous attempt", incrementalIndexTransform.diff());
+
+      log.info("Adding step 4: Elasticsearch incremental indexing");
+      diff.get(incrementalIndexTransform.getChangedTag()).apply("Index new and changed documents", esBulkIO);
+      diff.get(incrementalIndexTransform.getDeletedTag()).apply("Delete documents", esBulkIO.deletes());
+      diff.get(incrementalIndexTransform.getHashTag())
+          .apply("Write document hashes", incrementalIndexTransform.write(hashPath));
+    } else {
+      PCollection<KV<String, byte[]>> jsonCollection =
+          groupedCollection.apply("Merging to json", gbifJsonTransform.indexDocConverter(esDocumentId));
+
+      log.info("Adding step 4: Elasticsearch indexing");
+      jsonCollection.apply(esBulkIO);
+    }
 
     log.info("Running the pipeline");
     PipelineResult result = p.run();
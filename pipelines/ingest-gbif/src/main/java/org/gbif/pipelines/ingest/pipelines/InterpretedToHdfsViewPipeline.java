@@ -5,6 +5,8 @@ import java.util.Set;
 import java.util.function.UnaryOperator;
 
 import org.gbif.api.model.pipelines.StepType;
+import org.gbif.pipelines.common.PipelinesVariables.Pipeline.HdfsView;
+import org.gbif.pipelines.common.beam.ParquetSink;
 import org.gbif.pipelines.ingest.options.InterpretationPipelineOptions;
 import org.gbif.pipelines.ingest.options.PipelinesOptionsFactory;
 import org.gbif.pipelines.ingest.utils.FsUtils;
@@ -38,6 +40,7 @@ import org.gbif.pipelines.transforms.metadata.TaggedValuesTransform;
 
 import org.apache.beam.sdk.Pipeline;
 import org.apache.beam.sdk.PipelineResult;
+import org.apache.beam.sdk.io.FileIO;
 import org.apache.beam.sdk.transforms.ParDo.SingleOutput;
 import org.apache.beam.sdk.transforms.View;
 import org.apache.beam.sdk.transforms.join.CoGbkResult;
@@ -54,6 +57,7 @@ import lombok.extern.slf4j.Slf4j;
 
 import static org.gbif.pipelines.common.PipelinesVariables.Pipeline.AVRO_EXTENSION;
 import static org.gbif.pipelines.common.PipelinesVariables.Pipeline.Interpretation.RecordType.OCCURRENCE_HDFS_RECORD;
+import static org.gbif.pipelines.common.PipelinesVariables.Pipeline.PARQUET_EXTENSION;
 import static org.gbif.pipelines.ingest.utils.FsUtils.buildFilePathHdfsViewUsingInputPath;
 
 /**
@@ -71,7 +75,7 @@ import static org.gbif.pipelines.ingest.utils.FsUtils.buildFilePathHdfsViewUsing
  *      {@link TaxonRecord},
  *      {@link LocationRecord}
  *    2) Joins avro files
- *    3) Converts to a {@link OccurrenceHdfsRecord} based on the input files
+ *    3) Converts to a {@link OccurrenceHdfsRecord} based on the input files, writes avro or parquet files
  *    4) Moves the produced files to a directory where the latest version of HDFS records are kept
  * </pre>
  *
@@ -199,7 +203,7 @@ public class InterpretedToHdfsViewPipeline {
                 metadataView)
             .converter();
 
-    KeyedPCollectionTuple
+    PCollection<OccurrenceHdfsRecord> hdfsRecordCollection = KeyedPCollectionTuple
         // Core
         .of(basicTransform.getTag(), basicCollection)
         .and(temporalTransform.getTag(), temporalCollection)
@@ -215,8 +219,20 @@ public class InterpretedToHdfsViewPipeline {
         .and(verbatimTransform.getTag(), verbatimCollection)
         // Apply
         .apply("Grouping objects", CoGroupByKey.create())
-        .apply("Merging to HdfsRecord", toHdfsRecordDoFn)
-        .apply(OccurrenceHdfsRecordTransform.create().write(targetTempPath, numberOfShards));
+        .apply("Merging to HdfsRecord", toHdfsRecordDoFn);
+
+    if (FsUtils.isParquetHdfsView(options)) {
+      FileIO.Write<Void, OccurrenceHdfsRecord> write = FileIO.<OccurrenceHdfsRecord>write()
+          .via(createParquetSink(options))
+          .to(FsUtils.buildPathHdfsViewUsingInputPath(options))
+          .withPrefix(HdfsView.VIEW_OCCURRENCE + "_" + datasetId + '_' + attempt)
+          .withSuffix(PARQUET_EXTENSION);
+      hdfsRecordCollection.apply("Write parquet", numberOfShards == null ? write : write.withNumShards(numberOfShards));
+    } else {
+      OccurrenceHdfsRecordTransform hdfsRecordTransform = OccurrenceHdfsRecordTransform.create();
+      hdfsRecordTransform.setCodec(options.getAvroCompressionType());
+      hdfsRecordCollection.apply(hdfsRecordTransform.write(targetTempPath, numberOfShards));
+    }
 
     log.info("Running the pipeline");
     PipelineResult result = p.run();
@@ -231,4 +247,14 @@ public class InterpretedToHdfsViewPipeline {
     log.info("Pipeline has been finished");
   }
 
+  /** Parquet sink of the {@link OccurrenceHdfsRecord}, with the parquet settings of the options */
+  public static ParquetSink<OccurrenceHdfsRecord> createParquetSink(InterpretationPipelineOptions options) {
+    return ParquetSink.<OccurrenceHdfsRecord>create(OccurrenceHdfsRecord.getClassSchema())
+        .withCompressionCodec(options.getParquetCompressionType())
+        .withRowGroupSize(options.getParquetRowGroupSize())
+        .withPageSize(options.getParquetPageSize())
+        .withDictionaryPageSize(options.getParquetDictionaryPageSize())
+        .withDictionaryEncoding(options.isParquetDictionaryEnabled());
+  }
+
 }
@@ -92,6 +92,7 @@ public class VerbatimToInterpretedAmpPipeline {
         AmplificationTransform.builder()
             .clientSupplier(BlastServiceClientFactory.createSupplier(config.getAmplification()))
             .create();
+    amplificationTransform.setCodec(options.getAvroCompressionType());
 
     log.info("Adding pipeline transforms");
     p.apply("Read Verbatim", verbatimTransform.read(pathVerbatimFn))
@@ -2,23 +2,34 @@ package org.gbif.pipelines.ingest.pipelines;
 
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
 
 import org.gbif.api.model.pipelines.StepType;
+import org.gbif.pipelines.common.PipelinesVariables.Pipeline.Interpretation.RecordType;
+import org.gbif.pipelines.core.io.TermDictionaryEncoding;
 import org.gbif.pipelines.factory.GeocodeKvStoreFactory;
 import org.gbif.pipelines.factory.KeygenServiceFactory;
 import org.gbif.pipelines.factory.MetadataServiceClientFactory;
 import org.gbif.pipelines.factory.NameUsageMatchStoreFactory;
 import org.gbif.pipelines.ingest.options.InterpretationPipelineOptions;
 import org.gbif.pipelines.ingest.options.PipelinesOptionsFactory;
+import org.gbif.pipelines.ingest.utils.FingerprintUtils;
 import org.gbif.pipelines.ingest.utils.FsUtils;
 import org.gbif.pipelines.ingest.utils.MetricsHandler;
 import org.gbif.pipelines.io.avro.BasicRecord;
 import org.gbif.pipelines.io.avro.ExtendedRecord;
 import org.gbif.pipelines.io.avro.MetadataRecord;
+import org.gbif.pipelines.io.avro.RecordHash;
 import org.gbif.pipelines.parsers.config.model.PipelinesConfig;
+import org.gbif.pipelines.transforms.Transform;
 import org.gbif.pipelines.transforms.common.FilterExtendedRecordTransform;
+import org.gbif.pipelines.transforms.common.IncrementalTransform;
 import org.gbif.pipelines.transforms.common.UniqueGbifIdTransform;
 import org.gbif.pipelines.transforms.common.UniqueIdTransform;
 import org.gbif.pipelines.transforms.converters.OccurrenceExtensionTransform;
@@ -35,9 +46,17 @@ import org.gbif.pipelines.transforms.metadata.DefaultValuesTransform;
 import org.gbif.pipelines.transforms.metadata.MetadataTransform;
 import org.gbif.pipelines.transforms.metadata.TaggedValuesTransform;
 
+import org.apache.avro.specific.SpecificRecordBase;
 import org.apache.beam.sdk.Pipeline;
 import org.apache.beam.sdk.PipelineResult;
+import org.apache.beam.sdk.coders.StringUtf8Coder;
+import org.apache.beam.sdk.metrics.Counter;
+import org.apache.beam.sdk.metrics.Metrics;
 import org.apache.beam.sdk.transforms.Create;
+import org.apache.beam.sdk.transforms.DoFn;
+import org.apache.beam.sdk.transforms.Flatten;
+import org.apache.beam.sdk.transforms.Keys;
+import org.apache.beam.sdk.transforms.ParDo;
 import org.apache.beam.sdk.transforms.ParDo.SingleOutput;
 import org.apache.beam.sdk.transforms.View;
 import org.apache.beam.sdk.transforms.join.CoGbkResult;
@@ -45,6 +64,7 @@ import org.apache.beam.sdk.transforms.join.CoGroupByKey;
 import org.apache.beam.sdk.transforms.join.KeyedPCollectionTuple;
 import org.apache.beam.sdk.values.KV;
 import org.apache.beam.sdk.values.PCollection;
+import org.apache.beam.sdk.values.PCollectionList;
 import org.apache.beam.sdk.values.PCollectionTuple;
 import org.apache.beam.sdk.values.PCollectionView;
 import org.slf4j.MDC;
@@ -53,6 +73,10 @@ import lombok.AccessLevel;
 import lombok.NoArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
+import static org.gbif.pipelines.common.PipelinesVariables.Metrics.SKIPPED_TYPES_COUNT;
+import static org.gbif.pipelines.common.PipelinesVariables.Pipeline.AVRO_EXTENSION;
+import static org.gbif.pipelines.common.PipelinesVariables.Pipeline.Interpretation.RecordType.ALL;
+
 /**
  * Pipeline sequence:
  *
@@ -71,6 +95,13 @@ import lombok.extern.slf4j.Slf4j;
  *    3) Writes data to independent files
  * </pre>
  *
+ * <p>With --incrementalInterpretation=true and --interpretationTypes=ALL only new and changed records are interpreted,
+ * see {@link IncrementalTransform}, the records of unchanged ids are copied from the latest previous attempt.
+ *
+ * <p>With --interpretationFingerprintSkip=true and --interpretationTypes=ALL the record types with unchanged
+ * fingerprints are not interpreted, see {@link FingerprintUtils}, the records are copied from the latest previous
+ * attempt.
+ *
  * <p>How to run:
  *
  * <pre>{@code
@@ -104,8 +135,10 @@ public class VerbatimToInterpretedPipeline {
     String datasetId = options.getDatasetId();
     Integer attempt = options.getAttempt();
     Set<String> types = options.getInterpretationTypes();
+    Set<RecordType> skippedTypes = Collections.emptySet();
     String targetPath = options.getTargetPath();
     String hdfsSiteConfig = options.getHdfsSiteConfig();
+    int buckets = options.getInterpretationBuckets();
     PipelinesConfig config =
         FsUtils.readConfigFile(hdfsSiteConfig, options.getProperties(), PipelinesConfig.class);
 
@@ -167,6 +200,61 @@ public class VerbatimToInterpretedPipeline {
     // Extra
     UniqueGbifIdTransform gbifIdTransform = UniqueGbifIdTransform.create(options.isUseExtendedRecordId());
 
+    // Avro compression codec of all written record types
+    String codec = options.getAvroCompressionType();
+    Arrays.asList(metadataTransform, taggedValuesTransform, basicTransform, verbatimTransform, temporalTransform,
+        taxonomyTransform, locationTransform, measurementOrFactTransform, multimediaTransform, audubonTransform,
+        imageTransform).forEach(t -> t.setCodec(codec));
+
+    // Incremental interpretation, compares the records with the hash index of the previous attempt
+    Optional<String> codeVersion = IncrementalTransform.getCodeVersion();
+    Optional<String> lookupVersions = FingerprintUtils.getLookupVersions(config);
+    boolean incremental = options.isIncrementalInterpretation() && types.contains(ALL.name())
+        && codeVersion.isPresent() && lookupVersions.isPresent();
+    if (options.isIncrementalInterpretation() && !incremental) {
+      log.warn("Incremental interpretation is disabled, it needs all record types, the pipelines and lookup versions");
+    }
+    Optional<Integer> previousAttempt =
+        incremental ? FsUtils.getPreviousIncrementalAttempt(options) : Optional.empty();
+    previousAttempt.ifPresent(a -> log.info("Incremental interpretation, the previous attempt is {}", a));
+
+    // Skips the record types with unchanged fingerprints, the records are copied from the previous attempt
+    boolean fingerprintSkip = options.isInterpretationFingerprintSkip() && types.contains(ALL.name()) && !incremental;
+    Map<RecordType, String> fingerprints = Collections.emptyMap();
+    if (fingerprintSkip) {
+      MetadataTransform fingerprintMetadataTransform =
+          MetadataTransform.builder()
+              .clientSupplier(MetadataServiceClientFactory.createSupplier(config))
+              .attempt(attempt)
+              .endpointType(options.getEndPointType())
+              .create();
+      fingerprintMetadataTransform.setup();
+      MetadataRecord mdr = fingerprintMetadataTransform.convert(datasetId)
+          .orElseThrow(() -> new IllegalArgumentException("MetadataRecord can't be null"));
+      fingerprintMetadataTransform.tearDown();
+
+      fingerprints = FingerprintUtils.createFingerprints(options, config, mdr);
+      Optional<Integer> fingerprintAttempt = FingerprintUtils.getPreviousAttempt(options);
+      if (fingerprintAttempt.isPresent()) {
+        skippedTypes = FingerprintUtils.getUnchangedTypes(options, fingerprintAttempt.get(), fingerprints);
+        FingerprintUtils.copyRecords(options, fingerprintAttempt.get(), skippedTypes);
+        types = FingerprintUtils.getInterpretationTypes(skippedTypes);
+      } else {
+        log.info("All record types are interpreted, the dataset has no previous attempt with fingerprints");
+      }
+    }
+
+    IncrementalTransform incrementalTransform =
+        IncrementalTransform.builder()
+            .previousPath(previousAttempt.map(a -> FsUtils.buildPathInterpretUsingTargetPath(options, a)).orElse(null))
+            .version(codeVersion.orElse(null))
+            .lookups(lookupVersions.orElse(null))
+            .tripletValid(options.isTripletValid())
+            .occurrenceIdValid(options.isOccurrenceIdValid())
+            .useExtendedRecordId(options.isUseExtendedRecordId())
+            .codec(codec)
+            .create();
+
     log.info("Creating beam pipeline");
     // Create and write metadata
     PCollection<MetadataRecord> metadataRecord =
@@ -184,9 +272,15 @@ public class VerbatimToInterpretedPipeline {
     locationTransform.setMetadataView(metadataView);
     taggedValuesTransform.setMetadataView(metadataView);
 
+    // The verbatim can be written with a term dictionary encoding, see TermDictionaryEncoding
+    boolean termDictionary = !metadataTransform.metadataOnly(types)
+        && FsUtils.readAvroSchema(hdfsSiteConfig, options.getInputPath())
+        .map(TermDictionaryEncoding::isEncoded)
+        .orElse(false);
+
     PCollection<ExtendedRecord> uniqueRecords = metadataTransform.metadataOnly(types) ?
         verbatimTransform.emptyCollection(p) :
-        p.apply("Read ExtendedRecords", verbatimTransform.read(options.getInputPath()))
+        p.apply("Read ExtendedRecords", verbatimTransform.read(options.getInputPath(), termDictionary))
             .apply("Read occurrences from extension", OccurrenceExtensionTransform.create())
             .apply("Filter duplicates", UniqueIdTransform.create())
             .apply("Set default values",
@@ -195,9 +289,23 @@ public class VerbatimToInterpretedPipeline {
                     .datasetId(datasetId)
                     .create());
 
+    // Only new and changed records are interpreted, the previous records of all other ids are carried over
+    PCollectionTuple diffCollection = null;
+    PCollection<ExtendedRecord> changedRecords = uniqueRecords;
+    PCollection<String> replacedIds = null;
+    if (incremental) {
+      diffCollection = uniqueRecords.apply("Find changed records", incrementalTransform.diff(metadataView));
+      changedRecords = diffCollection.get(incrementalTransform.getChangedTag());
+      replacedIds = diffCollection.get(incrementalTransform.getReplacedTag());
+
+      diffCollection.get(incrementalTransform.getDeletedTag())
+          .apply("Write deleted ids to avro", incrementalTransform.writeDeleted(pathFn));
+    }
+
     PCollectionTuple basicCollection =
-        uniqueRecords.apply("Check basic transform condition", basicTransform.check(types))
+        changedRecords.apply("Check basic transform condition", basicTransform.check(types))
             .apply("Interpret basic", basicTransform.interpret())
+            .apply("Carry over basic", incrementalTransform.carryOver(basicTransform, replacedIds))
             .apply("Get invalid GBIF IDs", gbifIdTransform);
 
     // Filter record with identical GBIF ID
@@ -220,56 +328,107 @@ public class VerbatimToInterpretedPipeline {
             .apply("Grouping objects", CoGroupByKey.create())
             .apply("Filter verbatim", filterByGbifIdFn);
 
+    // Records of ids with valid GBIF ids, which have to be interpreted or carried over
+    PCollection<ExtendedRecord> interpretRecords = filteredUniqueRecords;
+    PCollection<String> notCarriedIds = null;
+    if (incremental) {
+      PCollection<String> invalidIds = uniqueBasicRecordsKv.apply("Get invalid ids", Keys.create());
+
+      interpretRecords = changedRecords.apply("Filter changed verbatim",
+          IncrementalTransform.filter(ExtendedRecord::getId, invalidIds, false));
+
+      // Records of ids with invalid GBIF ids are not interpreted, their previous records are not carried over either
+      notCarriedIds = PCollectionList.of(replacedIds).and(invalidIds)
+          .apply("Merge replaced and invalid ids", Flatten.pCollections());
+
+      // Ids with invalid GBIF ids are not in the index and will be interpreted by the next run again
+      diffCollection.get(incrementalTransform.getHashTag())
+          .apply("Filter hashes", IncrementalTransform.filter(RecordHash::getId, invalidIds, false))
+          .apply("Write hashes to avro", incrementalTransform.write(pathFn));
+    }
+
     // Interpret and write all record types
     basicCollection.get(gbifIdTransform.getTag())
-        .apply("Write basic to avro", basicTransform.write(pathFn));
+        .apply("Write basic to avro", basicTransform.write(pathFn, buckets));
 
     basicCollection.get(gbifIdTransform.getInvalidTag())
         .apply("Write invalid basic to avro", basicTransform.writeInvalid(pathFn));
 
     filteredUniqueRecords
         .apply("Check verbatim transform condition", verbatimTransform.check(types))
-        .apply("Write verbatim to avro", verbatimTransform.write(pathFn));
+        .apply("Write verbatim to avro", verbatimTransform.write(pathFn, buckets));
 
-    filteredUniqueRecords
+    interpretRecords
         .apply("Check tagged values transform condition", taggedValuesTransform.check(types))
         .apply("Interpret tagged values", taggedValuesTransform.interpret())
-        .apply("Write tagged values to avro", taggedValuesTransform.write(pathFn));
+        .apply("Carry over tagged values", incrementalTransform.carryOver(taggedValuesTransform, notCarriedIds))
+        .apply("Write tagged values to avro", taggedValuesTransform.write(pathFn, buckets));
 
-    filteredUniqueRecords
+    interpretRecords
         .apply("Check temporal transform condition", temporalTransform.check(types))
         .apply("Interpret temporal", temporalTransform.interpret())
-        .apply("Write temporal to avro", temporalTransform.write(pathFn));
+        .apply("Carry over temporal", incrementalTransform.carryOver(temporalTransform, notCarriedIds))
+        .apply("Write temporal to avro", temporalTransform.write(pathFn, buckets));
 
-    filteredUniqueRecords
+    interpretRecords
         .apply("Check multimedia transform condition", multimediaTransform.check(types))
         .apply("Interpret multimedia", multimediaTransform.interpret())
-        .apply("Write multimedia to avro", multimediaTransform.write(pathFn));
+        .apply("Carry over multimedia", incrementalTransform.carryOver(multimediaTransform, notCarriedIds))
+        .apply("Write multimedia to avro", multimediaTransform.write(pathFn, buckets));
 
-    filteredUniqueRecords
+    interpretRecords
         .apply("Check image transform condition", imageTransform.check(types))
         .apply("Interpret image", imageTransform.interpret())
-        .apply("Write image to avro", imageTransform.write(pathFn));
+        .apply("Carry over image", incrementalTransform.carryOver(imageTransform, notCarriedIds))
+        .apply("Write image to avro", imageTransform.write(pathFn, buckets));
 
-    filteredUniqueRecords
+    interpretRecords
         .apply("Check audubon transform condition", audubonTransform.check(types))
         .apply("Interpret audubon", audubonTransform.interpret())
-        .apply("Write audubon to avro", audubonTransform.write(pathFn));
+        .apply("Carry over audubon", incrementalTransform.carryOver(audubonTransform, notCarriedIds))
+        .apply("Write audubon to avro", audubonTransform.write(pathFn, buckets));
 
-    filteredUniqueRecords
+    interpretRecords
         .apply("Check measurement transform condition", measurementOrFactTransform.check(types))
         .apply("Interpret measurement", measurementOrFactTransform.interpret())
-        .apply("Write measurement to avro", measurementOrFactTransform.write(pathFn));
+        .apply("Carry over measurement", incrementalTransform.carryOver(measurementOrFactTransform, notCarriedIds))
+        .apply("Write measurement to avro", measurementOrFactTransform.write(pathFn, buckets));
 
-    filteredUniqueRecords
+    interpretRecords
         .apply("Check taxonomy transform condition", taxonomyTransform.check(types))
         .apply("Interpret taxonomy", taxonomyTransform.interpret())
-        .apply("Write taxon to avro", taxonomyTransform.write(pathFn));
+        .apply("Carry over taxonomy", incrementalTransform.carryOver(taxonomyTransform, notCarriedIds))
+        .apply("Write taxon to avro", taxonomyTransform.write(pathFn, buckets));
 
-    filteredUniqueRecords
+    interpretRecords
         .apply("Check location transform condition", locationTransform.check(types))
         .apply("Interpret location", locationTransform.interpret())
-        .apply("Write location to avro", locationTransform.write(pathFn));
+        .apply("Carry over location", incrementalTransform.carryOver(locationTransform, notCarriedIds))
+        .apply("Write location to avro", locationTransform.write(pathFn, buckets));
+
+    // Counts the copied records of the skipped types with the counters of the interpreted records
+    UnaryOperator<String> skippedPathFn =
+        t -> FsUtils.buildPathInterpretUsingTargetPath(options, t, "*" + AVRO_EXTENSION);
+    for (Transform<?, ?> transform : Arrays.asList(verbatimTransform, taggedValuesTransform, basicTransform,
+        temporalTransform, multimediaTransform, imageTransform, audubonTransform, measurementOrFactTransform,
+        taxonomyTransform, locationTransform)) {
+      if (skippedTypes.stream().anyMatch(type -> type.name().toLowerCase().equals(transform.getBaseName()))) {
+        countSkipped(p, transform, skippedPathFn);
+      }
+    }
+
+    if (!skippedTypes.isEmpty()) {
+      p.apply("Create skipped types", Create.of(skippedTypes.stream().map(Enum::name).collect(Collectors.toList()))
+          .withCoder(StringUtf8Coder.of()))
+          .apply("Count skipped types", ParDo.of(new DoFn<String, Void>() {
+            private final Counter counter = Metrics.counter(VerbatimToInterpretedPipeline.class, SKIPPED_TYPES_COUNT);
+
+            @ProcessElement
+            public void processElement(ProcessContext c) {
+              counter.inc();
+            }
+          }));
+    }
 
     log.info("Running the pipeline");
     PipelineResult result = p.run();
@@ -277,10 +436,29 @@ public class VerbatimToInterpretedPipeline {
 
     MetricsHandler.saveCountersToTargetPathFile(options, result.metrics());
 
+    if (fingerprintSkip) {
+      FingerprintUtils.writeFingerprints(options, fingerprints);
+    }
+
+    if (options.getAvroCompactionFileThreshold() > 0) {
+      FsUtils.compactInterpreted(options);
+    }
+    if (options.isAvroIdIndex()) {
+      FsUtils.writeInterpretedIndexes(options);
+    }
+
     log.info("Deleting beam temporal folders");
     String tempPath = String.join("/", targetPath, datasetId, attempt.toString());
     FsUtils.deleteDirectoryByPrefix(hdfsSiteConfig, tempPath, ".temp-beam");
 
     log.info("Pipeline has been finished");
   }
+
+  /** Reads and counts the records of a skipped type, copied from the previous attempt */
+  private static <T extends SpecificRecordBase> void countSkipped(Pipeline p, Transform<?, T> transform,
+      UnaryOperator<String> pathFn) {
+    String name = transform.getBaseName();
+    p.apply("Read skipped " + name, transform.read(pathFn))
+        .apply("Count skipped " + name, transform.count());
+  }
 }
@@ -60,11 +60,14 @@ public class XmlToVerbatimPipeline {
     log.info("Adding step 1: Options");
     String targetPath = FsUtils.buildDatasetAttemptPath(options, Conversion.FILE_NAME, false);
 
+    VerbatimTransform verbatimTransform = VerbatimTransform.create();
+    verbatimTransform.setCodec(options.getAvroCompressionType());
+
     log.info("Adding step 2: Pipeline steps");
     Pipeline p = Pipeline.create(options);
 
     p.apply("Read ExtendedRecords", XmlIO.read(options.getInputPath()))
-        .apply("Write to avro", VerbatimTransform.create().write(targetPath).withoutSharding());
+        .apply("Write to avro", verbatimTransform.write(targetPath).withoutSharding());
 
     log.info("Running the pipeline");
     PipelineResult result = p.run();
@@ -0,0 +1,231 @@
+package org.gbif.pipelines.ingest.utils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.gbif.pipelines.core.utils.AvroCodecUtils;
+import org.gbif.pipelines.ingest.io.AvroRecordIndex;
+
+import org.apache.avro.Schema;
+import org.apache.avro.file.DataFileConstants;
+import org.apache.avro.file.DataFileStream;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.hadoop.fs.Path;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import static org.gbif.pipelines.common.PipelinesVariables.Pipeline.AVRO_EXTENSION;
+
+/**
+ * Merges small avro files of a record type directory, like {@code .../interpreted/basic}, into files of a target size.
+ * The avro blocks are appended as they are, the records are not decoded and encoded again, a block is only recompressed
+ * if the codecs of the files differ.
+ *
+ * <p>The merged files are written to the hidden directory ".{name}-compacted" next to the directory and swapped in by
+ * two renames, the directory is moved to ".{name}-original" and the merged directory takes its place. Other files of
+ * the directory are copied to the merged directory, so the directory stays complete until the swap. A swap, which was
+ * interrupted between the renames, is completed by the next compaction of the directory.
+ *
+ * <p>Directories with bucketed files, see SortedBucketIO, or files of different schemas are not compacted.
+ */
+@Slf4j
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class CompactionUtils {
+
+  private static final Pattern BUCKET_PATTERN = Pattern.compile(".*-bucket-\\d{5}-of-\\d{5}" + AVRO_EXTENSION);
+  private static final String COMPACTED_FORMAT = "compacted-%05d" + AVRO_EXTENSION;
+  private static final String COMPACTED_SUFFIX = "-compacted";
+  private static final String ORIGINAL_SUFFIX = "-original";
+
+  /**
+   * Compacts every record type directory of the directory, like {@code .../{attempt}/interpreted}, which has more
+   * avro files than the threshold
+   *
+   * @param fileThreshold minimum number of files to compact a directory
+   * @param targetSize target size of a merged file in bytes, like the HDFS block size
+   */
+  public static void compactAll(FileSystem fs, Path directory, int fileThreshold, long targetSize) throws IOException {
+    if (!fs.exists(directory)) {
+      return;
+    }
+    for (FileStatus status : fs.listStatus(directory)) {
+      String name = status.getPath().getName();
+      if (status.isDirectory() && !name.startsWith(".") && !name.startsWith("_")) {
+        compact(fs, status.getPath(), fileThreshold, targetSize);
+      } else if (status.isDirectory() && name.startsWith(".") && name.endsWith(COMPACTED_SUFFIX)) {
+        // the directory of an interrupted swap is missing
+        Path path = new Path(directory, name.substring(1, name.length() - COMPACTED_SUFFIX.length()));
+        if (!fs.exists(path)) {
+          compact(fs, path, fileThreshold, targetSize);
+        }
+      }
+    }
+  }
+
+  /**
+   * Compacts the avro files of the directory, if it has more files than the threshold and the files are smaller than
+   * the target size on average
+   *
+   * @param fileThreshold minimum number of files to compact the directory
+   * @param targetSize target size of a merged file in bytes, like the HDFS block size
+   * @return true if the directory was compacted
+   */
+  public static boolean compact(FileSystem fs, Path directory, int fileThreshold, long targetSize)
+      throws IOException {
+    Path compacted = sibling(directory, COMPACTED_SUFFIX);
+    Path original = sibling(directory, ORIGINAL_SUFFIX);
+    recover(fs, directory, compacted, original);
+
+    List<FileStatus> files = listAvroFiles(fs, directory);
+    long size = files.stream().mapToLong(FileStatus::getLen).sum();
+    if (files.size() <= fileThreshold || files.size() < 2 || size / files.size() >= targetSize / 2) {
+      return false;
+    }
+    if (files.stream().anyMatch(f -> BUCKET_PATTERN.matcher(f.getPath().getName()).matches())) {
+      log.info("Skipping the compaction of {}, the files are bucketed", directory);
+      return false;
+    }
+
+    if (!merge(fs, files, compacted, targetSize)) {
+      fs.delete(compacted, true);
+      return false;
+    }
+
+    // other files of the directory are copied, not moved, an interrupted compaction deletes the merged directory
+    // the id index of the old files is out of date
+    for (FileStatus status : fs.listStatus(directory)) {
+      String name = status.getPath().getName();
+      if (!name.endsWith(AVRO_EXTENSION) && !name.equals(AvroRecordIndex.INDEX_FILE_NAME)
+          && !FileUtil.copy(fs, status.getPath(), fs, new Path(compacted, name), false, fs.getConf())) {
+        throw new IOException("Unable to copy " + status.getPath() + " to the compacted directory " + compacted);
+      }
+    }
+
+    // swap the directories
+    if (!fs.rename(directory, original) || !fs.rename(compacted, directory)) {
+      throw new IOException("Unable to swap the compacted directory " + compacted + " with " + directory);
+    }
+    fs.delete(original, true);
+
+    log.info("Compacted {} files of {} into {} files", files.size(), directory, listAvroFiles(fs, directory).size());
+    return true;
+  }
+
+  /**
+   * Appends the blocks of the files to the merged files of the target size
+   *
+   * @return false if the files can't be merged
+   */
+  private static boolean merge(FileSystem fs, List<FileStatus> files, Path compacted, long targetSize)
+      throws IOException {
+    fs.delete(compacted, true);
+    fs.mkdirs(compacted);
+
+    String prefix = filePrefix(files.get(0).getPath().getName());
+    Schema schema = null;
+    String codec = null;
+    DataFileWriter<GenericRecord> writer = null;
+    long written = 0;
+    int fileNumber = 0;
+
+    try {
+      for (FileStatus file : files) {
+        try (FSDataInputStream in = fs.open(file.getPath());
+            DataFileStream<GenericRecord> stream = new DataFileStream<>(in, new GenericDatumReader<>())) {
+
+          if (schema == null) {
+            schema = stream.getSchema();
+            codec = getCodec(stream);
+          } else if (!schema.equals(stream.getSchema())) {
+            log.warn("Skipping the compaction of {}, the files have different schemas", file.getPath().getParent());
+            return false;
+          }
+
+          // a merged file does not exceed the target size, unless a file is larger than it
+          if (writer == null || (written > 0 && written + file.getLen() > targetSize)) {
+            if (writer != null) {
+              writer.close();
+            }
+            Path path = new Path(compacted, prefix + String.format(COMPACTED_FORMAT, fileNumber++));
+            writer = new DataFileWriter<>(new GenericDatumWriter<GenericRecord>(schema));
+            writer.setCodec(AvroCodecUtils.fromString(codec));
+            copyMetadata(stream, writer);
+            writer.create(schema, fs.create(path));
+            written = 0;
+          }
+
+          writer.appendAllFrom(stream, !codec.equals(getCodec(stream)));
+          writer.flush();
+          written += file.getLen();
+        }
+      }
+    } finally {
+      if (writer != null) {
+        writer.close();
+      }
+    }
+    return true;
+  }
+
+  /** Completes or rolls back a swap, which was interrupted */
+  private static void recover(FileSystem fs, Path directory, Path compacted, Path original) throws IOException {
+    if (!fs.exists(directory) && fs.exists(compacted) && fs.exists(original)) {
+      log.warn("Completing the interrupted compaction of {}", directory);
+      fs.rename(compacted, directory);
+    }
+    if (fs.exists(directory)) {
+      fs.delete(original, true);
+      fs.delete(compacted, true);
+    }
+  }
+
+  private static List<FileStatus> listAvroFiles(FileSystem fs, Path directory) throws IOException {
+    List<FileStatus> result = new ArrayList<>();
+    if (!fs.exists(directory)) {
+      return result;
+    }
+    for (FileStatus status : fs.listStatus(directory)) {
+      if (status.isFile() && status.getPath().getName().endsWith(AVRO_EXTENSION)) {
+        result.add(status);
+      }
+    }
+    result.sort(Comparator.comparing(s -> s.getPath().getName()));
+    return result;
+  }
+
+  /** Keeps the file name prefix, like "interpret-", the patterns of the readers rely on it */
+  private static String filePrefix(String name) {
+    int index = name.indexOf('-');
+    return index > 0 ? name.substring(0, index + 1) : "";
+  }
+
+  private static String getCodec(DataFileStream<?> stream) {
+    String codec = stream.getMetaString(DataFileConstants.CODEC);
+    return codec == null ? DataFileConstants.NULL_CODEC : codec;
+  }
+
+  /** Copies the user metadata, the avro metadata is written by the writer */
+  private static void copyMetadata(DataFileStream<?> stream, DataFileWriter<?> writer) {
+    for (String key : stream.getMetaKeys()) {
+      if (!key.startsWith("avro.")) {
+        writer.setMeta(key, stream.getMeta(key));
+      }
+    }
+  }
+
+  private static Path sibling(Path directory, String suffix) {
+    return new Path(directory.getParent(), "." + directory.getName() + suffix);
+  }
+}
@@ -8,6 +8,7 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 import org.gbif.pipelines.estools.EsIndex;
@@ -153,12 +154,36 @@ public class EsIndexUtils {
    * dataset was present
    */
   public static Set<String> deleteRecordsByDatasetId(EsIndexingPipelineOptions options) {
+    return deleteRecordsByDatasetId(options, idxName -> !idxName.startsWith(options.getDatasetId()));
+  }
+
+  /**
+   * Connects to Elasticsearch instance and deletes records by datasetId in all indexes except the index of the options,
+   * where the incremental indexing deletes the records by id, and returns the indexes where the dataset was present
+   */
+  public static Set<String> deleteRecordsByDatasetIdInOtherIndexes(EsIndexingPipelineOptions options) {
+    return deleteRecordsByDatasetId(options,
+        idxName -> !idxName.startsWith(options.getDatasetId()) && !idxName.equals(options.getEsIndexName()));
+  }
+
+  /** Incremental indexing is used only for a default/regular index, an independent index is always created anew */
+  public static boolean isIncrementalIndexing(EsIndexingPipelineOptions options) {
+    return options.isEsIncrementalIndexing() && !options.getEsIndexName().startsWith(options.getDatasetId());
+  }
+
+  /** Partial update changes only the fields of the reinterpreted record types in the existing index */
+  public static boolean isPartialUpdate(EsIndexingPipelineOptions options) {
+    return options.getEsPartialUpdateTypes() != null && !options.getEsPartialUpdateTypes().isEmpty();
+  }
+
+  private static Set<String> deleteRecordsByDatasetId(EsIndexingPipelineOptions options,
+      Predicate<String> indexesToDelete) {
     EsConfig config = EsConfig.from(options.getEsHosts());
     return EsIndex.deleteRecordsByDatasetId(
         config,
         options.getEsAlias(),
         options.getDatasetId(),
-        idxName -> !idxName.startsWith(options.getDatasetId()),
+        indexesToDelete,
         options.getSearchQueryTimeoutSec(),
         options.getSearchQueryAttempts()
     );
@@ -0,0 +1,462 @@
+package org.gbif.pipelines.ingest.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.gbif.pipelines.common.PipelinesVariables.Metrics;
+import org.gbif.pipelines.common.PipelinesVariables.Pipeline.Interpretation.RecordType;
+import org.gbif.pipelines.core.utils.AvroCodecUtils;
+import org.gbif.pipelines.core.utils.HashUtils;
+import org.gbif.pipelines.ingest.io.AvroRecordIndex;
+import org.gbif.pipelines.ingest.options.InterpretationPipelineOptions;
+import org.gbif.pipelines.io.avro.MetadataRecord;
+import org.gbif.pipelines.parsers.config.model.KeygenConfig;
+import org.gbif.pipelines.parsers.config.model.KvConfig;
+import org.gbif.pipelines.parsers.config.model.PipelinesConfig;
+import org.gbif.pipelines.transforms.common.IncrementalTransform;
+
+import org.apache.avro.Schema;
+import org.apache.avro.file.DataFileConstants;
+import org.apache.avro.file.DataFileStream;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.commons.io.IOUtils;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.hadoop.fs.Path;
+
+import com.google.common.io.BaseEncoding;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+
+import static org.gbif.pipelines.common.PipelinesVariables.Pipeline.ARCHIVE_TO_VERBATIM;
+import static org.gbif.pipelines.common.PipelinesVariables.Pipeline.AVRO_EXTENSION;
+import static org.gbif.pipelines.common.PipelinesVariables.Pipeline.Interpretation.FINGERPRINT_DIRECTORY_NAME;
+import static org.gbif.pipelines.common.PipelinesVariables.Pipeline.Interpretation.RecordType.AUDUBON;
+import static org.gbif.pipelines.common.PipelinesVariables.Pipeline.Interpretation.RecordType.BASIC;
+import static org.gbif.pipelines.common.PipelinesVariables.Pipeline.Interpretation.RecordType.IMAGE;
+import static org.gbif.pipelines.common.PipelinesVariables.Pipeline.Interpretation.RecordType.LOCATION;
+import static org.gbif.pipelines.common.PipelinesVariables.Pipeline.Interpretation.RecordType.MEASUREMENT_OR_FACT;
+import static org.gbif.pipelines.common.PipelinesVariables.Pipeline.Interpretation.RecordType.METADATA;
+import static org.gbif.pipelines.common.PipelinesVariables.Pipeline.Interpretation.RecordType.MULTIMEDIA;
+import static org.gbif.pipelines.common.PipelinesVariables.Pipeline.Interpretation.RecordType.TAGGED_VALUES;
+import static org.gbif.pipelines.common.PipelinesVariables.Pipeline.Interpretation.RecordType.TAXONOMY;
+import static org.gbif.pipelines.common.PipelinesVariables.Pipeline.Interpretation.RecordType.TEMPORAL;
+import static org.gbif.pipelines.common.PipelinesVariables.Pipeline.Interpretation.RecordType.VERBATIM;
+
+/**
+ * Fingerprints of the interpreted record types of a dataset. The fingerprint of a type is a hash of everything used
+ * by the interpretation of the type: the verbatim records, the code version, the interpretation options, the dataset
+ * metadata and the versions of the lookups of the type, like the backbone version of the taxonomy. The fingerprints
+ * of an attempt are stored in "{targetPath}/{datasetId}/{attempt}/interpreted/fingerprint/{type}" and the
+ * interpretation of a type can be skipped, if its fingerprint is equal to the fingerprint of the previous attempt.
+ *
+ * <p>The verbatim records are identified by the content hash of the conversion, written with the number of records
+ * into the conversion metadata, see {@link Metrics#ARCHIVE_TO_ER_HASH}, so the verbatim files are not read. Verbatim
+ * files converted without a content hash are hashed block by block.
+ *
+ * <p>The records of skipped types are copied from the previous attempt with the time of the interpretation as
+ * "created" timestamp, like the records copied by the incremental interpretation, see {@link IncrementalTransform}.
+ *
+ * <p>Metadata is always interpreted, the crawl values of the metadata are different for every attempt, and basic
+ * records can be skipped only if all types are skipped, because all other types are filtered by the GBIF ids of the
+ * basic interpretation.
+ *
+ * <p>Anything unknown is treated as changed: without a pipelines version, like outside a packaged jar, there are no
+ * fingerprints and a type with a key-value store without a version, see {@link KvConfig#getVersion()}, has no
+ * fingerprint, so the types are always interpreted.
+ */
+@Slf4j
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class FingerprintUtils {
+
+  /** Interpreted record types with fingerprints */
+  public static final Set<RecordType> TYPES = Collections.unmodifiableSet(EnumSet.of(VERBATIM, TAGGED_VALUES, BASIC,
+      TEMPORAL, LOCATION, TAXONOMY, IMAGE, MULTIMEDIA, AUDUBON, MEASUREMENT_OR_FACT));
+
+  private static final String SEPARATOR = "|";
+  private static final String CREATED_FIELD = "created";
+  private static final String CONVERSION_METADATA = ARCHIVE_TO_VERBATIM + ".yml";
+
+  /**
+   * Creates the fingerprints of the {@link #TYPES} with known lookups
+   *
+   * @param config lookups configuration
+   * @param mdr interpreted metadata of the dataset
+   * @return fingerprints, empty if the pipelines version is unknown
+   */
+  public static Map<RecordType, String> createFingerprints(InterpretationPipelineOptions options,
+      PipelinesConfig config, MetadataRecord mdr) {
+    Optional<String> version = IncrementalTransform.getCodeVersion();
+    if (!version.isPresent()) {
+      log.info("All record types are interpreted, the pipelines version is unknown");
+      return Collections.emptyMap();
+    }
+    String base = String.join(SEPARATOR,
+        IncrementalTransform.createSeed(mdr, version.get(), "", options.isTripletValid(),
+            options.isOccurrenceIdValid(), options.isUseExtendedRecordId()),
+        String.valueOf(options.getInterpretationBuckets()),
+        getVerbatimHash(options.getHdfsSiteConfig(), options.getInputPath()));
+    return createFingerprints(base, config);
+  }
+
+  /**
+   * Creates the fingerprints of the {@link #TYPES}, a type with an unknown lookup version has no fingerprint
+   *
+   * @param base hash of everything used by all types
+   */
+  static Map<RecordType, String> createFingerprints(String base, PipelinesConfig config) {
+    Map<RecordType, String> fingerprints = new EnumMap<>(RecordType.class);
+    for (RecordType type : TYPES) {
+      Optional<String> lookups = getLookupVersions(type, config);
+      if (lookups.isPresent()) {
+        fingerprints.put(type, HashUtils.getSha1(String.join(SEPARATOR, base, type.name(), lookups.get())));
+      } else {
+        log.info("Record type {} is interpreted, the version of its lookup is unknown", type);
+      }
+    }
+    return fingerprints;
+  }
+
+  /**
+   * Identity of the lookups used by the interpretation of a record type, like the table and the backbone version of
+   * the name usage match store
+   *
+   * @return identity, empty if a key-value store of the type has no version
+   */
+  public static Optional<String> getLookupVersions(RecordType type, PipelinesConfig config) {
+    if (type == TAXONOMY) {
+      return getKvLookup(config.getNameUsageMatch());
+    }
+    if (type == LOCATION) {
+      return getKvLookup(config.getGeocode());
+    }
+    if (type == BASIC) {
+      KeygenConfig keygen = config.getKeygen();
+      return Optional.of(keygen == null ? "" :
+          String.join(SEPARATOR, String.valueOf(keygen.getOccurrenceTable()), String.valueOf(keygen.getLookupTable())));
+    }
+    return Optional.of("");
+  }
+
+  /**
+   * Identity of the lookups used by the interpretation of all record types
+   *
+   * @return identity, empty if the lookup version of any type is unknown
+   */
+  public static Optional<String> getLookupVersions(PipelinesConfig config) {
+    StringBuilder builder = new StringBuilder();
+    for (RecordType type : TYPES) {
+      Optional<String> lookups = getLookupVersions(type, config);
+      if (!lookups.isPresent()) {
+        return Optional.empty();
+      }
+      builder.append(type.name()).append(SEPARATOR).append(lookups.get()).append(SEPARATOR);
+    }
+    return Optional.of(builder.toString());
+  }
+
+  /**
+   * Finds the latest previous attempt with fingerprints, see {@link FsUtils#getPreviousInterpretedAttempt}
+   *
+   * @return previous attempt or empty, if the dataset has no previous interpretation with fingerprints
+   */
+  public static Optional<Integer> getPreviousAttempt(InterpretationPipelineOptions options) {
+    return FsUtils.getPreviousInterpretedAttempt(options, FINGERPRINT_DIRECTORY_NAME);
+  }
+
+  /**
+   * Compares the fingerprints with the fingerprints of the previous attempt and logs the decision for every type
+   *
+   * @param previousAttempt attempt with fingerprints, see {@link #getPreviousAttempt}
+   * @param fingerprints fingerprints of the current attempt
+   * @return types, which don't have to be interpreted again
+   */
+  public static Set<RecordType> getUnchangedTypes(InterpretationPipelineOptions options, Integer previousAttempt,
+      Map<RecordType, String> fingerprints) {
+    String previousPath = FsUtils.buildPathInterpretUsingTargetPath(options, previousAttempt);
+    FileSystem fs = FsUtils.getFileSystem(options.getHdfsSiteConfig(), previousPath);
+    return getUnchangedTypes(fs, previousPath, previousAttempt, fingerprints);
+  }
+
+  /** @param previousPath interpretation directory of the previous attempt */
+  static Set<RecordType> getUnchangedTypes(FileSystem fs, String previousPath, Integer previousAttempt,
+      Map<RecordType, String> fingerprints) {
+    Set<RecordType> unchanged = EnumSet.noneOf(RecordType.class);
+    fingerprints.forEach((type, fingerprint) -> {
+      Optional<String> previous = readFingerprint(fs, previousPath, type);
+      if (!previous.isPresent()) {
+        log.info("Record type {} is interpreted, attempt {} has no fingerprint of the type", type, previousAttempt);
+      } else if (!previous.get().equals(fingerprint)) {
+        log.info("Record type {} is interpreted, the fingerprint of attempt {} is different", type, previousAttempt);
+      } else if (!exists(fs, String.join(Path.SEPARATOR, previousPath, type.name().toLowerCase()))) {
+        log.info("Record type {} is interpreted, attempt {} has no records of the type", type, previousAttempt);
+      } else {
+        unchanged.add(type);
+      }
+    });
+
+    // a type without a fingerprint is interpreted as well
+    if (unchanged.contains(BASIC) && !unchanged.containsAll(TYPES)) {
+      log.info("Record type {} is interpreted, the GBIF ids of the basic records filter the changed types", BASIC);
+      unchanged.remove(BASIC);
+    }
+    unchanged.forEach(type -> log.info("Record type {} is skipped, the fingerprint of attempt {} is equal", type,
+        previousAttempt));
+    return unchanged;
+  }
+
+  /**
+   * Interpretation types of the pipeline, metadata and the types with changed fingerprints
+   *
+   * @param unchangedTypes types, which are not interpreted, see {@link #getUnchangedTypes}
+   */
+  public static Set<String> getInterpretationTypes(Set<RecordType> unchangedTypes) {
+    Set<String> types = new TreeSet<>();
+    types.add(METADATA.name());
+    TYPES.stream().filter(type -> !unchangedTypes.contains(type)).forEach(type -> types.add(type.name()));
+    return types;
+  }
+
+  /**
+   * Copies the records of the types from the previous attempt into the current attempt, the basic records with
+   * invalid GBIF ids are copied with the basic records. The "created" timestamp of the records is set to the current
+   * time and the id indexes aren't copied, because the offsets of the rewritten files change, see {@link
+   * AvroRecordIndex}.
+   *
+   * @param previousAttempt attempt with the same fingerprints of the types
+   * @param types record types to copy
+   */
+  @SneakyThrows
+  public static void copyRecords(InterpretationPipelineOptions options, Integer previousAttempt,
+      Set<RecordType> types) {
+    String previousPath = FsUtils.buildPathInterpretUsingTargetPath(options, previousAttempt);
+    String currentPath = FsUtils.buildPathInterpretUsingTargetPath(options, options.getAttempt());
+    FileSystem fs = FsUtils.getFileSystem(options.getHdfsSiteConfig(), currentPath);
+    copyRecords(fs, previousPath, currentPath, types, System.currentTimeMillis());
+  }
+
+  /**
+   * @param previousPath interpretation directory of the previous attempt
+   * @param currentPath interpretation directory of the current attempt
+   * @param created "created" timestamp of the copied records
+   */
+  static void copyRecords(FileSystem fs, String previousPath, String currentPath, Set<RecordType> types,
+      long created) throws IOException {
+    fs.mkdirs(new Path(currentPath));
+
+    for (RecordType type : types) {
+      String name = type.name().toLowerCase();
+      for (String dir : Arrays.asList(name, name + "_invalid")) {
+        Path from = new Path(previousPath, dir);
+        if (fs.exists(from)) {
+          log.info("Copy records from {} into {}", from, currentPath);
+          copyDirectory(fs, from, new Path(currentPath, dir), created);
+        }
+      }
+    }
+  }
+
+  /** Rewrites the avro files of a record type with a new "created" timestamp and copies the other files */
+  private static void copyDirectory(FileSystem fs, Path from, Path to, long created) throws IOException {
+    fs.mkdirs(to);
+    for (FileStatus status : fs.listStatus(from)) {
+      String name = status.getPath().getName();
+      if (name.equals(AvroRecordIndex.INDEX_FILE_NAME)) {
+        continue;
+      }
+      Path target = new Path(to, name);
+      if (!status.isFile() || !name.endsWith(AVRO_EXTENSION) || !copyAvro(fs, status.getPath(), target, created)) {
+        FileUtil.copy(fs, status.getPath(), fs, target, false, fs.getConf());
+      }
+    }
+  }
+
+  /**
+   * Writes the records of an avro file with a new "created" timestamp, keeping the schema, the codec and the user
+   * metadata of the file
+   *
+   * @return false if the records have no "created" timestamp and the file wasn't written
+   */
+  private static boolean copyAvro(FileSystem fs, Path from, Path to, long created) throws IOException {
+    try (InputStream is = fs.open(from);
+        DataFileStream<GenericRecord> reader = new DataFileStream<>(is, new GenericDatumReader<>())) {
+      Schema schema = reader.getSchema();
+      Schema.Field field = schema.getField(CREATED_FIELD);
+      if (field == null) {
+        return false;
+      }
+
+      try (DataFileWriter<GenericRecord> writer = new DataFileWriter<>(new GenericDatumWriter<>(schema))) {
+        String codec = reader.getMetaString(DataFileConstants.CODEC);
+        writer.setCodec(AvroCodecUtils.fromString(codec == null ? DataFileConstants.NULL_CODEC : codec));
+        for (String key : reader.getMetaKeys()) {
+          if (!key.startsWith("avro.")) {
+            writer.setMeta(key, reader.getMeta(key));
+          }
+        }
+        writer.create(schema, fs.create(to, true));
+
+        GenericRecord record = null;
+        while (reader.hasNext()) {
+          record = reader.next(record);
+          record.put(field.pos(), created);
+          writer.append(record);
+        }
+      }
+      return true;
+    }
+  }
+
+  /** Writes the fingerprints of the current attempt, must be called after a successful interpretation */
+  @SneakyThrows
+  public static void writeFingerprints(InterpretationPipelineOptions options, Map<RecordType, String> fingerprints) {
+    String interpretedPath = FsUtils.buildPathInterpretUsingTargetPath(options, options.getAttempt());
+    writeFingerprints(FsUtils.getFileSystem(options.getHdfsSiteConfig(), interpretedPath), interpretedPath,
+        fingerprints);
+  }
+
+  /** @param interpretedPath interpretation directory of the attempt */
+  static void writeFingerprints(FileSystem fs, String interpretedPath, Map<RecordType, String> fingerprints)
+      throws IOException {
+    String path = String.join(Path.SEPARATOR, interpretedPath, FINGERPRINT_DIRECTORY_NAME);
+    for (Map.Entry<RecordType, String> entry : fingerprints.entrySet()) {
+      Path file = new Path(path, entry.getKey().name().toLowerCase());
+      try (FSDataOutputStream stream = fs.create(file, true)) {
+        stream.write(entry.getValue().getBytes(StandardCharsets.UTF_8));
+      }
+    }
+    log.info("Fingerprints were written to {}", path);
+  }
+
+  /**
+   * Identity of the verbatim records, the number of records and the content hash of the conversion, read from the
+   * conversion metadata next to the verbatim file, or a hash of the avro blocks, if the verbatim was converted without
+   * a content hash
+   */
+  @SneakyThrows
+  private static String getVerbatimHash(String hdfsSiteConfig, String inputPath) {
+    FileSystem fs = FsUtils.getFileSystem(hdfsSiteConfig, inputPath);
+    FileStatus[] statuses = Optional.ofNullable(fs.globStatus(new Path(inputPath))).orElse(new FileStatus[0]);
+    if (statuses.length == 0) {
+      throw new IllegalArgumentException("Verbatim files don't exist - " + inputPath);
+    }
+
+    if (statuses.length == 1) {
+      Optional<String> hash = readConversionHash(fs, new Path(statuses[0].getPath().getParent(), CONVERSION_METADATA));
+      if (hash.isPresent()) {
+        return hash.get();
+      }
+    }
+    log.info("The verbatim {} has no content hash of the conversion, the avro blocks are hashed", inputPath);
+    return getBlockHash(fs, statuses);
+  }
+
+  /**
+   * Number of records and the content hash of the conversion, see {@link Metrics#ARCHIVE_TO_ER_HASH}
+   *
+   * @param metadataPath yaml file of the conversion
+   * @return identity, empty if the conversion didn't write a content hash
+   */
+  static Optional<String> readConversionHash(FileSystem fs, Path metadataPath) throws IOException {
+    if (!fs.exists(metadataPath)) {
+      return Optional.empty();
+    }
+    List<String> lines;
+    try (InputStream is = fs.open(metadataPath)) {
+      lines = IOUtils.readLines(is, StandardCharsets.UTF_8);
+    }
+    Optional<String> hash = getValue(lines, Metrics.ARCHIVE_TO_ER_HASH);
+    Optional<String> count = getValue(lines, Metrics.ARCHIVE_TO_ER_COUNT);
+    if (!hash.isPresent() || !count.isPresent()) {
+      return Optional.empty();
+    }
+    return Optional.of(String.join(SEPARATOR, count.get(), hash.get()));
+  }
+
+  /** Value of a "key: value" line of a metadata file */
+  private static Optional<String> getValue(List<String> lines, String key) {
+    String prefix = key + ": ";
+    return lines.stream()
+        .filter(line -> line.startsWith(prefix))
+        .findFirst()
+        .map(line -> line.substring(prefix.length()).trim());
+  }
+
+  /**
+   * Hash of the schema and the binary content of the verbatim avro files, independent of the compression codec and
+   * the block sizes of the files
+   */
+  @SneakyThrows
+  private static String getBlockHash(FileSystem fs, FileStatus[] statuses) {
+    MessageDigest digest = MessageDigest.getInstance("SHA-256");
+    Arrays.sort(statuses, Comparator.comparing(status -> status.getPath().toString()));
+    for (FileStatus status : statuses) {
+      try (InputStream is = fs.open(status.getPath());
+          DataFileStream<GenericRecord> stream = new DataFileStream<>(is, new GenericDatumReader<>())) {
+        digest.update(stream.getSchema().toString().getBytes(StandardCharsets.UTF_8));
+        while (stream.hasNext()) {
+          ByteBuffer block = stream.nextBlock();
+          digest.update(block);
+        }
+      }
+    }
+    return BaseEncoding.base16().lowerCase().encode(digest.digest());
+  }
+
+  /** A type without a store doesn't use it, a store without a version is unknown */
+  private static Optional<String> getKvLookup(KvConfig kv) {
+    if (kv == null) {
+      return Optional.of("");
+    }
+    if (kv.getVersion() == null || kv.getVersion().isEmpty()) {
+      return Optional.empty();
+    }
+    return Optional.of(String.join(SEPARATOR, String.valueOf(kv.getTableName()), kv.getVersion(),
+        String.valueOf(kv.isRestOnly())));
+  }
+
+  private static Optional<String> readFingerprint(FileSystem fs, String interpretedPath, RecordType type) {
+    Path path = new Path(String.join(Path.SEPARATOR, interpretedPath, FINGERPRINT_DIRECTORY_NAME,
+        type.name().toLowerCase()));
+    try {
+      if (!fs.exists(path)) {
+        return Optional.empty();
+      }
+      try (InputStream is = fs.open(path)) {
+        return Optional.of(IOUtils.toString(is, StandardCharsets.UTF_8));
+      }
+    } catch (IOException e) {
+      log.warn("Can't read the fingerprint {}, cause - {}", path, e.getMessage());
+      return Optional.empty();
+    }
+  }
+
+  private static boolean exists(FileSystem fs, String path) {
+    try {
+      return fs.exists(new Path(path));
+    } catch (IOException e) {
+      log.warn("Can't check if {} exists, cause - {}", path, e.getMessage());
+      return false;
+    }
+  }
+}
@@ -8,15 +8,24 @@ import java.io.InputStreamReader;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
 
 import org.gbif.pipelines.common.PipelinesVariables.Pipeline.HdfsView;
+import org.gbif.pipelines.common.PipelinesVariables.Pipeline.Indexing;
 import org.gbif.pipelines.common.PipelinesVariables.Pipeline.Interpretation;
+import org.gbif.pipelines.ingest.io.AvroRecordIndex;
 import org.gbif.pipelines.ingest.options.BasePipelineOptions;
+import org.gbif.pipelines.ingest.options.EsIndexingPipelineOptions;
 import org.gbif.pipelines.ingest.options.InterpretationPipelineOptions;
 
+import org.apache.avro.Schema;
+import org.apache.avro.file.DataFileStream;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
 import org.apache.commons.io.FileUtils;
 import org.apache.hadoop.fs.FSDataOutputStream;
 import org.apache.hadoop.fs.FileStatus;
@@ -33,9 +42,13 @@ import lombok.NoArgsConstructor;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 
+import static org.gbif.pipelines.common.PipelinesVariables.Pipeline.AVRO_EXTENSION;
 import static org.gbif.pipelines.common.PipelinesVariables.Pipeline.Interpretation.DIRECTORY_NAME;
+import static org.gbif.pipelines.common.PipelinesVariables.Pipeline.Interpretation.FINGERPRINT_DIRECTORY_NAME;
+import static org.gbif.pipelines.common.PipelinesVariables.Pipeline.Interpretation.HASH_DIRECTORY_NAME;
 import static org.gbif.pipelines.common.PipelinesVariables.Pipeline.Interpretation.RecordType.ALL;
 import static org.gbif.pipelines.common.PipelinesVariables.Pipeline.Interpretation.RecordType.OCCURRENCE_HDFS_RECORD;
+import static org.gbif.pipelines.common.PipelinesVariables.Pipeline.PARQUET_EXTENSION;
 
 /** Utility class to work with file system. */
 @Slf4j
@@ -87,6 +100,169 @@ public final class FsUtils {
         Interpretation.FILE_NAME + uniqueId).toString();
   }
 
+  /**
+   * Uses pattern for path - "{targetPath}/{datasetId}/{attempt}/interpreted", the interpretation of another attempt
+   *
+   * @return string path to interpretation
+   */
+  public static String buildPathInterpretUsingTargetPath(BasePipelineOptions options, Integer attempt) {
+    return FsUtils.buildPath(
+        options.getTargetPath(),
+        options.getDatasetId(),
+        attempt.toString(),
+        DIRECTORY_NAME).toString();
+  }
+
+  /**
+   * Finds the latest attempt before the current attempt, which has the hash index of an incremental interpretation
+   * "{targetPath}/{datasetId}/{attempt}/interpreted/hash" and the metrics file of a finished interpretation
+   * "{targetPath}/{datasetId}/{attempt}/{metaFileName}"
+   *
+   * @return previous attempt or empty, if the dataset has no previous incremental interpretation
+   */
+  public static Optional<Integer> getPreviousIncrementalAttempt(InterpretationPipelineOptions options) {
+    return getPreviousInterpretedAttempt(options, HASH_DIRECTORY_NAME);
+  }
+
+  /**
+   * Finds the latest attempt before the current attempt, which has the directory
+   * "{targetPath}/{datasetId}/{attempt}/interpreted/{directoryName}" and the metrics file of a finished
+   * interpretation "{targetPath}/{datasetId}/{attempt}/{metaFileName}"
+   *
+   * @return previous attempt or empty, if the dataset has no such previous interpretation
+   */
+  @SneakyThrows
+  public static Optional<Integer> getPreviousInterpretedAttempt(InterpretationPipelineOptions options,
+      String directoryName) {
+    String datasetPath = buildPath(options.getTargetPath(), options.getDatasetId()).toString();
+    FileSystem fs = getFileSystem(options.getHdfsSiteConfig(), datasetPath);
+    if (!fs.exists(new Path(datasetPath))) {
+      return Optional.empty();
+    }
+
+    String metaFileName = options.getMetaFileName();
+    return Arrays.stream(fs.listStatus(new Path(datasetPath)))
+        .filter(FileStatus::isDirectory)
+        .map(status -> status.getPath().getName())
+        .filter(name -> name.matches("\\d+"))
+        .map(Integer::valueOf)
+        .filter(attempt -> attempt < options.getAttempt())
+        .sorted(Comparator.reverseOrder())
+        .filter(attempt -> {
+          String attemptPath = String.join(Path.SEPARATOR, datasetPath, attempt.toString());
+          return exists(fs, String.join(Path.SEPARATOR, attemptPath, DIRECTORY_NAME, directoryName))
+              && (Strings.isNullOrEmpty(metaFileName)
+              || exists(fs, String.join(Path.SEPARATOR, attemptPath, metaFileName.toLowerCase())));
+        })
+        .findFirst();
+  }
+
+  /**
+   * Uses pattern for path - "{targetPath}/{datasetId}/{attempt}/index_hash/{esIndexName}", the hashes of the documents
+   * indexed into the index by an attempt
+   *
+   * @return string path to the document hashes
+   */
+  public static String buildPathIndexHashUsingTargetPath(EsIndexingPipelineOptions options, Integer attempt) {
+    return FsUtils.buildPath(
+        options.getTargetPath(),
+        options.getDatasetId(),
+        attempt.toString(),
+        Indexing.HASH_DIRECTORY_NAME,
+        options.getEsIndexName()).toString();
+  }
+
+  /**
+   * Finds the latest attempt before the current attempt, which indexed the dataset into the same index. The attempt is
+   * returned only if its indexing was finished, marked by the _SUCCESS file in the document hashes directory, because
+   * the index can contain documents of an unfinished attempt, which are not in the hashes
+   *
+   * @return previous attempt or empty, if the dataset must be indexed from scratch
+   */
+  @SneakyThrows
+  public static Optional<Integer> getPreviousIndexedAttempt(EsIndexingPipelineOptions options) {
+    String datasetPath = buildPath(options.getTargetPath(), options.getDatasetId()).toString();
+    FileSystem fs = getFileSystem(options.getHdfsSiteConfig(), datasetPath);
+    if (!fs.exists(new Path(datasetPath))) {
+      return Optional.empty();
+    }
+
+    return Arrays.stream(fs.listStatus(new Path(datasetPath)))
+        .filter(FileStatus::isDirectory)
+        .map(status -> status.getPath().getName())
+        .filter(name -> name.matches("\\d+"))
+        .map(Integer::valueOf)
+        .filter(attempt -> attempt < options.getAttempt())
+        .sorted(Comparator.reverseOrder())
+        .filter(attempt -> exists(fs, buildPathIndexHashUsingTargetPath(options, attempt)))
+        .findFirst()
+        .filter(attempt -> exists(fs, String.join(Path.SEPARATOR, buildPathIndexHashUsingTargetPath(options, attempt),
+            Indexing.SUCCESS_FILE_NAME)));
+  }
+
+  /**
+   * Deletes the document hashes of all previous attempts, except the hashes of the previous attempt of the incremental
+   * indexing. Any other indexing of the dataset, a full reindex, a partial update or indexing into another index,
+   * changes the documents of the dataset without hashes, so the older hashes don't match the index anymore
+   *
+   * @param previousAttempt previous attempt of the incremental indexing, see {@link #getPreviousIndexedAttempt}
+   */
+  @SneakyThrows
+  public static void deleteIndexHashes(EsIndexingPipelineOptions options, Optional<Integer> previousAttempt) {
+    String datasetPath = buildPath(options.getTargetPath(), options.getDatasetId()).toString();
+    FileSystem fs = getFileSystem(options.getHdfsSiteConfig(), datasetPath);
+    if (!fs.exists(new Path(datasetPath))) {
+      return;
+    }
+
+    for (FileStatus attempt : fs.listStatus(new Path(datasetPath))) {
+      String name = attempt.getPath().getName();
+      if (!attempt.isDirectory() || !name.matches("\\d+") || Integer.parseInt(name) >= options.getAttempt()) {
+        continue;
+      }
+      Path hashes = new Path(attempt.getPath(), Indexing.HASH_DIRECTORY_NAME);
+      if (!fs.exists(hashes)) {
+        continue;
+      }
+      boolean previous = previousAttempt.map(a -> a.toString().equals(name)).orElse(false);
+      for (FileStatus index : fs.listStatus(hashes)) {
+        if (!previous || !index.getPath().getName().equals(options.getEsIndexName())) {
+          log.info("Deleting the document hashes of attempt {}, they don't match the index - {}", name,
+              index.getPath());
+          fs.delete(index.getPath(), true);
+        }
+      }
+    }
+  }
+
+  /**
+   * Creates an empty document hashes directory of the current attempt, marks the indexing of the attempt as started,
+   * the hashes of a failed indexing of the attempt are deleted
+   */
+  @SneakyThrows
+  public static void createIndexHashDirectory(EsIndexingPipelineOptions options) {
+    String path = buildPathIndexHashUsingTargetPath(options, options.getAttempt());
+    deleteIfExist(options.getHdfsSiteConfig(), path);
+    getFileSystem(options.getHdfsSiteConfig(), path).mkdirs(new Path(path));
+  }
+
+  /** Creates the _SUCCESS file in the document hashes directory of the current attempt, marks the indexing finished */
+  @SneakyThrows
+  public static void createIndexHashSuccessFile(EsIndexingPipelineOptions options) {
+    String path = buildPathIndexHashUsingTargetPath(options, options.getAttempt());
+    createFile(getFileSystem(options.getHdfsSiteConfig(), path), String.join(Path.SEPARATOR, path,
+        Indexing.SUCCESS_FILE_NAME), "");
+  }
+
+  private static boolean exists(FileSystem fs, String path) {
+    try {
+      return fs.exists(new Path(path));
+    } catch (IOException e) {
+      log.warn("Can't check if {} exists, cause - {}", path, e.getMessage());
+      return false;
+    }
+  }
+
   /**
    * Builds the target base path of the Occurrence hdfs view.
    *
@@ -302,6 +478,53 @@ public final class FsUtils {
     throw new FileNotFoundException("The properties file doesn't exist - " + filePath);
   }
 
+  /**
+   * Reads the schema of the first avro file matching the path, the schema can differ from the schema of the record
+   * class, for example a term dictionary encoded verbatim
+   *
+   * @param hdfsSiteConfig HDFS config file
+   * @param path avro file path or glob pattern
+   * @return the writer schema or empty if no file matches the path
+   */
+  @SneakyThrows
+  public static Optional<Schema> readAvroSchema(String hdfsSiteConfig, String path) {
+    FileSystem fs = getFileSystem(hdfsSiteConfig, path);
+    FileStatus[] statuses = fs.globStatus(new Path(path));
+    if (statuses == null) {
+      return Optional.empty();
+    }
+    for (FileStatus status : statuses) {
+      if (status.isFile()) {
+        try (DataFileStream<GenericRecord> stream =
+            new DataFileStream<>(fs.open(status.getPath()), new GenericDatumReader<>())) {
+          return Optional.of(stream.getSchema());
+        }
+      }
+    }
+    return Optional.empty();
+  }
+
+  /**
+   * Merges the small avro files of every record type directory of the interpretation, see {@link CompactionUtils}
+   */
+  @SneakyThrows
+  public static void compactInterpreted(InterpretationPipelineOptions options) {
+    String path = buildDatasetAttemptPath(options, DIRECTORY_NAME, false);
+    log.info("Compacting the avro files of {}", path);
+    CompactionUtils.compactAll(getFileSystem(options.getHdfsSiteConfig(), path), new Path(path),
+        options.getAvroCompactionFileThreshold(), options.getAvroCompactionTargetSize());
+  }
+
+  /**
+   * Writes the id index of every record type directory of the interpretation, see {@link AvroRecordIndex}
+   */
+  @SneakyThrows
+  public static void writeInterpretedIndexes(InterpretationPipelineOptions options) {
+    String path = buildDatasetAttemptPath(options, DIRECTORY_NAME, false);
+    log.info("Writing the id indexes of {}", path);
+    AvroRecordIndex.writeAll(getFileSystem(options.getHdfsSiteConfig(), path), new Path(path));
+  }
+
   /**
    * Deletes directories if a dataset with the same attempt was interpreted before
    */
@@ -320,11 +543,35 @@ public final class FsUtils {
           log.info("Delete {}/{} directory", path, step.toLowerCase());
           boolean isDeleted = deleteIfExist(hdfsSiteConfig, String.join("/", path, step.toLowerCase()));
           log.info("Delete interpretation directory - {}, deleted - {}", path, isDeleted);
+          // The fingerprint of the previous interpretation of the type isn't valid anymore
+          deleteIfExist(hdfsSiteConfig, String.join("/", path, FINGERPRINT_DIRECTORY_NAME, step.toLowerCase()));
         }
       }
     }
   }
 
+  /**
+   * Checks the {@link InterpretationPipelineOptions#getHdfsViewFormat()}
+   *
+   * @return true for the parquet format, false for the avro format
+   * @throws IllegalArgumentException for an unknown format
+   */
+  public static boolean isParquetHdfsView(InterpretationPipelineOptions options) {
+    String format = options.getHdfsViewFormat().trim().toUpperCase();
+    if (HdfsView.PARQUET_FORMAT.equals(format)) {
+      return true;
+    }
+    if (HdfsView.AVRO_FORMAT.equals(format)) {
+      return false;
+    }
+    throw new IllegalArgumentException("Unknown HDFS view format " + options.getHdfsViewFormat());
+  }
+
+  /** @return file extension of the HDFS view format, .avro or .parquet */
+  public static String getHdfsViewExtension(InterpretationPipelineOptions options) {
+    return isParquetHdfsView(options) ? PARQUET_EXTENSION : AVRO_EXTENSION;
+  }
+
   /**
    * Copies all occurrence records into the directory from targetPath.
    * Deletes pre-existing data of the dataset being processed.
@@ -335,9 +582,9 @@ public final class FsUtils {
 
     String deletePath =
         FsUtils.buildPath(targetPath, HdfsView.VIEW_OCCURRENCE + "_" + options.getDatasetId() + "_*").toString();
-    log.info("Deleting avro files {}", deletePath);
+    log.info("Deleting avro and parquet files {}", deletePath);
     FsUtils.deleteByPattern(options.getHdfsSiteConfig(), targetPath, deletePath);
-    String filter = buildFilePathHdfsViewUsingInputPath(options, "*.avro");
+    String filter = buildFilePathHdfsViewUsingInputPath(options, "*" + getHdfsViewExtension(options));
 
     log.info("Moving files with pattern {} to {}", filter, targetPath);
     FsUtils.moveDirectory(options.getHdfsSiteConfig(), targetPath, filter);
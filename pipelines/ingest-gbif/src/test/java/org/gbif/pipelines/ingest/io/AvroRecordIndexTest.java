@@ -0,0 +1,88 @@
+package org.gbif.pipelines.ingest.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+
+import org.gbif.pipelines.io.avro.BasicRecord;
+
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.specific.SpecificDatumWriter;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AvroRecordIndexTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private static BasicRecord basicRecord(int id) {
+    return BasicRecord.newBuilder().setId(Integer.toString(id)).setGbifId((long) id).build();
+  }
+
+  /** Writes the records with a small sync interval, so a file has many blocks */
+  private static void write(File file, int from, int to) throws IOException {
+    try (DataFileWriter<BasicRecord> writer = new DataFileWriter<>(new SpecificDatumWriter<>(BasicRecord.class))) {
+      writer.setSyncInterval(64);
+      writer.create(BasicRecord.getClassSchema(), file);
+      for (int i = from; i < to; i++) {
+        writer.append(basicRecord(i));
+      }
+    }
+  }
+
+  @Test
+  public void pointAndBatchLookupTest() throws IOException {
+    // State
+    File directory = folder.newFolder("basic");
+    write(new File(directory, "interpret-1.avro"), 0, 1_000);
+    write(new File(directory, "interpret-2.avro"), 1_000, 2_000);
+    FileSystem fs = FileSystem.getLocal(new Configuration());
+
+    // When
+    long count = AvroRecordIndex.write(fs, new Path(directory.toString()));
+
+    // Should
+    assertEquals(2_000, count);
+    assertTrue(new File(directory, AvroRecordIndex.INDEX_FILE_NAME).exists());
+
+    try (IndexedAvroReader<BasicRecord> reader =
+        IndexedAvroReader.create(null, BasicRecord.class, directory.toString())) {
+
+      for (int id : new int[]{0, 1, 999, 1_000, 1_577, 1_999}) {
+        Optional<BasicRecord> record = reader.get(Integer.toString(id));
+        assertTrue(record.isPresent());
+        assertEquals(basicRecord(id), record.get());
+      }
+      assertFalse(reader.get("2000").isPresent());
+
+      Map<String, BasicRecord> batch = reader.get(Arrays.asList("5", "6", "1500", "1999", "unknown"));
+      assertEquals(4, batch.size());
+      assertEquals(basicRecord(1_500), batch.get("1500"));
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void outOfDateIndexTest() throws IOException {
+    // State
+    File directory = folder.newFolder("basic");
+    File file = new File(directory, "interpret-1.avro");
+    write(file, 0, 10);
+    FileSystem fs = FileSystem.getLocal(new Configuration());
+    AvroRecordIndex.write(fs, new Path(directory.toString()));
+
+    // When
+    write(file, 0, 20);
+    AvroRecordIndex.read(fs, new Path(directory.toString()));
+  }
+}
@@ -0,0 +1,137 @@
+package org.gbif.pipelines.ingest.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.gbif.pipelines.core.utils.AvroCodecUtils;
+import org.gbif.pipelines.io.avro.BasicRecord;
+
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.specific.SpecificDatumReader;
+import org.apache.avro.specific.SpecificDatumWriter;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.base.Stopwatch;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Compares a scan of the files with the point and batched lookups of {@link IndexedAvroReader} for random ids, logs
+ * the index build time and size and the lookup latencies.
+ */
+@Slf4j
+public class IndexedAvroReaderBenchmarkTest {
+
+  // increase it to benchmark with a higher volume of data, like a multi-million record output
+  private static final int N = 200_000;
+  private static final int FILES = 4;
+  private static final int LOOKUPS = 1_000;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private static BasicRecord basicRecord(int id) {
+    return BasicRecord.newBuilder()
+        .setId("urn:catalog:MNHN:P:" + id)
+        .setGbifId((long) id)
+        .setBasisOfRecord("PRESERVED_SPECIMEN")
+        .setTypifiedName("Puma concolor var. " + (id % 300))
+        .build();
+  }
+
+  /** Writes the records as the interpreted avro files, snappy and the default sync interval of the pipelines */
+  private File writeFiles() throws IOException {
+    File directory = folder.newFolder("basic");
+    for (int f = 0; f < FILES; f++) {
+      try (DataFileWriter<BasicRecord> writer = new DataFileWriter<>(new SpecificDatumWriter<>(BasicRecord.class))) {
+        writer.setCodec(AvroCodecUtils.fromString("snappy"));
+        writer.setSyncInterval(2_097_152);
+        writer.create(BasicRecord.getClassSchema(), new File(directory, "interpret-" + f + ".avro"));
+        for (int i = f; i < N; i += FILES) {
+          writer.append(basicRecord(i));
+        }
+      }
+    }
+    return directory;
+  }
+
+  private static long scan(File directory, String id) throws IOException {
+    long found = 0;
+    File[] files = directory.listFiles((dir, name) -> name.endsWith(".avro"));
+    for (File file : files) {
+      try (DataFileReader<BasicRecord> reader = new DataFileReader<>(file, new SpecificDatumReader<>(BasicRecord.class))) {
+        for (BasicRecord record : reader) {
+          if (record.getId().equals(id)) {
+            found++;
+          }
+        }
+      }
+    }
+    return found;
+  }
+
+  private static double micros(Stopwatch watch, int count) {
+    return watch.elapsed(TimeUnit.MICROSECONDS) / (double) count;
+  }
+
+  @Test
+  public void scanVsIndexTest() throws IOException {
+    // State
+    File directory = writeFiles();
+    FileSystem fs = FileSystem.getLocal(new Configuration());
+    Random random = new Random(42);
+    List<String> ids = new ArrayList<>(LOOKUPS);
+    for (int i = 0; i < LOOKUPS; i++) {
+      ids.add(basicRecord(random.nextInt(N)).getId());
+    }
+
+    // When
+    Stopwatch indexWatch = Stopwatch.createStarted();
+    long count = AvroRecordIndex.write(fs, new Path(directory.toString()));
+    indexWatch.stop();
+
+    Stopwatch scanWatch = Stopwatch.createStarted();
+    long scanned = scan(directory, ids.get(0));
+    scanWatch.stop();
+
+    try (IndexedAvroReader<BasicRecord> reader =
+        IndexedAvroReader.create(null, BasicRecord.class, directory.toString())) {
+
+      // warm up
+      reader.get(ids.subList(0, 10));
+
+      Stopwatch pointWatch = Stopwatch.createStarted();
+      int found = 0;
+      for (String id : ids) {
+        found += reader.get(id).isPresent() ? 1 : 0;
+      }
+      pointWatch.stop();
+
+      Stopwatch batchWatch = Stopwatch.createStarted();
+      Map<String, BasicRecord> batch = reader.get(ids);
+      batchWatch.stop();
+
+      log.info("Index of {} records: build {} ms, size {} bytes", count, indexWatch.elapsed(TimeUnit.MILLISECONDS),
+          new File(directory, AvroRecordIndex.INDEX_FILE_NAME).length());
+      log.info("Lookup of a random id: scan {} ms, point lookup {} us, batched lookup {} us per id",
+          scanWatch.elapsed(TimeUnit.MILLISECONDS), micros(pointWatch, LOOKUPS), micros(batchWatch, LOOKUPS));
+
+      // Should
+      Assert.assertEquals(N, count);
+      Assert.assertEquals(1, scanned);
+      Assert.assertEquals(LOOKUPS, found);
+      Assert.assertEquals(ids.stream().distinct().count(), batch.size());
+    }
+  }
+}
@@ -0,0 +1,169 @@
+package org.gbif.pipelines.ingest.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.gbif.pipelines.core.utils.AvroCodecUtils;
+import org.gbif.pipelines.io.avro.BasicRecord;
+
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.specific.SpecificDatumReader;
+import org.apache.avro.specific.SpecificDatumWriter;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CompactionUtilsTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private FileSystem fs;
+
+  @Before
+  public void before() throws IOException {
+    fs = FileSystem.getLocal(new Configuration());
+  }
+
+  private static BasicRecord basicRecord(int id) {
+    return BasicRecord.newBuilder().setId(Integer.toString(id)).setGbifId((long) id).build();
+  }
+
+  private static void write(File file, String codec, int from, int to) throws IOException {
+    try (DataFileWriter<BasicRecord> writer = new DataFileWriter<>(new SpecificDatumWriter<>(BasicRecord.class))) {
+      writer.setCodec(AvroCodecUtils.fromString(codec));
+      writer.create(BasicRecord.getClassSchema(), file);
+      for (int i = from; i < to; i++) {
+        writer.append(basicRecord(i));
+      }
+    }
+  }
+
+  /** Writes 10 files of 100 records */
+  private static File writeFiles(File directory) throws IOException {
+    directory.mkdirs();
+    for (int i = 0; i < 10; i++) {
+      write(new File(directory, "interpret-" + i + ".avro"), i % 2 == 0 ? "snappy" : "deflate", i * 100, i * 100 + 100);
+    }
+    return directory;
+  }
+
+  private static List<BasicRecord> read(File directory) throws IOException {
+    List<BasicRecord> result = new ArrayList<>();
+    File[] files = directory.listFiles((dir, name) -> name.endsWith(".avro"));
+    Arrays.sort(files);
+    for (File file : files) {
+      try (DataFileReader<BasicRecord> reader = new DataFileReader<>(file, new SpecificDatumReader<>(BasicRecord.class))) {
+        reader.forEach(result::add);
+      }
+    }
+    return result;
+  }
+
+  private static List<BasicRecord> expected() {
+    List<BasicRecord> result = new ArrayList<>();
+    for (int i = 0; i < 1_000; i++) {
+      result.add(basicRecord(i));
+    }
+    return result;
+  }
+
+  @Test
+  public void compactTest() throws IOException {
+    // State
+    File directory = writeFiles(new File(folder.getRoot(), "basic"));
+    File other = new File(directory, "metadata.json");
+    assertTrue(other.createNewFile());
+
+    // When
+    boolean compacted = CompactionUtils.compact(fs, new Path(directory.toString()), 4, 1_000_000L);
+
+    // Should
+    assertTrue(compacted);
+    assertEquals(1, directory.listFiles((dir, name) -> name.endsWith(".avro")).length);
+    assertTrue(new File(directory, "interpret-compacted-00000.avro").exists());
+    assertTrue(other.exists());
+    assertEquals(expected(), read(directory));
+    assertEquals(1, folder.getRoot().listFiles().length);
+  }
+
+  @Test
+  public void targetSizeTest() throws IOException {
+    // State
+    File directory = writeFiles(new File(folder.getRoot(), "basic"));
+    long fileSize = new File(directory, "interpret-0.avro").length();
+
+    // When
+    CompactionUtils.compact(fs, new Path(directory.toString()), 4, fileSize * 3);
+
+    // Should
+    int count = directory.listFiles((dir, name) -> name.endsWith(".avro")).length;
+    assertTrue(count > 1 && count < 10);
+    assertEquals(expected(), read(directory));
+  }
+
+  @Test
+  public void thresholdTest() throws IOException {
+    // State
+    File directory = writeFiles(new File(folder.getRoot(), "basic"));
+
+    // When
+    boolean compacted = CompactionUtils.compact(fs, new Path(directory.toString()), 10, 1_000_000L);
+
+    // Should
+    assertFalse(compacted);
+    assertEquals(10, directory.listFiles((dir, name) -> name.endsWith(".avro")).length);
+  }
+
+  @Test
+  public void interruptedMergeTest() throws IOException {
+    // State
+    File root = folder.getRoot();
+    File directory = writeFiles(new File(root, "basic"));
+    File other = new File(directory, "metadata.json");
+    assertTrue(other.createNewFile());
+    File compacted = new File(root, ".basic-compacted");
+    compacted.mkdirs();
+    write(new File(compacted, "interpret-compacted-00000.avro"), "snappy", 0, 1_000);
+    assertTrue(new File(compacted, "metadata.json").createNewFile());
+
+    // When
+    boolean result = CompactionUtils.compact(fs, new Path(directory.toString()), 10, 1_000_000L);
+
+    // Should
+    assertFalse(result);
+    assertTrue(other.exists());
+    assertEquals(expected(), read(directory));
+    assertEquals(1, root.listFiles().length);
+  }
+
+  @Test
+  public void interruptedSwapTest() throws IOException {
+    // State
+    File root = folder.getRoot();
+    writeFiles(new File(root, ".basic-original"));
+    File compacted = new File(root, ".basic-compacted");
+    compacted.mkdirs();
+    write(new File(compacted, "interpret-compacted-00000.avro"), "snappy", 0, 1_000);
+
+    // When
+    CompactionUtils.compactAll(fs, new Path(root.toString()), 4, 1_000_000L);
+
+    // Should
+    File directory = new File(root, "basic");
+    assertEquals(expected(), read(directory));
+    assertEquals(1, root.listFiles().length);
+  }
+}
@@ -0,0 +1,228 @@
+package org.gbif.pipelines.ingest.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.gbif.pipelines.common.PipelinesVariables.Pipeline.Interpretation.RecordType;
+import org.gbif.pipelines.core.utils.AvroCodecUtils;
+import org.gbif.pipelines.ingest.io.AvroRecordIndex;
+import org.gbif.pipelines.io.avro.BasicRecord;
+import org.gbif.pipelines.parsers.config.model.KvConfig;
+import org.gbif.pipelines.parsers.config.model.PipelinesConfig;
+
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.specific.SpecificDatumReader;
+import org.apache.avro.specific.SpecificDatumWriter;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.gbif.pipelines.common.PipelinesVariables.Pipeline.Interpretation.RecordType.BASIC;
+import static org.gbif.pipelines.common.PipelinesVariables.Pipeline.Interpretation.RecordType.LOCATION;
+import static org.gbif.pipelines.common.PipelinesVariables.Pipeline.Interpretation.RecordType.TAXONOMY;
+import static org.gbif.pipelines.common.PipelinesVariables.Pipeline.Interpretation.RecordType.TEMPORAL;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FingerprintUtilsTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private FileSystem fs;
+
+  @Before
+  public void before() throws IOException {
+    fs = FileSystem.getLocal(new Configuration());
+  }
+
+  private static PipelinesConfig config(String backboneVersion, String geocodeVersion) {
+    KvConfig nameUsageMatch = new KvConfig();
+    nameUsageMatch.setTableName("name_usage_kv");
+    nameUsageMatch.setVersion(backboneVersion);
+    KvConfig geocode = new KvConfig();
+    geocode.setTableName("geocode_kv");
+    geocode.setVersion(geocodeVersion);
+
+    PipelinesConfig config = new PipelinesConfig();
+    config.setNameUsageMatch(nameUsageMatch);
+    config.setGeocode(geocode);
+    return config;
+  }
+
+  /** Writes the fingerprints and an empty directory of records for every type */
+  private String writeAttempt(String name, Map<RecordType, String> fingerprints) throws IOException {
+    File attempt = folder.newFolder(name);
+    for (RecordType type : fingerprints.keySet()) {
+      assertTrue(new File(attempt, type.name().toLowerCase()).mkdirs());
+    }
+    FingerprintUtils.writeFingerprints(fs, attempt.toString(), fingerprints);
+    return attempt.toString();
+  }
+
+  /** Writes basic records with a "created" timestamp and a user metadata entry */
+  private static void writeBasic(File file, long created, String... ids) throws IOException {
+    assertTrue(file.getParentFile().mkdirs());
+    try (DataFileWriter<BasicRecord> writer = new DataFileWriter<>(new SpecificDatumWriter<>(BasicRecord.class))) {
+      writer.setCodec(AvroCodecUtils.fromString("deflate"));
+      writer.setMeta("source", "test");
+      writer.create(BasicRecord.getClassSchema(), file);
+      for (String id : ids) {
+        writer.append(BasicRecord.newBuilder().setId(id).setCreated(created).build());
+      }
+    }
+  }
+
+  @Test
+  public void unknownLookupVersionTest() {
+    // When
+    Map<RecordType, String> known = FingerprintUtils.createFingerprints("base", config("2020-01", "1"));
+    Map<RecordType, String> unknownBackbone = FingerprintUtils.createFingerprints("base", config(null, "1"));
+    Map<RecordType, String> newBackbone = FingerprintUtils.createFingerprints("base", config("2020-02", "1"));
+
+    // Should
+    assertEquals(FingerprintUtils.TYPES, known.keySet());
+    assertFalse(unknownBackbone.containsKey(TAXONOMY));
+    assertEquals(known.get(LOCATION), unknownBackbone.get(LOCATION));
+    assertNotEquals(known.get(TAXONOMY), newBackbone.get(TAXONOMY));
+    assertEquals(known.get(TEMPORAL), newBackbone.get(TEMPORAL));
+
+    assertTrue(FingerprintUtils.getLookupVersions(config("2020-01", "1")).isPresent());
+    assertFalse(FingerprintUtils.getLookupVersions(config("2020-01", null)).isPresent());
+    assertTrue(FingerprintUtils.getLookupVersions(new PipelinesConfig()).isPresent());
+  }
+
+  @Test
+  public void unchangedTypesTest() throws IOException {
+    // State
+    Map<RecordType, String> fingerprints = FingerprintUtils.createFingerprints("base", config("2020-01", "1"));
+    String previous = writeAttempt("1", fingerprints);
+
+    // When
+    Set<RecordType> unchanged = FingerprintUtils.getUnchangedTypes(fs, previous, 1, fingerprints);
+
+    // Should
+    assertEquals(FingerprintUtils.TYPES, unchanged);
+  }
+
+  @Test
+  public void basicRecordsWithChangedTypeTest() throws IOException {
+    // State
+    String previous = writeAttempt("1", FingerprintUtils.createFingerprints("base", config("2020-01", "1")));
+    Map<RecordType, String> fingerprints = FingerprintUtils.createFingerprints("base", config("2020-02", "1"));
+
+    // When
+    Set<RecordType> unchanged = FingerprintUtils.getUnchangedTypes(fs, previous, 1, fingerprints);
+
+    // Should
+    assertFalse(unchanged.contains(TAXONOMY));
+    assertFalse(unchanged.contains(BASIC));
+    assertTrue(unchanged.contains(LOCATION));
+  }
+
+  @Test
+  public void basicRecordsWithUnknownTypeTest() throws IOException {
+    // State
+    String previous = writeAttempt("1", FingerprintUtils.createFingerprints("base", config("2020-01", "1")));
+    Map<RecordType, String> fingerprints = FingerprintUtils.createFingerprints("base", config(null, "1"));
+
+    // When
+    Set<RecordType> unchanged = FingerprintUtils.getUnchangedTypes(fs, previous, 1, fingerprints);
+
+    // Should
+    assertFalse(unchanged.contains(TAXONOMY));
+    assertFalse(unchanged.contains(BASIC));
+    assertTrue(unchanged.contains(LOCATION));
+  }
+
+  @Test
+  public void missingRecordsTest() throws IOException {
+    // State
+    Map<RecordType, String> fingerprints = FingerprintUtils.createFingerprints("base", config("2020-01", "1"));
+    File previous = new File(writeAttempt("1", fingerprints));
+    assertTrue(new File(previous, "temporal").delete());
+
+    // When
+    Set<RecordType> unchanged = FingerprintUtils.getUnchangedTypes(fs, previous.toString(), 1, fingerprints);
+
+    // Should
+    assertFalse(unchanged.contains(TEMPORAL));
+    assertFalse(unchanged.contains(BASIC));
+  }
+
+  @Test
+  public void copyRecordsTest() throws IOException {
+    // State
+    File previous = folder.newFolder("1");
+    writeBasic(new File(previous, "basic/interpret-0.avro"), 1L, "1", "2");
+    assertTrue(new File(previous, "basic/" + AvroRecordIndex.INDEX_FILE_NAME).createNewFile());
+    writeBasic(new File(previous, "basic_invalid/interpret-0.avro"), 1L, "3");
+    writeBasic(new File(previous, "temporal/interpret-0.avro"), 1L, "1");
+    File current = new File(folder.getRoot(), "2");
+
+    // When
+    FingerprintUtils.copyRecords(fs, previous.toString(), current.toString(), EnumSet.of(BASIC, LOCATION), 2L);
+
+    // Should
+    try (DataFileReader<BasicRecord> reader = new DataFileReader<>(new File(current, "basic/interpret-0.avro"),
+        new SpecificDatumReader<>(BasicRecord.class))) {
+      assertEquals("deflate", reader.getMetaString("avro.codec"));
+      assertEquals("test", reader.getMetaString("source"));
+      for (String id : new String[]{"1", "2"}) {
+        BasicRecord record = reader.next();
+        assertEquals(id, record.getId());
+        assertEquals(Long.valueOf(2L), record.getCreated());
+      }
+      assertFalse(reader.hasNext());
+    }
+    assertFalse(new File(current, "basic/" + AvroRecordIndex.INDEX_FILE_NAME).exists());
+    assertTrue(new File(current, "basic_invalid/interpret-0.avro").exists());
+    assertFalse(new File(current, "temporal").exists());
+    assertFalse(new File(current, "location").exists());
+    assertTrue(new File(previous, "basic/interpret-0.avro").exists());
+  }
+
+  @Test
+  public void conversionHashTest() throws IOException {
+    // State
+    File converted = folder.newFile("archive-to-verbatim.yml");
+    Files.write(converted.toPath(), "archiveToErCount: 2\narchiveToErHash: -42\n".getBytes(StandardCharsets.UTF_8));
+    File counted = folder.newFile("counted.yml");
+    Files.write(counted.toPath(), "archiveToErCount: 2\n".getBytes(StandardCharsets.UTF_8));
+
+    // When
+    Optional<String> hash = FingerprintUtils.readConversionHash(fs, new Path(converted.toString()));
+    Optional<String> noHash = FingerprintUtils.readConversionHash(fs, new Path(counted.toString()));
+    Optional<String> noFile = FingerprintUtils.readConversionHash(fs, new Path(folder.getRoot().toString(), "no.yml"));
+
+    // Should
+    assertEquals(Optional.of("2|-42"), hash);
+    assertFalse(noHash.isPresent());
+    assertFalse(noFile.isPresent());
+  }
+
+  @Test
+  public void interpretationTypesTest() {
+    // When
+    Set<String> types = FingerprintUtils.getInterpretationTypes(Collections.singleton(TEMPORAL));
+
+    // Should
+    assertTrue(types.contains(RecordType.METADATA.name()));
+    assertTrue(types.contains(BASIC.name()));
+    assertFalse(types.contains(TEMPORAL.name()));
+  }
+}
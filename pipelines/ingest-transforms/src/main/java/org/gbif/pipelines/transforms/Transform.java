@@ -6,18 +6,21 @@ import java.util.function.UnaryOperator;
 
 import org.gbif.pipelines.common.PipelinesVariables.Pipeline;
 import org.gbif.pipelines.common.PipelinesVariables.Pipeline.Interpretation.InterpretationType;
+import org.gbif.pipelines.core.utils.AvroCodecUtils;
 import org.gbif.pipelines.io.avro.ExtendedRecord;
 import org.gbif.pipelines.transforms.common.CheckTransforms;
+import org.gbif.pipelines.transforms.common.SortedBucketIO;
 
-import org.apache.avro.file.CodecFactory;
 import org.apache.avro.specific.SpecificRecordBase;
 import org.apache.beam.sdk.io.AvroIO;
 import org.apache.beam.sdk.metrics.Counter;
 import org.apache.beam.sdk.metrics.Metrics;
 import org.apache.beam.sdk.transforms.DoFn;
+import org.apache.beam.sdk.transforms.PTransform;
 import org.apache.beam.sdk.transforms.ParDo;
 import org.apache.beam.sdk.transforms.ParDo.SingleOutput;
 import org.apache.beam.sdk.values.PCollection;
+import org.apache.beam.sdk.values.PDone;
 import org.apache.beam.sdk.values.TupleTag;
 
 
@@ -29,8 +32,6 @@ import org.apache.beam.sdk.values.TupleTag;
  */
 public abstract class Transform<R, T extends SpecificRecordBase> extends DoFn<R, T> {
 
-  private static final CodecFactory BASE_CODEC = CodecFactory.snappyCodec();
-
   private final TupleTag<T> tag = new TupleTag<T>() {};
   private final InterpretationType recordType;
   private final String baseName;
@@ -40,6 +41,7 @@ public abstract class Transform<R, T extends SpecificRecordBase> extends DoFn<R,
 
   private Counter counter;
   private SerializableConsumer<String> counterFn = v -> counter.inc();
+  private String codec = AvroCodecUtils.DEFAULT_CODEC;
 
   public Transform(Class<T> clazz, InterpretationType recordType, String counterNamespace, String counterName) {
     this.clazz = clazz;
@@ -54,6 +56,16 @@ public abstract class Transform<R, T extends SpecificRecordBase> extends DoFn<R,
     this.counterFn = counterFn;
   }
 
+  /**
+   * Sets the compression codec of written avro files, Snappy by default
+   *
+   * @param codec codec name, see {@link AvroCodecUtils#fromString(String)}
+   */
+  public void setCodec(String codec) {
+    AvroCodecUtils.fromString(codec);
+    this.codec = codec;
+  }
+
   protected InterpretationType getRecordType() {
     return recordType;
   }
@@ -85,12 +97,13 @@ public abstract class Transform<R, T extends SpecificRecordBase> extends DoFn<R,
 
   /**
    * Writes {@link T} *.avro files to path, data will be split into several files, uses
-   * Snappy compression codec by default
+   * Snappy compression codec by default, see {@link #setCodec(String)}
    *
    * @param toPath path with name to output files, like - directory/name
    */
   public AvroIO.Write<T> write(String toPath) {
-    return AvroIO.write(clazz).to(toPath).withSuffix(Pipeline.AVRO_EXTENSION).withCodec(BASE_CODEC);
+    return AvroIO.write(clazz).to(toPath).withSuffix(Pipeline.AVRO_EXTENSION)
+        .withCodec(AvroCodecUtils.fromString(codec));
   }
 
   /**
@@ -103,6 +116,26 @@ public abstract class Transform<R, T extends SpecificRecordBase> extends DoFn<R,
     return write(pathFn.apply(baseName));
   }
 
+  /**
+   * Writes {@link T} *.avro files to path, bucketed and sorted by id if the number of buckets is positive, see {@link
+   * SortedBucketIO}
+   *
+   * @param pathFn function can return an output path, where in param is fixed - {@link Transform#baseName}
+   * @param buckets number of buckets, 0 writes unbucketed files
+   */
+  public PTransform<PCollection<T>, PDone> write(UnaryOperator<String> pathFn, int buckets) {
+    return buckets > 0 ? SortedBucketIO.write(clazz, pathFn.apply(baseName), buckets).withCodec(codec) : write(pathFn);
+  }
+
+  /**
+   * Reads bucketed {@link T} files, written by {@link #write(UnaryOperator, int)}, in a join of bucketed files
+   *
+   * @param pathFn function can return an input path, where in param is fixed - {@link Transform#baseName}
+   */
+  public SortedBucketIO.Source<T> readBucketed(UnaryOperator<String> pathFn) {
+    return SortedBucketIO.source(tag, clazz, pathFn.apply(baseName));
+  }
+
   /**
    * Writes {@link T} *.avro files to path, data will be split into several files, uses
    * Snappy compression codec by default
@@ -120,6 +153,25 @@ public abstract class Transform<R, T extends SpecificRecordBase> extends DoFn<R,
     return ParDo.of(this);
   }
 
+  /**
+   * Counts records, which were not interpreted by the transform, like the records copied from a previous
+   * interpretation, with the counter of the interpreted records
+   */
+  public PTransform<PCollection<T>, PCollection<T>> count() {
+    return new PTransform<PCollection<T>, PCollection<T>>() {
+      @Override
+      public PCollection<T> expand(PCollection<T> input) {
+        return input.apply("Count records", ParDo.of(new DoFn<T, T>() {
+          @ProcessElement
+          public void processElement(ProcessContext c) {
+            incCounter();
+            c.output(c.element());
+          }
+        })).setCoder(input.getCoder());
+      }
+    };
+  }
+
   public String getBaseName() {
     return baseName;
   }
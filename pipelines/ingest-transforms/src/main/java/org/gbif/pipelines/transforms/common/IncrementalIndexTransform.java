@@ -0,0 +1,196 @@
+package org.gbif.pipelines.transforms.common;
+
+import java.io.Serializable;
+
+import org.gbif.pipelines.core.converters.GbifJsonConverter;
+import org.gbif.pipelines.core.utils.AvroCodecUtils;
+import org.gbif.pipelines.io.avro.RecordHash;
+
+import org.apache.beam.sdk.coders.StringUtf8Coder;
+import org.apache.beam.sdk.io.AvroIO;
+import org.apache.beam.sdk.metrics.Counter;
+import org.apache.beam.sdk.metrics.Metrics;
+import org.apache.beam.sdk.transforms.Create;
+import org.apache.beam.sdk.transforms.DoFn;
+import org.apache.beam.sdk.transforms.MapElements;
+import org.apache.beam.sdk.transforms.PTransform;
+import org.apache.beam.sdk.transforms.ParDo;
+import org.apache.beam.sdk.transforms.join.CoGbkResult;
+import org.apache.beam.sdk.transforms.join.CoGroupByKey;
+import org.apache.beam.sdk.transforms.join.KeyedPCollectionTuple;
+import org.apache.beam.sdk.values.KV;
+import org.apache.beam.sdk.values.PCollection;
+import org.apache.beam.sdk.values.PCollectionTuple;
+import org.apache.beam.sdk.values.TupleTag;
+import org.apache.beam.sdk.values.TupleTagList;
+import org.apache.beam.sdk.values.TypeDescriptor;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import static org.gbif.pipelines.common.PipelinesVariables.Metrics.ES_CHANGED_COUNT;
+import static org.gbif.pipelines.common.PipelinesVariables.Metrics.ES_DELETED_COUNT;
+import static org.gbif.pipelines.common.PipelinesVariables.Metrics.ES_NEW_COUNT;
+import static org.gbif.pipelines.common.PipelinesVariables.Metrics.ES_UNCHANGED_COUNT;
+import static org.gbif.pipelines.common.PipelinesVariables.Pipeline.AVRO_EXTENSION;
+
+/**
+ * Incremental indexing of a dataset, compares the content hashes of ES documents with the hashes of the documents
+ * indexed by the previous attempt. Only new and changed documents are indexed and only the documents of deleted ids
+ * are deleted, instead of deleting all documents of the dataset and indexing all documents again.
+ *
+ * <p>Unchanged documents are not written at all, an update would cost Elasticsearch as much as indexing them again. So
+ * the created, lastCrawled and crawlId fields, which are not part of the hash, see
+ * {@link GbifJsonConverter#getContentHash}, keep the values of the attempt which last indexed the document. The latest
+ * crawl of the dataset is kept by the dataset itself, in the registry and in the metadata record of the attempt.
+ *
+ * <p>To use this:
+ *
+ * <pre>{@code
+ * PCollection<KV<String, KV<Long, byte[]>>> documents = ... GbifJsonTransform.indexDocHashConverter
+ *
+ * PCollectionTuple diff = documents.apply("Diff", incrementalIndexTransform.diff());
+ *
+ * diff.get(incrementalIndexTransform.getChangedTag()).apply("Index", EsBulkIO.write(...));
+ * diff.get(incrementalIndexTransform.getDeletedTag()).apply("Delete", EsBulkIO.write(...).deletes());
+ * diff.get(incrementalIndexTransform.getHashTag()).apply("Write hashes", incrementalIndexTransform.write(path));
+ * }</pre>
+ */
+@Getter
+public class IncrementalIndexTransform implements Serializable {
+
+  private static final long serialVersionUID = 3398276301264938157L;
+
+  private static final String FILE_NAME = "hash";
+
+  private final TupleTag<KV<String, byte[]>> changedTag = new TupleTag<KV<String, byte[]>>() {};
+  private final TupleTag<RecordHash> hashTag = new TupleTag<RecordHash>() {};
+  private final TupleTag<String> deletedTag = new TupleTag<String>() {};
+
+  private final String previousPath;
+  private final String codec;
+
+  /**
+   * @param previousPath document hashes directory of the previous attempt, null if the dataset has no previous
+   * incremental indexing and all documents are new
+   * @param codec compression codec of the hashes, see {@link AvroCodecUtils#fromString(String)}
+   */
+  @Builder(buildMethodName = "create")
+  private IncrementalIndexTransform(String previousPath, String codec) {
+    this.previousPath = previousPath;
+    this.codec = codec == null ? AvroCodecUtils.DEFAULT_CODEC : codec;
+    AvroCodecUtils.fromString(this.codec);
+  }
+
+  /**
+   * Outputs the new and changed documents, key - document id, value - json bytes, the main output, the hashes of all
+   * documents and the ids of deleted documents
+   */
+  public PTransform<PCollection<KV<String, KV<Long, byte[]>>>, PCollectionTuple> diff() {
+    return new PTransform<PCollection<KV<String, KV<Long, byte[]>>>, PCollectionTuple>() {
+      @Override
+      public PCollectionTuple expand(PCollection<KV<String, KV<Long, byte[]>>> input) {
+        if (previousPath == null) {
+          return input.apply("Hash documents",
+              ParDo.of(new HashFn(hashTag)).withOutputTags(changedTag, TupleTagList.of(hashTag)))
+              .and(deletedTag, input.getPipeline().apply("Empty deleted ids", Create.empty(StringUtf8Coder.of())));
+        }
+
+        TupleTag<KV<Long, byte[]>> docTag = new TupleTag<KV<Long, byte[]>>() {};
+        TupleTag<Long> previousTag = new TupleTag<Long>() {};
+
+        PCollection<KV<String, Long>> previousKv = input.getPipeline()
+            .apply("Read previous hashes", AvroIO.read(RecordHash.class)
+                .from(String.join("/", previousPath, "*" + AVRO_EXTENSION)))
+            .apply("Map previous hashes to KV", MapElements.into(new TypeDescriptor<KV<String, Long>>() {})
+                .via((RecordHash rh) -> KV.of(rh.getId(), rh.getHash())));
+
+        return KeyedPCollectionTuple.of(docTag, input)
+            .and(previousTag, previousKv)
+            .apply("Grouping hashes", CoGroupByKey.create())
+            .apply("Compare hashes",
+                ParDo.of(new DiffFn(docTag, previousTag, hashTag, deletedTag))
+                    .withOutputTags(changedTag, TupleTagList.of(hashTag).and(deletedTag)));
+      }
+    };
+  }
+
+  /**
+   * Writes the document hashes, {@link RecordHash} *.avro files, the next incremental indexing compares hashes with
+   * them
+   *
+   * @param toPath document hashes directory of the current attempt
+   */
+  public AvroIO.Write<RecordHash> write(String toPath) {
+    return AvroIO.write(RecordHash.class).to(String.join("/", toPath, FILE_NAME)).withSuffix(AVRO_EXTENSION)
+        .withCodec(AvroCodecUtils.fromString(codec));
+  }
+
+  /** Hashes all documents of the first incremental indexing, all documents are new */
+  private static class HashFn extends DoFn<KV<String, KV<Long, byte[]>>, KV<String, byte[]>> {
+
+    private final Counter newCounter = Metrics.counter(IncrementalIndexTransform.class, ES_NEW_COUNT);
+
+    private final TupleTag<RecordHash> hashTag;
+
+    private HashFn(TupleTag<RecordHash> hashTag) {
+      this.hashTag = hashTag;
+    }
+
+    @ProcessElement
+    public void processElement(ProcessContext c) {
+      String id = c.element().getKey();
+      KV<Long, byte[]> doc = c.element().getValue();
+      c.output(hashTag, RecordHash.newBuilder().setId(id).setHash(doc.getKey()).build());
+      c.output(KV.of(id, doc.getValue()));
+      newCounter.inc();
+    }
+  }
+
+  /** Compares the hashes of the documents with the previous hashes */
+  private static class DiffFn extends DoFn<KV<String, CoGbkResult>, KV<String, byte[]>> {
+
+    private final Counter newCounter = Metrics.counter(IncrementalIndexTransform.class, ES_NEW_COUNT);
+    private final Counter changedCounter = Metrics.counter(IncrementalIndexTransform.class, ES_CHANGED_COUNT);
+    private final Counter unchangedCounter = Metrics.counter(IncrementalIndexTransform.class, ES_UNCHANGED_COUNT);
+    private final Counter deletedCounter = Metrics.counter(IncrementalIndexTransform.class, ES_DELETED_COUNT);
+
+    private final TupleTag<KV<Long, byte[]>> docTag;
+    private final TupleTag<Long> previousTag;
+    private final TupleTag<RecordHash> hashTag;
+    private final TupleTag<String> deletedTag;
+
+    private DiffFn(TupleTag<KV<Long, byte[]>> docTag, TupleTag<Long> previousTag, TupleTag<RecordHash> hashTag,
+        TupleTag<String> deletedTag) {
+      this.docTag = docTag;
+      this.previousTag = previousTag;
+      this.hashTag = hashTag;
+      this.deletedTag = deletedTag;
+    }
+
+    @ProcessElement
+    public void processElement(ProcessContext c) {
+      String id = c.element().getKey();
+      CoGbkResult v = c.element().getValue();
+      KV<Long, byte[]> doc = v.getOnly(docTag, null);
+      Long previous = v.getOnly(previousTag, null);
+
+      if (doc == null) {
+        c.output(deletedTag, id);
+        deletedCounter.inc();
+        return;
+      }
+
+      c.output(hashTag, RecordHash.newBuilder().setId(id).setHash(doc.getKey()).build());
+      if (previous == null) {
+        c.output(KV.of(id, doc.getValue()));
+        newCounter.inc();
+      } else if (previous != doc.getKey().longValue()) {
+        c.output(KV.of(id, doc.getValue()));
+        changedCounter.inc();
+      } else {
+        unchangedCounter.inc();
+      }
+    }
+  }
+}
@@ -0,0 +1,432 @@
+package org.gbif.pipelines.transforms.common;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.UnaryOperator;
+
+import org.gbif.pipelines.core.utils.AvroCodecUtils;
+import org.gbif.pipelines.core.utils.HashUtils;
+import org.gbif.pipelines.io.avro.ExtendedRecord;
+import org.gbif.pipelines.io.avro.MetadataRecord;
+import org.gbif.pipelines.io.avro.Record;
+import org.gbif.pipelines.io.avro.RecordHash;
+import org.gbif.pipelines.io.avro.RecordHashCoder;
+import org.gbif.pipelines.transforms.Transform;
+
+import org.apache.avro.Schema;
+import org.apache.avro.specific.SpecificData;
+import org.apache.avro.specific.SpecificRecordBase;
+import org.apache.beam.sdk.coders.StringUtf8Coder;
+import org.apache.beam.sdk.io.AvroIO;
+import org.apache.beam.sdk.metrics.Counter;
+import org.apache.beam.sdk.metrics.Metrics;
+import org.apache.beam.sdk.transforms.Create;
+import org.apache.beam.sdk.transforms.DoFn;
+import org.apache.beam.sdk.transforms.Flatten;
+import org.apache.beam.sdk.transforms.MapElements;
+import org.apache.beam.sdk.transforms.PTransform;
+import org.apache.beam.sdk.transforms.ParDo;
+import org.apache.beam.sdk.transforms.SerializableFunction;
+import org.apache.beam.sdk.transforms.View;
+import org.apache.beam.sdk.transforms.WithKeys;
+import org.apache.beam.sdk.transforms.join.CoGbkResult;
+import org.apache.beam.sdk.transforms.join.CoGroupByKey;
+import org.apache.beam.sdk.transforms.join.KeyedPCollectionTuple;
+import org.apache.beam.sdk.values.KV;
+import org.apache.beam.sdk.values.PCollection;
+import org.apache.beam.sdk.values.PCollectionList;
+import org.apache.beam.sdk.values.PCollectionTuple;
+import org.apache.beam.sdk.values.PCollectionView;
+import org.apache.beam.sdk.values.TupleTag;
+import org.apache.beam.sdk.values.TupleTagList;
+import org.apache.beam.sdk.values.TypeDescriptors;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import static org.gbif.pipelines.common.PipelinesVariables.Metrics.INCREMENTAL_CHANGED_COUNT;
+import static org.gbif.pipelines.common.PipelinesVariables.Metrics.INCREMENTAL_DELETED_COUNT;
+import static org.gbif.pipelines.common.PipelinesVariables.Metrics.INCREMENTAL_NEW_COUNT;
+import static org.gbif.pipelines.common.PipelinesVariables.Metrics.INCREMENTAL_UNCHANGED_COUNT;
+import static org.gbif.pipelines.common.PipelinesVariables.Pipeline.AVRO_EXTENSION;
+import static org.gbif.pipelines.common.PipelinesVariables.Pipeline.Interpretation.DELETED_DIRECTORY_NAME;
+import static org.gbif.pipelines.common.PipelinesVariables.Pipeline.Interpretation.HASH_DIRECTORY_NAME;
+
+/**
+ * Incremental interpretation of a dataset, compares the content hashes of {@link ExtendedRecord} with the hash index
+ * of the previous interpretation. Only new and changed records are interpreted, the records of unchanged ids are
+ * copied from the previous interpretation and the previous hashes of deleted ids are written as tombstones.
+ *
+ * <p>Only ids and hashes are grouped to compare the records with the hash index. The records and the previous
+ * interpreted records are filtered by a side input of the ids of new, changed and deleted records, which are expected
+ * to be few, so neither the verbatim records nor the previous records are shuffled.
+ *
+ * <p>The hash of a record is seeded with the pipelines version, the versions of the lookups, like the backbone
+ * version, the interpretation options and the hash of the dataset metadata, see {@link #createSeed}, so a new version
+ * or changed metadata interprets all records again. An unknown version can't be compared, the incremental
+ * interpretation requires all versions.
+ *
+ * <p>The "created" timestamp of the copied records is set to the time of the interpretation, like the timestamp of
+ * the interpreted records, because the timestamp is the last interpretation time of the record in the index.
+ */
+@Getter
+public class IncrementalTransform implements Serializable {
+
+  private static final long serialVersionUID = -4256512382637937361L;
+
+  private static final String CREATED_FIELD = "created";
+
+  private final TupleTag<ExtendedRecord> changedTag = new TupleTag<ExtendedRecord>() {};
+  private final TupleTag<String> replacedTag = new TupleTag<String>() {};
+  private final TupleTag<RecordHash> hashTag = new TupleTag<RecordHash>() {};
+  private final TupleTag<RecordHash> deletedTag = new TupleTag<RecordHash>() {};
+
+  private final String previousPath;
+  private final String optionsSeed;
+  private final String codec;
+
+  /**
+   * @param previousPath interpretation directory of the previous attempt, null if the dataset has no previous
+   * incremental interpretation and all records are new
+   * @param version pipelines version, see {@link #getCodeVersion()}, the diff fails without a version
+   * @param lookups identity of the lookup versions of the interpretation, the diff fails without lookups
+   * @param codec compression codec of the hash index and tombstones, see {@link AvroCodecUtils#fromString(String)}
+   */
+  @Builder(buildMethodName = "create")
+  private IncrementalTransform(String previousPath, String version, String lookups, boolean tripletValid,
+      boolean occurrenceIdValid, boolean useExtendedRecordId, String codec) {
+    this.previousPath = previousPath;
+    this.optionsSeed = version == null || lookups == null ? null :
+        createOptionsSeed(version, lookups, tripletValid, occurrenceIdValid, useExtendedRecordId);
+    this.codec = codec == null ? AvroCodecUtils.DEFAULT_CODEC : codec;
+    AvroCodecUtils.fromString(this.codec);
+  }
+
+  /**
+   * Seed of the record hashes, changes with the pipelines version, lookup versions, interpretation options and dataset
+   * metadata
+   *
+   * @param version pipelines version, see {@link #getCodeVersion()}
+   * @param lookups identity of the lookup versions of the interpretation
+   */
+  public static String createSeed(MetadataRecord mdr, String version, String lookups, boolean tripletValid,
+      boolean occurrenceIdValid, boolean useExtendedRecordId) {
+    if (version == null || lookups == null) {
+      throw new IllegalArgumentException("The hash seed needs the pipelines version and the lookup versions");
+    }
+    return createOptionsSeed(version, lookups, tripletValid, occurrenceIdValid, useExtendedRecordId)
+        + HashUtils.getMetadataHash(mdr);
+  }
+
+  /** Version of the pipelines jar, empty outside a packaged jar */
+  public static Optional<String> getCodeVersion() {
+    return Optional.ofNullable(IncrementalTransform.class.getPackage().getImplementationVersion())
+        .filter(v -> !v.isEmpty());
+  }
+
+  private static String createOptionsSeed(String version, String lookups, boolean tripletValid,
+      boolean occurrenceIdValid, boolean useExtendedRecordId) {
+    return String.join("|", version, lookups, String.valueOf(tripletValid), String.valueOf(occurrenceIdValid),
+        String.valueOf(useExtendedRecordId), "");
+  }
+
+  /** Sets the "created" timestamp of a record, does nothing if the record type has no timestamp */
+  public static void setCreated(SpecificRecordBase record, long created) {
+    Schema.Field field = record.getSchema().getField(CREATED_FIELD);
+    if (field != null) {
+      record.put(field.pos(), created);
+    }
+  }
+
+  /** Path of all files of a record type in the previous interpretation */
+  private String getPreviousPath(String baseName) {
+    return String.join("/", previousPath, baseName, "*" + AVRO_EXTENSION);
+  }
+
+  /**
+   * Outputs the new and changed records, the main output, the ids of changed and deleted records, whose previous
+   * records are replaced, see {@link #carryOver}, the hashes of all records and the previous hashes of deleted ids
+   *
+   * @param metadataView metadata of the dataset, part of the hash seed
+   */
+  public PTransform<PCollection<ExtendedRecord>, PCollectionTuple> diff(PCollectionView<MetadataRecord> metadataView) {
+    return new PTransform<PCollection<ExtendedRecord>, PCollectionTuple>() {
+      @Override
+      public PCollectionTuple expand(PCollection<ExtendedRecord> input) {
+        if (optionsSeed == null) {
+          throw new IllegalStateException("Incremental interpretation needs the pipelines and lookup versions");
+        }
+        if (previousPath == null) {
+          return input.apply("Hash records",
+              ParDo.of(new HashFn(hashTag, metadataView, optionsSeed))
+                  .withSideInputs(metadataView)
+                  .withOutputTags(changedTag, TupleTagList.of(hashTag)))
+              .and(replacedTag, input.getPipeline().apply("Empty replaced ids", Create.empty(StringUtf8Coder.of())))
+              .and(deletedTag, input.getPipeline().apply("Empty deleted ids", Create.empty(RecordHashCoder.of())));
+        }
+
+        TupleTag<Long> hashValueTag = new TupleTag<Long>() {};
+        TupleTag<Long> previousTag = new TupleTag<Long>() {};
+        TupleTag<String> changedIdTag = new TupleTag<String>() {};
+
+        PCollection<KV<String, Long>> hashKv = input.apply("Hash records",
+            ParDo.of(new KeyHashFn(metadataView, optionsSeed)).withSideInputs(metadataView));
+
+        PCollection<KV<String, Long>> previousKv = input.getPipeline()
+            .apply("Read previous hashes", AvroIO.read(RecordHash.class).from(getPreviousPath(HASH_DIRECTORY_NAME)))
+            .apply("Map previous hashes to KV", MapElements.into(TypeDescriptors.kvs(TypeDescriptors.strings(),
+                TypeDescriptors.longs())).via((RecordHash rh) -> KV.of(rh.getId(), rh.getHash())));
+
+        PCollectionTuple diff = KeyedPCollectionTuple.of(hashValueTag, hashKv)
+            .and(previousTag, previousKv)
+            .apply("Grouping hashes", CoGroupByKey.create())
+            .apply("Compare hashes",
+                ParDo.of(new DiffFn(hashValueTag, previousTag, replacedTag, hashTag, deletedTag))
+                    .withOutputTags(changedIdTag, TupleTagList.of(replacedTag).and(hashTag).and(deletedTag)));
+
+        PCollection<ExtendedRecord> changed = input
+            .apply("Filter changed records", filter(ExtendedRecord::getId, diff.get(changedIdTag), true));
+
+        return PCollectionTuple.of(changedTag, changed)
+            .and(replacedTag, diff.get(replacedTag))
+            .and(hashTag, diff.get(hashTag))
+            .and(deletedTag, diff.get(deletedTag));
+      }
+    };
+  }
+
+  /**
+   * Keeps the records with an id in ids, or without an id in ids. The ids are a side input, so only a small share of
+   * the ids of a dataset should be passed
+   *
+   * @param idFn gets an id of a record
+   * @param ids ids, duplicates are allowed
+   * @param keep true keeps the records with an id in ids, false keeps the records without
+   */
+  public static <T> PTransform<PCollection<T>, PCollection<T>> filter(SerializableFunction<T, String> idFn,
+      PCollection<String> ids, boolean keep) {
+    return new FilterById<>(idFn, ids, keep);
+  }
+
+  /**
+   * Adds the records of the previous interpretation to the interpreted records, except the records of the replaced
+   * ids, copied with a new "created" timestamp, the copied records are counted by the transform as interpreted
+   * records. Does nothing if there is no previous interpretation
+   *
+   * @param replacedIds ids of the records which are not carried over, the changed and deleted ids, see
+   * {@link #getReplacedTag()}, and any other ids which must not be carried over
+   */
+  public <T extends SpecificRecordBase & Record> PTransform<PCollection<T>, PCollection<T>> carryOver(
+      Transform<?, T> transform, PCollection<String> replacedIds) {
+    return new PTransform<PCollection<T>, PCollection<T>>() {
+      @Override
+      public PCollection<T> expand(PCollection<T> input) {
+        if (previousPath == null) {
+          return input;
+        }
+        SerializableFunction<T, String> idFn = Record::getId;
+        String baseName = transform.getBaseName();
+        PCollection<T> read = input.getPipeline()
+            .apply("Read previous " + baseName, transform.read(getPreviousPath(baseName)));
+        PCollection<T> previous = read
+            .apply("Filter unchanged " + baseName, filter(idFn, replacedIds, false))
+            .apply("Set created " + baseName, ParDo.of(new CreatedFn<T>(Instant.now().toEpochMilli())))
+            .setCoder(read.getCoder())
+            .apply("Count previous " + baseName, transform.count());
+        return PCollectionList.of(input).and(previous).apply("Merge previous", Flatten.pCollections());
+      }
+    };
+  }
+
+  /**
+   * Writes the hash index, {@link RecordHash} *.avro files, the next incremental interpretation compares hashes with
+   * the index
+   *
+   * @param pathFn function can return an output path, where in param is fixed - hash
+   */
+  public AvroIO.Write<RecordHash> write(UnaryOperator<String> pathFn) {
+    return write(pathFn.apply(HASH_DIRECTORY_NAME));
+  }
+
+  /**
+   * Writes the tombstones, previous {@link RecordHash} of deleted ids, *.avro files
+   *
+   * @param pathFn function can return an output path, where in param is fixed - deleted
+   */
+  public AvroIO.Write<RecordHash> writeDeleted(UnaryOperator<String> pathFn) {
+    return write(pathFn.apply(DELETED_DIRECTORY_NAME));
+  }
+
+  private AvroIO.Write<RecordHash> write(String toPath) {
+    return AvroIO.write(RecordHash.class).to(toPath).withSuffix(AVRO_EXTENSION)
+        .withCodec(AvroCodecUtils.fromString(codec));
+  }
+
+  /** Hashes all records of the first incremental interpretation, all records are new */
+  private static class HashFn extends DoFn<ExtendedRecord, ExtendedRecord> {
+
+    private final Counter newCounter = Metrics.counter(IncrementalTransform.class, INCREMENTAL_NEW_COUNT);
+
+    private final TupleTag<RecordHash> hashTag;
+    private final PCollectionView<MetadataRecord> metadataView;
+    private final String optionsSeed;
+
+    private transient String seed;
+
+    private HashFn(TupleTag<RecordHash> hashTag, PCollectionView<MetadataRecord> metadataView, String optionsSeed) {
+      this.hashTag = hashTag;
+      this.metadataView = metadataView;
+      this.optionsSeed = optionsSeed;
+    }
+
+    @ProcessElement
+    public void processElement(ProcessContext c) {
+      if (seed == null) {
+        seed = optionsSeed + HashUtils.getMetadataHash(c.sideInput(metadataView));
+      }
+      ExtendedRecord er = c.element();
+      c.output(hashTag, RecordHash.newBuilder().setId(er.getId()).setHash(HashUtils.getContentHash(er, seed)).build());
+      c.output(er);
+      newCounter.inc();
+    }
+  }
+
+  /** Maps the records to the id and the content hash */
+  private static class KeyHashFn extends DoFn<ExtendedRecord, KV<String, Long>> {
+
+    private final PCollectionView<MetadataRecord> metadataView;
+    private final String optionsSeed;
+
+    private transient String seed;
+
+    private KeyHashFn(PCollectionView<MetadataRecord> metadataView, String optionsSeed) {
+      this.metadataView = metadataView;
+      this.optionsSeed = optionsSeed;
+    }
+
+    @ProcessElement
+    public void processElement(ProcessContext c) {
+      if (seed == null) {
+        seed = optionsSeed + HashUtils.getMetadataHash(c.sideInput(metadataView));
+      }
+      ExtendedRecord er = c.element();
+      c.output(KV.of(er.getId(), HashUtils.getContentHash(er, seed)));
+    }
+  }
+
+  /** Compares the hashes of the records with the previous hashes, the main output - ids of new and changed records */
+  private static class DiffFn extends DoFn<KV<String, CoGbkResult>, String> {
+
+    private final Counter newCounter = Metrics.counter(IncrementalTransform.class, INCREMENTAL_NEW_COUNT);
+    private final Counter changedCounter = Metrics.counter(IncrementalTransform.class, INCREMENTAL_CHANGED_COUNT);
+    private final Counter unchangedCounter = Metrics.counter(IncrementalTransform.class, INCREMENTAL_UNCHANGED_COUNT);
+    private final Counter deletedCounter = Metrics.counter(IncrementalTransform.class, INCREMENTAL_DELETED_COUNT);
+
+    private final TupleTag<Long> hashValueTag;
+    private final TupleTag<Long> previousTag;
+    private final TupleTag<String> replacedTag;
+    private final TupleTag<RecordHash> hashTag;
+    private final TupleTag<RecordHash> deletedTag;
+
+    private DiffFn(TupleTag<Long> hashValueTag, TupleTag<Long> previousTag, TupleTag<String> replacedTag,
+        TupleTag<RecordHash> hashTag, TupleTag<RecordHash> deletedTag) {
+      this.hashValueTag = hashValueTag;
+      this.previousTag = previousTag;
+      this.replacedTag = replacedTag;
+      this.hashTag = hashTag;
+      this.deletedTag = deletedTag;
+    }
+
+    @ProcessElement
+    public void processElement(ProcessContext c) {
+      String id = c.element().getKey();
+      CoGbkResult v = c.element().getValue();
+      Long hash = v.getOnly(hashValueTag, null);
+      Long previous = v.getOnly(previousTag, null);
+
+      if (hash == null) {
+        c.output(deletedTag, RecordHash.newBuilder().setId(id).setHash(previous).build());
+        c.output(replacedTag, id);
+        deletedCounter.inc();
+        return;
+      }
+
+      c.output(hashTag, RecordHash.newBuilder().setId(id).setHash(hash).build());
+      if (previous == null) {
+        c.output(id);
+        newCounter.inc();
+      } else if (!previous.equals(hash)) {
+        c.output(id);
+        c.output(replacedTag, id);
+        changedCounter.inc();
+      } else {
+        unchangedCounter.inc();
+      }
+    }
+  }
+
+  /** Filters the records by a side input of the ids, keeps the records with or without an id */
+  private static class FilterById<T> extends PTransform<PCollection<T>, PCollection<T>> {
+
+    private final SerializableFunction<T, String> idFn;
+    private final transient PCollection<String> ids;
+    private final boolean keep;
+
+    private FilterById(SerializableFunction<T, String> idFn, PCollection<String> ids, boolean keep) {
+      this.idFn = idFn;
+      this.ids = ids;
+      this.keep = keep;
+    }
+
+    @Override
+    public PCollection<T> expand(PCollection<T> input) {
+      PCollectionView<Map<String, Iterable<String>>> idsView = ids
+          .apply("Map ids to KV", WithKeys.of((String id) -> id).withKeyType(TypeDescriptors.strings()))
+          .apply("Converting ids to view", View.asMultimap());
+
+      return input
+          .apply("Filter by id", ParDo.of(new FilterFn<>(idFn, idsView, keep)).withSideInputs(idsView))
+          .setCoder(input.getCoder());
+    }
+  }
+
+  private static class FilterFn<T> extends DoFn<T, T> {
+
+    private final SerializableFunction<T, String> idFn;
+    private final PCollectionView<Map<String, Iterable<String>>> idsView;
+    private final boolean keep;
+
+    private FilterFn(SerializableFunction<T, String> idFn, PCollectionView<Map<String, Iterable<String>>> idsView,
+        boolean keep) {
+      this.idFn = idFn;
+      this.idsView = idsView;
+      this.keep = keep;
+    }
+
+    @ProcessElement
+    public void processElement(ProcessContext c) {
+      if (c.sideInput(idsView).containsKey(idFn.apply(c.element())) == keep) {
+        c.output(c.element());
+      }
+    }
+  }
+
+  /** Copies the records with a new "created" timestamp, the elements of a PCollection must not be changed */
+  private static class CreatedFn<T extends SpecificRecordBase> extends DoFn<T, T> {
+
+    private final long created;
+
+    private CreatedFn(long created) {
+      this.created = created;
+    }
+
+    @ProcessElement
+    public void processElement(ProcessContext c) {
+      T record = SpecificData.get().deepCopy(c.element().getSchema(), c.element());
+      setCreated(record, created);
+      c.output(record);
+    }
+  }
+}
@@ -0,0 +1,444 @@
+package org.gbif.pipelines.transforms.common;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.gbif.pipelines.core.utils.AvroCodecUtils;
+
+import org.apache.avro.file.DataFileStream;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.specific.SpecificData;
+import org.apache.avro.specific.SpecificDatumReader;
+import org.apache.avro.specific.SpecificDatumWriter;
+import org.apache.avro.specific.SpecificRecordBase;
+import org.apache.beam.sdk.coders.AvroCoder;
+import org.apache.beam.sdk.coders.Coder;
+import org.apache.beam.sdk.coders.KvCoder;
+import org.apache.beam.sdk.coders.StringUtf8Coder;
+import org.apache.beam.sdk.coders.VarIntCoder;
+import org.apache.beam.sdk.io.FileSystems;
+import org.apache.beam.sdk.io.fs.EmptyMatchTreatment;
+import org.apache.beam.sdk.io.fs.MatchResult;
+import org.apache.beam.sdk.io.fs.MoveOptions.StandardMoveOptions;
+import org.apache.beam.sdk.io.fs.ResourceId;
+import org.apache.beam.sdk.metrics.Counter;
+import org.apache.beam.sdk.metrics.Metrics;
+import org.apache.beam.sdk.transforms.Create;
+import org.apache.beam.sdk.transforms.DoFn;
+import org.apache.beam.sdk.transforms.GroupByKey;
+import org.apache.beam.sdk.transforms.PTransform;
+import org.apache.beam.sdk.transforms.ParDo;
+import org.apache.beam.sdk.transforms.Reshuffle;
+import org.apache.beam.sdk.transforms.join.CoGbkResult;
+import org.apache.beam.sdk.transforms.join.CoGbkResult.CoGbkResultCoder;
+import org.apache.beam.sdk.transforms.join.CoGbkResultSchema;
+import org.apache.beam.sdk.transforms.join.RawUnionValue;
+import org.apache.beam.sdk.transforms.join.UnionCoder;
+import org.apache.beam.sdk.util.MimeTypes;
+import org.apache.beam.sdk.values.KV;
+import org.apache.beam.sdk.values.PBegin;
+import org.apache.beam.sdk.values.PCollection;
+import org.apache.beam.sdk.values.PDone;
+import org.apache.beam.sdk.values.TupleTag;
+
+import com.google.common.hash.Hashing;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import static org.gbif.pipelines.common.PipelinesVariables.Metrics.BUCKET_JOIN_COUNT;
+import static org.gbif.pipelines.common.PipelinesVariables.Pipeline.AVRO_EXTENSION;
+
+/**
+ * Avro files bucketed by the record id, where the records of a bucket file are sorted by the id. All record types
+ * written with the same number of buckets put an id into the same bucket, so they can be joined bucket by bucket with
+ * a local merge instead of shuffling all records with a {@link org.apache.beam.sdk.transforms.join.CoGroupByKey}.
+ *
+ * <p>A bucket file is named "{path}-bucket-{bucket}-of-{buckets}.avro", and can be read as any other avro file of the
+ * record type. A bucket is sorted in memory only up to a number of records, see {@link Write#withSortBufferRecords},
+ * larger buckets are sorted in runs spilled next to the bucket file and merged.
+ *
+ * <p>Example:
+ *
+ * <pre>{@code
+ * basicCollection.apply("Write basic to avro", SortedBucketIO.write(BasicRecord.class, "/path/basic/interpret", 64));
+ *
+ * SortedBucketIO.CoGroup coGroup =
+ *     SortedBucketIO.coGroup()
+ *         .and(SortedBucketIO.source(brTag, BasicRecord.class, "/path/basic/interpret-*"))
+ *         .and(SortedBucketIO.source(trTag, TemporalRecord.class, "/path/temporal/interpret-*"));
+ *
+ * PCollection<KV<String, CoGbkResult>> grouped = coGroup.isBucketed() ? p.apply(coGroup) : ...
+ * }</pre>
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class SortedBucketIO {
+
+  private static final int DEFAULT_SORT_BUFFER_RECORDS = 100_000;
+  private static final String BUCKET_FORMAT = "-bucket-%05d-of-%05d" + AVRO_EXTENSION;
+  private static final Pattern BUCKET_PATTERN = Pattern.compile(".*-bucket-\\d{5}-of-(\\d{5})" + AVRO_EXTENSION);
+
+  /** @return bucket of the id, the same for every record type */
+  public static int bucket(String id, int buckets) {
+    return Math.floorMod(Hashing.murmur3_32().hashString(id, StandardCharsets.UTF_8).asInt(), buckets);
+  }
+
+  /**
+   * Writes {@link T} records bucketed by {@link T}'s id, every bucket is a single file sorted by the id
+   *
+   * @param path path with name to output files, like - directory/name
+   * @param buckets number of buckets
+   */
+  public static <T extends SpecificRecordBase> Write<T> write(Class<T> clazz, String path, int buckets) {
+    if (buckets < 1 || buckets > 99_999) {
+      throw new IllegalArgumentException("Number of buckets must be between 1 and 99999, but was " + buckets);
+    }
+    return new Write<>(clazz, path, buckets, AvroCodecUtils.DEFAULT_CODEC, DEFAULT_SORT_BUFFER_RECORDS);
+  }
+
+  /** Creates an empty join of bucketed files, the sources are added by {@link CoGroup#and} */
+  public static CoGroup coGroup() {
+    return new CoGroup(Collections.emptyList());
+  }
+
+  /**
+   * Bucketed {@link T} files to join by {@link CoGroup}
+   *
+   * @param tag tag of the records in the joined {@link CoGbkResult}
+   * @param path path with name to files, like - directory/name, can contain wildcards
+   */
+  public static <T extends SpecificRecordBase> Source<T> source(TupleTag<T> tag, Class<T> clazz, String path) {
+    return new Source<>(tag, clazz, path);
+  }
+
+  private static String bucketFile(String path, int bucket, int buckets) {
+    return path + String.format(BUCKET_FORMAT, bucket, buckets);
+  }
+
+  private static String getId(SpecificRecordBase record) {
+    return (String) record.get(record.getSchema().getField("id").pos());
+  }
+
+  @AllArgsConstructor(access = AccessLevel.PRIVATE)
+  public static class Write<T extends SpecificRecordBase> extends PTransform<PCollection<T>, PDone> {
+
+    private final Class<T> clazz;
+    private final String path;
+    private final int buckets;
+    private final String codec;
+    private final int sortBufferRecords;
+
+    /**
+     * Compression codec of the bucket files, Snappy by default
+     *
+     * @param codec codec name, see {@link AvroCodecUtils#fromString(String)}
+     */
+    public Write<T> withCodec(String codec) {
+      AvroCodecUtils.fromString(codec);
+      return new Write<>(clazz, path, buckets, codec, sortBufferRecords);
+    }
+
+    /**
+     * Maximum number of records of a bucket sorted in memory, 100 000 by default, a larger bucket is sorted in runs of
+     * this size which are spilled to temporary files and merged
+     */
+    public Write<T> withSortBufferRecords(int sortBufferRecords) {
+      if (sortBufferRecords < 1) {
+        throw new IllegalArgumentException("Sort buffer must be positive, but was " + sortBufferRecords);
+      }
+      return new Write<>(clazz, path, buckets, codec, sortBufferRecords);
+    }
+
+    @Override
+    public PDone expand(PCollection<T> input) {
+      int count = buckets;
+      input
+          .apply("Map to bucket", ParDo.of(new DoFn<T, KV<Integer, T>>() {
+            @ProcessElement
+            public void processElement(@Element T record, OutputReceiver<KV<Integer, T>> out) {
+              out.output(KV.of(bucket(getId(record), count), record));
+            }
+          }))
+          .setCoder(KvCoder.of(VarIntCoder.of(), AvroCoder.of(clazz)))
+          .apply("Group by bucket", GroupByKey.create())
+          .apply("Write sorted bucket", ParDo.of(new WriteBucketFn<>(clazz, path, buckets, codec, sortBufferRecords)));
+      return PDone.in(input.getPipeline());
+    }
+  }
+
+  /**
+   * Sorts the records of a bucket and writes them to a temporary file, which replaces the bucket file at the end, so a
+   * retried bundle overwrites the bucket. At most sortBufferRecords records are held in memory, a larger bucket is
+   * written as sorted runs to temporary files, which are merged like the buckets of {@link CoGroup}.
+   */
+  @Slf4j
+  @AllArgsConstructor(access = AccessLevel.PRIVATE)
+  private static class WriteBucketFn<T extends SpecificRecordBase> extends DoFn<KV<Integer, Iterable<T>>, Void> {
+
+    private final Class<T> clazz;
+    private final String path;
+    private final int buckets;
+    private final String codec;
+    private final int sortBufferRecords;
+
+    @ProcessElement
+    public void processElement(@Element KV<Integer, Iterable<T>> element) throws IOException {
+      String file = bucketFile(path, element.getKey(), buckets);
+      String tmpPrefix = file + "." + UUID.randomUUID();
+      ResourceId target = FileSystems.matchNewResource(file, false);
+      ResourceId tmp = FileSystems.matchNewResource(tmpPrefix + ".tmp", false);
+
+      long count = 0L;
+      List<ResourceId> runs = new ArrayList<>();
+      try {
+        List<T> records = new ArrayList<>();
+        for (T record : element.getValue()) {
+          records.add(record);
+          count++;
+          if (records.size() >= sortBufferRecords) {
+            runs.add(writeSorted(tmpPrefix + ".run-" + runs.size() + ".tmp", records));
+            records.clear();
+          }
+        }
+
+        if (runs.isEmpty()) {
+          writeSorted(tmpPrefix + ".tmp", records);
+        } else {
+          if (!records.isEmpty()) {
+            runs.add(writeSorted(tmpPrefix + ".run-" + runs.size() + ".tmp", records));
+          }
+          merge(runs, tmp);
+        }
+      } finally {
+        FileSystems.delete(runs, StandardMoveOptions.IGNORE_MISSING_FILES);
+      }
+
+      FileSystems.delete(Collections.singletonList(target), StandardMoveOptions.IGNORE_MISSING_FILES);
+      FileSystems.rename(Collections.singletonList(tmp), Collections.singletonList(target));
+      log.info("Written bucket {} with {} records from {} sorted runs", file, count, Math.max(1, runs.size()));
+    }
+
+    /** Sorts the records by the id and writes them to the file */
+    private ResourceId writeSorted(String file, List<T> records) throws IOException {
+      records.sort(Comparator.comparing(SortedBucketIO::getId));
+      ResourceId resource = FileSystems.matchNewResource(file, false);
+      try (DataFileWriter<T> writer = createWriter(resource)) {
+        for (T record : records) {
+          writer.append(record);
+        }
+      }
+      return resource;
+    }
+
+    /** Merges the sorted runs into the file, each run is read once */
+    private void merge(List<ResourceId> runs, ResourceId file) throws IOException {
+      List<Cursor> cursors = new ArrayList<>();
+      try (DataFileWriter<T> writer = createWriter(file)) {
+        PriorityQueue<Cursor> queue = new PriorityQueue<>(Comparator.comparing((Cursor c) -> c.id));
+        for (int i = 0; i < runs.size(); i++) {
+          Cursor cursor = new Cursor(i, runs.get(i), clazz);
+          cursors.add(cursor);
+          if (cursor.advance()) {
+            queue.add(cursor);
+          }
+        }
+
+        while (!queue.isEmpty()) {
+          Cursor cursor = queue.poll();
+          writer.append(clazz.cast(cursor.record));
+          if (cursor.advance()) {
+            queue.add(cursor);
+          }
+        }
+      } finally {
+        for (Cursor cursor : cursors) {
+          cursor.close();
+        }
+      }
+    }
+
+    private DataFileWriter<T> createWriter(ResourceId file) throws IOException {
+      DataFileWriter<T> writer = new DataFileWriter<>(new SpecificDatumWriter<>(clazz));
+      writer.setCodec(AvroCodecUtils.fromString(codec));
+      return writer.create(SpecificData.get().getSchema(clazz),
+          Channels.newOutputStream(FileSystems.create(file, MimeTypes.BINARY)));
+    }
+  }
+
+  /** Bucketed files of a record type, joined by {@link CoGroup} */
+  @AllArgsConstructor(access = AccessLevel.PRIVATE)
+  public static class Source<T extends SpecificRecordBase> implements Serializable {
+
+    private static final long serialVersionUID = 5206376815496137045L;
+
+    private final TupleTag<T> tag;
+    private final Class<T> clazz;
+    private final String path;
+  }
+
+  /**
+   * Joins bucketed files of several record types by the id, a bucket is read by a single {@link DoFn} which merges the
+   * sorted files of the bucket. The result is the same as of a {@link org.apache.beam.sdk.transforms.join.CoGroupByKey}
+   * of the records, without the shuffle.
+   */
+  @Slf4j
+  @AllArgsConstructor(access = AccessLevel.PRIVATE)
+  public static class CoGroup extends PTransform<PBegin, PCollection<KV<String, CoGbkResult>>> {
+
+    private final List<Source<?>> sources;
+
+    /** Adds the bucketed files of a record type */
+    public CoGroup and(Source<?> source) {
+      List<Source<?>> list = new ArrayList<>(sources);
+      list.add(source);
+      return new CoGroup(list);
+    }
+
+    /**
+     * @return true if all files of all record types are bucketed with the same number of buckets, record types
+     * without files are skipped, false if the files can't be listed
+     */
+    public boolean isBucketed() {
+      try {
+        return findBuckets().isPresent();
+      } catch (IOException ex) {
+        log.warn("Can't list the files to join", ex);
+        return false;
+      }
+    }
+
+    private Optional<Integer> findBuckets() throws IOException {
+      Integer buckets = null;
+      for (Source<?> source : sources) {
+        MatchResult result = FileSystems.match(source.path + AVRO_EXTENSION, EmptyMatchTreatment.ALLOW);
+        for (MatchResult.Metadata metadata : result.metadata()) {
+          Matcher matcher = BUCKET_PATTERN.matcher(metadata.resourceId().getFilename());
+          if (!matcher.matches()) {
+            log.info("File {} is not bucketed", metadata.resourceId());
+            return Optional.empty();
+          }
+          int count = Integer.parseInt(matcher.group(1));
+          if (buckets != null && buckets != count) {
+            log.info("Files are written with different numbers of buckets, {} and {}", buckets, count);
+            return Optional.empty();
+          }
+          buckets = count;
+        }
+      }
+      return Optional.ofNullable(buckets);
+    }
+
+    @Override
+    public PCollection<KV<String, CoGbkResult>> expand(PBegin input) {
+      int buckets;
+      try {
+        buckets = findBuckets().orElseThrow(() -> new IllegalStateException("Files are not bucketed"));
+      } catch (IOException ex) {
+        throw new IllegalStateException(ex);
+      }
+
+      List<TupleTag<?>> tags = sources.stream().map(s -> s.tag).collect(Collectors.toList());
+      List<Coder<?>> coders = sources.stream().map(s -> AvroCoder.of(s.clazz)).collect(Collectors.toList());
+      CoGbkResultSchema schema = CoGbkResultSchema.of(tags);
+
+      return input
+          .apply("Create buckets", Create.of(IntStream.range(0, buckets).boxed().collect(Collectors.toList())))
+          .apply("Distribute buckets", Reshuffle.viaRandomKey())
+          .apply("Merge buckets", ParDo.of(new MergeBucketFn(sources, schema, buckets)))
+          .setCoder(KvCoder.of(StringUtf8Coder.of(), CoGbkResultCoder.of(schema, UnionCoder.of(coders))));
+    }
+  }
+
+  /** Merges the sorted files of all record types of a bucket, each file is read once */
+  @AllArgsConstructor(access = AccessLevel.PRIVATE)
+  private static class MergeBucketFn extends DoFn<Integer, KV<String, CoGbkResult>> {
+
+    private final Counter counter = Metrics.counter(SortedBucketIO.class, BUCKET_JOIN_COUNT);
+
+    private final List<Source<?>> sources;
+    private final CoGbkResultSchema schema;
+    private final int buckets;
+
+    @ProcessElement
+    public void processElement(@Element Integer bucket, OutputReceiver<KV<String, CoGbkResult>> out)
+        throws IOException {
+      List<Cursor> cursors = new ArrayList<>();
+      try {
+        PriorityQueue<Cursor> queue = new PriorityQueue<>(Comparator.comparing((Cursor c) -> c.id));
+        for (int i = 0; i < sources.size(); i++) {
+          String file = bucketFile(sources.get(i).path, bucket, buckets);
+          for (MatchResult.Metadata metadata : FileSystems.match(file, EmptyMatchTreatment.ALLOW).metadata()) {
+            Cursor cursor = new Cursor(i, metadata.resourceId(), sources.get(i).clazz);
+            cursors.add(cursor);
+            if (cursor.advance()) {
+              queue.add(cursor);
+            }
+          }
+        }
+
+        while (!queue.isEmpty()) {
+          String id = queue.peek().id;
+          List<RawUnionValue> values = new ArrayList<>();
+          while (!queue.isEmpty() && queue.peek().id.equals(id)) {
+            Cursor cursor = queue.poll();
+            values.add(new RawUnionValue(cursor.unionTag, cursor.record));
+            if (cursor.advance()) {
+              queue.add(cursor);
+            }
+          }
+          out.output(KV.of(id, new CoGbkResult(schema, values)));
+          counter.inc();
+        }
+      } finally {
+        for (Cursor cursor : cursors) {
+          cursor.close();
+        }
+      }
+    }
+  }
+
+  /** Current record of a sorted bucket file */
+  private static class Cursor implements Closeable {
+
+    private final int unionTag;
+    private final DataFileStream<SpecificRecordBase> stream;
+    private SpecificRecordBase record;
+    private String id;
+
+    private Cursor(int unionTag, ResourceId file, Class<? extends SpecificRecordBase> clazz) throws IOException {
+      this.unionTag = unionTag;
+      SpecificDatumReader<SpecificRecordBase> reader = new SpecificDatumReader<>(SpecificData.get().getSchema(clazz));
+      this.stream = new DataFileStream<>(Channels.newInputStream(FileSystems.open(file)), reader);
+    }
+
+    private boolean advance() {
+      if (!stream.hasNext()) {
+        return false;
+      }
+      // A new instance per record, the records are emitted downstream
+      record = stream.next();
+      id = getId(record);
+      return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+      stream.close();
+    }
+  }
+}
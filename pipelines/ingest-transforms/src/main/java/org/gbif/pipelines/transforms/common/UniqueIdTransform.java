@@ -1,18 +1,31 @@
 package org.gbif.pipelines.transforms.common;
 
 import java.util.Iterator;
+import java.util.Map;
 
+import org.gbif.pipelines.core.utils.HashUtils;
 import org.gbif.pipelines.io.avro.ExtendedRecord;
-import org.gbif.pipelines.transforms.core.VerbatimTransform;
 
+import org.apache.beam.sdk.coders.AvroCoder;
+import org.apache.beam.sdk.coders.KvCoder;
+import org.apache.beam.sdk.coders.StringUtf8Coder;
 import org.apache.beam.sdk.metrics.Counter;
 import org.apache.beam.sdk.metrics.Metrics;
 import org.apache.beam.sdk.transforms.DoFn;
+import org.apache.beam.sdk.transforms.Flatten;
 import org.apache.beam.sdk.transforms.GroupByKey;
+import org.apache.beam.sdk.transforms.MapElements;
 import org.apache.beam.sdk.transforms.PTransform;
 import org.apache.beam.sdk.transforms.ParDo;
+import org.apache.beam.sdk.transforms.View;
 import org.apache.beam.sdk.values.KV;
 import org.apache.beam.sdk.values.PCollection;
+import org.apache.beam.sdk.values.PCollectionList;
+import org.apache.beam.sdk.values.PCollectionTuple;
+import org.apache.beam.sdk.values.PCollectionView;
+import org.apache.beam.sdk.values.TupleTag;
+import org.apache.beam.sdk.values.TupleTagList;
+import org.apache.beam.sdk.values.TypeDescriptors;
 
 import lombok.NoArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -21,55 +34,117 @@ import static org.gbif.pipelines.common.PipelinesVariables.Metrics.DUPLICATE_IDS
 import static org.gbif.pipelines.common.PipelinesVariables.Metrics.IDENTICAL_OBJECTS_COUNT;
 import static org.gbif.pipelines.common.PipelinesVariables.Metrics.UNIQUE_IDS_COUNT;
 
-/** Transformation for filtering all duplicate records with the same {@link ExtendedRecord#getId} */
+/**
+ * Transformation for filtering all duplicate records with the same {@link ExtendedRecord#getId}
+ *
+ * <p>Only ids with a hash of the record content are grouped to find duplicated ids, the records are filtered by a side
+ * input of the duplicated ids. Just the records of ids with identical duplicates are grouped, to keep one of them. The
+ * grouped records are compared in full, if they differ after all, all records of the id are dropped as duplicates.
+ */
 @Slf4j
 @NoArgsConstructor(staticName = "create")
 public class UniqueIdTransform extends PTransform<PCollection<ExtendedRecord>, PCollection<ExtendedRecord>> {
 
+  private final TupleTag<ExtendedRecord> uniqueTag = new TupleTag<ExtendedRecord>() {};
+  private final TupleTag<KV<String, ExtendedRecord>> identicalTag = new TupleTag<KV<String, ExtendedRecord>>() {};
+
   @Override
   public PCollection<ExtendedRecord> expand(PCollection<ExtendedRecord> input) {
 
-    // Convert from list to map where, key - occurrenceId, value - object instance and group by key
-    PCollection<KV<String, Iterable<ExtendedRecord>>> groupedCollection =
+    // Convert from list to map where, key - occurrenceId, value - hash of the object and group by key
+    PCollection<KV<String, Iterable<Long>>> groupedCollection =
         input
-            .apply("Mapping to KV", VerbatimTransform.create().toKv())
+            .apply("Mapping to id and hash", MapElements.into(
+                TypeDescriptors.kvs(TypeDescriptors.strings(), TypeDescriptors.longs()))
+                .via((ExtendedRecord er) -> KV.of(er.getId(), HashUtils.getContentHash(er))))
             .apply("Grouping by occurrenceId", GroupByKey.create());
 
-    // Filter duplicate occurrenceIds, all groups where value size != 1
-    return groupedCollection.apply("Filtering duplicates",
-        ParDo.of(
-            new DoFn<KV<String, Iterable<ExtendedRecord>>, ExtendedRecord>() {
-
-              private final Counter uniqueCounter = Metrics.counter(UniqueIdTransform.class, UNIQUE_IDS_COUNT);
-              private final Counter duplicateCounter = Metrics.counter(UniqueIdTransform.class, DUPLICATE_IDS_COUNT);
-              private final Counter identicalCounter = Metrics.counter(UniqueIdTransform.class, IDENTICAL_OBJECTS_COUNT);
+    // Find duplicate occurrenceIds, all groups where value size != 1, value - all duplicates are identical
+    PCollectionView<Map<String, Boolean>> duplicatesView = groupedCollection
+        .apply("Finding duplicates", ParDo.of(new FindDuplicatesFn()))
+        .apply("Converting duplicates to view", View.asMap());
 
+    // Filter duplicate occurrenceIds, the identical duplicates are grouped to keep one of them
+    PCollectionTuple filteredCollection = input.apply("Filtering duplicates",
+        ParDo.of(
+            new DoFn<ExtendedRecord, ExtendedRecord>() {
               @ProcessElement
               public void processElement(ProcessContext c) {
-                KV<String, Iterable<ExtendedRecord>> element = c.element();
-                Iterator<ExtendedRecord> iterator = element.getValue().iterator();
-                ExtendedRecord record = iterator.next();
-                if (!iterator.hasNext()) {
-                  // No duplicates were found
+                ExtendedRecord record = c.element();
+                Boolean areEqual = c.sideInput(duplicatesView).get(record.getId());
+                if (areEqual == null) {
                   c.output(record);
-                  uniqueCounter.inc();
-                } else {
-                  // Found duplicates, compare all duplicate records, maybe they are identical
-                  boolean areEqual = true;
-                  while (iterator.hasNext() && areEqual) {
-                    if (!record.equals(iterator.next())) {
-                      areEqual = false;
-                    }
-                  }
-                  if (areEqual) {
-                    c.output(record);
-                    identicalCounter.inc();
-                  }
-                  // Log duplicate and metric
-                  log.warn("occurrenceId = {}, duplicates were found", element.getKey());
-                  duplicateCounter.inc();
+                } else if (areEqual) {
+                  c.output(identicalTag, KV.of(record.getId(), record));
                 }
               }
-            }));
+            })
+            .withSideInputs(duplicatesView)
+            .withOutputTags(uniqueTag, TupleTagList.of(identicalTag)));
+
+    PCollection<ExtendedRecord> uniqueCollection =
+        filteredCollection.get(uniqueTag).setCoder(AvroCoder.of(ExtendedRecord.class));
+
+    PCollection<ExtendedRecord> identicalCollection =
+        filteredCollection.get(identicalTag)
+            .setCoder(KvCoder.of(StringUtf8Coder.of(), AvroCoder.of(ExtendedRecord.class)))
+            .apply("Grouping identical duplicates", GroupByKey.create())
+            .apply("Taking one of identical duplicates", ParDo.of(new TakeIdenticalFn()));
+
+    return PCollectionList.of(uniqueCollection)
+        .and(identicalCollection)
+        .apply("Merging unique records", Flatten.pCollections())
+        .setCoder(AvroCoder.of(ExtendedRecord.class));
+  }
+
+  /** Outputs duplicate occurrenceIds, value - true if all duplicates have the same hash */
+  private static class FindDuplicatesFn extends DoFn<KV<String, Iterable<Long>>, KV<String, Boolean>> {
+
+    private final Counter uniqueCounter = Metrics.counter(UniqueIdTransform.class, UNIQUE_IDS_COUNT);
+    private final Counter duplicateCounter = Metrics.counter(UniqueIdTransform.class, DUPLICATE_IDS_COUNT);
+    private final Counter identicalCounter = Metrics.counter(UniqueIdTransform.class, IDENTICAL_OBJECTS_COUNT);
+
+    @ProcessElement
+    public void processElement(ProcessContext c) {
+      KV<String, Iterable<Long>> element = c.element();
+      Iterator<Long> iterator = element.getValue().iterator();
+      Long hash = iterator.next();
+      if (!iterator.hasNext()) {
+        // No duplicates were found
+        uniqueCounter.inc();
+      } else {
+        // Found duplicates, compare all duplicate hashes, maybe the objects are identical
+        boolean areEqual = true;
+        while (iterator.hasNext() && areEqual) {
+          if (!hash.equals(iterator.next())) {
+            areEqual = false;
+          }
+        }
+        if (areEqual) {
+          identicalCounter.inc();
+        }
+        c.output(KV.of(element.getKey(), areEqual));
+        // Log duplicate and metric
+        log.warn("occurrenceId = {}, duplicates were found", element.getKey());
+        duplicateCounter.inc();
+      }
+    }
+  }
+
+  /** Outputs one of the identical duplicates, all records are dropped if they differ despite the same content hash */
+  private static class TakeIdenticalFn extends DoFn<KV<String, Iterable<ExtendedRecord>>, ExtendedRecord> {
+
+    @ProcessElement
+    public void processElement(ProcessContext c) {
+      Iterator<ExtendedRecord> iterator = c.element().getValue().iterator();
+      ExtendedRecord record = iterator.next();
+      while (iterator.hasNext()) {
+        if (!record.equals(iterator.next())) {
+          log.warn("occurrenceId = {}, duplicates have the same hash, but are different", c.element().getKey());
+          return;
+        }
+      }
+      c.output(record);
+    }
   }
 }
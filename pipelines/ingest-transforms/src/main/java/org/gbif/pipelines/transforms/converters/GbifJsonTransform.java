@@ -1,7 +1,14 @@
 package org.gbif.pipelines.transforms.converters;
 
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
 
+import org.gbif.pipelines.common.PipelinesVariables.Pipeline.Interpretation.RecordType;
 import org.gbif.pipelines.core.converters.GbifJsonConverter;
 import org.gbif.pipelines.core.converters.MultimediaConverter;
 import org.gbif.pipelines.io.avro.AudubonRecord;
@@ -16,6 +23,7 @@ import org.gbif.pipelines.io.avro.TaggedValueRecord;
 import org.gbif.pipelines.io.avro.TaxonRecord;
 import org.gbif.pipelines.io.avro.TemporalRecord;
 
+import org.apache.avro.specific.SpecificRecordBase;
 import org.apache.beam.sdk.metrics.Counter;
 import org.apache.beam.sdk.metrics.Metrics;
 import org.apache.beam.sdk.transforms.DoFn;
@@ -26,6 +34,8 @@ import org.apache.beam.sdk.values.KV;
 import org.apache.beam.sdk.values.PCollectionView;
 import org.apache.beam.sdk.values.TupleTag;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import lombok.AllArgsConstructor;
 import lombok.NonNull;
 
@@ -91,6 +101,10 @@ public class GbifJsonTransform implements Serializable {
 
   private static final long serialVersionUID = 1279313931024806169L;
 
+  private static final Set<RecordType> PARTIAL_UPDATE_TYPES =
+      EnumSet.of(RecordType.TEMPORAL, RecordType.LOCATION, RecordType.TAXONOMY, RecordType.MULTIMEDIA, RecordType.IMAGE,
+          RecordType.AUDUBON, RecordType.MEASUREMENT_OR_FACT);
+
   // Core
   @NonNull
   private final TupleTag<ExtendedRecord> erTag;
@@ -123,30 +137,112 @@ public class GbifJsonTransform implements Serializable {
 
       private final Counter counter = Metrics.counter(GbifJsonTransform.class, AVRO_TO_JSON_COUNT);
 
+      @ProcessElement
+      public void processElement(ProcessContext c) {
+        String json = toJson(c.element(), c.sideInput(metadataView)).toString();
+
+        c.output(json);
+
+        counter.inc();
+      }
+    };
+
+    return ParDo.of(fn).withSideInputs(metadataView);
+  }
+
+  /**
+   * Converts into an ES document, key - value of the esDocumentId field, value - json bytes, so the sink does not
+   * have to parse the json again to get the document id
+   *
+   * @param esDocumentId json field, which value is used as the ES document id
+   */
+  public SingleOutput<KV<String, CoGbkResult>, KV<String, byte[]>> indexDocConverter(String esDocumentId) {
+
+    DoFn<KV<String, CoGbkResult>, KV<String, byte[]>> fn = new DoFn<KV<String, CoGbkResult>, KV<String, byte[]>>() {
+
+      private final Counter counter = Metrics.counter(GbifJsonTransform.class, AVRO_TO_JSON_COUNT);
+
+      @ProcessElement
+      public void processElement(ProcessContext c) {
+        ObjectNode json = toJson(c.element(), c.sideInput(metadataView));
+
+        c.output(KV.of(getDocumentId(json, esDocumentId, c.element().getKey()),
+            json.toString().getBytes(StandardCharsets.UTF_8)));
+
+        counter.inc();
+      }
+    };
+
+    return ParDo.of(fn).withSideInputs(metadataView);
+  }
+
+  /**
+   * Converts into an ES document with the content hash of the document, key - value of the esDocumentId field, value -
+   * the hash, see {@link GbifJsonConverter#getContentHash}, and json bytes, used by the incremental indexing
+   *
+   * @param esDocumentId json field, which value is used as the ES document id
+   */
+  public SingleOutput<KV<String, CoGbkResult>, KV<String, KV<Long, byte[]>>> indexDocHashConverter(
+      String esDocumentId) {
+
+    DoFn<KV<String, CoGbkResult>, KV<String, KV<Long, byte[]>>> fn =
+        new DoFn<KV<String, CoGbkResult>, KV<String, KV<Long, byte[]>>>() {
+
+          private final Counter counter = Metrics.counter(GbifJsonTransform.class, AVRO_TO_JSON_COUNT);
+
+          @ProcessElement
+          public void processElement(ProcessContext c) {
+            ObjectNode json = toJson(c.element(), c.sideInput(metadataView));
+
+            long hash = GbifJsonConverter.getContentHash(json);
+            c.output(KV.of(getDocumentId(json, esDocumentId, c.element().getKey()),
+                KV.of(hash, json.toString().getBytes(StandardCharsets.UTF_8))));
+
+            counter.inc();
+          }
+        };
+
+    return ParDo.of(fn).withSideInputs(metadataView);
+  }
+
+  /**
+   * Converts into a partial ES document update, key - value of the esDocumentId field, value - json bytes of the fields
+   * built from the reinterpreted record types, see {@link GbifJsonConverter#toPartialUpdateJson}. Doesn't use the
+   * verbatim and tagged values tags, so they can be left out of the grouping
+   *
+   * @param esDocumentId json field of {@link BasicRecord}, which value is used as the ES document id
+   * @param types reinterpreted record types - TEMPORAL, LOCATION, TAXONOMY, MULTIMEDIA, IMAGE, AUDUBON or
+   * MEASUREMENT_OR_FACT
+   */
+  public SingleOutput<KV<String, CoGbkResult>, KV<String, byte[]>> partialUpdateConverter(String esDocumentId,
+      Set<String> types) {
+
+    Set<RecordType> recordTypes = getPartialUpdateTypes(types);
+
+    DoFn<KV<String, CoGbkResult>, KV<String, byte[]>> fn = new DoFn<KV<String, CoGbkResult>, KV<String, byte[]>>() {
+
+      private final Counter counter = Metrics.counter(GbifJsonTransform.class, AVRO_TO_JSON_COUNT);
+
       @ProcessElement
       public void processElement(ProcessContext c) {
         CoGbkResult v = c.element().getValue();
         String k = c.element().getKey();
 
-        // Core
         MetadataRecord mdr = c.sideInput(metadataView);
-        ExtendedRecord er = v.getOnly(erTag, ExtendedRecord.newBuilder().setId(k).build());
         BasicRecord br = v.getOnly(brTag, BasicRecord.newBuilder().setId(k).build());
         TemporalRecord tr = v.getOnly(trTag, TemporalRecord.newBuilder().setId(k).build());
         LocationRecord lr = v.getOnly(lrTag, LocationRecord.newBuilder().setId(k).build());
         TaxonRecord txr = v.getOnly(txrTag, TaxonRecord.newBuilder().setId(k).build());
-        TaggedValueRecord tvr = v.getOnly(tvrTag, TaggedValueRecord.newBuilder().setId(k).build());
-
-        // Extension
         MultimediaRecord mr = v.getOnly(mrTag, MultimediaRecord.newBuilder().setId(k).build());
         ImageRecord ir = v.getOnly(irTag, ImageRecord.newBuilder().setId(k).build());
         AudubonRecord ar = v.getOnly(arTag, AudubonRecord.newBuilder().setId(k).build());
         MeasurementOrFactRecord mfr = v.getOnly(mfrTag, MeasurementOrFactRecord.newBuilder().setId(k).build());
 
         MultimediaRecord mmr = MultimediaConverter.merge(mr, ir, ar);
-        String json = GbifJsonConverter.toStringJson(mdr, br, tr, lr, txr, mmr, mfr, tvr, er);
+        ObjectNode json = toPartialUpdateJson(recordTypes, mdr, br, tr, lr, txr, mmr, mfr);
+        String id = getDocumentId(GbifJsonConverter.toPartialJson(br), esDocumentId, k);
 
-        c.output(json);
+        c.output(KV.of(id, json.toString().getBytes(StandardCharsets.UTF_8)));
 
         counter.inc();
       }
@@ -154,4 +250,78 @@ public class GbifJsonTransform implements Serializable {
 
     return ParDo.of(fn).withSideInputs(metadataView);
   }
+
+  /**
+   * Parses the reinterpreted record types of a partial update
+   *
+   * @throws IllegalArgumentException for a record type not supported by the partial update
+   */
+  public static Set<RecordType> getPartialUpdateTypes(Set<String> types) {
+    Set<RecordType> recordTypes = EnumSet.noneOf(RecordType.class);
+    for (String type : types) {
+      RecordType recordType = RecordType.valueOf(type);
+      if (!PARTIAL_UPDATE_TYPES.contains(recordType)) {
+        throw new IllegalArgumentException(
+            "Partial update is not supported for " + type + ", only for " + PARTIAL_UPDATE_TYPES);
+      }
+      recordTypes.add(recordType);
+    }
+    return recordTypes;
+  }
+
+  /**
+   * Converts the records of the reinterpreted record types into a partial ES document update, the issues are merged
+   * from all records, the multimedia record is merged from the multimedia, image and audubon records
+   */
+  public static ObjectNode toPartialUpdateJson(Set<RecordType> types, MetadataRecord mdr, BasicRecord br,
+      TemporalRecord tr, LocationRecord lr, TaxonRecord txr, MultimediaRecord mmr, MeasurementOrFactRecord mfr) {
+    List<SpecificRecordBase> records = new ArrayList<>();
+    if (types.contains(RecordType.TEMPORAL)) {
+      records.add(tr);
+    }
+    if (types.contains(RecordType.LOCATION)) {
+      records.add(lr);
+    }
+    if (types.contains(RecordType.TAXONOMY)) {
+      records.add(txr);
+    }
+    if (types.contains(RecordType.MULTIMEDIA) || types.contains(RecordType.IMAGE)
+        || types.contains(RecordType.AUDUBON)) {
+      records.add(mmr);
+    }
+    if (types.contains(RecordType.MEASUREMENT_OR_FACT)) {
+      records.add(mfr);
+    }
+    return GbifJsonConverter.toPartialUpdateJson(records, Arrays.asList(mdr, br, tr, lr, txr, mmr, mfr));
+  }
+
+  private static String getDocumentId(ObjectNode json, String esDocumentId, String key) {
+    JsonNode id = json.get(esDocumentId);
+    if (id == null || id.isNull()) {
+      throw new IllegalArgumentException("ES document id field " + esDocumentId + " is missing, id - " + key);
+    }
+    return id.asText();
+  }
+
+  private ObjectNode toJson(KV<String, CoGbkResult> element, MetadataRecord mdr) {
+    CoGbkResult v = element.getValue();
+    String k = element.getKey();
+
+    // Core
+    ExtendedRecord er = v.getOnly(erTag, ExtendedRecord.newBuilder().setId(k).build());
+    BasicRecord br = v.getOnly(brTag, BasicRecord.newBuilder().setId(k).build());
+    TemporalRecord tr = v.getOnly(trTag, TemporalRecord.newBuilder().setId(k).build());
+    LocationRecord lr = v.getOnly(lrTag, LocationRecord.newBuilder().setId(k).build());
+    TaxonRecord txr = v.getOnly(txrTag, TaxonRecord.newBuilder().setId(k).build());
+    TaggedValueRecord tvr = v.getOnly(tvrTag, TaggedValueRecord.newBuilder().setId(k).build());
+
+    // Extension
+    MultimediaRecord mr = v.getOnly(mrTag, MultimediaRecord.newBuilder().setId(k).build());
+    ImageRecord ir = v.getOnly(irTag, ImageRecord.newBuilder().setId(k).build());
+    AudubonRecord ar = v.getOnly(arTag, AudubonRecord.newBuilder().setId(k).build());
+    MeasurementOrFactRecord mfr = v.getOnly(mfrTag, MeasurementOrFactRecord.newBuilder().setId(k).build());
+
+    MultimediaRecord mmr = MultimediaConverter.merge(mr, ir, ar);
+    return GbifJsonConverter.toJson(mdr, br, tr, lr, txr, mmr, mfr, tvr, er);
+  }
 }
@@ -1,14 +1,22 @@
 package org.gbif.pipelines.transforms.core;
 
+import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.Optional;
 
+import org.gbif.pipelines.core.io.TermDictionary;
+import org.gbif.pipelines.core.io.TermDictionaryEncoding;
 import org.gbif.pipelines.io.avro.ExtendedRecord;
 import org.gbif.pipelines.transforms.SerializableConsumer;
 import org.gbif.pipelines.transforms.Transform;
 
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericRecord;
 import org.apache.beam.sdk.Pipeline;
+import org.apache.beam.sdk.io.AvroIO;
 import org.apache.beam.sdk.transforms.Create;
 import org.apache.beam.sdk.transforms.MapElements;
+import org.apache.beam.sdk.transforms.PTransform;
+import org.apache.beam.sdk.transforms.SerializableFunction;
 import org.apache.beam.sdk.values.KV;
 import org.apache.beam.sdk.values.PBegin;
 import org.apache.beam.sdk.values.PCollection;
@@ -18,8 +26,8 @@ import static org.gbif.pipelines.common.PipelinesVariables.Metrics.VERBATIM_RECO
 import static org.gbif.pipelines.common.PipelinesVariables.Pipeline.Interpretation.RecordType.VERBATIM;
 
 /**
- * Beam level transformations for the raw representation of DWC, reads an avro, writes an avro, maps from value to
- * keyValue
+ * Beam level transformations for the raw representation of DWC, reads an avro, plain or term dictionary encoded,
+ * writes an avro, maps from value to keyValue
  */
 public class VerbatimTransform extends Transform<ExtendedRecord, ExtendedRecord> {
 
@@ -31,6 +39,19 @@ public class VerbatimTransform extends Transform<ExtendedRecord, ExtendedRecord>
     return new VerbatimTransform();
   }
 
+  /**
+   * Reads avro files of {@link ExtendedRecord}, plain or term dictionary encoded
+   *
+   * @param termDictionary the files are encoded by {@link TermDictionaryEncoding}, false uses the faster {@link
+   * #read(String)} for the plain files
+   */
+  public PTransform<PBegin, PCollection<ExtendedRecord>> read(String path, boolean termDictionary) {
+    if (termDictionary) {
+      return AvroIO.parseGenericRecords(new TermDictionaryDecodeFn()).from(path);
+    }
+    return read(path);
+  }
+
   /** Maps {@link ExtendedRecord} to key value, where key is {@link ExtendedRecord#getId} */
   public MapElements<ExtendedRecord, KV<String, ExtendedRecord>> toKv() {
     return MapElements.into(new TypeDescriptor<KV<String, ExtendedRecord>>() {})
@@ -51,4 +72,24 @@ public class VerbatimTransform extends Transform<ExtendedRecord, ExtendedRecord>
   public Optional<ExtendedRecord> convert(ExtendedRecord source) {
     return Optional.ofNullable(source);
   }
+
+  /** Decodes the generic records, the dictionary is parsed once per schema, the same schema object for a file */
+  private static class TermDictionaryDecodeFn implements SerializableFunction<GenericRecord, ExtendedRecord> {
+
+    private static final long serialVersionUID = -1946287016218573047L;
+
+    private transient volatile SimpleImmutableEntry<Schema, TermDictionary> dictionary;
+
+    @Override
+    public ExtendedRecord apply(GenericRecord record) {
+      SimpleImmutableEntry<Schema, TermDictionary> current = dictionary;
+      if (current == null || current.getKey() != record.getSchema()) {
+        Schema schema = record.getSchema();
+        boolean encoded = TermDictionaryEncoding.isEncoded(schema);
+        current = new SimpleImmutableEntry<>(schema, encoded ? TermDictionaryEncoding.getDictionary(schema) : null);
+        dictionary = current;
+      }
+      return TermDictionaryEncoding.decode(record, current.getValue());
+    }
+  }
 }
@@ -0,0 +1,93 @@
+package org.gbif.pipelines.transforms.common;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.gbif.pipelines.io.avro.RecordHash;
+
+import org.apache.beam.sdk.Pipeline;
+import org.apache.beam.sdk.coders.ByteArrayCoder;
+import org.apache.beam.sdk.coders.KvCoder;
+import org.apache.beam.sdk.coders.StringUtf8Coder;
+import org.apache.beam.sdk.coders.VarLongCoder;
+import org.apache.beam.sdk.testing.NeedsRunner;
+import org.apache.beam.sdk.testing.PAssert;
+import org.apache.beam.sdk.testing.TestPipeline;
+import org.apache.beam.sdk.transforms.Create;
+import org.apache.beam.sdk.transforms.MapElements;
+import org.apache.beam.sdk.values.KV;
+import org.apache.beam.sdk.values.PCollection;
+import org.apache.beam.sdk.values.PCollectionTuple;
+import org.apache.beam.sdk.values.TypeDescriptors;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+@Category(NeedsRunner.class)
+public class IncrementalIndexTransformTest {
+
+  @Rule
+  public final transient TestPipeline p = TestPipeline.create();
+
+  @Rule
+  public final transient TemporaryFolder folder = new TemporaryFolder();
+
+  private static KV<String, KV<Long, byte[]>> doc(String id, long hash) {
+    return KV.of(id, KV.of(hash, ("{\"id\":\"" + id + "\"}").getBytes(StandardCharsets.UTF_8)));
+  }
+
+  private static RecordHash hash(String id, long hash) {
+    return RecordHash.newBuilder().setId(id).setHash(hash).build();
+  }
+
+  private PCollection<KV<String, KV<Long, byte[]>>> create(KV<String, KV<Long, byte[]>>... docs) {
+    return p.apply("Create documents", Create.of(Arrays.asList(docs))
+        .withCoder(KvCoder.of(StringUtf8Coder.of(), KvCoder.of(VarLongCoder.of(), ByteArrayCoder.of()))));
+  }
+
+  private static PCollection<String> ids(PCollection<KV<String, byte[]>> docs) {
+    return docs.apply("Get ids", MapElements.into(TypeDescriptors.strings()).via(KV::getKey));
+  }
+
+  @Test
+  public void diffTest() {
+    // State
+    String previousPath = folder.getRoot().toString();
+    IncrementalIndexTransform writeTransform = IncrementalIndexTransform.builder().create();
+
+    Pipeline writePipeline = Pipeline.create();
+    writePipeline.apply("Create hashes", Create.of(hash("1", 1L), hash("2", 2L), hash("3", 3L)))
+        .apply("Write hashes", writeTransform.write(previousPath));
+    writePipeline.run().waitUntilFinish();
+
+    IncrementalIndexTransform transform = IncrementalIndexTransform.builder().previousPath(previousPath).create();
+
+    // When
+    PCollectionTuple diff = create(doc("1", 1L), doc("2", 22L), doc("4", 4L)).apply("Diff", transform.diff());
+
+    // Should
+    PAssert.that(ids(diff.get(transform.getChangedTag()))).containsInAnyOrder("2", "4");
+    PAssert.that(diff.get(transform.getHashTag())).containsInAnyOrder(hash("1", 1L), hash("2", 22L), hash("4", 4L));
+    PAssert.that(diff.get(transform.getDeletedTag())).containsInAnyOrder("3");
+    p.run();
+  }
+
+  @Test
+  public void firstRunTest() {
+    // State
+    IncrementalIndexTransform transform = IncrementalIndexTransform.builder().create();
+
+    // When
+    PCollectionTuple diff = create(doc("1", 1L), doc("2", 2L)).apply("Diff", transform.diff());
+
+    // Should
+    PAssert.that(ids(diff.get(transform.getChangedTag()))).containsInAnyOrder("1", "2");
+    PAssert.that(diff.get(transform.getHashTag())).containsInAnyOrder(hash("1", 1L), hash("2", 2L));
+    PAssert.that(diff.get(transform.getDeletedTag())).empty();
+    p.run();
+  }
+}
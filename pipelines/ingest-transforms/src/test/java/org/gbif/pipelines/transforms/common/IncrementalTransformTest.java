@@ -0,0 +1,224 @@
+package org.gbif.pipelines.transforms.common;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+import org.gbif.pipelines.core.utils.HashUtils;
+import org.gbif.pipelines.io.avro.ExtendedRecord;
+import org.gbif.pipelines.io.avro.MetadataRecord;
+import org.gbif.pipelines.io.avro.RecordHash;
+import org.gbif.pipelines.io.avro.TemporalRecord;
+import org.gbif.pipelines.transforms.core.TemporalTransform;
+import org.gbif.pipelines.transforms.core.VerbatimTransform;
+
+import org.apache.beam.sdk.Pipeline;
+import org.apache.beam.sdk.testing.NeedsRunner;
+import org.apache.beam.sdk.testing.PAssert;
+import org.apache.beam.sdk.testing.TestPipeline;
+import org.apache.beam.sdk.transforms.Create;
+import org.apache.beam.sdk.transforms.View;
+import org.apache.beam.sdk.values.PCollection;
+import org.apache.beam.sdk.values.PCollectionTuple;
+import org.apache.beam.sdk.values.PCollectionView;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(JUnit4.class)
+@Category(NeedsRunner.class)
+public class IncrementalTransformTest {
+
+  private static final MetadataRecord MDR = MetadataRecord.newBuilder().setId("1").setDatasetTitle("Title").build();
+  private static final String VERSION = "2.0.0";
+  private static final String LOOKUPS = "TAXONOMY|name_usage_kv|2020-01|false";
+
+  @Rule
+  public final transient TestPipeline p = TestPipeline.create();
+
+  @Rule
+  public final transient TemporaryFolder folder = new TemporaryFolder();
+
+  private static ExtendedRecord er(String id, String name) {
+    return ExtendedRecord.newBuilder()
+        .setId(id)
+        .setCoreTerms(Collections.singletonMap("http://rs.tdwg.org/dwc/terms/scientificName", name))
+        .build();
+  }
+
+  private static RecordHash hash(ExtendedRecord er) {
+    String seed = IncrementalTransform.createSeed(MDR, VERSION, LOOKUPS, true, true, false);
+    return RecordHash.newBuilder().setId(er.getId()).setHash(HashUtils.getContentHash(er, seed)).build();
+  }
+
+  private IncrementalTransform create(String previousPath) {
+    return IncrementalTransform.builder()
+        .previousPath(previousPath)
+        .version(VERSION)
+        .lookups(LOOKUPS)
+        .tripletValid(true)
+        .occurrenceIdValid(true)
+        .useExtendedRecordId(false)
+        .create();
+  }
+
+  @Test
+  public void diffTest() {
+    // State
+    ExtendedRecord unchanged = er("1", "Puma concolor");
+    ExtendedRecord changed = er("2", "Puma concolor");
+    ExtendedRecord deleted = er("3", "Puma concolor");
+    ExtendedRecord added = er("4", "Puma concolor");
+    ExtendedRecord previousChanged = er("2", "Puma");
+    RecordHash deletedHash = hash(deleted);
+
+    String previousPath = folder.getRoot().toString();
+    UnaryOperator<String> pathFn = t -> String.join("/", previousPath, t, "interpret-1");
+
+    Pipeline writePipeline = Pipeline.create();
+    writePipeline.apply("Create hashes", Create.of(hash(unchanged), hash(previousChanged), deletedHash))
+        .apply("Write hashes", create(null).write(pathFn));
+    writePipeline.apply("Create verbatim", Create.of(unchanged, previousChanged, deleted))
+        .apply("Write verbatim", VerbatimTransform.create().write(pathFn));
+    writePipeline.run().waitUntilFinish();
+
+    IncrementalTransform transform = create(previousPath);
+    VerbatimTransform verbatimTransform = VerbatimTransform.create();
+
+    // When
+    PCollectionView<MetadataRecord> metadataView =
+        p.apply("Create metadata", Create.of(MDR)).apply("Metadata view", View.asSingleton());
+
+    PCollectionTuple diff =
+        p.apply("Create records", Create.of(Arrays.asList(unchanged, changed, added)))
+            .apply("Diff", transform.diff(metadataView));
+
+    PCollection<ExtendedRecord> carriedOver =
+        diff.get(transform.getChangedTag())
+            .apply("Carry over", transform.carryOver(verbatimTransform, diff.get(transform.getReplacedTag())));
+
+    // Should
+    PAssert.that(diff.get(transform.getChangedTag())).containsInAnyOrder(changed, added);
+    PAssert.that(diff.get(transform.getReplacedTag())).containsInAnyOrder("2", "3");
+    PAssert.that(diff.get(transform.getHashTag())).containsInAnyOrder(hash(unchanged), hash(changed), hash(added));
+    PAssert.that(diff.get(transform.getDeletedTag())).containsInAnyOrder(deletedHash);
+    PAssert.that(carriedOver).containsInAnyOrder(unchanged, changed, added);
+    p.run();
+  }
+
+  @Test
+  public void firstRunTest() {
+    // State
+    ExtendedRecord first = er("1", "Puma concolor");
+    ExtendedRecord second = er("2", "Puma");
+    IncrementalTransform transform = create(null);
+
+    // When
+    PCollectionView<MetadataRecord> metadataView =
+        p.apply("Create metadata", Create.of(MDR)).apply("Metadata view", View.asSingleton());
+
+    PCollectionTuple diff =
+        p.apply("Create records", Create.of(Arrays.asList(first, second)))
+            .apply("Diff", transform.diff(metadataView));
+
+    PCollection<ExtendedRecord> carriedOver =
+        diff.get(transform.getChangedTag())
+            .apply("Carry over", transform.carryOver(VerbatimTransform.create(), null));
+
+    // Should
+    PAssert.that(diff.get(transform.getChangedTag())).containsInAnyOrder(first, second);
+    PAssert.that(diff.get(transform.getReplacedTag())).empty();
+    PAssert.that(diff.get(transform.getHashTag())).containsInAnyOrder(hash(first), hash(second));
+    PAssert.that(diff.get(transform.getDeletedTag())).empty();
+    PAssert.that(carriedOver).containsInAnyOrder(first, second);
+    p.run();
+  }
+
+  @Test
+  public void carryOverCreatedTest() {
+    // State
+    TemporalRecord previous = TemporalRecord.newBuilder().setId("1").setCreated(1L).setYear(2000).build();
+    TemporalRecord deleted = TemporalRecord.newBuilder().setId("2").setCreated(1L).setYear(2000).build();
+    TemporalRecord changed = TemporalRecord.newBuilder().setId("3").setCreated(2L).setYear(2001).build();
+
+    String previousPath = folder.getRoot().toString();
+    UnaryOperator<String> pathFn = t -> String.join("/", previousPath, t, "interpret-1");
+
+    Pipeline writePipeline = Pipeline.create();
+    writePipeline.apply("Create temporal", Create.of(previous, deleted))
+        .apply("Write temporal", TemporalTransform.create().write(pathFn));
+    writePipeline.run().waitUntilFinish();
+
+    // When
+    PCollection<TemporalRecord> carriedOver =
+        p.apply("Create records", Create.of(changed))
+            .apply("Carry over", create(previousPath).carryOver(TemporalTransform.create(),
+                p.apply("Create replaced ids", Create.of("2"))));
+
+    // Should
+    PAssert.that(carriedOver).satisfies(records -> {
+      Map<String, TemporalRecord> map = new HashMap<>();
+      records.forEach(r -> map.put(r.getId(), r));
+      assertEquals(2, map.size());
+      assertEquals(Long.valueOf(2L), map.get("3").getCreated());
+      assertTrue(map.get("1").getCreated() > 1L);
+      assertEquals(Integer.valueOf(2000), map.get("1").getYear());
+      return null;
+    });
+    p.run();
+  }
+
+  @Test
+  public void seedTest() {
+    // When
+    String seed = IncrementalTransform.createSeed(MDR, VERSION, LOOKUPS, true, true, false);
+    String newBackbone = IncrementalTransform.createSeed(MDR, VERSION, "TAXONOMY|name_usage_kv|2020-02|false",
+        true, true, false);
+
+    // Should
+    assertNotEquals(seed, newBackbone);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void unknownVersionSeedTest() {
+    // When
+    IncrementalTransform.createSeed(MDR, null, LOOKUPS, true, true, false);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void unknownVersionDiffTest() {
+    // State
+    IncrementalTransform transform = IncrementalTransform.builder().lookups(LOOKUPS).create();
+    Pipeline pipeline = Pipeline.create();
+    PCollectionView<MetadataRecord> metadataView =
+        pipeline.apply("Create metadata", Create.of(MDR)).apply("Metadata view", View.asSingleton());
+
+    // When
+    pipeline.apply("Create records", Create.of(er("1", "Puma"))).apply("Diff", transform.diff(metadataView));
+  }
+
+  @Test
+  public void filterTest() {
+    // State
+    PCollection<String> ids = p.apply("Create ids", Create.of("1", "3"));
+
+    // When
+    PCollection<String> records = p.apply("Create records", Create.of("1", "2", "3", "4"));
+    PCollection<String> kept = records.apply("Keep", IncrementalTransform.filter((String id) -> id, ids, true));
+    PCollection<String> removed = records.apply("Remove", IncrementalTransform.filter((String id) -> id, ids, false));
+
+    // Should
+    PAssert.that(kept).containsInAnyOrder("1", "3");
+    PAssert.that(removed).containsInAnyOrder("2", "4");
+    p.run();
+  }
+}
@@ -0,0 +1,202 @@
+package org.gbif.pipelines.transforms.common;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+import org.gbif.pipelines.io.avro.BasicRecord;
+import org.gbif.pipelines.io.avro.TemporalRecord;
+
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.specific.SpecificDatumReader;
+import org.apache.beam.sdk.Pipeline;
+import org.apache.beam.sdk.coders.AvroCoder;
+import org.apache.beam.sdk.testing.NeedsRunner;
+import org.apache.beam.sdk.testing.PAssert;
+import org.apache.beam.sdk.testing.TestPipeline;
+import org.apache.beam.sdk.transforms.Create;
+import org.apache.beam.sdk.transforms.MapElements;
+import org.apache.beam.sdk.transforms.join.CoGbkResult;
+import org.apache.beam.sdk.transforms.join.CoGroupByKey;
+import org.apache.beam.sdk.transforms.join.KeyedPCollectionTuple;
+import org.apache.beam.sdk.values.KV;
+import org.apache.beam.sdk.values.PCollection;
+import org.apache.beam.sdk.values.TupleTag;
+import org.apache.beam.sdk.values.TypeDescriptor;
+import org.apache.beam.sdk.values.TypeDescriptors;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+@Category(NeedsRunner.class)
+public class SortedBucketIOTest {
+
+  private static final int BUCKETS = 4;
+
+  private static final TupleTag<BasicRecord> BR_TAG = new TupleTag<BasicRecord>() {};
+  private static final TupleTag<TemporalRecord> TR_TAG = new TupleTag<TemporalRecord>() {};
+
+  @Rule
+  public final transient TestPipeline p = TestPipeline.create();
+
+  @Rule
+  public final transient TemporaryFolder folder = new TemporaryFolder();
+
+  // Every third id has no basic record, every fifth id has two temporal records
+  private static List<BasicRecord> basicRecords() {
+    return IntStream.range(0, 200)
+        .filter(i -> i % 3 != 0)
+        .mapToObj(i -> BasicRecord.newBuilder().setId(String.valueOf(i)).setCreated((long) i).build())
+        .collect(Collectors.toList());
+  }
+
+  private static List<TemporalRecord> temporalRecords() {
+    List<TemporalRecord> records = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      records.add(TemporalRecord.newBuilder().setId(String.valueOf(i)).setYear(i).build());
+      if (i % 5 == 0) {
+        records.add(TemporalRecord.newBuilder().setId(String.valueOf(i)).setYear(-i).build());
+      }
+    }
+    return records;
+  }
+
+  private static String toString(KV<String, CoGbkResult> kv) {
+    List<String> basic = StreamSupport.stream(kv.getValue().getAll(BR_TAG).spliterator(), false)
+        .map(Object::toString).sorted().collect(Collectors.toList());
+    List<String> temporal = StreamSupport.stream(kv.getValue().getAll(TR_TAG).spliterator(), false)
+        .map(Object::toString).sorted().collect(Collectors.toList());
+    return kv.getKey() + " " + basic + " " + temporal;
+  }
+
+  /** The expected joined strings, built without Beam */
+  private static List<String> expected() {
+    List<BasicRecord> basic = basicRecords();
+    List<TemporalRecord> temporal = temporalRecords();
+    return IntStream.range(0, 200)
+        .mapToObj(String::valueOf)
+        .map(id -> id + " "
+            + basic.stream().filter(r -> r.getId().equals(id)).map(Object::toString).sorted()
+            .collect(Collectors.toList()) + " "
+            + temporal.stream().filter(r -> r.getId().equals(id)).map(Object::toString).sorted()
+            .collect(Collectors.toList()))
+        .collect(Collectors.toList());
+  }
+
+  @Test
+  public void bucketJoinSameAsCoGroupByKeyTest() {
+    // State
+    String basicPath = new File(folder.getRoot(), "basic/interpret-").toString();
+    String temporalPath = new File(folder.getRoot(), "temporal/interpret-").toString();
+
+    Pipeline writePipeline = Pipeline.create();
+    writePipeline.apply("Create basic", Create.of(basicRecords()).withCoder(AvroCoder.of(BasicRecord.class)))
+        .apply("Write basic", SortedBucketIO.write(BasicRecord.class, basicPath + 1, BUCKETS));
+    writePipeline.apply("Create temporal", Create.of(temporalRecords()).withCoder(AvroCoder.of(TemporalRecord.class)))
+        .apply("Write temporal",
+            SortedBucketIO.write(TemporalRecord.class, temporalPath + 1, BUCKETS).withCodec("deflate-6"));
+    writePipeline.run().waitUntilFinish();
+
+    SortedBucketIO.CoGroup coGroup =
+        SortedBucketIO.coGroup()
+            .and(SortedBucketIO.source(BR_TAG, BasicRecord.class, basicPath + "*"))
+            .and(SortedBucketIO.source(TR_TAG, TemporalRecord.class, temporalPath + "*"));
+
+    // When
+    PCollection<String> bucketJoin =
+        p.apply("Join buckets", coGroup)
+            .apply("Bucket join to string", MapElements.into(TypeDescriptors.strings())
+                .via(SortedBucketIOTest::toString));
+
+    PCollection<KV<String, BasicRecord>> basic =
+        p.apply("Create basic", Create.of(basicRecords()).withCoder(AvroCoder.of(BasicRecord.class)))
+            .apply("Map basic to KV", MapElements.into(new TypeDescriptor<KV<String, BasicRecord>>() {})
+                .via((BasicRecord br) -> KV.of(br.getId(), br)));
+    PCollection<KV<String, TemporalRecord>> temporal =
+        p.apply("Create temporal", Create.of(temporalRecords()).withCoder(AvroCoder.of(TemporalRecord.class)))
+            .apply("Map temporal to KV", MapElements.into(new TypeDescriptor<KV<String, TemporalRecord>>() {})
+                .via((TemporalRecord tr) -> KV.of(tr.getId(), tr)));
+    PCollection<String> coGroupByKey =
+        KeyedPCollectionTuple.of(BR_TAG, basic)
+            .and(TR_TAG, temporal)
+            .apply("Grouping objects", CoGroupByKey.create())
+            .apply("CoGroupByKey to string", MapElements.into(TypeDescriptors.strings())
+                .via(SortedBucketIOTest::toString));
+
+    // Should
+    Assert.assertTrue(coGroup.isBucketed());
+    PAssert.that(bucketJoin).containsInAnyOrder(expected());
+    PAssert.that(coGroupByKey).containsInAnyOrder(expected());
+    p.run();
+  }
+
+  @Test
+  public void sortedRunsTest() throws Exception {
+    // State
+    File dir = new File(folder.getRoot(), "temporal");
+    String temporalPath = new File(dir, "interpret-").toString();
+
+    // When
+    Pipeline writePipeline = Pipeline.create();
+    writePipeline.apply("Create temporal", Create.of(temporalRecords()).withCoder(AvroCoder.of(TemporalRecord.class)))
+        .apply("Write temporal",
+            SortedBucketIO.write(TemporalRecord.class, temporalPath + 1, BUCKETS).withSortBufferRecords(7));
+    writePipeline.run().waitUntilFinish();
+
+    // Should
+    File[] files = dir.listFiles();
+    Assert.assertNotNull(files);
+    Assert.assertEquals(BUCKETS, files.length);
+
+    List<String> ids = new ArrayList<>();
+    for (File file : files) {
+      Assert.assertTrue(file.getName().endsWith(".avro"));
+      List<String> bucketIds = new ArrayList<>();
+      try (DataFileReader<TemporalRecord> reader =
+          new DataFileReader<>(file, new SpecificDatumReader<>(TemporalRecord.class))) {
+        reader.forEach(tr -> bucketIds.add(tr.getId()));
+      }
+      Assert.assertEquals(bucketIds.stream().sorted().collect(Collectors.toList()), bucketIds);
+      ids.addAll(bucketIds);
+    }
+    Assert.assertEquals(
+        temporalRecords().stream().map(TemporalRecord::getId).sorted().collect(Collectors.toList()),
+        ids.stream().sorted().collect(Collectors.toList()));
+  }
+
+  @Test
+  public void unbucketedFilesTest() throws Exception {
+    // State
+    File dir = folder.newFolder("basic");
+    Assert.assertTrue(new File(dir, "interpret-1.avro").createNewFile());
+    Assert.assertTrue(new File(dir, "interpret-1-bucket-00000-of-00004.avro").createNewFile());
+
+    // When
+    SortedBucketIO.CoGroup coGroup =
+        SortedBucketIO.coGroup()
+            .and(SortedBucketIO.source(BR_TAG, BasicRecord.class, new File(dir, "interpret-*").toString()));
+
+    // Should
+    Assert.assertFalse(coGroup.isBucketed());
+    Assert.assertFalse(SortedBucketIO.coGroup().isBucketed());
+  }
+
+  @Test
+  public void bucketTest() {
+    // Should
+    for (String id : Arrays.asList("1", "a", "", "urn:catalog:MNHN:P:P00000001")) {
+      int bucket = SortedBucketIO.bucket(id, BUCKETS);
+      Assert.assertTrue(bucket >= 0 && bucket < BUCKETS);
+      Assert.assertEquals(bucket, SortedBucketIO.bucket(id, BUCKETS));
+    }
+  }
+}
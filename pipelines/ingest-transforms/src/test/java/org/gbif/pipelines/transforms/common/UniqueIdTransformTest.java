@@ -2,7 +2,9 @@ package org.gbif.pipelines.transforms.common;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 import org.gbif.pipelines.io.avro.ExtendedRecord;
@@ -53,6 +55,42 @@ public class UniqueIdTransformTest {
     p.run();
   }
 
+  @Test
+  public void filterDuplicateExtensionsTest() {
+    // State
+    Map<String, String> row1 = new LinkedHashMap<>();
+    row1.put("a", "1");
+    row1.put("b", null);
+    Map<String, String> row2 = new LinkedHashMap<>();
+    row2.put("b", null);
+    row2.put("a", "1");
+
+    ExtendedRecord record = createRecord("0001", Collections.singletonList(row1));
+    // The same record with the map entries in a different order
+    ExtendedRecord identical = createRecord("0001", Collections.singletonList(row2));
+    ExtendedRecord different = createRecord("0002", Collections.singletonList(row1));
+    ExtendedRecord differentRows = createRecord("0002", Arrays.asList(row1, row2));
+    ExtendedRecord unique = createRecord("0003", Collections.emptyList());
+
+    final List<ExtendedRecord> input = Arrays.asList(record, identical, different, differentRows, unique);
+    final List<ExtendedRecord> expected = Arrays.asList(record, unique);
+
+    // When
+    PCollection<ExtendedRecord> result = p.apply(Create.of(input)).apply(UniqueIdTransform.create());
+
+    // Should
+    PAssert.that(result).containsInAnyOrder(expected);
+    p.run();
+  }
+
+  private ExtendedRecord createRecord(String id, List<Map<String, String>> rows) {
+    return ExtendedRecord.newBuilder()
+        .setId(id)
+        .setCoreTerms(Collections.singletonMap("key", "value"))
+        .setExtensions(Collections.singletonMap("extension", rows))
+        .build();
+  }
+
   private List<ExtendedRecord> createCollection(String... idName) {
     return Arrays.stream(idName)
         .map(x -> {
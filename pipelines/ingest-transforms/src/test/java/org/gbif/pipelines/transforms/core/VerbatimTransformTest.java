@@ -0,0 +1,80 @@
+package org.gbif.pipelines.transforms.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.gbif.pipelines.core.io.TermDictionary;
+import org.gbif.pipelines.core.io.TermDictionaryEncoding;
+import org.gbif.pipelines.io.avro.ExtendedRecord;
+
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.specific.SpecificDatumWriter;
+import org.apache.beam.sdk.testing.NeedsRunner;
+import org.apache.beam.sdk.testing.PAssert;
+import org.apache.beam.sdk.testing.TestPipeline;
+import org.apache.beam.sdk.values.PCollection;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+@Category(NeedsRunner.class)
+public class VerbatimTransformTest {
+
+  @Rule
+  public final transient TestPipeline p = TestPipeline.create();
+
+  @Rule
+  public final transient TemporaryFolder folder = new TemporaryFolder();
+
+  private static List<ExtendedRecord> records() {
+    return Arrays.asList(
+        ExtendedRecord.newBuilder().setId("1")
+            .setCoreTerms(Collections.singletonMap("http://rs.tdwg.org/dwc/terms/scientificName", "Puma concolor"))
+            .build(),
+        ExtendedRecord.newBuilder().setId("2")
+            .setCoreTerms(Collections.singletonMap("http://unknown.org/terms/something", "value"))
+            .setExtensions(Collections.singletonMap("http://rs.gbif.org/terms/1.0/Multimedia",
+                Collections.singletonList(Collections.singletonMap("http://purl.org/dc/terms/format", null))))
+            .build());
+  }
+
+  private String write(String name, boolean termDictionary) throws IOException {
+    File file = new File(folder.getRoot(), name);
+    try (DataFileWriter<ExtendedRecord> writer = termDictionary
+        ? new DataFileWriter<>(TermDictionaryEncoding.writer(TermDictionary.DEFAULT))
+        : new DataFileWriter<>(new SpecificDatumWriter<>(ExtendedRecord.class))) {
+      writer.create(termDictionary ? TermDictionaryEncoding.createSchema(TermDictionary.DEFAULT)
+          : ExtendedRecord.getClassSchema(), file);
+      for (ExtendedRecord record : records()) {
+        writer.append(record);
+      }
+    }
+    return file.toString();
+  }
+
+  @Test
+  public void readTermDictionaryTest() throws IOException {
+    // State
+    String encodedPath = write("encoded.avro", true);
+    String plainPath = write("plain.avro", false);
+    VerbatimTransform transform = VerbatimTransform.create();
+
+    // When
+    PCollection<ExtendedRecord> encoded = p.apply("Read encoded", transform.read(encodedPath, true));
+    PCollection<ExtendedRecord> plainAsEncoded = p.apply("Read plain as encoded", transform.read(plainPath, true));
+    PCollection<ExtendedRecord> plain = p.apply("Read plain", transform.read(plainPath, false));
+
+    // Should
+    PAssert.that(encoded).containsInAnyOrder(records());
+    PAssert.that(plainAsEncoded).containsInAnyOrder(records());
+    PAssert.that(plain).containsInAnyOrder(records());
+    p.run();
+  }
+}
@@ -6,9 +6,12 @@ import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
@@ -23,6 +26,7 @@ import org.gbif.dwc.terms.DwcTerm;
 import org.gbif.dwc.terms.GbifTerm;
 import org.gbif.dwc.terms.Term;
 import org.gbif.dwc.terms.TermFactory;
+import org.gbif.pipelines.core.utils.HashUtils;
 import org.gbif.pipelines.core.utils.TemporalUtils;
 import org.gbif.pipelines.io.avro.AmplificationRecord;
 import org.gbif.pipelines.io.avro.LocationFeatureRecord;
@@ -34,16 +38,20 @@ import org.gbif.pipelines.io.avro.LocationRecord;
 import org.gbif.pipelines.io.avro.MeasurementOrFactRecord;
 import org.gbif.pipelines.io.avro.Multimedia;
 import org.gbif.pipelines.io.avro.MultimediaRecord;
+import org.gbif.pipelines.io.avro.Rank;
 import org.gbif.pipelines.io.avro.RankedName;
 import org.gbif.pipelines.io.avro.TaggedValueRecord;
 import org.gbif.pipelines.io.avro.TaxonRecord;
 import org.gbif.pipelines.io.avro.TemporalRecord;
 
+import org.apache.avro.Schema;
+import org.apache.avro.Schema.Type;
 import org.apache.avro.specific.SpecificRecordBase;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.IntNode;
+import com.fasterxml.jackson.databind.node.NullNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.fasterxml.jackson.databind.node.POJONode;
 import com.fasterxml.jackson.databind.node.TextNode;
@@ -82,6 +90,14 @@ public class GbifJsonConverter {
 
   private static final Set<String> EXCLUDE_ALL = Collections.singleton(DwcTerm.footprintWKT.qualifiedName());
 
+  private static final Set<String> CRAWL_FIELDS =
+      new HashSet<>(Arrays.asList(CREATED_FIELD, "lastCrawled", "crawlId"));
+
+  private static final Set<String> PARTIAL_SKIP_FIELDS =
+      new HashSet<>(Arrays.asList(ID, ISSUES, CREATED_FIELD, "machineTags"));
+
+  private static final Map<Class<? extends SpecificRecordBase>, ObjectNode> PARTIAL_FIELDS = createPartialFields();
+
   private static final TermFactory TERM_FACTORY = TermFactory.instance();
 
   private static final LongFunction<LocalDateTime> DATE_FN =
@@ -153,6 +169,50 @@ public class GbifJsonConverter {
     return toPartialJson(records).toString();
   }
 
+  /**
+   * Converts the records of reinterpreted types into json object, suited to a partial ES update of an existing record.
+   * Contains only the fields built from these record types, a field without a value is set to null, so the stale value
+   * of the indexed record is removed by the update. The issues and notIssues are derived from all record types, so they
+   * are merged from all records with issues of the ES record, including the reinterpreted ones
+   *
+   * @param records records of reinterpreted types: {@link TemporalRecord}, {@link LocationRecord},
+   * {@link TaxonRecord}, {@link MultimediaRecord}, {@link MeasurementOrFactRecord}, {@link LocationFeatureRecord} or
+   * {@link AmplificationRecord}
+   * @param issueRecords all records of the ES record with issues
+   * @throws IllegalArgumentException for the other record types, their fields are mixed with the fields of other types
+   */
+  public static ObjectNode toPartialUpdateJson(List<SpecificRecordBase> records,
+      List<SpecificRecordBase> issueRecords) {
+    ObjectNode mainNode = GbifJsonConverter.builder()
+        .records(records)
+        .skipIssues(true)
+        .build()
+        .toJson();
+
+    for (SpecificRecordBase record : records) {
+      ObjectNode fields = PARTIAL_FIELDS.get(record.getClass());
+      if (fields == null) {
+        throw new IllegalArgumentException("Partial update is not supported for " + record.getClass().getName());
+      }
+      setNullFields(mainNode, fields);
+    }
+
+    GbifJsonConverter.builder()
+        .records(issueRecords)
+        .build()
+        .addIssues(mainNode);
+
+    return mainNode;
+  }
+
+  /**
+   * Hash of the json document content, equal for the equal documents of different crawls, the created, lastCrawled and
+   * crawlId fields are not part of the hash
+   */
+  public static long getContentHash(ObjectNode json) {
+    return HashUtils.getContentHash(json, CRAWL_FIELDS);
+  }
+
   /** Change the json result, merging all issues from records to one array */
   public ObjectNode toJson() {
     builder.records(records);
@@ -179,6 +239,71 @@ public class GbifJsonConverter {
     return mainNode;
   }
 
+  /** Sets null value of the fields missing in the node, the nested objects of both are handled the same way */
+  private static void setNullFields(ObjectNode node, ObjectNode fields) {
+    Iterator<Entry<String, JsonNode>> iterator = fields.fields();
+    while (iterator.hasNext()) {
+      Entry<String, JsonNode> field = iterator.next();
+      JsonNode value = node.get(field.getKey());
+      if (value == null) {
+        node.set(field.getKey(), NullNode.getInstance());
+      } else if (value.isObject() && field.getValue().isObject()) {
+        setNullFields((ObjectNode) value, (ObjectNode) field.getValue());
+      }
+    }
+  }
+
+  /**
+   * All fields built from the record types supported by a partial update, a field of a nested record is an object of
+   * the nested record fields
+   */
+  private static Map<Class<? extends SpecificRecordBase>, ObjectNode> createPartialFields() {
+    Map<Class<? extends SpecificRecordBase>, ObjectNode> map = new HashMap<>();
+
+    map.put(TemporalRecord.class, getSchemaFields(TemporalRecord.getClassSchema(), "eventDateSingle"));
+    map.put(LocationRecord.class, getSchemaFields(LocationRecord.getClassSchema(), "coordinates", "scoordinates"));
+    map.put(MultimediaRecord.class, getFields("multimediaItems", "mediaTypes", "mediaLicenses"));
+    map.put(MeasurementOrFactRecord.class, getFields("measurementOrFactItems"));
+    map.put(LocationFeatureRecord.class, getFields("locationFeatureLayers"));
+    map.put(AmplificationRecord.class, getFields("amplificationItems"));
+
+    // Only these taxonomy fields are copied, taxonID and verbatimScientificName of gbifClassification are verbatim
+    ObjectNode classification = getFields("classificationPath", "taxonKey");
+    Schema taxonSchema = TaxonRecord.getClassSchema();
+    Arrays.asList("acceptedUsage", "classification", "synonym", "usage", "usageParsedName", "diagnostics")
+        .forEach(name -> classification.set(name, getSchemaField(taxonSchema.getField(name).schema())));
+    Arrays.stream(Rank.values()).map(rank -> rank.name().toLowerCase()).forEach(rank -> {
+      classification.putNull(rank + "Key");
+      classification.putNull(rank);
+    });
+    ObjectNode taxonomy = JsonConverter.createObjectNode();
+    taxonomy.set("gbifClassification", classification);
+    map.put(TaxonRecord.class, taxonomy);
+
+    return map;
+  }
+
+  private static ObjectNode getFields(String... names) {
+    ObjectNode node = JsonConverter.createObjectNode();
+    Arrays.stream(names).forEach(node::putNull);
+    return node;
+  }
+
+  private static ObjectNode getSchemaFields(Schema schema, String... names) {
+    ObjectNode node = getFields(names);
+    schema.getFields().stream()
+        .filter(f -> !PARTIAL_SKIP_FIELDS.contains(f.name()))
+        .forEach(f -> node.set(f.name(), getSchemaField(f.schema())));
+    return node;
+  }
+
+  private static JsonNode getSchemaField(Schema schema) {
+    Schema s = schema.getType() == Type.UNION
+        ? schema.getTypes().stream().filter(t -> t.getType() != Type.NULL).findFirst().orElse(schema)
+        : schema;
+    return s.getType() == Type.RECORD ? getSchemaFields(s) : NullNode.getInstance();
+  }
+
   /**
    * Gets the maximum/latest created date of all the records.
    */
@@ -0,0 +1,80 @@
+package org.gbif.pipelines.core.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.gbif.dwc.ArchiveFile;
+import org.gbif.dwc.record.RecordImpl;
+import org.gbif.utils.file.ClosableIterator;
+import org.gbif.utils.file.csv.CSVReader;
+
+/** Rows of all the data files of a core or extension, the data files are opened one after another */
+class ArchiveFileRows implements ClosableIterator<String[]> {
+
+  /** Opens the data file of an archive file location */
+  @FunctionalInterface
+  interface DataFileOpener {
+
+    InputStream open(String location) throws IOException;
+  }
+
+  private final ArchiveFile file;
+  private final DataFileOpener opener;
+  private final Iterator<String> locations;
+  private CSVReader reader;
+
+  ArchiveFileRows(ArchiveFile file, DataFileOpener opener) {
+    this.file = file;
+    this.opener = opener;
+    this.locations = file.getLocations().iterator();
+  }
+
+  /** Reads the rows of a single data stream, header lines are skipped only if they are part of the stream */
+  static CSVReader open(ArchiveFile file, InputStream is, boolean withHeader) throws IOException {
+    Integer headerLines = withHeader ? file.getIgnoreHeaderLines() : Integer.valueOf(0);
+    return new CSVReader(is, file.getEncoding(), file.getFieldsTerminatedBy(), file.getFieldsEnclosedBy(), headerLines);
+  }
+
+  static RecordImpl toRecord(ArchiveFile file, String[] row) {
+    RecordImpl record = new RecordImpl(file.getId(), file.getFields().values(), file.getRowType(), true, true);
+    record.setRow(row);
+    return record;
+  }
+
+  @Override
+  public boolean hasNext() {
+    try {
+      while (reader == null || !reader.hasNext()) {
+        if (reader != null) {
+          reader.close();
+          reader = null;
+        }
+        if (!locations.hasNext()) {
+          return false;
+        }
+        reader = open(file, opener.open(locations.next()), true);
+      }
+      return true;
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  @Override
+  public String[] next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    return reader.next();
+  }
+
+  @Override
+  public void close() {
+    if (reader != null) {
+      reader.close();
+    }
+  }
+}
@@ -0,0 +1,213 @@
+package org.gbif.pipelines.core.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.gbif.dwc.Archive;
+import org.gbif.dwc.ArchiveFile;
+import org.gbif.dwc.DwcFiles;
+import org.gbif.dwc.meta.DwcMetaFiles;
+import org.gbif.dwc.record.StarRecord;
+import org.gbif.dwc.record.StarRecordImpl;
+import org.gbif.dwc.terms.Term;
+import org.gbif.utils.file.ClosableIterator;
+
+import com.google.common.collect.Iterators;
+import com.google.common.collect.PeekingIterator;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Iterates the star records of a DwC-A reading its data files row by row. A zipped archive is read straight from the
+ * zip entries, it is never expanded. The core of an archive without extensions is streamed in the order of the core
+ * file. Otherwise the core and each extension are sorted by the core id with {@link RowSorter}, spilling to the working
+ * directory, and merge joined, so the records are returned ordered by the core id. The records and their extension
+ * rows are the same as of the dwca-io reader, but the order of the records and of the extension rows of a record can
+ * differ.
+ *
+ * <p>Every star record is a new instance, unlike the records of the dwca-io iterators, so it can be kept and converted
+ * on another thread while the iterator moves on.
+ */
+@Slf4j
+class DwcaDataFileIterator implements ClosableIterator<StarRecord> {
+
+  private static final String META_FILE = "meta.xml";
+  private static final String MAC_OS_FOLDER = "__MACOSX";
+
+  // the zip file of a zipped archive, closed with the iterator
+  private final Closeable source;
+  private final ArchiveFile core;
+  private final List<Term> extensionTypes;
+  private final List<ArchiveFile> extensions = new ArrayList<>();
+  private final List<ClosableIterator<String[]>> openRows = new ArrayList<>();
+  private final Iterator<String[]> coreRows;
+  private final List<PeekingIterator<String[]>> extensionRows = new ArrayList<>();
+
+  // Extension rows of the previous core id, reused when core ids are duplicated
+  private String previousId;
+  private final List<List<String[]>> previousRows = new ArrayList<>();
+
+  private DwcaDataFileIterator(Closeable source, ArchiveFileRows.DataFileOpener opener, Archive archive,
+      Path workingDir) throws IOException {
+    this.source = source;
+    this.core = archive.getCore();
+    this.extensions.addAll(archive.getExtensions());
+    this.extensionTypes = extensions.stream().map(ArchiveFile::getRowType).collect(Collectors.toList());
+
+    // The rows opened before a failure are closed, which deletes their spilled sort runs, the source is left to the
+    // caller
+    try {
+      ClosableIterator<String[]> rows = new ArchiveFileRows(core, opener);
+      openRows.add(rows);
+      if (extensions.isEmpty()) {
+        this.coreRows = rows;
+      } else {
+        log.info("Sorting the core and [{}] extensions by id", extensions.size());
+        RowSorter sorted = RowSorter.sort(rows, core.getId().getIndex(), workingDir);
+        openRows.add(sorted);
+        this.coreRows = sorted;
+        for (ArchiveFile extension : extensions) {
+          ClosableIterator<String[]> extRows = new ArchiveFileRows(extension, opener);
+          openRows.add(extRows);
+          RowSorter extSorted = RowSorter.sort(extRows, extension.getId().getIndex(), workingDir);
+          openRows.add(extSorted);
+          extensionRows.add(Iterators.peekingIterator(extSorted));
+          previousRows.add(Collections.emptyList());
+        }
+      }
+    } catch (IOException | RuntimeException ex) {
+      closeRows(ex);
+      throw ex;
+    }
+  }
+
+  /**
+   * Opens the zipped archive at the source path, returns an empty optional if the source isn't a zip file or has no
+   * meta.xml descriptor, such archives are left to the expanding reader
+   */
+  static Optional<DwcaDataFileIterator> openZip(Path source, Path workingDir) {
+    ZipFile zipFile = null;
+    try {
+      zipFile = new ZipFile(source.toFile());
+      Optional<? extends ZipEntry> meta = zipFile.stream()
+          .filter(e -> !e.isDirectory() && !e.getName().startsWith(MAC_OS_FOLDER))
+          .filter(e -> e.getName().equals(META_FILE) || e.getName().endsWith("/" + META_FILE))
+          .min(Comparator.comparingInt(e -> e.getName().length()));
+      if (!meta.isPresent()) {
+        log.info("The archive {} has no {}", source, META_FILE);
+        zipFile.close();
+        return Optional.empty();
+      }
+
+      Archive archive;
+      try (InputStream is = zipFile.getInputStream(meta.get())) {
+        archive = DwcMetaFiles.fromMetaDescriptor(is);
+      }
+      String name = meta.get().getName();
+      String prefix = name.substring(0, name.length() - META_FILE.length());
+
+      log.info("Reading the archive {} without expanding it", source);
+      ZipFile zip = zipFile;
+      ArchiveFileRows.DataFileOpener opener = location -> openEntry(zip, prefix + location);
+      return Optional.of(new DwcaDataFileIterator(zipFile, opener, archive, workingDir));
+    } catch (Exception ex) {
+      log.warn("Can't read the archive {} without expanding it", source, ex);
+      if (zipFile != null) {
+        try {
+          zipFile.close();
+        } catch (IOException e) {
+          log.warn("Can't close the archive {}", source, e);
+        }
+      }
+      return Optional.empty();
+    }
+  }
+
+  /** Reads the data files of an expanded archive, the working directory keeps the spilled sort runs */
+  static DwcaDataFileIterator openExpanded(Path archiveDir, Path workingDir) throws IOException {
+    Archive archive = DwcFiles.fromLocation(archiveDir);
+    ArchiveFileRows.DataFileOpener opener = location -> Files.newInputStream(archiveDir.resolve(location));
+    return new DwcaDataFileIterator(null, opener, archive, workingDir);
+  }
+
+  @Override
+  public boolean hasNext() {
+    return coreRows.hasNext();
+  }
+
+  @Override
+  public StarRecord next() {
+    String[] row = coreRows.next();
+    StarRecordImpl record = new StarRecordImpl(extensionTypes);
+    record.newCoreRecord(ArchiveFileRows.toRecord(core, row));
+
+    if (!extensions.isEmpty()) {
+      String id = RowSorter.key(row, core.getId().getIndex());
+      for (int i = 0; i < extensions.size(); i++) {
+        ArchiveFile extension = extensions.get(i);
+        for (String[] extRow : joinRows(i, id)) {
+          record.addRecord(extension.getRowType(), ArchiveFileRows.toRecord(extension, extRow));
+        }
+      }
+      previousId = id;
+    }
+    return record;
+  }
+
+  /** Skips extension rows of ids missing in the core and collects the rows of the id */
+  private List<String[]> joinRows(int extIndex, String id) {
+    if (id.equals(previousId)) {
+      return previousRows.get(extIndex);
+    }
+    PeekingIterator<String[]> rows = extensionRows.get(extIndex);
+    int keyIndex = extensions.get(extIndex).getId().getIndex();
+    while (rows.hasNext() && RowSorter.key(rows.peek(), keyIndex).compareTo(id) < 0) {
+      rows.next();
+    }
+    List<String[]> result = new ArrayList<>();
+    while (rows.hasNext() && RowSorter.key(rows.peek(), keyIndex).equals(id)) {
+      result.add(rows.next());
+    }
+    previousRows.set(extIndex, result);
+    return result;
+  }
+
+  private static InputStream openEntry(ZipFile zipFile, String location) throws IOException {
+    ZipEntry entry = zipFile.getEntry(location);
+    if (entry == null) {
+      throw new IOException("The archive has no data file " + location);
+    }
+    return zipFile.getInputStream(entry);
+  }
+
+  private void closeRows(Exception cause) {
+    for (ClosableIterator<String[]> rows : openRows) {
+      try {
+        rows.close();
+      } catch (Exception ex) {
+        cause.addSuppressed(ex);
+      }
+    }
+  }
+
+  @Override
+  public void close() throws Exception {
+    for (ClosableIterator<String[]> rows : openRows) {
+      rows.close();
+    }
+    if (source != null) {
+      source.close();
+    }
+  }
+}
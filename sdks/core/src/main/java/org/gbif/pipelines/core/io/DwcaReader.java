@@ -2,8 +2,11 @@ package org.gbif.pipelines.core.io;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.NoSuchElementException;
+import java.util.Optional;
 
 import org.gbif.dwc.DwcFiles;
 import org.gbif.dwc.record.StarRecord;
@@ -21,6 +24,7 @@ public class DwcaReader implements Closeable {
 
   private final ClosableIterator<StarRecord> starRecordsIt;
   private long recordsReturned;
+  private StarRecord currentStarRecord;
   private ExtendedRecord current;
 
   /**
@@ -31,12 +35,53 @@ public class DwcaReader implements Closeable {
   }
 
   /**
-   * Creates a DwcaReader for a compressed archive that it will be expanded in a working directory.
+   * Creates a DwcaReader for a compressed archive. A zip archive with a meta.xml is read straight from the zip entries,
+   * the working directory only keeps the spilled sort runs of archives with extensions. Any other archive is expanded
+   * in the working directory, see {@link #fromCompressedExpanded(String, String)}.
    */
   public static DwcaReader fromCompressed(String source, String workingDir) throws IOException {
+    Optional<DwcaDataFileIterator> zipIterator = DwcaDataFileIterator.openZip(Paths.get(source), Paths.get(workingDir));
+    if (zipIterator.isPresent()) {
+      return new DwcaReader(zipIterator.get());
+    }
+    return fromCompressedExpanded(source, workingDir);
+  }
+
+  /**
+   * Creates a DwcaReader for a compressed archive that it will be expanded in a working directory.
+   */
+  public static DwcaReader fromCompressedExpanded(String source, String workingDir) throws IOException {
     return new DwcaReader(DwcFiles.fromCompressed(Paths.get(source), Paths.get(workingDir)).iterator());
   }
 
+  /**
+   * Creates a DwcaReader which reads the data files of the archive row by row, every star record is a new instance, see
+   * {@link #advanceStarRecord()}. A zip archive with a meta.xml is read straight from the zip entries, any other
+   * compressed archive is expanded in the working directory. The working directory also keeps the spilled sort runs of
+   * archives with extensions.
+   *
+   * @param source path to an expanded archive or a compressed archive
+   */
+  public static DwcaReader fromDataFiles(String source, String workingDir) throws IOException {
+    Path path = Paths.get(source);
+    Path working = Paths.get(workingDir);
+    if (Files.isRegularFile(path)) {
+      Optional<DwcaDataFileIterator> zipIterator = DwcaDataFileIterator.openZip(path, working);
+      if (zipIterator.isPresent()) {
+        return new DwcaReader(zipIterator.get());
+      }
+      path = DwcFiles.fromCompressed(path, working).getLocation().toPath();
+    }
+    return new DwcaReader(DwcaDataFileIterator.openExpanded(path, working));
+  }
+
+  /**
+   * Creates a DwcaReader of a split of an expanded archive, see {@link DwcaSplitter}.
+   */
+  public static DwcaReader fromSplit(DwcaSplit split) throws IOException {
+    return new DwcaReader(split.iterator());
+  }
+
   /**
    * Creates and DwcaReader using a StarRecord iterator.
    */
@@ -55,18 +100,41 @@ public class DwcaReader implements Closeable {
    * Read next element.
    */
   public boolean advance() {
+    if (!advanceStarRecord()) {
+      return false;
+    }
+    current = ExtendedRecordConverter.from(currentStarRecord);
+    return true;
+  }
+
+  /**
+   * Reads the next star record without converting it, see {@link #getCurrentStarRecord()}.
+   */
+  public boolean advanceStarRecord() {
     if (!starRecordsIt.hasNext()) {
       return false;
     }
-    StarRecord next = starRecordsIt.next();
+    currentStarRecord = starRecordsIt.next();
+    current = null;
     recordsReturned++;
     if (recordsReturned % 10_000 == 0) {
       log.info("Read [{}] records", recordsReturned);
     }
-    current = ExtendedRecordConverter.from(next);
     return true;
   }
 
+  /**
+   * Gets the current star record. The dwca-io iterators reuse their record instances, only the star records of a reader
+   * created by {@link #fromDataFiles(String, String)} are new instances, which can be kept after the next advance, e.g.
+   * to convert them with {@link ExtendedRecordConverter#from(StarRecord)} on another thread.
+   */
+  public StarRecord getCurrentStarRecord() {
+    if (currentStarRecord == null) {
+      throw new NoSuchElementException("No current record found (Hint: did you init() the reader?)");
+    }
+    return currentStarRecord;
+  }
+
   /**
    * Gets the current extended record.
    */
@@ -0,0 +1,150 @@
+package org.gbif.pipelines.core.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.gbif.dwc.Archive;
+import org.gbif.dwc.ArchiveFile;
+import org.gbif.dwc.DwcFiles;
+import org.gbif.dwc.record.StarRecord;
+import org.gbif.dwc.record.StarRecordImpl;
+import org.gbif.dwc.terms.Term;
+import org.gbif.utils.file.ClosableIterator;
+import org.gbif.utils.file.csv.CSVReader;
+
+import com.google.common.io.ByteStreams;
+import lombok.Getter;
+
+/**
+ * A byte range of the core data file of an expanded DwC-A, created by {@link DwcaSplitter}. The range starts and ends
+ * on record boundaries. The extension rows of the range are read from the sorted extension indexes built for the
+ * whole archive, see {@link SortedRowIndex}.
+ *
+ * <p>A split of an archive that can't be divided covers the whole archive and is read by the DwC-A reader.
+ */
+public class DwcaSplit implements Serializable {
+
+  private static final long serialVersionUID = -6514373581426374337L;
+
+  private final String archiveDir;
+  private final long start;
+  private final long end;
+  // extension indexes by the qualified name of the row type
+  private final Map<String, SortedRowIndex> extensionIndexes;
+
+  /** Estimated number of bytes of the core and extension files read by this split */
+  @Getter
+  private final long estimatedSize;
+
+  DwcaSplit(Path archiveDir, long start, long end, Map<String, SortedRowIndex> extensionIndexes, long estimatedSize) {
+    this.archiveDir = archiveDir.toString();
+    this.start = start;
+    this.end = end;
+    this.extensionIndexes = extensionIndexes;
+    this.estimatedSize = estimatedSize;
+  }
+
+  /** A split covering the whole archive */
+  static DwcaSplit whole(Path archiveDir, long estimatedSize) {
+    return new DwcaSplit(archiveDir, 0, -1, null, estimatedSize);
+  }
+
+  public boolean isWholeArchive() {
+    return end < 0;
+  }
+
+  /** Star records of the core rows in the range, the rows of a split with extensions are sorted by the core id */
+  ClosableIterator<StarRecord> iterator() throws IOException {
+    Path dir = Paths.get(archiveDir);
+    Archive archive = DwcFiles.fromLocation(dir);
+    if (isWholeArchive()) {
+      return archive.iterator();
+    }
+    return new SplitIterator(archive, dir);
+  }
+
+  @Override
+  public String toString() {
+    return archiveDir + (isWholeArchive() ? "" : " [" + start + ", " + end + ")");
+  }
+
+  private class SplitIterator implements ClosableIterator<StarRecord> {
+
+    private final ArchiveFile core;
+    private final List<ArchiveFile> extensions;
+    private final List<Term> extensionTypes;
+    private final CSVReader reader;
+    private final Iterator<String[]> coreRows;
+    private final List<SortedRowIndex.Lookup> lookups = new ArrayList<>();
+    private RowSorter sorted;
+
+    private SplitIterator(Archive archive, Path dir) throws IOException {
+      this.core = archive.getCore();
+      this.extensions = new ArrayList<>(archive.getExtensions());
+      this.extensionTypes = extensions.stream().map(ArchiveFile::getRowType).collect(Collectors.toList());
+
+      InputStream is = Files.newInputStream(dir.resolve(core.getLocations().get(0)));
+      ByteStreams.skipFully(is, start);
+      this.reader = ArchiveFileRows.open(core, ByteStreams.limit(is, end - start), start == 0);
+
+      if (extensions.isEmpty()) {
+        this.coreRows = reader;
+      } else {
+        // Sorted core rows ask the extension indexes for increasing ids, which reads each extension block once
+        Path tmp = Paths.get(System.getProperty("java.io.tmpdir"));
+        this.sorted = RowSorter.sort(reader, core.getId().getIndex(), tmp);
+        this.coreRows = sorted;
+        for (ArchiveFile extension : extensions) {
+          lookups.add(extensionIndexes.get(extension.getRowType().qualifiedName()).open());
+        }
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      return coreRows.hasNext();
+    }
+
+    @Override
+    public StarRecord next() {
+      String[] row = coreRows.next();
+      StarRecordImpl record = new StarRecordImpl(extensionTypes);
+      record.newCoreRecord(ArchiveFileRows.toRecord(core, row));
+
+      if (!extensions.isEmpty()) {
+        String id = RowSorter.key(row, core.getId().getIndex());
+        try {
+          for (int i = 0; i < extensions.size(); i++) {
+            ArchiveFile extension = extensions.get(i);
+            for (String[] extRow : lookups.get(i).rows(id)) {
+              record.addRecord(extension.getRowType(), ArchiveFileRows.toRecord(extension, extRow));
+            }
+          }
+        } catch (IOException ex) {
+          throw new IllegalStateException("Can't read the extension rows of " + id, ex);
+        }
+      }
+      return record;
+    }
+
+    @Override
+    public void close() throws Exception {
+      reader.close();
+      if (sorted != null) {
+        sorted.close();
+      }
+      for (SortedRowIndex.Lookup lookup : lookups) {
+        lookup.close();
+      }
+    }
+  }
+}
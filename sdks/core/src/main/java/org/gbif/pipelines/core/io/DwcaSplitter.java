@@ -0,0 +1,208 @@
+package org.gbif.pipelines.core.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.gbif.dwc.Archive;
+import org.gbif.dwc.ArchiveFile;
+import org.gbif.dwc.DwcFiles;
+import org.gbif.utils.file.ClosableIterator;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Divides an expanded DwC-A into {@link DwcaSplit}s, which can be read in parallel by {@link
+ * DwcaReader#fromSplit(DwcaSplit)}. The single core data file is divided into byte ranges which start after a line
+ * break outside of quotes, so no record is cut. Each extension is sorted by the core id once and written with a sparse
+ * index, every split looks up the extension rows of its core rows in it.
+ *
+ * <p>Archives with several core data files, unbalanced quotes in the core data file or an encoding where a line break
+ * isn't a single byte aren't divided, the result is a single split covering the whole archive.
+ *
+ * <p>The index directory is needed until all splits are read, {@link #deleteIndexes(Path)} removes it afterwards.
+ */
+@Slf4j
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class DwcaSplitter {
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+  // A quoted value over more lines is taken for an unbalanced quote, which would shift the record boundaries
+  private static final int MAX_QUOTED_LINES = 1_000;
+
+  /**
+   * @param archiveDir path to an expanded DwC-A
+   * @param indexDir directory for the sorted extension indexes, it must be readable where the splits are read
+   * @param desiredSplitSize desired size of a core byte range
+   */
+  public static List<DwcaSplit> split(Path archiveDir, Path indexDir, long desiredSplitSize) throws IOException {
+    Archive archive = DwcFiles.fromLocation(archiveDir);
+    ArchiveFile core = archive.getCore();
+    long dataSize = dataSize(archiveDir, core);
+    for (ArchiveFile extension : archive.getExtensions()) {
+      dataSize += dataSize(archiveDir, extension);
+    }
+
+    if (!isSplittable(archive)) {
+      log.info("The archive {} can't be split, it is read as a whole", archiveDir);
+      return Collections.singletonList(DwcaSplit.whole(archiveDir, dataSize));
+    }
+
+    Path coreFile = archiveDir.resolve(core.getLocations().get(0));
+    List<long[]> ranges = ranges(coreFile, core, Math.max(desiredSplitSize, 1L));
+    if (ranges.size() == 1) {
+      return Collections.singletonList(DwcaSplit.whole(archiveDir, dataSize));
+    }
+
+    Files.createDirectories(indexDir);
+    Map<String, SortedRowIndex> indexes = new HashMap<>();
+    for (ArchiveFile extension : archive.getExtensions()) {
+      indexes.put(extension.getRowType().qualifiedName(), index(archiveDir, extension, indexDir));
+    }
+
+    // The extensions are estimated to be read in proportion to the core
+    double ratio = (double) dataSize / Math.max(Files.size(coreFile), 1L);
+    List<DwcaSplit> splits = new ArrayList<>(ranges.size());
+    for (long[] range : ranges) {
+      long estimatedSize = (long) ((range[1] - range[0]) * ratio);
+      splits.add(new DwcaSplit(archiveDir, range[0], range[1], indexes, estimatedSize));
+    }
+    log.info("The archive {} is split into [{}] core ranges of about [{}] bytes", archiveDir, splits.size(),
+        desiredSplitSize);
+    return splits;
+  }
+
+  /** Deletes the index directory of {@link #split(Path, Path, long)} with all the indexes, once the splits are read */
+  public static void deleteIndexes(Path indexDir) throws IOException {
+    if (!Files.exists(indexDir)) {
+      return;
+    }
+    try (Stream<Path> paths = Files.walk(indexDir)) {
+      for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+        Files.deleteIfExists(path);
+      }
+    }
+  }
+
+  private static boolean isSplittable(Archive archive) {
+    ArchiveFile core = archive.getCore();
+    if (core.getLocations().size() != 1) {
+      return false;
+    }
+    if (!archive.getExtensions().isEmpty()) {
+      if (core.getId() == null || archive.getExtensions().stream().anyMatch(e -> e.getId() == null)) {
+        return false;
+      }
+    }
+    try {
+      Charset charset = Charset.forName(core.getEncoding());
+      Character quotes = core.getFieldsEnclosedBy();
+      boolean singleByteQuotes = quotes == null || isSingleByte(quotes, charset);
+      return isSingleByte('\n', charset) && singleByteQuotes;
+    } catch (IllegalArgumentException ex) {
+      log.warn("Unknown encoding {}", core.getEncoding(), ex);
+      return false;
+    }
+  }
+
+  private static boolean isSingleByte(char c, Charset charset) {
+    return Arrays.equals(String.valueOf(c).getBytes(charset), String.valueOf(c).getBytes(StandardCharsets.US_ASCII));
+  }
+
+  /**
+   * Scans the core data file for line breaks outside of quotes, a range ends at the first one after the desired size.
+   * No range starts before all header lines are passed, the first range skips them. A file with unbalanced quotes is
+   * a single range.
+   */
+  private static List<long[]> ranges(Path coreFile, ArchiveFile core, long desiredSplitSize) throws IOException {
+    int quote = core.getFieldsEnclosedBy() == null ? -1 : core.getFieldsEnclosedBy();
+    int headerLines = core.getIgnoreHeaderLines() == null ? 0 : core.getIgnoreHeaderLines();
+
+    List<long[]> ranges = new ArrayList<>();
+    long start = 0;
+    long position = 0;
+    int lines = 0;
+    int quotedLines = 0;
+    boolean quoted = false;
+    byte[] buffer = new byte[BUFFER_SIZE];
+    try (InputStream is = Files.newInputStream(coreFile)) {
+      int read;
+      while ((read = is.read(buffer)) != -1) {
+        for (int i = 0; i < read; i++) {
+          position++;
+          int b = buffer[i];
+          if (b == quote) {
+            quoted = !quoted;
+            quotedLines = 0;
+          } else if (b == '\n' && quoted) {
+            if (++quotedLines > MAX_QUOTED_LINES) {
+              return unbalanced(coreFile);
+            }
+          } else if (b == '\n') {
+            lines++;
+            if (lines >= headerLines && position - start >= desiredSplitSize) {
+              ranges.add(new long[] {start, position});
+              start = position;
+            }
+          }
+        }
+      }
+    }
+    if (quoted) {
+      return unbalanced(coreFile);
+    }
+    if (position > start || ranges.isEmpty()) {
+      ranges.add(new long[] {start, position});
+    }
+    return ranges;
+  }
+
+  private static List<long[]> unbalanced(Path coreFile) throws IOException {
+    log.warn("The core data file {} has unbalanced quotes, it can't be split", coreFile);
+    return Collections.singletonList(new long[] {0, Files.size(coreFile)});
+  }
+
+  /** Sorts the rows of the extension by the core id and writes them with a sparse index */
+  private static SortedRowIndex index(Path archiveDir, ArchiveFile extension, Path indexDir) throws IOException {
+    int keyIndex = extension.getId().getIndex();
+    Path file = Files.createTempFile(indexDir, "dwca-extension-", ".rows");
+    try (ClosableIterator<String[]> rows = new ArchiveFileRows(extension, l -> open(archiveDir, l));
+        RowSorter sorted = RowSorter.sort(rows, keyIndex, indexDir)) {
+      log.info("Indexing the extension {} by the core id", extension.getRowType());
+      return SortedRowIndex.write(sorted, keyIndex, file);
+    } catch (IOException ex) {
+      throw ex;
+    } catch (Exception ex) {
+      throw new IOException(ex);
+    }
+  }
+
+  private static InputStream open(Path archiveDir, String location) throws IOException {
+    return Files.newInputStream(archiveDir.resolve(location));
+  }
+
+  private static long dataSize(Path archiveDir, ArchiveFile file) throws IOException {
+    long size = 0;
+    for (String location : file.getLocations()) {
+      Path path = archiveDir.resolve(location);
+      if (Files.exists(path)) {
+        size += Files.size(path);
+      }
+    }
+    return size;
+  }
+}
@@ -0,0 +1,213 @@
+package org.gbif.pipelines.core.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+import org.gbif.utils.file.ClosableIterator;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * External merge sort of csv rows by a key column. Rows are sorted in memory in chunks, a file that doesn't fit into a
+ * single chunk is spilled to run files in the working directory, which are merged lazily while iterating, so the
+ * memory used doesn't depend on the size of the file.
+ */
+@Slf4j
+class RowSorter implements ClosableIterator<String[]> {
+
+  static final int CHUNK_SIZE = 100_000;
+
+  private final List<Run> runs = new ArrayList<>();
+  private final PriorityQueue<Run> queue;
+  private final Iterator<String[]> memory;
+
+  private RowSorter(int keyIndex, List<String[]> chunk) {
+    // Rows with the same key keep the order of the runs, so the sort is stable as a whole
+    Comparator<Run> comparator = Comparator.<Run, String>comparing(run -> key(run.current, keyIndex))
+        .thenComparingInt(run -> run.index);
+    this.queue = new PriorityQueue<>(comparator);
+    this.memory = chunk == null ? null : chunk.iterator();
+  }
+
+  /** Stable sort of the rows by the value of the key column, a missing value is sorted as an empty string */
+  static RowSorter sort(Iterator<String[]> rows, int keyIndex, Path workingDir) throws IOException {
+    return sort(rows, keyIndex, workingDir, CHUNK_SIZE);
+  }
+
+  static RowSorter sort(Iterator<String[]> rows, int keyIndex, Path workingDir, int chunkSize) throws IOException {
+    Comparator<String[]> comparator = Comparator.comparing(row -> key(row, keyIndex));
+
+    List<String[]> chunk = new ArrayList<>();
+    List<Path> files = new ArrayList<>();
+    RowSorter sorter = null;
+    try {
+      while (rows.hasNext()) {
+        chunk.add(rows.next());
+        if (chunk.size() == chunkSize && rows.hasNext()) {
+          chunk.sort(comparator);
+          files.add(spill(chunk, workingDir));
+          chunk.clear();
+        }
+      }
+      chunk.sort(comparator);
+
+      if (files.isEmpty()) {
+        return new RowSorter(keyIndex, chunk);
+      }
+
+      files.add(spill(chunk, workingDir));
+      log.info("Merging [{}] sorted runs", files.size());
+      sorter = new RowSorter(keyIndex, null);
+      for (int i = 0; i < files.size(); i++) {
+        Run run = new Run(i, files.get(i));
+        sorter.runs.add(run);
+        if (run.advance()) {
+          sorter.queue.add(run);
+        }
+      }
+      return sorter;
+    } catch (IOException | RuntimeException ex) {
+      deleteRuns(sorter, files, ex);
+      throw ex;
+    }
+  }
+
+  /** Deletes the runs spilled before the sort failed */
+  private static void deleteRuns(RowSorter sorter, List<Path> files, Exception cause) {
+    try {
+      if (sorter != null) {
+        sorter.close();
+      }
+      for (Path file : files) {
+        Files.deleteIfExists(file);
+      }
+    } catch (IOException ex) {
+      cause.addSuppressed(ex);
+    }
+  }
+
+  static String key(String[] row, int keyIndex) {
+    return keyIndex < row.length && row[keyIndex] != null ? row[keyIndex] : "";
+  }
+
+  @Override
+  public boolean hasNext() {
+    return memory != null ? memory.hasNext() : !queue.isEmpty();
+  }
+
+  @Override
+  public String[] next() {
+    if (memory != null) {
+      return memory.next();
+    }
+    Run run = queue.poll();
+    if (run == null) {
+      throw new NoSuchElementException();
+    }
+    String[] row = run.current;
+    try {
+      if (run.advance()) {
+        queue.add(run);
+      }
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+    return row;
+  }
+
+  @Override
+  public void close() throws IOException {
+    for (Run run : runs) {
+      run.close();
+    }
+  }
+
+  private static Path spill(List<String[]> chunk, Path workingDir) throws IOException {
+    Files.createDirectories(workingDir);
+    Path file = Files.createTempFile(workingDir, "dwca-sort-", ".run");
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+      out.writeInt(chunk.size());
+      for (String[] row : chunk) {
+        writeRow(out, row);
+      }
+    } catch (IOException ex) {
+      Files.deleteIfExists(file);
+      throw ex;
+    }
+    log.debug("Spilled [{}] rows to {}", chunk.size(), file);
+    return file;
+  }
+
+  /** Writes the number of values and each value as length and UTF-8 bytes, a null value has the length -1 */
+  static void writeRow(DataOutputStream out, String[] row) throws IOException {
+    out.writeInt(row.length);
+    for (String value : row) {
+      if (value == null) {
+        out.writeInt(-1);
+      } else {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+      }
+    }
+  }
+
+  /** Reads a row written by {@link #writeRow(DataOutputStream, String[])} */
+  static String[] readRow(DataInputStream in) throws IOException {
+    String[] row = new String[in.readInt()];
+    for (int i = 0; i < row.length; i++) {
+      int length = in.readInt();
+      if (length >= 0) {
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        row[i] = new String(bytes, StandardCharsets.UTF_8);
+      }
+    }
+    return row;
+  }
+
+  /** A sorted run file, read row by row */
+  private static class Run {
+
+    private final int index;
+    private final Path file;
+    private final DataInputStream in;
+    private int remaining;
+    private String[] current;
+
+    private Run(int index, Path file) throws IOException {
+      this.index = index;
+      this.file = file;
+      this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)));
+      this.remaining = in.readInt();
+    }
+
+    private boolean advance() throws IOException {
+      if (remaining == 0) {
+        current = null;
+        return false;
+      }
+      remaining--;
+      current = readRow(in);
+      return true;
+    }
+
+    private void close() throws IOException {
+      in.close();
+      Files.deleteIfExists(file);
+    }
+  }
+}
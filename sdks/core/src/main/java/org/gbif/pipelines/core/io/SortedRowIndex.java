@@ -0,0 +1,184 @@
+package org.gbif.pipelines.core.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import com.google.common.io.CountingOutputStream;
+
+/**
+ * Rows sorted by a key column in a file, with a sparse index of the first key of every block of about {@link
+ * #BLOCK_SIZE} rows in a second file. All the rows of a key are in the same block, so the rows of a key are found with
+ * a single seek. Only the paths are serialized, the sparse index is loaded by {@link #open()}.
+ */
+class SortedRowIndex implements Serializable {
+
+  private static final long serialVersionUID = 3316071735425496163L;
+
+  static final int BLOCK_SIZE = 256;
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final String INDEX_EXT = ".idx";
+
+  private final String file;
+  private final int keyIndex;
+
+  private SortedRowIndex(String file, int keyIndex) {
+    this.file = file;
+    this.keyIndex = keyIndex;
+  }
+
+  /**
+   * Writes the rows to the file and the sparse index next to it
+   *
+   * @param sortedRows rows sorted by the key column, see {@link RowSorter}
+   */
+  static SortedRowIndex write(Iterator<String[]> sortedRows, int keyIndex, Path file) throws IOException {
+    Path indexFile = Paths.get(file + INDEX_EXT);
+    try (CountingOutputStream counting = new CountingOutputStream(
+        new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE));
+        DataOutputStream out = new DataOutputStream(counting);
+        DataOutputStream index = new DataOutputStream(
+            new BufferedOutputStream(Files.newOutputStream(indexFile), BUFFER_SIZE))) {
+
+      long rows = 0;
+      long blockStart = -BLOCK_SIZE;
+      String previousKey = null;
+      while (sortedRows.hasNext()) {
+        String[] row = sortedRows.next();
+        String key = RowSorter.key(row, keyIndex);
+        // A block starts only where the key changes
+        if (rows - blockStart >= BLOCK_SIZE && !key.equals(previousKey)) {
+          index.writeBoolean(true);
+          index.writeUTF(key);
+          index.writeLong(counting.getCount());
+          index.writeLong(rows);
+          blockStart = rows;
+        }
+        RowSorter.writeRow(out, row);
+        previousKey = key;
+        rows++;
+      }
+      index.writeBoolean(false);
+      index.writeLong(rows);
+    }
+    return new SortedRowIndex(file.toString(), keyIndex);
+  }
+
+  /** Opens a reader of the rows, it isn't thread safe */
+  Lookup open() throws IOException {
+    return new Lookup();
+  }
+
+  /**
+   * Finds the rows of a key. Keys are expected to be asked in increasing order, then every block is read at most once
+   * and blocks without asked keys are skipped, going back to a lower key seeks to its block again.
+   */
+  class Lookup implements Closeable {
+
+    private final String[] keys;
+    private final long[] offsets;
+    private final long[] firstRows;
+    private final long rows;
+    private final FileChannel channel;
+
+    private DataInputStream in;
+    private long position;
+    private String[] next;
+    // all rows up to this key are read, the next row has a higher key
+    private String scannedKey;
+
+    private String lastKey;
+    private List<String[]> lastRows = Collections.emptyList();
+
+    private Lookup() throws IOException {
+      List<String> keyList = new ArrayList<>();
+      List<long[]> positions = new ArrayList<>();
+      try (DataInputStream index = new DataInputStream(
+          new BufferedInputStream(Files.newInputStream(Paths.get(file + INDEX_EXT)), BUFFER_SIZE))) {
+        while (index.readBoolean()) {
+          keyList.add(index.readUTF());
+          positions.add(new long[] {index.readLong(), index.readLong()});
+        }
+        this.rows = index.readLong();
+      }
+      this.keys = keyList.toArray(new String[0]);
+      this.offsets = positions.stream().mapToLong(p -> p[0]).toArray();
+      this.firstRows = positions.stream().mapToLong(p -> p[1]).toArray();
+      this.channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ);
+    }
+
+    /** @return rows of the key in the order they were written, an empty list if there are none */
+    List<String[]> rows(String key) throws IOException {
+      if (key.equals(lastKey)) {
+        return lastRows;
+      }
+      lastKey = key;
+      lastRows = Collections.emptyList();
+
+      int keyBlock = blockOf(key);
+      if (keyBlock < 0) {
+        return lastRows;
+      }
+      boolean forward = scannedKey != null && scannedKey.compareTo(key) < 0;
+      if (!forward || (next != null && position - 1 < firstRows[keyBlock])) {
+        seek(keyBlock);
+      }
+
+      while (next != null && RowSorter.key(next, keyIndex).compareTo(key) < 0) {
+        next = read();
+      }
+      List<String[]> result = new ArrayList<>();
+      while (next != null && RowSorter.key(next, keyIndex).equals(key)) {
+        result.add(next);
+        next = read();
+      }
+      scannedKey = key;
+      if (!result.isEmpty()) {
+        lastRows = result;
+      }
+      return lastRows;
+    }
+
+    /** @return the last block starting with a key lower or equal to the key, -1 if the key is lower than all */
+    private int blockOf(String key) {
+      int found = Arrays.binarySearch(keys, key);
+      return found >= 0 ? found : -found - 2;
+    }
+
+    private void seek(int keyBlock) throws IOException {
+      channel.position(offsets[keyBlock]);
+      // the stream isn't closed, that would close the channel
+      in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), BUFFER_SIZE));
+      position = firstRows[keyBlock];
+      next = read();
+    }
+
+    private String[] read() throws IOException {
+      if (position >= rows) {
+        return null;
+      }
+      position++;
+      return RowSorter.readRow(in);
+    }
+
+    @Override
+    public void close() throws IOException {
+      channel.close();
+    }
+  }
+}
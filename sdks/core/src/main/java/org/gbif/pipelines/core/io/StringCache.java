@@ -0,0 +1,91 @@
+package org.gbif.pipelines.core.io;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.avro.util.Utf8;
+
+/**
+ * Deduplicates the strings of decoded {@link org.gbif.pipelines.io.avro.ExtendedRecord}, term keys are interned and
+ * values of low-cardinality terms, like {@code basisOfRecord}, {@code countryCode} or {@code license}, are cached per
+ * term. A term becomes high-cardinality, and is not cached anymore, as soon as it has more distinct values than
+ * {@code maxValuesPerTerm}, so the cache is bounded and the values of ids or coordinates do not fill it.
+ *
+ * <p>The lookup is done by the bytes of a reused {@link Utf8}, a repeated string is neither decoded nor allocated.
+ *
+ * <p>The cache is not thread-safe, use one cache per reading thread.
+ */
+public final class StringCache {
+
+  public static final int DEFAULT_MAX_VALUES_PER_TERM = 1_024;
+  public static final int DEFAULT_MAX_VALUE_LENGTH = 128;
+
+  // protects the cache from data with random keys
+  private static final int MAX_KEYS = 10_000;
+
+  private final int maxValuesPerTerm;
+  private final int maxValueLength;
+
+  private final Map<Utf8, String> keys = new HashMap<>();
+  private final Map<String, Map<Utf8, String>> values = new HashMap<>();
+  private final Set<String> highCardinalityTerms = new HashSet<>();
+
+  private StringCache(int maxValuesPerTerm, int maxValueLength) {
+    this.maxValuesPerTerm = maxValuesPerTerm;
+    this.maxValueLength = maxValueLength;
+  }
+
+  public static StringCache create() {
+    return new StringCache(DEFAULT_MAX_VALUES_PER_TERM, DEFAULT_MAX_VALUE_LENGTH);
+  }
+
+  /**
+   * @param maxValuesPerTerm distinct values of a term to cache, a term with more values is not cached
+   * @param maxValueLength longer values are not cached
+   */
+  public static StringCache create(int maxValuesPerTerm, int maxValueLength) {
+    return new StringCache(maxValuesPerTerm, maxValueLength);
+  }
+
+  /** @return interned term key or row type */
+  public String getKey(Utf8 key) {
+    String result = keys.get(key);
+    if (result == null) {
+      result = key.toString();
+      if (keys.size() < MAX_KEYS) {
+        keys.put(new Utf8(key), result);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @param term interned term key of the value
+   * @return cached value or a new string, if the term is high-cardinality or the value is too long
+   */
+  public String getValue(String term, Utf8 value) {
+    if (value.getByteLength() > maxValueLength || highCardinalityTerms.contains(term)) {
+      return value.toString();
+    }
+
+    Map<Utf8, String> termValues = values.computeIfAbsent(term, t -> new HashMap<>());
+    String result = termValues.get(value);
+    if (result == null) {
+      result = value.toString();
+      if (termValues.size() < maxValuesPerTerm) {
+        termValues.put(new Utf8(value), result);
+      } else {
+        values.remove(term);
+        highCardinalityTerms.add(term);
+      }
+    }
+    return result;
+  }
+
+  /** @return number of the cached values of all terms */
+  public int size() {
+    return values.values().stream().mapToInt(Map::size).sum();
+  }
+}
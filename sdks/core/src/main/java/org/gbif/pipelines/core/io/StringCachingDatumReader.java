@@ -0,0 +1,64 @@
+package org.gbif.pipelines.core.io;
+
+import java.io.IOException;
+
+import org.gbif.pipelines.io.avro.ExtendedRecord;
+
+import org.apache.avro.Schema;
+import org.apache.avro.io.Decoder;
+import org.apache.avro.io.ResolvingDecoder;
+import org.apache.avro.specific.SpecificDatumReader;
+import org.apache.avro.util.Utf8;
+
+/**
+ * Reader of plain {@link ExtendedRecord}, which deduplicates the strings by a {@link StringCache}. The map keys and the
+ * row type are interned, a string read right after a map key is a value of that term. The record id is read as is.
+ */
+class StringCachingDatumReader extends SpecificDatumReader<ExtendedRecord> {
+
+  private static final String ID = "id";
+
+  private final StringCache cache;
+  private final Utf8 scratch = new Utf8();
+
+  // term of the next string value, null for a field of the record
+  private String term;
+  private String field;
+
+  StringCachingDatumReader(Schema writer, StringCache cache) {
+    super(writer, ExtendedRecord.getClassSchema());
+    this.cache = cache;
+  }
+
+  @Override
+  public ExtendedRecord read(ExtendedRecord reuse, Decoder in) throws IOException {
+    term = null;
+    field = null;
+    return super.read(reuse, in);
+  }
+
+  @Override
+  protected void readField(Object r, Schema.Field f, Object oldDatum, ResolvingDecoder in, Object state)
+      throws IOException {
+    term = null;
+    field = f.name();
+    super.readField(r, f, oldDatum, in, state);
+  }
+
+  @Override
+  protected Object readMapKey(Object old, Schema expected, Decoder in) throws IOException {
+    term = cache.getKey(in.readString(scratch));
+    return term;
+  }
+
+  @Override
+  protected Object readString(Object old, Schema expected, Decoder in) throws IOException {
+    Utf8 value = in.readString(scratch);
+    if (term != null) {
+      String result = cache.getValue(term, value);
+      term = null;
+      return result;
+    }
+    return ID.equals(field) ? value.toString() : cache.getKey(value);
+  }
+}
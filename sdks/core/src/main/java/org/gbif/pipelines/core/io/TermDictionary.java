@@ -0,0 +1,102 @@
+package org.gbif.pipelines.core.io;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.gbif.api.vocabulary.Extension;
+import org.gbif.dwc.terms.AcTerm;
+import org.gbif.dwc.terms.DcElement;
+import org.gbif.dwc.terms.DcTerm;
+import org.gbif.dwc.terms.DwcTerm;
+import org.gbif.dwc.terms.GbifTerm;
+import org.gbif.dwc.terms.Term;
+import org.gbif.dwc.terms.XmpRightsTerm;
+
+import lombok.NonNull;
+
+/**
+ * Dictionary of term URIs, like {@code http://rs.tdwg.org/dwc/terms/scientificName}, maps the term keys and row types
+ * of an {@link org.gbif.pipelines.io.avro.ExtendedRecord} to small integer ids and back. The decoded term keys are the
+ * strings of the dictionary, so the records share the same key instances.
+ *
+ * <p>{@link #DEFAULT} contains the DwC, DC, GBIF, Audubon Core and XMP rights terms and the row types of the GBIF
+ * extensions. The order of the terms is not stable between versions, a dictionary stored with the data has to be
+ * used to decode it, see {@link TermDictionaryEncoding}.
+ */
+public final class TermDictionary implements Serializable {
+
+  private static final long serialVersionUID = 6093285416187358391L;
+
+  /** Id of a term, which is not in the dictionary */
+  public static final int UNKNOWN = -1;
+
+  public static final TermDictionary DEFAULT = create(defaultTerms());
+
+  private final String[] terms;
+  private final Map<String, Integer> ids;
+
+  private TermDictionary(String[] terms) {
+    this.terms = terms;
+    this.ids = new HashMap<>(terms.length * 2);
+    for (int i = 0; i < terms.length; i++) {
+      if (ids.put(terms[i], i) != null) {
+        throw new IllegalArgumentException("Term dictionary contains the term " + terms[i] + " twice");
+      }
+    }
+  }
+
+  /**
+   * @param terms unique term URIs, the id of a term is its index
+   * @throws IllegalArgumentException for a duplicate term
+   */
+  public static TermDictionary create(@NonNull List<String> terms) {
+    return new TermDictionary(terms.toArray(new String[0]));
+  }
+
+  /** @return id of the term or {@link #UNKNOWN} */
+  public int getId(String term) {
+    Integer id = ids.get(term);
+    return id == null ? UNKNOWN : id;
+  }
+
+  /**
+   * @return term URI of the id
+   * @throws IllegalArgumentException for an id, which is not in the dictionary
+   */
+  public String getTerm(int id) {
+    if (id < 0 || id >= terms.length) {
+      throw new IllegalArgumentException("Term id " + id + " is not in the dictionary of " + terms.length + " terms");
+    }
+    return terms[id];
+  }
+
+  public List<String> getTerms() {
+    return Collections.unmodifiableList(Arrays.asList(terms));
+  }
+
+  public int size() {
+    return terms.length;
+  }
+
+  private static List<String> defaultTerms() {
+    Set<String> terms = new LinkedHashSet<>();
+    List<Term[]> vocabularies = Arrays.asList(DwcTerm.values(), DcTerm.values(), DcElement.values(),
+        GbifTerm.values(), AcTerm.values(), XmpRightsTerm.values());
+    for (Term[] vocabulary : vocabularies) {
+      for (Term term : vocabulary) {
+        terms.add(term.qualifiedName());
+      }
+    }
+    for (Extension extension : Extension.values()) {
+      terms.add(extension.getRowType());
+    }
+    return new ArrayList<>(terms);
+  }
+}
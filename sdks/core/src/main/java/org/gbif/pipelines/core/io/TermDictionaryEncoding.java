@@ -0,0 +1,368 @@
+package org.gbif.pipelines.core.io;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.gbif.pipelines.io.avro.ExtendedRecord;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.DatumReader;
+import org.apache.avro.io.DatumWriter;
+import org.apache.avro.io.Decoder;
+import org.apache.avro.io.Encoder;
+import org.apache.avro.specific.SpecificDatumReader;
+import org.apache.avro.util.Utf8;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import lombok.NonNull;
+
+/**
+ * Compact avro representation of {@link ExtendedRecord}, the term keys and row types are written as ids of a {@link
+ * TermDictionary} instead of full URIs, terms which are not in the dictionary are written as strings. The maps of an
+ * {@link ExtendedRecord} become arrays of key-value records. The dictionary is stored in the "gbif.terms" property of
+ * the schema, so it is a part of the avro file header and a file can be decoded by any version of the code.
+ *
+ * <p>The reader decodes both the dictionary encoded and the plain files to {@link ExtendedRecord}:
+ *
+ * <pre>{@code
+ * DataFileWriter<ExtendedRecord> writer = new DataFileWriter<>(TermDictionaryEncoding.writer(TermDictionary.DEFAULT));
+ * writer.create(TermDictionaryEncoding.createSchema(TermDictionary.DEFAULT), outputStream);
+ *
+ * DataFileStream<ExtendedRecord> reader = new DataFileStream<>(inputStream, TermDictionaryEncoding.reader());
+ * }</pre>
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class TermDictionaryEncoding {
+
+  public static final String TERMS_PROP = "gbif.terms";
+
+  private static final String NAME = "TermDictionaryExtendedRecord";
+  private static final String NAMESPACE = "org.gbif.pipelines.io.avro";
+
+  // positions of the key union
+  private static final int ID_INDEX = 0;
+  private static final int URI_INDEX = 1;
+  // positions of the nullable value union
+  private static final int NULL_INDEX = 0;
+  private static final int VALUE_INDEX = 1;
+
+  /** Schema of the dictionary encoded records, with the terms of the dictionary */
+  public static Schema createSchema(@NonNull TermDictionary dictionary) {
+    Schema string = Schema.create(Schema.Type.STRING);
+    Schema key = Schema.createUnion(Arrays.asList(Schema.create(Schema.Type.INT), string));
+    Schema nullableString = Schema.createUnion(Arrays.asList(Schema.create(Schema.Type.NULL), string));
+
+    Schema term = Schema.createRecord("TermDictionaryTerm", "Core term, the key is a term id or a term URI", NAMESPACE,
+        false, Arrays.asList(field("key", key), field("value", string)));
+    Schema extensionTerm = Schema.createRecord("TermDictionaryExtensionTerm", "Extension term", NAMESPACE, false,
+        Arrays.asList(field("key", key), field("value", nullableString)));
+    Schema extension = Schema.createRecord("TermDictionaryExtension", "Rows of an extension", NAMESPACE, false,
+        Arrays.asList(field("rowType", key),
+            field("rows", Schema.createArray(Schema.createArray(extensionTerm)))));
+
+    Schema schema = Schema.createRecord(NAME, "ExtendedRecord with the term keys encoded by a term dictionary",
+        NAMESPACE, false, Arrays.asList(
+            field("id", string),
+            field("coreRowType", key),
+            field("coreTerms", Schema.createArray(term)),
+            field("extensions", Schema.createArray(extension))));
+    schema.addProp(TERMS_PROP, dictionary.getTerms());
+    return schema;
+  }
+
+  /** @return true if the schema is the schema of dictionary encoded records */
+  public static boolean isEncoded(Schema schema) {
+    return schema != null && NAME.equals(schema.getName()) && schema.getObjectProp(TERMS_PROP) != null;
+  }
+
+  /**
+   * @return dictionary stored in the schema of dictionary encoded records
+   * @throws IllegalArgumentException if the schema is not a schema of dictionary encoded records
+   */
+  public static TermDictionary getDictionary(Schema schema) {
+    if (!isEncoded(schema)) {
+      throw new IllegalArgumentException("Schema " + schema + " is not a schema of the term dictionary encoding");
+    }
+    List<String> terms = new ArrayList<>();
+    for (Object term : (Collection<?>) schema.getObjectProp(TERMS_PROP)) {
+      terms.add(term.toString());
+    }
+    return TermDictionary.create(terms);
+  }
+
+  /** Writer of the dictionary encoded records, for the schema created by {@link #createSchema(TermDictionary)} */
+  public static DatumWriter<ExtendedRecord> writer(@NonNull TermDictionary dictionary) {
+    return new Writer(dictionary);
+  }
+
+  /**
+   * Reader of dictionary encoded and plain {@link ExtendedRecord} files, the encoding is detected by the schema of
+   * the file
+   */
+  public static DatumReader<ExtendedRecord> reader() {
+    return new Reader(null);
+  }
+
+  /**
+   * Reader of dictionary encoded and plain {@link ExtendedRecord} files, which deduplicates the term keys and the
+   * values of low-cardinality terms by the cache, see {@link StringCache}
+   *
+   * @param cache cache, shared by the readers of the files of one dataset, which are read by the same thread
+   */
+  public static DatumReader<ExtendedRecord> reader(@NonNull StringCache cache) {
+    return new Reader(cache);
+  }
+
+  /** Reader of the dictionary encoded records without a file header, like a serialized record */
+  public static DatumReader<ExtendedRecord> reader(@NonNull TermDictionary dictionary) {
+    Reader reader = new Reader(null);
+    reader.dictionary = dictionary;
+    return reader;
+  }
+
+  /**
+   * Converts a generic record, read with the schema of a dictionary encoded or a plain {@link ExtendedRecord} file
+   *
+   * @param dictionary dictionary of the schema of the record, see {@link #getDictionary(Schema)}, null for a plain
+   * record
+   */
+  public static ExtendedRecord decode(GenericRecord record, TermDictionary dictionary) {
+    String id = record.get("id").toString();
+    if (dictionary == null) {
+      return new ExtendedRecord(id, record.get("coreRowType").toString(), toStringMap(record.get("coreTerms")),
+          toExtensions(record.get("extensions")));
+    }
+
+    List<?> coreTerms = (List<?>) record.get("coreTerms");
+    Map<String, String> core = new HashMap<>(capacity(coreTerms.size()));
+    for (Object t : coreTerms) {
+      GenericRecord term = (GenericRecord) t;
+      core.put(decodeKey(term.get("key"), dictionary), term.get("value").toString());
+    }
+
+    List<?> extensionList = (List<?>) record.get("extensions");
+    Map<String, List<Map<String, String>>> extensions = new HashMap<>(capacity(extensionList.size()));
+    for (Object e : extensionList) {
+      GenericRecord extension = (GenericRecord) e;
+      List<?> rowList = (List<?>) extension.get("rows");
+      List<Map<String, String>> rows = new ArrayList<>(rowList.size());
+      for (Object r : rowList) {
+        List<?> termList = (List<?>) r;
+        Map<String, String> row = new HashMap<>(capacity(termList.size()));
+        for (Object t : termList) {
+          GenericRecord term = (GenericRecord) t;
+          Object value = term.get("value");
+          row.put(decodeKey(term.get("key"), dictionary), value == null ? null : value.toString());
+        }
+        rows.add(row);
+      }
+      extensions.put(decodeKey(extension.get("rowType"), dictionary), rows);
+    }
+    return new ExtendedRecord(id, decodeKey(record.get("coreRowType"), dictionary), core, extensions);
+  }
+
+  private static Schema.Field field(String name, Schema schema) {
+    return new Schema.Field(name, schema, null, (Object) null);
+  }
+
+  private static int capacity(long size) {
+    return (int) (size / 0.75f) + 1;
+  }
+
+  private static String decodeKey(Object key, TermDictionary dictionary) {
+    return key instanceof Integer ? dictionary.getTerm((Integer) key) : key.toString();
+  }
+
+  private static Map<String, String> toStringMap(Object value) {
+    Map<?, ?> map = (Map<?, ?>) value;
+    Map<String, String> result = new HashMap<>(capacity(map.size()));
+    map.forEach((k, v) -> result.put(k.toString(), v == null ? null : v.toString()));
+    return result;
+  }
+
+  private static Map<String, List<Map<String, String>>> toExtensions(Object value) {
+    Map<?, ?> map = (Map<?, ?>) value;
+    Map<String, List<Map<String, String>>> result = new HashMap<>(capacity(map.size()));
+    map.forEach((k, v) -> {
+      List<?> rowList = (List<?>) v;
+      List<Map<String, String>> rows = new ArrayList<>(rowList.size());
+      rowList.forEach(row -> rows.add(toStringMap(row)));
+      result.put(k.toString(), rows);
+    });
+    return result;
+  }
+
+  /** Writes the fields in the order of {@link #createSchema(TermDictionary)} */
+  private static class Writer implements DatumWriter<ExtendedRecord> {
+
+    private final TermDictionary dictionary;
+
+    private Writer(TermDictionary dictionary) {
+      this.dictionary = dictionary;
+    }
+
+    @Override
+    public void setSchema(Schema schema) {
+      if (!isEncoded(schema)) {
+        throw new IllegalArgumentException("Schema " + schema.getFullName() + " is not a term dictionary schema");
+      }
+    }
+
+    @Override
+    public void write(ExtendedRecord record, Encoder out) throws IOException {
+      out.writeString(record.getId());
+      writeKey(record.getCoreRowType(), out);
+
+      Map<String, String> core = record.getCoreTerms();
+      out.writeArrayStart();
+      out.setItemCount(core.size());
+      for (Map.Entry<String, String> term : core.entrySet()) {
+        out.startItem();
+        writeKey(term.getKey(), out);
+        out.writeString(term.getValue());
+      }
+      out.writeArrayEnd();
+
+      Map<String, List<Map<String, String>>> extensions = record.getExtensions();
+      out.writeArrayStart();
+      out.setItemCount(extensions.size());
+      for (Map.Entry<String, List<Map<String, String>>> extension : extensions.entrySet()) {
+        out.startItem();
+        writeKey(extension.getKey(), out);
+        writeRows(extension.getValue(), out);
+      }
+      out.writeArrayEnd();
+    }
+
+    private void writeRows(List<Map<String, String>> rows, Encoder out) throws IOException {
+      out.writeArrayStart();
+      out.setItemCount(rows.size());
+      for (Map<String, String> row : rows) {
+        out.startItem();
+        out.writeArrayStart();
+        out.setItemCount(row.size());
+        for (Map.Entry<String, String> term : row.entrySet()) {
+          out.startItem();
+          writeKey(term.getKey(), out);
+          if (term.getValue() == null) {
+            out.writeIndex(NULL_INDEX);
+            out.writeNull();
+          } else {
+            out.writeIndex(VALUE_INDEX);
+            out.writeString(term.getValue());
+          }
+        }
+        out.writeArrayEnd();
+      }
+      out.writeArrayEnd();
+    }
+
+    private void writeKey(String key, Encoder out) throws IOException {
+      int id = dictionary.getId(key);
+      if (id == TermDictionary.UNKNOWN) {
+        out.writeIndex(URI_INDEX);
+        out.writeString(key);
+      } else {
+        out.writeIndex(ID_INDEX);
+        out.writeInt(id);
+      }
+    }
+  }
+
+  /** Reads the dictionary encoded records directly or delegates to the reader of the plain records */
+  private static class Reader implements DatumReader<ExtendedRecord> {
+
+    private final StringCache cache;
+    private final Utf8 scratch;
+
+    private TermDictionary dictionary;
+    private DatumReader<ExtendedRecord> plainReader;
+
+    private Reader(StringCache cache) {
+      this.cache = cache;
+      this.scratch = cache == null ? null : new Utf8();
+    }
+
+    @Override
+    public void setSchema(Schema schema) {
+      if (isEncoded(schema)) {
+        dictionary = getDictionary(schema);
+        plainReader = null;
+      } else {
+        dictionary = null;
+        plainReader = cache == null ? new SpecificDatumReader<>(schema, ExtendedRecord.getClassSchema())
+            : new StringCachingDatumReader(schema, cache);
+      }
+    }
+
+    @Override
+    public ExtendedRecord read(ExtendedRecord reuse, Decoder in) throws IOException {
+      if (plainReader != null) {
+        return plainReader.read(reuse, in);
+      }
+
+      String id = in.readString();
+      String coreRowType = readKey(in);
+
+      Map<String, String> core = null;
+      for (long n = in.readArrayStart(); n > 0; n = in.arrayNext()) {
+        core = core == null ? new HashMap<>(capacity(n)) : core;
+        for (long i = 0; i < n; i++) {
+          String key = readKey(in);
+          core.put(key, readValue(key, in));
+        }
+      }
+
+      Map<String, List<Map<String, String>>> extensions = null;
+      for (long n = in.readArrayStart(); n > 0; n = in.arrayNext()) {
+        extensions = extensions == null ? new HashMap<>(capacity(n)) : extensions;
+        for (long i = 0; i < n; i++) {
+          extensions.put(readKey(in), readRows(in));
+        }
+      }
+
+      return new ExtendedRecord(id, coreRowType, core == null ? new HashMap<>() : core,
+          extensions == null ? new HashMap<>() : extensions);
+    }
+
+    private List<Map<String, String>> readRows(Decoder in) throws IOException {
+      List<Map<String, String>> rows = new ArrayList<>();
+      for (long n = in.readArrayStart(); n > 0; n = in.arrayNext()) {
+        for (long i = 0; i < n; i++) {
+          Map<String, String> row = new HashMap<>();
+          for (long m = in.readArrayStart(); m > 0; m = in.arrayNext()) {
+            for (long j = 0; j < m; j++) {
+              String key = readKey(in);
+              row.put(key, in.readIndex() == NULL_INDEX ? readNull(in) : readValue(key, in));
+            }
+          }
+          rows.add(row);
+        }
+      }
+      return rows;
+    }
+
+    private static String readNull(Decoder in) throws IOException {
+      in.readNull();
+      return null;
+    }
+
+    private String readKey(Decoder in) throws IOException {
+      if (in.readIndex() == ID_INDEX) {
+        return dictionary.getTerm(in.readInt());
+      }
+      return cache == null ? in.readString() : cache.getKey(in.readString(scratch));
+    }
+
+    private String readValue(String key, Decoder in) throws IOException {
+      return cache == null ? in.readString() : cache.getValue(key, in.readString(scratch));
+    }
+  }
+}
@@ -0,0 +1,73 @@
+package org.gbif.pipelines.core.utils;
+
+import java.util.Locale;
+import java.util.zip.Deflater;
+
+import org.apache.avro.AvroRuntimeException;
+import org.apache.avro.file.CodecFactory;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+/**
+ * Avro compression codecs by name, the only way the codec of written avro files is configured, so every writer
+ * accepts the same values of the "avroCompressionType" option
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class AvroCodecUtils {
+
+  /** Codec of written avro files when none is configured */
+  public static final String DEFAULT_CODEC = "snappy";
+
+  private static final String DEFLATE = "deflate";
+  private static final String XZ = "xz";
+
+  /**
+   * Parses a codec name, case insensitive: "null", "snappy", "bzip2", "deflate", "xz" or deflate and xz with a
+   * compression level from 0 to 9, like "deflate-9" or "xz-6", and "deflate--1" for the default deflate level. The
+   * names are the same as {@link CodecFactory#toString()}, so a parsed codec can be passed as a string again.
+   *
+   * @param codec name of the codec
+   * @throws IllegalArgumentException for an unknown codec or an invalid level
+   */
+  public static CodecFactory fromString(String codec) {
+    if (codec == null || codec.trim().isEmpty()) {
+      throw new IllegalArgumentException("Avro codec name can't be null or empty");
+    }
+    String name = codec.trim().toLowerCase(Locale.ROOT);
+
+    int idx = name.indexOf('-');
+    if (idx > 0) {
+      String base = name.substring(0, idx);
+      int level = parseLevel(codec, name.substring(idx + 1));
+      if (DEFLATE.equals(base)) {
+        return CodecFactory.deflateCodec(level);
+      }
+      if (XZ.equals(base)) {
+        if (level < 0) {
+          throw new IllegalArgumentException("Avro xz codec level must be between 0 and 9, but was " + codec);
+        }
+        return CodecFactory.xzCodec(level);
+      }
+      throw new IllegalArgumentException("Only deflate and xz codecs have a level, but was " + codec);
+    }
+
+    try {
+      return CodecFactory.fromString(name);
+    } catch (AvroRuntimeException ex) {
+      throw new IllegalArgumentException("Unknown avro codec " + codec, ex);
+    }
+  }
+
+  private static int parseLevel(String codec, String level) {
+    try {
+      int value = Integer.parseInt(level);
+      if (value >= Deflater.DEFAULT_COMPRESSION && value <= Deflater.BEST_COMPRESSION) {
+        return value;
+      }
+    } catch (NumberFormatException ex) {
+      // throws below
+    }
+    throw new IllegalArgumentException("Avro codec level must be between -1 and 9, but was " + codec);
+  }
+}
@@ -2,7 +2,17 @@ package org.gbif.pipelines.core.utils;
 
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
 
+import org.gbif.pipelines.io.avro.ExtendedRecord;
+import org.gbif.pipelines.io.avro.MetadataRecord;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import lombok.AccessLevel;
 import lombok.NoArgsConstructor;
 import lombok.SneakyThrows;
@@ -10,10 +20,90 @@ import lombok.SneakyThrows;
 @NoArgsConstructor(access = AccessLevel.PRIVATE)
 public class HashUtils {
 
+  private static final String CRAWLER_NAMESPACE = "crawler.gbif.org";
+
   public static String getSha1(String... strings) {
     return getHash("SHA-1", strings);
   }
 
+  /**
+   * 64 bits of a 128 bits hash of the record content, equal records have equal hashes. Maps are hashed in the order
+   * of keys, because records with the same map entries in a different order are equal
+   */
+  public static long getContentHash(ExtendedRecord er) {
+    return putRecord(Hashing.murmur3_128().newHasher(), er).hash().asLong();
+  }
+
+  /**
+   * 64 bits hash of the record content and of a seed, like {@link #getMetadataHash} and the interpretation options, so
+   * the hash changes if the record or anything else used by the interpretation of the record changes
+   */
+  public static long getContentHash(ExtendedRecord er, String seed) {
+    Hasher hasher = Hashing.murmur3_128().newHasher();
+    putString(hasher, seed);
+    return putRecord(hasher, er).hash().asLong();
+  }
+
+  /**
+   * 64 bits hash of the json fields in the order of fields, except the skipped fields, like the values of a crawl, so
+   * equal json documents of different crawls have equal hashes
+   */
+  public static long getContentHash(ObjectNode json, Set<String> skipKeys) {
+    Hasher hasher = Hashing.murmur3_128().newHasher();
+    json.fields().forEachRemaining(field -> {
+      if (!skipKeys.contains(field.getKey())) {
+        putString(hasher, field.getKey());
+        putString(hasher, field.getValue().toString());
+      }
+    });
+    return hasher.hash().asLong();
+  }
+
+  /**
+   * Hash of the metadata used by the interpretation of the records of a dataset. Values of a crawl, like the attempt,
+   * the creation time and the machine tags of the crawler, are not part of the hash
+   */
+  public static String getMetadataHash(MetadataRecord mdr) {
+    MetadataRecord copy = MetadataRecord.newBuilder(mdr)
+        .setId("")
+        .setCreated(null)
+        .setLastCrawled(null)
+        .setCrawlId(null)
+        .setMachineTags(mdr.getMachineTags().stream()
+            .filter(tag -> !CRAWLER_NAMESPACE.equals(tag.getNamespace()))
+            .collect(Collectors.toList()))
+        .build();
+    return Hashing.murmur3_128().hashString(copy.toString(), StandardCharsets.UTF_8).toString();
+  }
+
+  private static Hasher putRecord(Hasher hasher, ExtendedRecord er) {
+    putString(hasher, er.getCoreRowType());
+    putMap(hasher, er.getCoreTerms());
+    hasher.putInt(er.getExtensions().size());
+    new TreeMap<>(er.getExtensions()).forEach((rowType, rows) -> {
+      putString(hasher, rowType);
+      hasher.putInt(rows.size());
+      rows.forEach(row -> putMap(hasher, row));
+    });
+    return hasher;
+  }
+
+  private static void putMap(Hasher hasher, Map<String, String> map) {
+    hasher.putInt(map.size());
+    new TreeMap<>(map).forEach((k, v) -> {
+      putString(hasher, k);
+      putString(hasher, v);
+    });
+  }
+
+  private static void putString(Hasher hasher, String value) {
+    if (value == null) {
+      hasher.putInt(-1);
+    } else {
+      hasher.putInt(value.length()).putUnencodedChars(value);
+    }
+  }
+
   @SneakyThrows
   private static String getHash(String algorithm, String... strings) {
     String join = String.join("", strings);
@@ -42,6 +42,8 @@ import org.gbif.pipelines.io.avro.TemporalRecord;
 import org.junit.Assert;
 import org.junit.Test;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.google.common.collect.ImmutableMap;
 
 public class GbifJsonConverterTest {
@@ -681,4 +683,86 @@ public class GbifJsonConverterTest {
     Assert.assertEquals(expected, result);
   }
 
+  @Test
+  public void contentHashTest() {
+
+    // State
+    String k = "777";
+    MetadataRecord mdr =
+        MetadataRecord.newBuilder().setId(k).setDatasetKey("key").setCrawlId(1).setLastCrawled(1L).build();
+    MetadataRecord nextCrawl = MetadataRecord.newBuilder(mdr).setCrawlId(2).setLastCrawled(2L).build();
+    BasicRecord br = BasicRecord.newBuilder().setId(k).setCreated(1L).setLicense(License.CC0_1_0.name()).build();
+    BasicRecord nextBr = BasicRecord.newBuilder(br).setCreated(2L).build();
+    BasicRecord changedBr = BasicRecord.newBuilder(nextBr).setLicense(License.CC_BY_4_0.name()).build();
+
+    // When
+    long hash = GbifJsonConverter.getContentHash(GbifJsonConverter.toJson(mdr, br));
+    long nextHash = GbifJsonConverter.getContentHash(GbifJsonConverter.toJson(nextCrawl, nextBr));
+    long changedHash = GbifJsonConverter.getContentHash(GbifJsonConverter.toJson(nextCrawl, changedBr));
+
+    // Should
+    Assert.assertEquals(hash, nextHash);
+    Assert.assertNotEquals(hash, changedHash);
+  }
+
+  @Test
+  public void partialUpdateJsonTest() {
+
+    // State
+    String k = "777";
+    BasicRecord br = BasicRecord.newBuilder().setId(k).setGbifId(111L).build();
+    br.getIssues().getIssueList().add(OccurrenceIssue.BASIS_OF_RECORD_INVALID.name());
+    TemporalRecord tr = TemporalRecord.newBuilder().setId(k).setYear(2011).build();
+    tr.getIssues().getIssueList().add(OccurrenceIssue.RECORDED_DATE_INVALID.name());
+    LocationRecord lr = LocationRecord.newBuilder().setId(k).setCountry("Country").build();
+    lr.getIssues().getIssueList().add(OccurrenceIssue.ZERO_COORDINATE.name());
+    TaxonRecord txr = TaxonRecord.newBuilder()
+        .setId(k)
+        .setUsage(RankedName.newBuilder().setKey(1).setName("Name").setRank(Rank.KINGDOM).build())
+        .setClassification(Collections.singletonList(
+            RankedName.newBuilder().setKey(1).setName("Name").setRank(Rank.KINGDOM).build()))
+        .build();
+
+    // When
+    ObjectNode result = GbifJsonConverter.toPartialUpdateJson(Arrays.asList(lr, txr), Arrays.asList(br, tr, lr, txr));
+
+    // Should
+    Assert.assertTrue(JsonValidationUtils.isValid(result.toString()));
+    Assert.assertFalse(result.has("id"));
+    Assert.assertFalse(result.has("gbifId"));
+    Assert.assertFalse(result.has("year"));
+    Assert.assertFalse(result.has("all"));
+    Assert.assertFalse(result.has("verbatim"));
+    Assert.assertEquals("Country", result.get("country").asText());
+    Assert.assertTrue(result.get("countryCode").isNull());
+    Assert.assertTrue(result.get("coordinates").isNull());
+    Assert.assertTrue(result.get("decimalLatitude").isNull());
+
+    JsonNode classification = result.get("gbifClassification");
+    Assert.assertEquals(1, classification.get("kingdomKey").asInt());
+    Assert.assertEquals("Name", classification.get("usage").get("name").asText());
+    Assert.assertEquals(Rank.KINGDOM.name(), classification.get("usage").get("rank").asText());
+    Assert.assertTrue(classification.get("phylumKey").isNull());
+    Assert.assertTrue(classification.get("acceptedUsage").isNull());
+    Assert.assertFalse(classification.has("taxonID"));
+    Assert.assertFalse(classification.has("verbatimScientificName"));
+
+    List<String> issues = new ArrayList<>();
+    result.get("issues").forEach(x -> issues.add(x.asText()));
+    Assert.assertEquals(3, issues.size());
+    Assert.assertTrue(issues.containsAll(Arrays.asList(OccurrenceIssue.BASIS_OF_RECORD_INVALID.name(),
+        OccurrenceIssue.RECORDED_DATE_INVALID.name(), OccurrenceIssue.ZERO_COORDINATE.name())));
+    Assert.assertEquals(OccurrenceIssue.values().length - 3, result.get("notIssues").size());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void partialUpdateJsonUnsupportedTypeTest() {
+
+    // State
+    BasicRecord br = BasicRecord.newBuilder().setId("777").build();
+
+    // When
+    GbifJsonConverter.toPartialUpdateJson(Collections.singletonList(br), Collections.singletonList(br));
+  }
+
 }
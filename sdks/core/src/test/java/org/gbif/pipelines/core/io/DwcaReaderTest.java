@@ -2,11 +2,20 @@ package org.gbif.pipelines.core.io;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
+import org.gbif.dwc.record.StarRecord;
+import org.gbif.pipelines.core.converters.ExtendedRecordConverter;
 import org.gbif.pipelines.io.avro.ExtendedRecord;
 
 import org.junit.Test;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 
 public class DwcaReaderTest {
@@ -42,4 +51,90 @@ public class DwcaReaderTest {
       assertNotNull(current.getId());
     }
   }
+
+  @Test
+  public void zipFileSameAsExpandedTest() throws IOException {
+    // State
+    String expandedName = getClass().getResource("/dwca/plants_dwca").getFile();
+    String fileName = getClass().getResource("/dwca/plants.zip").getFile();
+    String fileOut = new File("target/tmp-zip").getAbsolutePath();
+
+    // When
+    Map<String, ExtendedRecord> expected = readAll(DwcaReader.fromLocation(expandedName));
+    Map<String, ExtendedRecord> result = readAll(DwcaReader.fromCompressed(fileName, fileOut));
+
+    // Should
+    assertFalse(result.isEmpty());
+    assertEquals(expected.keySet(), result.keySet());
+    expected.forEach((id, record) -> {
+      ExtendedRecord zipped = result.get(id);
+      assertEquals(record.getCoreRowType(), zipped.getCoreRowType());
+      assertEquals(record.getCoreTerms(), zipped.getCoreTerms());
+      assertEquals(record.getExtensions().keySet(), zipped.getExtensions().keySet());
+      // extension rows of the same core id may come in a different order
+      record.getExtensions().forEach((rowType, rows) ->
+          assertEquals(sorted(rows), sorted(zipped.getExtensions().get(rowType))));
+    });
+    assertFalse(new File(fileOut, "tmp").exists());
+  }
+
+  @Test
+  public void dataFilesSameAsExpandedTest() throws IOException {
+    // State
+    String expandedName = getClass().getResource("/dwca/plants_dwca").getFile();
+    String fileOut = new File("target/tmp-data-files").getAbsolutePath();
+
+    // When
+    Map<String, ExtendedRecord> expected = readAll(DwcaReader.fromLocation(expandedName));
+    List<StarRecord> starRecords = new ArrayList<>();
+    try (DwcaReader dwCAReader = DwcaReader.fromDataFiles(expandedName, fileOut)) {
+      while (dwCAReader.advanceStarRecord()) {
+        starRecords.add(dwCAReader.getCurrentStarRecord());
+      }
+    }
+    // the star records are converted after the whole archive is read
+    Map<String, ExtendedRecord> result = starRecords.stream()
+        .map(ExtendedRecordConverter::from)
+        .collect(Collectors.toMap(ExtendedRecord::getId, r -> r));
+
+    // Should
+    assertFalse(result.isEmpty());
+    assertEquals(expected.size(), starRecords.size());
+    assertEquals(expected.keySet(), result.keySet());
+    expected.forEach((id, record) -> {
+      assertEquals(record.getCoreTerms(), result.get(id).getCoreTerms());
+      record.getExtensions().forEach((rowType, rows) ->
+          assertEquals(sorted(rows), sorted(result.get(id).getExtensions().get(rowType))));
+    });
+  }
+
+  @Test
+  public void expandedZipFileReaderTest() throws IOException {
+    // State
+    String fileName = getClass().getResource("/dwca/plants.zip").getFile();
+    String fileOut = new File("target/tmp-expanded").getAbsolutePath();
+
+    // When
+    try (DwcaReader dwCAReader = DwcaReader.fromCompressedExpanded(fileName, fileOut)) {
+      dwCAReader.advance();
+      ExtendedRecord current = dwCAReader.getCurrent();
+      // Should
+      assertNotNull(current);
+      assertNotNull(current.getId());
+    }
+  }
+
+  private static List<String> sorted(List<Map<String, String>> rows) {
+    return rows.stream().map(Object::toString).sorted().collect(Collectors.toList());
+  }
+
+  private static Map<String, ExtendedRecord> readAll(DwcaReader reader) throws IOException {
+    Map<String, ExtendedRecord> records = new HashMap<>();
+    try (DwcaReader dwCAReader = reader) {
+      while (dwCAReader.advance()) {
+        records.put(dwCAReader.getCurrent().getId(), dwCAReader.getCurrent());
+      }
+    }
+    return records;
+  }
 }
@@ -0,0 +1,181 @@
+package org.gbif.pipelines.core.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.gbif.pipelines.io.avro.ExtendedRecord;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DwcaSplitterTest {
+
+  private static final String META =
+      "<archive xmlns=\"http://rs.tdwg.org/dwc/text/\">\n"
+          + "  <core encoding=\"UTF-8\" fieldsTerminatedBy=\",\" linesTerminatedBy=\"\\n\" fieldsEnclosedBy='\"'"
+          + " ignoreHeaderLines=\"1\" rowType=\"http://rs.tdwg.org/dwc/terms/Occurrence\">\n"
+          + "    <files><location>occurrence.csv</location></files>\n"
+          + "    <id index=\"0\"/>\n"
+          + "    <field index=\"1\" term=\"http://rs.tdwg.org/dwc/terms/scientificName\"/>\n"
+          + "    <field index=\"2\" term=\"http://rs.tdwg.org/dwc/terms/locality\"/>\n"
+          + "  </core>\n"
+          + "  <extension encoding=\"UTF-8\" fieldsTerminatedBy=\"\\t\" linesTerminatedBy=\"\\n\" fieldsEnclosedBy=\"\""
+          + " ignoreHeaderLines=\"0\" rowType=\"http://rs.gbif.org/terms/1.0/Identifier\">\n"
+          + "    <files><location>identifier.txt</location></files>\n"
+          + "    <coreid index=\"0\"/>\n"
+          + "    <field index=\"1\" term=\"http://purl.org/dc/terms/identifier\"/>\n"
+          + "  </extension>\n"
+          + "</archive>\n";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  /** Core rows with quoted values and a header, the extension rows are in a different order than the core rows */
+  private Path createArchive(int records) throws IOException {
+    Path dir = folder.newFolder("archive").toPath();
+    StringBuilder core = new StringBuilder("id,scientificName,locality\n");
+    StringBuilder extension = new StringBuilder();
+    for (int i = 0; i < records; i++) {
+      core.append("occ-").append(i).append(",\"Puma concolor, ").append(i).append("\",Locality ").append(i % 5)
+          .append('\n');
+    }
+    for (int i = records - 1; i >= 0; i--) {
+      for (int j = 0; j < i % 4; j++) {
+        extension.append("occ-").append(i).append('\t').append("urn:id:").append(i).append(':').append(j)
+            .append('\n');
+      }
+    }
+    Files.write(dir.resolve("meta.xml"), META.getBytes(StandardCharsets.UTF_8));
+    Files.write(dir.resolve("occurrence.csv"), core.toString().getBytes(StandardCharsets.UTF_8));
+    Files.write(dir.resolve("identifier.txt"), extension.toString().getBytes(StandardCharsets.UTF_8));
+    return dir;
+  }
+
+  private static Map<String, ExtendedRecord> readAll(DwcaReader reader) throws IOException {
+    Map<String, ExtendedRecord> records = new HashMap<>();
+    try (DwcaReader dwCAReader = reader) {
+      while (dwCAReader.advance()) {
+        records.put(dwCAReader.getCurrent().getId(), dwCAReader.getCurrent());
+      }
+    }
+    return records;
+  }
+
+  private static Map<String, ExtendedRecord> readSplits(List<DwcaSplit> splits) throws IOException {
+    Map<String, ExtendedRecord> records = new HashMap<>();
+    long count = 0;
+    for (DwcaSplit split : splits) {
+      Map<String, ExtendedRecord> splitRecords = readAll(DwcaReader.fromSplit(split));
+      count += splitRecords.size();
+      records.putAll(splitRecords);
+    }
+    // no record is read by two splits
+    assertEquals(records.size(), count);
+    return records;
+  }
+
+  private static List<String> sorted(List<Map<String, String>> rows) {
+    return rows.stream().map(Object::toString).sorted().collect(Collectors.toList());
+  }
+
+  private static void assertSameRecords(Map<String, ExtendedRecord> expected, Map<String, ExtendedRecord> result) {
+    assertFalse(result.isEmpty());
+    assertEquals(expected.keySet(), result.keySet());
+    expected.forEach((id, record) -> {
+      ExtendedRecord split = result.get(id);
+      assertEquals(record.getCoreRowType(), split.getCoreRowType());
+      assertEquals(record.getCoreTerms(), split.getCoreTerms());
+      assertEquals(record.getExtensions().keySet(), split.getExtensions().keySet());
+      // extension rows of the same core id may come in a different order
+      record.getExtensions().forEach((rowType, rows) ->
+          assertEquals(sorted(rows), sorted(split.getExtensions().get(rowType))));
+    });
+  }
+
+  @Test
+  public void splitSameAsWholeArchiveTest() throws IOException {
+    // State
+    Path archive = createArchive(500);
+    Path indexDir = folder.getRoot().toPath().resolve("index");
+
+    // When
+    List<DwcaSplit> splits = DwcaSplitter.split(archive, indexDir, 1024);
+
+    // Should
+    assertTrue(splits.size() > 5);
+    assertTrue(splits.stream().noneMatch(DwcaSplit::isWholeArchive));
+    assertTrue(splits.stream().allMatch(s -> s.getEstimatedSize() > 0));
+    Map<String, ExtendedRecord> expected = readAll(DwcaReader.fromLocation(archive.toString()));
+    assertEquals(500, expected.size());
+    assertSameRecords(expected, readSplits(splits));
+
+    // When
+    DwcaSplitter.deleteIndexes(indexDir);
+
+    // Should
+    assertFalse(Files.exists(indexDir));
+  }
+
+  @Test
+  public void plantsSplitSameAsWholeArchiveTest() throws IOException {
+    // State
+    Path archive = Paths.get(getClass().getResource("/dwca/plants_dwca").getFile());
+    Path indexDir = folder.getRoot().toPath().resolve("index");
+
+    // When
+    List<DwcaSplit> splits = DwcaSplitter.split(archive, indexDir, 4096);
+
+    // Should
+    assertTrue(splits.size() > 1);
+    assertSameRecords(readAll(DwcaReader.fromLocation(archive.toString())), readSplits(splits));
+  }
+
+  @Test
+  public void smallArchiveIsNotSplitTest() throws IOException {
+    // State
+    Path archive = createArchive(10);
+    File indexDir = new File(folder.getRoot(), "index");
+
+    // When
+    List<DwcaSplit> splits = DwcaSplitter.split(archive, indexDir.toPath(), 1024 * 1024);
+
+    // Should
+    assertEquals(1, splits.size());
+    assertTrue(splits.get(0).isWholeArchive());
+    assertFalse(indexDir.exists());
+    assertEquals(10, readSplits(splits).size());
+  }
+
+  @Test
+  public void unbalancedQuotesAreNotSplitTest() throws IOException {
+    // State
+    Path archive = createArchive(500);
+    Path core = archive.resolve("occurrence.csv");
+    List<String> lines = new ArrayList<>(Files.readAllLines(core));
+    lines.add(1, "occ-stray,Puma concolor 5\" long,Locality 0");
+    Files.write(core, lines);
+    File indexDir = new File(folder.getRoot(), "index");
+
+    // When
+    List<DwcaSplit> splits = DwcaSplitter.split(archive, indexDir.toPath(), 1024);
+
+    // Should
+    assertEquals(1, splits.size());
+    assertTrue(splits.get(0).isWholeArchive());
+    assertFalse(indexDir.exists());
+  }
+}
@@ -0,0 +1,111 @@
+package org.gbif.pipelines.core.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class RowSorterTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private List<String[]> rows() {
+    return Arrays.asList(
+        new String[] {"3", "c"},
+        new String[] {"1", "a"},
+        new String[] {null, "empty"},
+        new String[] {"2", null},
+        new String[] {"5", "e"},
+        new String[] {"4", "d"},
+        new String[] {"1", "a2"});
+  }
+
+  private List<String[]> sort(int chunkSize) throws Exception {
+    Path workingDir = folder.getRoot().toPath();
+    List<String[]> result = new ArrayList<>();
+    try (RowSorter sorter = RowSorter.sort(rows().iterator(), 0, workingDir, chunkSize)) {
+      sorter.forEachRemaining(result::add);
+    }
+    return result;
+  }
+
+  private void assertSorted(List<String[]> result) {
+    assertEquals(7, result.size());
+    assertArrayEquals(new String[] {null, "empty"}, result.get(0));
+    assertArrayEquals(new String[] {"1", "a"}, result.get(1));
+    assertArrayEquals(new String[] {"1", "a2"}, result.get(2));
+    assertArrayEquals(new String[] {"2", null}, result.get(3));
+    assertArrayEquals(new String[] {"5", "e"}, result.get(6));
+  }
+
+  @Test
+  public void inMemorySortTest() throws Exception {
+    // When
+    List<String[]> result = sort(RowSorter.CHUNK_SIZE);
+
+    // Should
+    assertSorted(result);
+    assertEquals(0, folder.getRoot().list().length);
+  }
+
+  @Test
+  public void spilledSortTest() throws Exception {
+    // When
+    List<String[]> result = sort(2);
+
+    // Should
+    assertSorted(result);
+    assertEquals(0, folder.getRoot().list().length);
+  }
+
+  @Test(expected = IOException.class)
+  public void missingWorkingDirTest() throws Exception {
+    // State
+    File file = folder.newFile("file");
+
+    // When
+    RowSorter.sort(rows().iterator(), 0, file.toPath().resolve("dir"), 2);
+  }
+
+  @Test
+  public void failedSortDeletesRunsTest() {
+    // State
+    Iterator<String[]> rows = rows().iterator();
+    Iterator<String[]> failing = new Iterator<String[]>() {
+      @Override
+      public boolean hasNext() {
+        return true;
+      }
+
+      @Override
+      public String[] next() {
+        if (rows.hasNext()) {
+          return rows.next();
+        }
+        throw new IllegalStateException("Can't read the row");
+      }
+    };
+
+    // When
+    try {
+      RowSorter.sort(failing, 0, folder.getRoot().toPath(), 2);
+      fail();
+    } catch (IOException | IllegalStateException ex) {
+      // Should
+      assertEquals("Can't read the row", ex.getMessage());
+      assertEquals(0, folder.getRoot().list().length);
+    }
+  }
+}
@@ -0,0 +1,95 @@
+package org.gbif.pipelines.core.io;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SortedRowIndexTest {
+
+  // keys with a gap every 10th key, most keys have 3 rows, enough for several blocks
+  private static final int KEYS = 2_000;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private static String key(int i) {
+    return String.format("id-%05d", i);
+  }
+
+  private static int rowsOf(int i) {
+    return i % 10 == 0 ? 0 : i % 7 == 0 ? 300 : 3;
+  }
+
+  private SortedRowIndex write() throws Exception {
+    List<String[]> rows = new ArrayList<>();
+    for (int i = 0; i < KEYS; i++) {
+      for (int j = 0; j < rowsOf(i); j++) {
+        rows.add(new String[] {key(i), String.valueOf(j), j % 2 == 0 ? null : "v"});
+      }
+    }
+    Path file = folder.getRoot().toPath().resolve("extension.rows");
+    return SortedRowIndex.write(rows.iterator(), 0, file);
+  }
+
+  private static void assertRows(int i, List<String[]> rows) {
+    assertEquals(key(i), rowsOf(i), rows.size());
+    for (int j = 0; j < rows.size(); j++) {
+      assertArrayEquals(new String[] {key(i), String.valueOf(j), j % 2 == 0 ? null : "v"}, rows.get(j));
+    }
+  }
+
+  @Test
+  public void increasingKeysTest() throws Exception {
+    // State
+    SortedRowIndex index = write();
+
+    // When
+    try (SortedRowIndex.Lookup lookup = index.open()) {
+      for (int i = 0; i < KEYS; i++) {
+        // Should
+        assertRows(i, lookup.rows(key(i)));
+        assertRows(i, lookup.rows(key(i)));
+      }
+      assertTrue(lookup.rows("a").isEmpty());
+      assertTrue(lookup.rows("z").isEmpty());
+    }
+  }
+
+  @Test
+  public void sparseAndDecreasingKeysTest() throws Exception {
+    // State
+    SortedRowIndex index = write();
+
+    // When
+    try (SortedRowIndex.Lookup lookup = index.open()) {
+      for (int i = KEYS - 1; i >= 0; i -= 97) {
+        // Should
+        assertRows(i, lookup.rows(key(i)));
+      }
+      for (int i = 3; i < KEYS; i += 251) {
+        assertRows(i, lookup.rows(key(i)));
+      }
+    }
+  }
+
+  @Test
+  public void emptyTest() throws Exception {
+    // State
+    Path file = folder.getRoot().toPath().resolve("empty.rows");
+    SortedRowIndex index = SortedRowIndex.write(new ArrayList<String[]>().iterator(), 0, file);
+
+    // When
+    try (SortedRowIndex.Lookup lookup = index.open()) {
+      // Should
+      assertTrue(lookup.rows(key(1)).isEmpty());
+    }
+  }
+}
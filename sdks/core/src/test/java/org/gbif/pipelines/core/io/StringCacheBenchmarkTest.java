@@ -0,0 +1,137 @@
+package org.gbif.pipelines.core.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.gbif.pipelines.io.avro.ExtendedRecord;
+
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.file.SeekableByteArrayInput;
+import org.apache.avro.io.DatumReader;
+import org.apache.avro.specific.SpecificDatumReader;
+import org.apache.avro.specific.SpecificDatumWriter;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.base.Stopwatch;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Compares the {@link SpecificDatumReader} and the {@link StringCache} deduplicating reader of plain {@link
+ * ExtendedRecord} files, logs the retained heap of the loaded records, the GC count and time and the read time.
+ */
+@Slf4j
+public class StringCacheBenchmarkTest {
+
+  // increase it to benchmark with a higher volume of data
+  private static final int N = 50_000;
+
+  private static final String DWC = "http://rs.tdwg.org/dwc/terms/";
+  private static final String DC = "http://purl.org/dc/terms/";
+  private static final String[] COUNTRIES = {"DK", "ES", "US", "AU", "BR", "ZA"};
+  private static final String[] BASIS_OF_RECORD = {"PreservedSpecimen", "HumanObservation", "FossilSpecimen"};
+
+  /** Records of one dataset, the values of most of the terms repeat */
+  private static byte[] plainFile() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (DataFileWriter<ExtendedRecord> writer = new DataFileWriter<>(new SpecificDatumWriter<>(ExtendedRecord.class))) {
+      writer.create(ExtendedRecord.getClassSchema(), out);
+      for (int i = 0; i < N; i++) {
+        Map<String, String> core = new HashMap<>();
+        core.put(DWC + "occurrenceID", "urn:catalog:MNHN:P:" + (1_000_000 + i));
+        core.put(DWC + "catalogNumber", "P" + (1_000_000 + i));
+        core.put(DWC + "datasetID", "b3e3d5f7-7a3c-4a5c-9f0e-1c2b3d4e5f60");
+        core.put(DWC + "institutionCode", "MNHN");
+        core.put(DWC + "collectionCode", "P");
+        core.put(DWC + "basisOfRecord", BASIS_OF_RECORD[i % BASIS_OF_RECORD.length]);
+        core.put(DWC + "kingdom", "Plantae");
+        core.put(DWC + "scientificName", "Puma concolor var. " + (i % 300));
+        core.put(DWC + "countryCode", COUNTRIES[i % COUNTRIES.length]);
+        core.put(DWC + "decimalLatitude", Double.toString(-40d + (i % 8_000) / 100d));
+        core.put(DWC + "decimalLongitude", Double.toString(10d + (i % 9_000) / 100d));
+        core.put(DWC + "recordedBy", "Collector " + (i % 50));
+        core.put(DC + "license", "http://creativecommons.org/licenses/by/4.0/legalcode");
+        core.put(DC + "modified", "2019-0" + (1 + i % 9) + "-01");
+        writer.append(ExtendedRecord.newBuilder().setId("id-" + i).setCoreTerms(core)
+            .setExtensions(Collections.emptyMap()).build());
+      }
+    }
+    return out.toByteArray();
+  }
+
+  private static List<ExtendedRecord> read(byte[] bytes, DatumReader<ExtendedRecord> datumReader)
+      throws IOException {
+    List<ExtendedRecord> records = new ArrayList<>(N);
+    try (DataFileReader<ExtendedRecord> reader = new DataFileReader<>(new SeekableByteArrayInput(bytes), datumReader)) {
+      reader.forEach(records::add);
+    }
+    return records;
+  }
+
+  private static long usedHeap() {
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    Runtime runtime = Runtime.getRuntime();
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  private static long[] gc() {
+    long count = 0;
+    long time = 0;
+    for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+      count += Math.max(bean.getCollectionCount(), 0);
+      time += Math.max(bean.getCollectionTime(), 0);
+    }
+    return new long[]{count, time};
+  }
+
+  /** Logs the retained heap of the records, the heap measurement is only an estimate and is not asserted */
+  private static void measure(String name, byte[] file, Supplier<DatumReader<ExtendedRecord>> reader)
+      throws IOException {
+    long before = usedHeap();
+    long[] gcBefore = gc();
+    Stopwatch watch = Stopwatch.createStarted();
+
+    List<ExtendedRecord> records = read(file, reader.get());
+
+    watch.stop();
+    long[] gcAfter = gc();
+    long retained = usedHeap() - before;
+
+    log.info("{}: retained heap {} bytes, GC count {}, GC time {} ms, read time {} ms", name, retained,
+        gcAfter[0] - gcBefore[0], gcAfter[1] - gcBefore[1], watch.elapsed(TimeUnit.MILLISECONDS));
+
+    Assert.assertEquals(N, records.size());
+  }
+
+  @Test
+  public void specificVsCachedTest() throws IOException {
+    // State
+    byte[] file = plainFile();
+
+    // warm up
+    for (int i = 0; i < 3; i++) {
+      read(file, new SpecificDatumReader<>(ExtendedRecord.class));
+      read(file, TermDictionaryEncoding.reader(StringCache.create()));
+    }
+
+    // When
+    measure("SpecificDatumReader", file, () -> new SpecificDatumReader<>(ExtendedRecord.class));
+    measure("StringCache reader", file, () -> TermDictionaryEncoding.reader(StringCache.create()));
+
+    // Should
+    Assert.assertEquals(read(file, new SpecificDatumReader<>(ExtendedRecord.class)),
+        read(file, TermDictionaryEncoding.reader(StringCache.create())));
+  }
+}
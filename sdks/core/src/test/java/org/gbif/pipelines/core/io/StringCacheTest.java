@@ -0,0 +1,87 @@
+package org.gbif.pipelines.core.io;
+
+import java.nio.charset.StandardCharsets;
+
+import org.apache.avro.util.Utf8;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class StringCacheTest {
+
+  private static final String BASIS_OF_RECORD = "http://rs.tdwg.org/dwc/terms/basisOfRecord";
+
+  /** Decoded value, which has no cached string, like a value read by a decoder */
+  private static Utf8 utf8(String value) {
+    return new Utf8(value.getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void keyTest() {
+    // State
+    StringCache cache = StringCache.create();
+
+    // When
+    String first = cache.getKey(utf8(BASIS_OF_RECORD));
+    String second = cache.getKey(utf8(BASIS_OF_RECORD));
+
+    // Should
+    assertEquals(BASIS_OF_RECORD, first);
+    assertSame(first, second);
+  }
+
+  @Test
+  public void valueTest() {
+    // State
+    StringCache cache = StringCache.create();
+
+    // When
+    String first = cache.getValue(BASIS_OF_RECORD, utf8("PreservedSpecimen"));
+    String other = cache.getValue(BASIS_OF_RECORD, utf8("HumanObservation"));
+    String second = cache.getValue(BASIS_OF_RECORD, utf8("PreservedSpecimen"));
+
+    // Should
+    assertEquals("PreservedSpecimen", first);
+    assertEquals("HumanObservation", other);
+    assertSame(first, second);
+    assertEquals(2, cache.size());
+  }
+
+  @Test
+  public void highCardinalityTest() {
+    // State
+    StringCache cache = StringCache.create(2, 128);
+    String term = "http://rs.tdwg.org/dwc/terms/occurrenceID";
+
+    // When
+    cache.getValue(term, utf8("1"));
+    cache.getValue(term, utf8("2"));
+    cache.getValue(term, utf8("3"));
+    String first = cache.getValue(term, utf8("1"));
+    String second = cache.getValue(term, utf8("1"));
+    String basisOfRecord = cache.getValue(BASIS_OF_RECORD, utf8("PreservedSpecimen"));
+
+    // Should
+    assertEquals("1", first);
+    assertNotSame(first, second);
+    assertSame(basisOfRecord, cache.getValue(BASIS_OF_RECORD, utf8("PreservedSpecimen")));
+    assertEquals(1, cache.size());
+  }
+
+  @Test
+  public void longValueTest() {
+    // State
+    StringCache cache = StringCache.create(10, 4);
+
+    // When
+    String first = cache.getValue(BASIS_OF_RECORD, utf8("Preserved"));
+    String second = cache.getValue(BASIS_OF_RECORD, utf8("Preserved"));
+
+    // Should
+    assertEquals(first, second);
+    assertNotSame(first, second);
+    assertEquals(0, cache.size());
+  }
+}
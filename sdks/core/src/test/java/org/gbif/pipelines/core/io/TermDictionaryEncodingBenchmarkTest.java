@@ -0,0 +1,210 @@
+package org.gbif.pipelines.core.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.gbif.pipelines.core.utils.AvroCodecUtils;
+import org.gbif.pipelines.io.avro.ExtendedRecord;
+
+import org.apache.avro.Schema;
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.file.SeekableByteArrayInput;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DatumReader;
+import org.apache.avro.io.DatumWriter;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.specific.SpecificDatumReader;
+import org.apache.avro.specific.SpecificDatumWriter;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.base.Stopwatch;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Compares the plain and the term dictionary encoded {@link ExtendedRecord}. Logs the file size with and without
+ * compression (disk), the size of records serialized one by one (shuffle), the estimated heap of the term keys of the
+ * read records and the read throughput.
+ */
+@Slf4j
+public class TermDictionaryEncodingBenchmarkTest {
+
+  // increase it to benchmark with a higher volume of data
+  private static final int N = 5_000;
+
+  private static final String DWC = "http://rs.tdwg.org/dwc/terms/";
+  private static final String DC = "http://purl.org/dc/terms/";
+  private static final String MULTIMEDIA = "http://rs.gbif.org/terms/1.0/Multimedia";
+  private static final String[] COUNTRIES = {"DK", "ES", "US", "AU", "BR", "ZA"};
+
+  /** Records with the terms of a typical occurrence dataset and a few multimedia rows */
+  private static List<ExtendedRecord> records() {
+    List<ExtendedRecord> records = new ArrayList<>(N);
+    for (int i = 0; i < N; i++) {
+      Map<String, String> core = new HashMap<>();
+      core.put(DWC + "occurrenceID", "urn:catalog:MNHN:P:" + (1_000_000 + i));
+      core.put(DWC + "catalogNumber", "P" + (1_000_000 + i));
+      core.put(DWC + "institutionCode", "MNHN");
+      core.put(DWC + "collectionCode", "P");
+      core.put(DWC + "basisOfRecord", "PreservedSpecimen");
+      core.put(DWC + "scientificName", "Puma concolor var. " + (i % 300));
+      core.put(DWC + "countryCode", COUNTRIES[i % COUNTRIES.length]);
+      core.put(DWC + "decimalLatitude", Double.toString(-40d + (i % 8_000) / 100d));
+      core.put(DWC + "decimalLongitude", Double.toString(10d + (i % 9_000) / 100d));
+      core.put(DWC + "eventDate", "19" + (10 + i % 90) + "-0" + (1 + i % 9) + "-1" + i % 10);
+      core.put(DWC + "recordedBy", "Collector " + (i % 50));
+      core.put(DWC + "locality", "Locality number " + (i % 1_000) + " near the river");
+
+      List<Map<String, String>> rows = new ArrayList<>();
+      for (int r = 0; r < i % 3; r++) {
+        Map<String, String> row = new HashMap<>();
+        row.put(DC + "identifier", "http://media.org/" + i + "/" + r + ".jpg");
+        row.put(DC + "format", "image/jpeg");
+        row.put(DC + "license", "http://creativecommons.org/licenses/by/4.0/");
+        rows.add(row);
+      }
+      records.add(ExtendedRecord.newBuilder().setId("id-" + i).setCoreTerms(core)
+          .setExtensions(Collections.singletonMap(MULTIMEDIA, rows)).build());
+    }
+    return records;
+  }
+
+  private static byte[] writeFile(String codec, Schema schema, DatumWriter<ExtendedRecord> datumWriter,
+      List<ExtendedRecord> records) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (DataFileWriter<ExtendedRecord> writer = new DataFileWriter<>(datumWriter)) {
+      writer.setCodec(AvroCodecUtils.fromString(codec));
+      writer.create(schema, out);
+      for (ExtendedRecord record : records) {
+        writer.append(record);
+      }
+    }
+    return out.toByteArray();
+  }
+
+  private static List<ExtendedRecord> readFile(byte[] bytes, DatumReader<ExtendedRecord> datumReader)
+      throws IOException {
+    List<ExtendedRecord> records = new ArrayList<>(N);
+    try (DataFileReader<ExtendedRecord> reader = new DataFileReader<>(new SeekableByteArrayInput(bytes), datumReader)) {
+      reader.forEach(records::add);
+    }
+    return records;
+  }
+
+  /** Serializes the records one by one, like a coder of a shuffle, returns the sizes */
+  private static List<byte[]> serialize(DatumWriter<ExtendedRecord> writer, List<ExtendedRecord> records)
+      throws IOException {
+    List<byte[]> result = new ArrayList<>(records.size());
+    BinaryEncoder encoder = null;
+    for (ExtendedRecord record : records) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      encoder = EncoderFactory.get().directBinaryEncoder(out, encoder);
+      writer.write(record, encoder);
+      encoder.flush();
+      result.add(out.toByteArray());
+    }
+    return result;
+  }
+
+  private static List<ExtendedRecord> deserialize(DatumReader<ExtendedRecord> reader, List<byte[]> records)
+      throws IOException {
+    List<ExtendedRecord> result = new ArrayList<>(records.size());
+    BinaryDecoder decoder = null;
+    for (byte[] record : records) {
+      decoder = DecoderFactory.get().directBinaryDecoder(new ByteArrayInputStream(record), decoder);
+      result.add(reader.read(null, decoder));
+    }
+    return result;
+  }
+
+  private static long size(List<byte[]> records) {
+    return records.stream().mapToLong(r -> r.length).sum();
+  }
+
+  /** Estimated heap of the distinct term key instances, a string is ~40 bytes plus 2 bytes per char */
+  private static long keyHeap(List<ExtendedRecord> records) {
+    Set<String> keys = Collections.newSetFromMap(new IdentityHashMap<>());
+    for (ExtendedRecord record : records) {
+      keys.addAll(record.getCoreTerms().keySet());
+      record.getExtensions().values().forEach(rows -> rows.forEach(row -> keys.addAll(row.keySet())));
+    }
+    return keys.stream().mapToLong(key -> 40L + 2L * key.length()).sum();
+  }
+
+  private static long perSecond(Stopwatch watch) {
+    return N * 1000L / Math.max(watch.elapsed(TimeUnit.MILLISECONDS), 1L);
+  }
+
+  @Test
+  public void plainVsDictionaryTest() throws IOException {
+    // State
+    List<ExtendedRecord> records = records();
+    TermDictionary dictionary = TermDictionary.DEFAULT;
+    Schema schema = TermDictionaryEncoding.createSchema(dictionary);
+    DatumWriter<ExtendedRecord> plainWriter = new SpecificDatumWriter<>(ExtendedRecord.class);
+    DatumWriter<ExtendedRecord> dictionaryWriter = TermDictionaryEncoding.writer(dictionary);
+
+    for (String codec : Arrays.asList("null", "snappy")) {
+      byte[] plainFile = writeFile(codec, ExtendedRecord.getClassSchema(), plainWriter, records);
+      byte[] dictionaryFile = writeFile(codec, schema, dictionaryWriter, records);
+
+      // warm up
+      for (int i = 0; i < 3; i++) {
+        readFile(plainFile, new SpecificDatumReader<>(ExtendedRecord.class));
+        readFile(dictionaryFile, TermDictionaryEncoding.reader());
+      }
+
+      // When
+      Stopwatch plainWatch = Stopwatch.createStarted();
+      List<ExtendedRecord> plainResult = readFile(plainFile, new SpecificDatumReader<>(ExtendedRecord.class));
+      plainWatch.stop();
+
+      Stopwatch dictionaryWatch = Stopwatch.createStarted();
+      List<ExtendedRecord> dictionaryResult = readFile(dictionaryFile, TermDictionaryEncoding.reader());
+      dictionaryWatch.stop();
+
+      log.info("Codec {}: plain file {} bytes, read {} records/s, key heap {} bytes", codec, plainFile.length,
+          perSecond(plainWatch), keyHeap(plainResult));
+      log.info("Codec {}: dictionary file {} bytes, read {} records/s, key heap {} bytes", codec,
+          dictionaryFile.length, perSecond(dictionaryWatch), keyHeap(dictionaryResult));
+
+      // Should
+      Assert.assertEquals(records, plainResult);
+      Assert.assertEquals(records, dictionaryResult);
+      Assert.assertTrue(dictionaryFile.length < plainFile.length);
+      Assert.assertTrue(keyHeap(dictionaryResult) < keyHeap(plainResult));
+    }
+
+    // When
+    Stopwatch plainWatch = Stopwatch.createStarted();
+    List<byte[]> plainRecords = serialize(plainWriter, records);
+    List<ExtendedRecord> plainResult = deserialize(new SpecificDatumReader<>(ExtendedRecord.class), plainRecords);
+    plainWatch.stop();
+
+    Stopwatch dictionaryWatch = Stopwatch.createStarted();
+    List<byte[]> dictionaryRecords = serialize(dictionaryWriter, records);
+    List<ExtendedRecord> dictionaryResult = deserialize(TermDictionaryEncoding.reader(dictionary), dictionaryRecords);
+    dictionaryWatch.stop();
+
+    log.info("Shuffle: plain {} bytes, {} records/s, dictionary {} bytes, {} records/s", size(plainRecords),
+        perSecond(plainWatch), size(dictionaryRecords), perSecond(dictionaryWatch));
+
+    // Should
+    Assert.assertEquals(records, plainResult);
+    Assert.assertEquals(records, dictionaryResult);
+    Assert.assertTrue(size(dictionaryRecords) < size(plainRecords));
+  }
+}
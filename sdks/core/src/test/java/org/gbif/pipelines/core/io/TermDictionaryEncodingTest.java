@@ -0,0 +1,177 @@
+package org.gbif.pipelines.core.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.gbif.pipelines.io.avro.ExtendedRecord;
+
+import org.apache.avro.Schema;
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.file.SeekableByteArrayInput;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.DatumReader;
+import org.apache.avro.io.DatumWriter;
+import org.apache.avro.specific.SpecificDatumWriter;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TermDictionaryEncodingTest {
+
+  private static final String SCIENTIFIC_NAME = "http://rs.tdwg.org/dwc/terms/scientificName";
+  private static final String UNKNOWN_TERM = "http://unknown.org/terms/something";
+  private static final String MULTIMEDIA = "http://rs.gbif.org/terms/1.0/Multimedia";
+
+  private static final TermDictionary DICTIONARY =
+      TermDictionary.create(Arrays.asList("http://rs.tdwg.org/dwc/terms/Occurrence", SCIENTIFIC_NAME, MULTIMEDIA,
+          "http://purl.org/dc/terms/identifier", "http://purl.org/dc/terms/format"));
+
+  private static List<ExtendedRecord> records() {
+    Map<String, String> core = new HashMap<>();
+    core.put(SCIENTIFIC_NAME, "Puma concolor");
+    core.put(UNKNOWN_TERM, "value");
+
+    Map<String, String> row = new HashMap<>();
+    row.put("http://purl.org/dc/terms/identifier", "http://media.org/1.jpg");
+    row.put("http://purl.org/dc/terms/format", null);
+    row.put(UNKNOWN_TERM, "");
+
+    Map<String, List<Map<String, String>>> extensions = new HashMap<>();
+    extensions.put(MULTIMEDIA, Arrays.asList(row, new HashMap<>()));
+    extensions.put("http://unknown.org/terms/Extension", Collections.emptyList());
+
+    return Arrays.asList(
+        ExtendedRecord.newBuilder().setId("1").setCoreTerms(core).setExtensions(extensions).build(),
+        ExtendedRecord.newBuilder().setId("2").setCoreRowType("http://unknown.org/terms/Event").build(),
+        ExtendedRecord.newBuilder().setId("3").setCoreTerms(Collections.singletonMap(SCIENTIFIC_NAME, "Puma"))
+            .build());
+  }
+
+  private static byte[] write(Schema schema, DatumWriter<ExtendedRecord> datumWriter, List<ExtendedRecord> records)
+      throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (DataFileWriter<ExtendedRecord> writer = new DataFileWriter<>(datumWriter)) {
+      writer.create(schema, out);
+      for (ExtendedRecord record : records) {
+        writer.append(record);
+      }
+    }
+    return out.toByteArray();
+  }
+
+  private static <T> List<T> read(byte[] file, DatumReader<T> datumReader) throws IOException {
+    List<T> result = new ArrayList<>();
+    try (DataFileReader<T> reader = new DataFileReader<>(new SeekableByteArrayInput(file), datumReader)) {
+      reader.forEach(result::add);
+    }
+    return result;
+  }
+
+  private static byte[] writeEncoded(List<ExtendedRecord> records) throws IOException {
+    return write(TermDictionaryEncoding.createSchema(DICTIONARY), TermDictionaryEncoding.writer(DICTIONARY), records);
+  }
+
+  private static byte[] writePlain(List<ExtendedRecord> records) throws IOException {
+    return write(ExtendedRecord.getClassSchema(), new SpecificDatumWriter<>(ExtendedRecord.class), records);
+  }
+
+  @Test
+  public void encodedFileTest() throws IOException {
+    // State
+    List<ExtendedRecord> records = records();
+
+    // When
+    List<ExtendedRecord> result = read(writeEncoded(records), TermDictionaryEncoding.reader());
+
+    // Should
+    assertEquals(records, result);
+    // decoded records share the key instances of the dictionary
+    String first = result.get(0).getCoreTerms().keySet().stream().filter(SCIENTIFIC_NAME::equals).findFirst().get();
+    String third = result.get(2).getCoreTerms().keySet().iterator().next();
+    assertSame(first, third);
+  }
+
+  @Test
+  public void plainFileTest() throws IOException {
+    // State
+    List<ExtendedRecord> records = records();
+
+    // When
+    List<ExtendedRecord> result = read(writePlain(records), TermDictionaryEncoding.reader());
+
+    // Should
+    assertEquals(records, result);
+  }
+
+  @Test
+  public void stringCacheTest() throws IOException {
+    // State
+    List<ExtendedRecord> records = records();
+    StringCache cache = StringCache.create();
+
+    // When
+    List<ExtendedRecord> encoded = read(writeEncoded(records), TermDictionaryEncoding.reader(cache));
+    List<ExtendedRecord> plain = read(writePlain(records), TermDictionaryEncoding.reader(cache));
+
+    // Should
+    assertEquals(records, encoded);
+    assertEquals(records, plain);
+    // plain and encoded records share the keys and the values of the cache
+    String encodedKey = encoded.get(0).getCoreTerms().keySet().stream().filter(UNKNOWN_TERM::equals).findFirst().get();
+    String plainKey = plain.get(0).getCoreTerms().keySet().stream().filter(UNKNOWN_TERM::equals).findFirst().get();
+    assertSame(encodedKey, plainKey);
+    assertSame(encoded.get(0).getCoreTerms().get(UNKNOWN_TERM), plain.get(0).getCoreTerms().get(UNKNOWN_TERM));
+    assertSame(encoded.get(1).getCoreRowType(), plain.get(1).getCoreRowType());
+    assertSame(encoded.get(2).getCoreTerms().get(SCIENTIFIC_NAME), plain.get(2).getCoreTerms().get(SCIENTIFIC_NAME));
+  }
+
+  @Test
+  public void genericRecordTest() throws IOException {
+    // State
+    List<ExtendedRecord> records = records();
+
+    // When
+    List<GenericRecord> encoded = read(writeEncoded(records), new GenericDatumReader<>());
+    List<GenericRecord> plain = read(writePlain(records), new GenericDatumReader<>());
+
+    // Should
+    Schema schema = encoded.get(0).getSchema();
+    assertTrue(TermDictionaryEncoding.isEncoded(schema));
+    assertFalse(TermDictionaryEncoding.isEncoded(plain.get(0).getSchema()));
+    assertEquals(DICTIONARY.getTerms(), TermDictionaryEncoding.getDictionary(schema).getTerms());
+    for (int i = 0; i < records.size(); i++) {
+      assertEquals(records.get(i), TermDictionaryEncoding.decode(encoded.get(i), DICTIONARY));
+      assertEquals(records.get(i), TermDictionaryEncoding.decode(plain.get(i), null));
+    }
+  }
+
+  @Test
+  public void defaultDictionaryTest() {
+    // State
+    TermDictionary dictionary = TermDictionary.DEFAULT;
+
+    // When
+    int id = dictionary.getId(SCIENTIFIC_NAME);
+
+    // Should
+    assertEquals(SCIENTIFIC_NAME, dictionary.getTerm(id));
+    assertEquals(TermDictionary.UNKNOWN, dictionary.getId(UNKNOWN_TERM));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void duplicateTermTest() {
+    // When
+    TermDictionary.create(Arrays.asList(SCIENTIFIC_NAME, SCIENTIFIC_NAME));
+  }
+}
@@ -0,0 +1,113 @@
+package org.gbif.pipelines.core.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.gbif.pipelines.io.avro.ExtendedRecord;
+
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.file.SeekableByteArrayInput;
+import org.apache.avro.specific.SpecificDatumReader;
+import org.apache.avro.specific.SpecificDatumWriter;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.base.Stopwatch;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Writes and reads the same verbatim records with every supported avro codec. Logs the file size and the write and
+ * read throughput per codec, to choose the codec of a pipeline stage, like a high ratio codec for the verbatim files,
+ * which are written once and kept, and a fast codec for the interpreted files.
+ */
+@Slf4j
+public class AvroCodecBenchmarkTest {
+
+  private static final List<String> CODECS =
+      Arrays.asList("null", "snappy", "deflate-1", "deflate-6", "deflate-9", "bzip2", "xz-1", "xz-6");
+
+  // increase it to benchmark with a higher volume of data
+  private static final int N = 5_000;
+
+  private static final String[] COUNTRIES = {"DK", "ES", "US", "AU", "BR", "ZA"};
+
+  /** Records with the repeated terms and values of a typical occurrence dataset */
+  private static List<ExtendedRecord> records() {
+    List<ExtendedRecord> records = new ArrayList<>(N);
+    for (int i = 0; i < N; i++) {
+      Map<String, String> core = new HashMap<>();
+      core.put("http://rs.tdwg.org/dwc/terms/occurrenceID", "urn:catalog:MNHN:P:" + (1_000_000 + i));
+      core.put("http://rs.tdwg.org/dwc/terms/basisOfRecord", "PreservedSpecimen");
+      core.put("http://rs.tdwg.org/dwc/terms/scientificName", "Puma concolor var. " + (i % 300));
+      core.put("http://rs.tdwg.org/dwc/terms/countryCode", COUNTRIES[i % COUNTRIES.length]);
+      core.put("http://rs.tdwg.org/dwc/terms/decimalLatitude", Double.toString(-40d + (i % 8_000) / 100d));
+      core.put("http://rs.tdwg.org/dwc/terms/decimalLongitude", Double.toString(10d + (i % 9_000) / 100d));
+      core.put("http://rs.tdwg.org/dwc/terms/eventDate", "19" + (10 + i % 90) + "-0" + (1 + i % 9) + "-1" + i % 10);
+      core.put("http://rs.tdwg.org/dwc/terms/recordedBy", "Collector " + (i % 50));
+      core.put("http://rs.tdwg.org/dwc/terms/locality", "Locality number " + (i % 1_000) + " near the river");
+      records.add(ExtendedRecord.newBuilder().setId("id-" + i).setCoreTerms(core).build());
+    }
+    return records;
+  }
+
+  private static byte[] write(String codec, List<ExtendedRecord> records) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (DataFileWriter<ExtendedRecord> writer =
+        new DataFileWriter<>(new SpecificDatumWriter<>(ExtendedRecord.class))) {
+      writer.setCodec(AvroCodecUtils.fromString(codec));
+      writer.create(ExtendedRecord.getClassSchema(), out);
+      for (ExtendedRecord record : records) {
+        writer.append(record);
+      }
+    }
+    return out.toByteArray();
+  }
+
+  private static List<ExtendedRecord> read(byte[] bytes) throws IOException {
+    List<ExtendedRecord> records = new ArrayList<>(N);
+    try (DataFileReader<ExtendedRecord> reader =
+        new DataFileReader<>(new SeekableByteArrayInput(bytes), new SpecificDatumReader<>(ExtendedRecord.class))) {
+      reader.forEach(records::add);
+    }
+    return records;
+  }
+
+  private static long perSecond(Stopwatch watch) {
+    return N * 1000L / Math.max(watch.elapsed(TimeUnit.MILLISECONDS), 1L);
+  }
+
+  @Test
+  public void codecsTest() throws IOException {
+    // State
+    List<ExtendedRecord> records = records();
+
+    for (String codec : CODECS) {
+      // warm up
+      for (int i = 0; i < 3; i++) {
+        read(write(codec, records));
+      }
+
+      // When
+      Stopwatch writeWatch = Stopwatch.createStarted();
+      byte[] bytes = write(codec, records);
+      writeWatch.stop();
+
+      Stopwatch readWatch = Stopwatch.createStarted();
+      List<ExtendedRecord> result = read(bytes);
+      readWatch.stop();
+
+      log.info("Codec {}: {} bytes, write {} records/s, read {} records/s", codec, bytes.length,
+          perSecond(writeWatch), perSecond(readWatch));
+
+      // Should
+      Assert.assertEquals(records, result);
+    }
+  }
+}
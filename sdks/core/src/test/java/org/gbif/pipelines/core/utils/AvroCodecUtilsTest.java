@@ -0,0 +1,52 @@
+package org.gbif.pipelines.core.utils;
+
+import org.apache.avro.file.CodecFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AvroCodecUtilsTest {
+
+  @Test
+  public void namesTest() {
+    // Should
+    Assert.assertEquals(CodecFactory.snappyCodec().toString(), AvroCodecUtils.fromString("snappy").toString());
+    Assert.assertEquals(CodecFactory.snappyCodec().toString(), AvroCodecUtils.fromString(" SNAPPY ").toString());
+    Assert.assertEquals(CodecFactory.nullCodec().toString(), AvroCodecUtils.fromString("null").toString());
+    Assert.assertEquals(CodecFactory.bzip2Codec().toString(), AvroCodecUtils.fromString("bzip2").toString());
+    Assert.assertEquals(CodecFactory.xzCodec(6).toString(), AvroCodecUtils.fromString("xz").toString());
+  }
+
+  @Test
+  public void levelsTest() {
+    // Should
+    Assert.assertEquals("deflate-9", AvroCodecUtils.fromString("deflate-9").toString());
+    Assert.assertEquals("deflate-1", AvroCodecUtils.fromString("Deflate-1").toString());
+    Assert.assertEquals("xz-0", AvroCodecUtils.fromString("xz-0").toString());
+    Assert.assertEquals("xz-9", AvroCodecUtils.fromString(CodecFactory.xzCodec(9).toString()).toString());
+    Assert.assertEquals("deflate--1", AvroCodecUtils.fromString(CodecFactory.fromString("deflate").toString()).toString());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void unknownCodecTest() {
+    // Should
+    AvroCodecUtils.fromString("zstd");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void levelOfSnappyTest() {
+    // Should
+    AvroCodecUtils.fromString("snappy-1");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void invalidLevelTest() {
+    // Should
+    AvroCodecUtils.fromString("deflate-10");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void defaultLevelOfXzTest() {
+    // Should
+    AvroCodecUtils.fromString("xz--1");
+  }
+}
@@ -1,5 +1,14 @@
 package org.gbif.pipelines.core.utils;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.gbif.pipelines.io.avro.ExtendedRecord;
+import org.gbif.pipelines.io.avro.MachineTag;
+import org.gbif.pipelines.io.avro.MetadataRecord;
+
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -32,4 +41,45 @@ public class HashUtilsTest {
     Assert.assertEquals(expected, result);
   }
 
+  @Test
+  public void contentHashTest() {
+    // State
+    Map<String, String> core = new LinkedHashMap<>();
+    core.put("http://rs.tdwg.org/dwc/terms/occurrenceID", "1");
+    core.put("http://rs.tdwg.org/dwc/terms/scientificName", "Puma concolor");
+    Map<String, String> reversed = new LinkedHashMap<>();
+    reversed.put("http://rs.tdwg.org/dwc/terms/scientificName", "Puma concolor");
+    reversed.put("http://rs.tdwg.org/dwc/terms/occurrenceID", "1");
+
+    ExtendedRecord er = ExtendedRecord.newBuilder().setId("1").setCoreTerms(core).build();
+    ExtendedRecord sameTerms = ExtendedRecord.newBuilder().setId("2").setCoreTerms(reversed).build();
+    ExtendedRecord changed = ExtendedRecord.newBuilder().setId("1")
+        .setCoreTerms(Collections.singletonMap("http://rs.tdwg.org/dwc/terms/occurrenceID", "1"))
+        .build();
+
+    // Should
+    Assert.assertEquals(HashUtils.getContentHash(er), HashUtils.getContentHash(sameTerms));
+    Assert.assertNotEquals(HashUtils.getContentHash(er), HashUtils.getContentHash(changed));
+    Assert.assertEquals(HashUtils.getContentHash(er, "seed"), HashUtils.getContentHash(sameTerms, "seed"));
+    Assert.assertNotEquals(HashUtils.getContentHash(er, "seed"), HashUtils.getContentHash(er, "other seed"));
+  }
+
+  @Test
+  public void metadataHashTest() {
+    // State
+    MachineTag crawlerTag = MachineTag.newBuilder().setNamespace("crawler.gbif.org").setName("lastCrawled")
+        .setValue("2020").build();
+    MachineTag tag = MachineTag.newBuilder().setNamespace("default-term.gbif.org").setName("basisOfRecord")
+        .setValue("PRESERVED_SPECIMEN").build();
+
+    MetadataRecord mdr = MetadataRecord.newBuilder().setId("1").setDatasetTitle("Title").setCrawlId(1)
+        .setMachineTags(Collections.singletonList(tag)).build();
+    MetadataRecord nextCrawl = MetadataRecord.newBuilder(mdr).setId("1").setCrawlId(2).setCreated(2L)
+        .setMachineTags(Arrays.asList(tag, crawlerTag)).build();
+    MetadataRecord changed = MetadataRecord.newBuilder(mdr).setMachineTags(Collections.emptyList()).build();
+
+    // Should
+    Assert.assertEquals(HashUtils.getMetadataHash(mdr), HashUtils.getMetadataHash(nextCrawl));
+    Assert.assertNotEquals(HashUtils.getMetadataHash(mdr), HashUtils.getMetadataHash(changed));
+  }
 }
@@ -0,0 +1,74 @@
+package org.gbif.pipelines.io.avro;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+import org.apache.beam.sdk.coders.AvroCoder;
+import org.apache.beam.sdk.coders.Coder;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares the {@link AvroCoder}, which was the default coder of the avro classes before, and the generated coders.
+ * Logs the number of records per second.
+ */
+public class GeneratedCoderBenchmarkTest {
+
+  private static final Logger LOG = LoggerFactory.getLogger(GeneratedCoderBenchmarkTest.class);
+
+  // increase it to benchmark with a higher volume of data
+  private static final int N = 20_000;
+
+  private static <T> byte[] encode(Coder<T> coder, List<T> records) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    for (T record : records) {
+      coder.encode(record, out);
+    }
+    return out.toByteArray();
+  }
+
+  private static <T> List<T> decode(Coder<T> coder, byte[] bytes) throws IOException {
+    List<T> records = new ArrayList<>(N);
+    ByteArrayInputStream in = new ByteArrayInputStream(bytes);
+    for (int i = 0; i < N; i++) {
+      records.add(coder.decode(in));
+    }
+    return records;
+  }
+
+  private static <T> long perSecond(Coder<T> coder, List<T> records) throws IOException {
+    long start = System.nanoTime();
+    Assert.assertEquals(records, decode(coder, encode(coder, records)));
+    return N * 1_000_000_000L / Math.max(System.nanoTime() - start, 1L);
+  }
+
+  private static <T> void benchmark(Class<T> clazz, Coder<T> generated, IntFunction<T> record) throws IOException {
+    List<T> records = new ArrayList<>(N);
+    for (int i = 0; i < N; i++) {
+      records.add(record.apply(i));
+    }
+    AvroCoder<T> avro = AvroCoder.of(clazz);
+
+    // warm up
+    for (int i = 0; i < 3; i++) {
+      perSecond(avro, records);
+      perSecond(generated, records);
+    }
+
+    LOG.info("{}: AvroCoder {} records/s, generated coder {} records/s", clazz.getSimpleName(),
+        perSecond(avro, records), perSecond(generated, records));
+  }
+
+  @Test
+  public void avroVsGeneratedCoderTest() throws IOException {
+    benchmark(ExtendedRecord.class, ExtendedRecordCoder.of(), i -> GeneratedCoderTest.extendedRecord("id-" + i));
+    benchmark(TaxonRecord.class, TaxonRecordCoder.of(), i -> GeneratedCoderTest.taxonRecord("id-" + i));
+    benchmark(BasicRecord.class, BasicRecordCoder.of(), i -> GeneratedCoderTest.basicRecord("id-" + i));
+  }
+}
@@ -0,0 +1,123 @@
+package org.gbif.pipelines.io.avro;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.beam.sdk.coders.AvroCoder;
+import org.apache.beam.sdk.coders.Coder;
+import org.apache.beam.sdk.coders.Coder.NonDeterministicException;
+import org.apache.beam.sdk.coders.CoderRegistry;
+import org.apache.beam.sdk.testing.CoderProperties;
+import org.apache.beam.sdk.util.CoderUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+/** Coders generated by the pipelines-maven-plugin must decode the same records as the {@link AvroCoder} */
+public class GeneratedCoderTest {
+
+  static ExtendedRecord extendedRecord(String id) {
+    Map<String, String> core = new HashMap<>();
+    core.put("http://rs.tdwg.org/dwc/terms/scientificName", "Puma concolor " + id);
+    core.put("http://rs.tdwg.org/dwc/terms/locality", "Bärenhöhle, ÅÖ 🐆");
+    Map<String, String> identifier = Collections.singletonMap("http://purl.org/dc/terms/identifier", "urn:" + id);
+    return ExtendedRecord.newBuilder()
+        .setId(id)
+        .setCoreRowType("http://rs.tdwg.org/dwc/terms/Occurrence")
+        .setCoreTerms(core)
+        .setExtensions(Collections.singletonMap("http://rs.gbif.org/terms/1.0/Identifier",
+            Arrays.asList(identifier, Collections.emptyMap())))
+        .build();
+  }
+
+  static TaxonRecord taxonRecord(String id) {
+    RankedName usage = RankedName.newBuilder().setKey(2435099).setName("Puma concolor").setRank(Rank.SPECIES).build();
+    RankedName genus = RankedName.newBuilder().setKey(2435098).setName("Puma").setRank(Rank.GENUS).build();
+    // Diagnostic alternatives are TaxonRecords again
+    TaxonRecord alternative = TaxonRecord.newBuilder().setId(id + "-alt").setUsage(genus).build();
+    return TaxonRecord.newBuilder()
+        .setId(id)
+        .setCreated(1L)
+        .setUsage(usage)
+        .setClassification(Arrays.asList(genus, usage))
+        .setDiagnostics(Diagnostic.newBuilder()
+            .setMatchType(MatchType.EXACT)
+            .setConfidence(99)
+            .setLineage(Collections.singletonList("lineage"))
+            .setAlternatives(Collections.singletonList(alternative))
+            .build())
+        .setIssues(IssueRecord.newBuilder().setIssueList(Collections.singletonList("TAXON_MATCH_FUZZY")).build())
+        .build();
+  }
+
+  static BasicRecord basicRecord(String id) {
+    return BasicRecord.newBuilder()
+        .setId(id)
+        .setGbifId(Long.MAX_VALUE)
+        .setIndividualCount(-1)
+        .setOrganismQuantity(0.5d)
+        .setRecordedByIds(Collections.singletonList(
+            AgentIdentifier.newBuilder().setType("ORCID").setValue("0000-0002").build()))
+        .build();
+  }
+
+  private static <T> void assertSameAsAvroCoder(Coder<T> coder, Class<T> clazz, T value) throws Exception {
+    CoderProperties.coderDecodeEncodeEqual(coder, value);
+    AvroCoder<T> avroCoder = AvroCoder.of(clazz);
+    T avro = CoderUtils.decodeFromByteArray(avroCoder, CoderUtils.encodeToByteArray(avroCoder, value));
+    Assert.assertEquals(avro, CoderUtils.decodeFromByteArray(coder, CoderUtils.encodeToByteArray(coder, value)));
+  }
+
+  @Test
+  public void roundTripTest() throws Exception {
+    // State
+    OccurrenceHdfsRecord hdfsRecord = new OccurrenceHdfsRecord();
+    hdfsRecord.setGbifid(1L);
+    hdfsRecord.setVAbstract("abstract");
+    hdfsRecord.setDecimallatitude(-1.5d);
+
+    // Should
+    assertSameAsAvroCoder(ExtendedRecordCoder.of(), ExtendedRecord.class, extendedRecord("1"));
+    assertSameAsAvroCoder(ExtendedRecordCoder.of(), ExtendedRecord.class, ExtendedRecord.newBuilder().setId("").build());
+    assertSameAsAvroCoder(TaxonRecordCoder.of(), TaxonRecord.class, taxonRecord("1"));
+    assertSameAsAvroCoder(TaxonRecordCoder.of(), TaxonRecord.class, TaxonRecord.newBuilder().build());
+    assertSameAsAvroCoder(BasicRecordCoder.of(), BasicRecord.class, basicRecord("1"));
+    assertSameAsAvroCoder(
+        OccurrenceHdfsRecordCoder.of(), OccurrenceHdfsRecord.class, hdfsRecord);
+    for (Rank rank : Rank.values()) {
+      CoderProperties.coderDecodeEncodeEqual(RankCoder.of(), rank);
+    }
+  }
+
+  @Test
+  public void defaultCoderTest() throws Exception {
+    // State
+    CoderRegistry registry = CoderRegistry.createDefault();
+
+    // Should
+    Assert.assertSame(ExtendedRecordCoder.of(), registry.getCoder(ExtendedRecord.class));
+    Assert.assertSame(TaxonRecordCoder.of(), registry.getCoder(TaxonRecord.class));
+    Assert.assertSame(RankCoder.of(), registry.getCoder(Rank.class));
+  }
+
+  @Test
+  public void serializableTest() {
+    // Should
+    CoderProperties.coderSerializable(TaxonRecordCoder.of());
+    CoderProperties.coderSerializable(ExtendedRecordCoder.of());
+  }
+
+  @Test
+  public void deterministicTest() throws Exception {
+    // Should
+    TaxonRecordCoder.of().verifyDeterministic();
+    RankCoder.of().verifyDeterministic();
+    try {
+      ExtendedRecordCoder.of().verifyDeterministic();
+      Assert.fail("ExtendedRecord has maps");
+    } catch (NonDeterministicException ex) {
+      Assert.assertTrue(ex.getMessage().contains("coreTerms"));
+    }
+  }
+}
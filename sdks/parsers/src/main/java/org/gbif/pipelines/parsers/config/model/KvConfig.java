@@ -25,4 +25,7 @@ public class KvConfig implements Serializable {
   private String tableName;
 
   private boolean restOnly = false;
+
+  /** Version of the data of the store, like the backbone version, part of the interpretation fingerprints */
+  private String version;
 }
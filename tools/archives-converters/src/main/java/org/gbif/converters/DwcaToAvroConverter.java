@@ -1,57 +1,277 @@
 package org.gbif.converters;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.gbif.converters.converter.ConverterToVerbatim;
 import org.gbif.converters.converter.SyncDataFileWriter;
+import org.gbif.dwc.record.StarRecord;
 import org.gbif.pipelines.core.converters.ExtendedRecordConverter;
 import org.gbif.pipelines.core.io.DwcaReader;
 import org.gbif.pipelines.io.avro.ExtendedRecord;
 
-import lombok.Builder;
+import org.apache.avro.file.DataFileStream;
+import org.apache.avro.specific.SpecificDatumReader;
+import org.apache.hadoop.fs.FileSystem;
+
+import com.google.common.base.Stopwatch;
+import lombok.AllArgsConstructor;
 import lombok.NoArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 /**
  * Converts DWC archive into {@link ExtendedRecord} AVRO file
+ *
+ * <p>With a parallelism above 1, the star records are read in chunks, which are handed out round-robin to workers. Each
+ * worker builds the {@link ExtendedRecord}s of its chunks and encodes them into its own avro file, the first worker
+ * writes the output file and the others write part files next to it. The archive is read by
+ * {@link DwcaReader#fromDataFiles(String, String)}, whose star records can be built on other threads. The part files are merged into the output file block by block, without decoding the records
+ * again, and deleted, the readers of the verbatim file only read the output file.
+ *
+ * <p>Both paths write every record with a valid id, records with duplicated ids are kept as they are and handled by
+ * the interpretation.
  */
 @Slf4j
 @NoArgsConstructor(staticName = "create")
-@Builder
 public class DwcaToAvroConverter extends ConverterToVerbatim {
 
+  private static final String TMP = "_tmp";
+  private static final String PART = "_part-";
+  private static final int CHUNK_SIZE = 10_000;
+  private static final int CHUNKS_PER_WORKER = 2;
+  private static final List<StarRecord> END = Collections.emptyList();
+
+  private int parallelism = 1;
+
+  /**
+   * @param parallelism number of threads building records and encoding avro files, 1 converts the archive in a single
+   * thread
+   */
+  public DwcaToAvroConverter parallelism(int parallelism) {
+    this.parallelism = parallelism;
+    return this;
+  }
+
   public static void main(String... args) {
     if (args.length < 2) {
       throw new IllegalArgumentException("You must specify input and output paths");
     }
     String inputPath = args[0];
     String outputPath = args[1];
-    boolean isFileCreated = DwcaToAvroConverter.create().inputPath(inputPath).outputPath(outputPath).convert();
+    DwcaToAvroConverter converter = DwcaToAvroConverter.create();
+    if (args.length > 2) {
+      converter.parallelism(Integer.parseInt(args[2]));
+    }
+    boolean isFileCreated = converter.inputPath(inputPath).outputPath(outputPath).convert();
     log.info("Verbatim avro file has been created - {}", isFileCreated);
   }
 
   /**
    * Converts DWC archive into {@link ExtendedRecord} AVRO file
    *
-   * @param inputPath Path to DWCA file
+   * @param inputPath Path to an expanded DWCA folder or a DWCA zip file, which is read without expanding it
    * @param dataFileWriter AVRO data writer for {@link ExtendedRecord}
    */
   @Override
   protected long convert(Path inputPath, SyncDataFileWriter<ExtendedRecord> dataFileWriter)
       throws IOException {
-    DwcaReader reader = DwcaReader.fromLocation(inputPath.toString());
+    Path workingPath = inputPath.resolveSibling(inputPath.getFileName() + TMP);
+    DwcaReader reader;
+    if (parallelism > 1) {
+      reader = DwcaReader.fromDataFiles(inputPath.toString(), workingPath.toString());
+    } else if (Files.isRegularFile(inputPath)) {
+      reader = DwcaReader.fromCompressed(inputPath.toString(), workingPath.toString());
+    } else {
+      reader = DwcaReader.fromLocation(inputPath.toString());
+    }
     log.info("Exporting the DwC Archive to Avro started {}", inputPath);
 
-    // Read all records
-    while (reader.advance()) {
-      ExtendedRecord record = reader.getCurrent();
-      if (!record.getId().equals(ExtendedRecordConverter.getRecordIdError())) {
-        dataFileWriter.append(record);
+    try {
+      if (parallelism > 1) {
+        convertParallel(reader, dataFileWriter);
+      } else {
+        // Read all records
+        while (reader.advance()) {
+          ExtendedRecord record = reader.getCurrent();
+          if (!record.getId().equals(ExtendedRecordConverter.getRecordIdError())) {
+            dataFileWriter.append(record);
+          }
+        }
+      }
+    } finally {
+      try {
+        reader.close();
+      } finally {
+        deleteWorkingPath(workingPath);
       }
     }
-    reader.close();
 
     return reader.getRecordsReturned();
   }
+
+  /** Deletes the sorted runs or the expanded archive of a zip file, the working path is created by the reader */
+  private static void deleteWorkingPath(Path workingPath) throws IOException {
+    if (!Files.exists(workingPath)) {
+      return;
+    }
+    try (Stream<Path> paths = Files.walk(workingPath)) {
+      for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+        Files.delete(path);
+      }
+    }
+  }
+
+  private void convertParallel(DwcaReader reader, SyncDataFileWriter<ExtendedRecord> dataFileWriter)
+      throws IOException {
+    FileSystem fs = getFileSystem();
+    List<org.apache.hadoop.fs.Path> partPaths = new ArrayList<>();
+    for (int i = 1; i < parallelism; i++) {
+      partPaths.add(getPartPath(i));
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+    AtomicLong workerNanos = new AtomicLong();
+    try {
+      List<BlockingQueue<List<StarRecord>>> queues = new ArrayList<>();
+      List<Future<Long>> futures = new ArrayList<>();
+      for (int i = 0; i < parallelism; i++) {
+        BlockingQueue<List<StarRecord>> queue = new ArrayBlockingQueue<>(CHUNKS_PER_WORKER);
+        SyncDataFileWriter<ExtendedRecord> writer =
+            i == 0 ? dataFileWriter : createDataFileWriter(fs.create(partPaths.get(i - 1)));
+        queues.add(queue);
+        futures.add(executor.submit(new PartWriter(queue, writer, i != 0, workerNanos)));
+      }
+
+      // Phase 1: read the star records of the archive, chunks are handed out round-robin
+      Stopwatch readWatch = Stopwatch.createStarted();
+      int worker = 0;
+      List<StarRecord> chunk = new ArrayList<>(CHUNK_SIZE);
+      while (reader.advanceStarRecord()) {
+        chunk.add(reader.getCurrentStarRecord());
+        if (chunk.size() == CHUNK_SIZE) {
+          put(queues.get(worker), futures.get(worker), chunk);
+          worker = (worker + 1) % parallelism;
+          chunk = new ArrayList<>(CHUNK_SIZE);
+        }
+      }
+      if (!chunk.isEmpty()) {
+        put(queues.get(worker), futures.get(worker), chunk);
+      }
+      for (int i = 0; i < parallelism; i++) {
+        put(queues.get(i), futures.get(i), END);
+      }
+      readWatch.stop();
+
+      // Phase 2: wait for the workers to build and encode the rest
+      Stopwatch encodeWatch = Stopwatch.createStarted();
+      long written = 0;
+      for (Future<Long> future : futures) {
+        written += future.get();
+      }
+      encodeWatch.stop();
+
+      // Phase 3: merge the part files block by block
+      Stopwatch mergeWatch = Stopwatch.createStarted();
+      SpecificDatumReader<ExtendedRecord> datumReader = new SpecificDatumReader<>(ExtendedRecord.class);
+      for (org.apache.hadoop.fs.Path partPath : partPaths) {
+        try (InputStream is = fs.open(partPath);
+            DataFileStream<ExtendedRecord> part = new DataFileStream<>(is, datumReader)) {
+          dataFileWriter.appendAllFrom(part);
+        }
+      }
+      mergeWatch.stop();
+
+      log.info("Converted [{}] records with [{}] workers, written [{}]", reader.getRecordsReturned(), parallelism,
+          written);
+      log.info("Phase timings - read: {} ms, build and encoding (all workers): {} ms, wait for the workers: {} ms, "
+              + "merge: {} ms", readWatch.elapsed(TimeUnit.MILLISECONDS),
+          TimeUnit.NANOSECONDS.toMillis(workerNanos.get()), encodeWatch.elapsed(TimeUnit.MILLISECONDS),
+          mergeWatch.elapsed(TimeUnit.MILLISECONDS));
+
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new IOException(ex);
+    } catch (ExecutionException ex) {
+      throw new IOException(ex.getCause());
+    } finally {
+      executor.shutdownNow();
+      for (org.apache.hadoop.fs.Path partPath : partPaths) {
+        fs.delete(partPath, false);
+      }
+    }
+  }
+
+  /** Part files are named after the output file, verbatim.avro becomes verbatim_part-1.avro */
+  private org.apache.hadoop.fs.Path getPartPath(int part) {
+    org.apache.hadoop.fs.Path outputPath = getOutputPath();
+    String name = outputPath.getName();
+    int dot = name.lastIndexOf('.');
+    String partName = dot > 0
+        ? name.substring(0, dot) + PART + part + name.substring(dot)
+        : name + PART + part;
+    return new org.apache.hadoop.fs.Path(outputPath.getParent(), partName);
+  }
+
+  /** Blocks until the worker takes the chunk, fails if the worker has stopped because of an error */
+  private static void put(BlockingQueue<List<StarRecord>> queue, Future<Long> future, List<StarRecord> chunk)
+      throws InterruptedException, ExecutionException {
+    while (!queue.offer(chunk, 1, TimeUnit.SECONDS)) {
+      if (future.isDone()) {
+        future.get();
+        throw new IllegalStateException("Avro part writer has stopped");
+      }
+    }
+  }
+
+  /** Worker building the records of chunks of star records and encoding them into its own avro file */
+  @AllArgsConstructor
+  private static class PartWriter implements Callable<Long> {
+
+    private final BlockingQueue<List<StarRecord>> queue;
+    private final SyncDataFileWriter<ExtendedRecord> writer;
+    private final boolean closeWriter;
+    private final AtomicLong workerNanos;
+
+    /** @return number of written records */
+    @Override
+    public Long call() throws Exception {
+      long counter = 0;
+      try {
+        List<StarRecord> chunk;
+        while ((chunk = queue.take()) != END) {
+          long start = System.nanoTime();
+          for (StarRecord starRecord : chunk) {
+            ExtendedRecord record = ExtendedRecordConverter.from(starRecord);
+            if (!record.getId().equals(ExtendedRecordConverter.getRecordIdError())) {
+              writer.append(record);
+              counter++;
+            }
+          }
+          workerNanos.addAndGet(System.nanoTime() - start);
+        }
+      } finally {
+        if (closeWriter) {
+          writer.close();
+        }
+      }
+      return counter;
+    }
+  }
 }
@@ -7,6 +7,7 @@ import java.util.concurrent.Executors;
 import org.gbif.converters.converter.ConverterToVerbatim;
 import org.gbif.converters.converter.SyncDataFileWriter;
 import org.gbif.converters.parser.xml.ExtendedRecordConverter;
+import org.gbif.converters.parser.xml.parsing.validators.UniquenessValidator;
 import org.gbif.pipelines.io.avro.ExtendedRecord;
 
 import lombok.NoArgsConstructor;
@@ -20,6 +21,8 @@ import lombok.extern.slf4j.Slf4j;
 public class XmlToAvroConverter extends ConverterToVerbatim {
 
   private ExecutorService executor = Executors.newWorkStealingPool();
+  private long maxIds = UniquenessValidator.DEFAULT_MAX_IDS;
+  private long expectedIds;
 
   /**
    * @param executor to use provided ExecutorService
@@ -37,6 +40,24 @@ public class XmlToAvroConverter extends ConverterToVerbatim {
     return this;
   }
 
+  /**
+   * @param maxIds maximum number of record IDs validated for uniqueness, the default is {@link
+   * UniquenessValidator#DEFAULT_MAX_IDS}
+   */
+  public XmlToAvroConverter maxIds(long maxIds) {
+    this.maxIds = maxIds;
+    return this;
+  }
+
+  /**
+   * @param expectedIds expected number of records, e.g. from the crawl, if not set it is estimated from the size of
+   * the input
+   */
+  public XmlToAvroConverter expectedIds(long expectedIds) {
+    this.expectedIds = expectedIds;
+    return this;
+  }
+
   public static void main(String... args) {
     if (args.length < 2) {
       throw new IllegalArgumentException("You must specify input and output paths");
@@ -55,6 +76,9 @@ public class XmlToAvroConverter extends ConverterToVerbatim {
    */
   @Override
   public long convert(Path inputPath, SyncDataFileWriter<ExtendedRecord> dataFileWriter) {
-    return ExtendedRecordConverter.create(executor).toAvro(inputPath.toString(), dataFileWriter);
+    return ExtendedRecordConverter.create(executor)
+        .maxIds(maxIds)
+        .expectedIds(expectedIds)
+        .toAvro(inputPath.toString(), dataFileWriter);
   }
 }
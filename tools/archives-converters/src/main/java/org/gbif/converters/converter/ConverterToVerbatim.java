@@ -2,10 +2,13 @@ package org.gbif.converters.converter;
 
 import java.io.BufferedOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.file.Paths;
 import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.gbif.pipelines.common.PipelinesVariables.Metrics;
+import org.gbif.pipelines.core.utils.AvroCodecUtils;
 import org.gbif.pipelines.io.avro.ExtendedRecord;
 
 import org.apache.avro.file.CodecFactory;
@@ -19,11 +22,15 @@ public abstract class ConverterToVerbatim {
 
   private String hdfsSiteConfig;
   private int syncInterval = 2 * 1024 * 1024;
-  private CodecFactory codecFactory = CodecFactory.snappyCodec();
+  private CodecFactory codecFactory = AvroCodecUtils.fromString(AvroCodecUtils.DEFAULT_CODEC);
+  private boolean termDictionary = false;
+  // content hash of the converted records, see SyncDataFileWriterBuilder
+  private final LongAdder contentHash = new LongAdder();
 
   private java.nio.file.Path inputPath;
   private Path outputPath;
   private Path metaPath;
+  private FileSystem fs;
 
   public ConverterToVerbatim hdfsSiteConfig(String hdfsSiteConfig) {
     this.hdfsSiteConfig = hdfsSiteConfig;
@@ -40,6 +47,12 @@ public abstract class ConverterToVerbatim {
     return this;
   }
 
+  /** Writes the term keys of the records as ids of the default term dictionary, see TermDictionaryEncoding */
+  public ConverterToVerbatim termDictionary(boolean termDictionary) {
+    this.termDictionary = termDictionary;
+    return this;
+  }
+
   public ConverterToVerbatim outputPath(Path outputPath) {
     this.outputPath = outputPath;
     return this;
@@ -82,16 +95,10 @@ public abstract class ConverterToVerbatim {
     // same connection. So, when using multiple consumers, one consumer would close the connection
     // that is being used
     // by another consumer.
-    FileSystem fs = FsUtils.createParentDirectories(outputPath, hdfsSiteConfig);
+    fs = FsUtils.createParentDirectories(outputPath, hdfsSiteConfig);
+    contentHash.reset();
     try (BufferedOutputStream outputStream = new BufferedOutputStream(fs.create(outputPath));
-        SyncDataFileWriter<ExtendedRecord> dataFileWriter =
-            SyncDataFileWriterBuilder.builder()
-                .schema(ExtendedRecord.getClassSchema())
-                .codec(codecFactory.toString())
-                .outputStream(outputStream)
-                .syncInterval(syncInterval)
-                .build()
-                .createSyncDataFileWriter()) {
+        SyncDataFileWriter<ExtendedRecord> dataFileWriter = createDataFileWriter(outputStream)) {
 
       long numberOfRecords = convert(inputPath, dataFileWriter);
 
@@ -107,9 +114,35 @@ public abstract class ConverterToVerbatim {
     return !isConverted;
   }
 
+  /**
+   * Creates an avro writer with the configured codec, sync interval and term dictionary encoding, used for the output
+   * and any part files, the records of all writers are added to the content hash of the conversion
+   */
+  protected SyncDataFileWriter<ExtendedRecord> createDataFileWriter(OutputStream outputStream) throws IOException {
+    return SyncDataFileWriterBuilder.builder()
+        .schema(ExtendedRecord.getClassSchema())
+        .codec(codecFactory.toString())
+        .outputStream(outputStream)
+        .syncInterval(syncInterval)
+        .termDictionary(termDictionary)
+        .contentHash(contentHash)
+        .build()
+        .createSyncDataFileWriter();
+  }
+
+  /** File system of the output path, available during the conversion */
+  protected FileSystem getFileSystem() {
+    return fs;
+  }
+
+  protected Path getOutputPath() {
+    return outputPath;
+  }
+
   private void createMetafile(FileSystem fs, Path metaPath, long numberOfRecords) throws IOException {
     if (metaPath != null) {
-      String info = Metrics.ARCHIVE_TO_ER_COUNT + ": " + numberOfRecords + "\n";
+      String info = Metrics.ARCHIVE_TO_ER_COUNT + ": " + numberOfRecords + "\n"
+          + Metrics.ARCHIVE_TO_ER_HASH + ": " + contentHash.sum() + "\n";
       FsUtils.createFile(fs, metaPath, info);
     }
   }
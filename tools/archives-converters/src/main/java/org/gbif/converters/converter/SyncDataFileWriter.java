@@ -2,7 +2,10 @@ package org.gbif.converters.converter;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.function.Consumer;
 
+import org.apache.avro.file.DataFileStream;
 import org.apache.avro.file.DataFileWriter;
 
 import lombok.AllArgsConstructor;
@@ -13,11 +16,41 @@ import lombok.SneakyThrows;
 public class SyncDataFileWriter<T> implements Closeable {
 
   private final DataFileWriter<T> dataFileWriter;
+  private final WriterFactory<T> partWriterFactory;
+  // called with every appended record, null if nothing listens
+  private final Consumer<T> appendListener;
+
+  /** Creates {@link SyncDataFileWriter} for an output stream */
+  @FunctionalInterface
+  public interface WriterFactory<T> {
+
+    SyncDataFileWriter<T> create(OutputStream outputStream) throws IOException;
+  }
 
   /** Synchronized append method, helps avoid the ArrayIndexOutOfBoundsException */
   @SneakyThrows
   public synchronized void append(T record) {
     dataFileWriter.append(record);
+    if (appendListener != null) {
+      appendListener.accept(record);
+    }
+  }
+
+  /**
+   * Appends all blocks of an avro file with the same schema and codec, without decoding the records, so the records
+   * are not passed to the append listener, the records of a part writer were passed to it by the part writer
+   */
+  @SneakyThrows
+  public synchronized void appendAllFrom(DataFileStream<T> otherFile) {
+    dataFileWriter.appendAllFrom(otherFile, false);
+  }
+
+  /**
+   * Creates a writer with the same schema, codec and sync interval as this one, so its file can be appended to this
+   * writer by {@link #appendAllFrom(DataFileStream)} block by block
+   */
+  public SyncDataFileWriter<T> createPartWriter(OutputStream outputStream) throws IOException {
+    return partWriterFactory.create(outputStream);
   }
 
   @Override
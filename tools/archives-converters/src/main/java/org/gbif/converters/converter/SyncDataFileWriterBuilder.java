@@ -4,16 +4,24 @@ import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import org.gbif.pipelines.core.io.TermDictionary;
+import org.gbif.pipelines.core.io.TermDictionaryEncoding;
+import org.gbif.pipelines.core.utils.AvroCodecUtils;
+import org.gbif.pipelines.core.utils.HashUtils;
+import org.gbif.pipelines.io.avro.ExtendedRecord;
 
 import org.apache.avro.Schema;
-import org.apache.avro.file.CodecFactory;
 import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.io.DatumWriter;
 import org.apache.avro.specific.SpecificDatumWriter;
 
 import lombok.Builder;
 import lombok.NonNull;
 
-@Builder
+@Builder(toBuilder = true)
 public class SyncDataFileWriterBuilder {
 
   @NonNull
@@ -24,15 +32,47 @@ public class SyncDataFileWriterBuilder {
   private OutputStream outputStream;
   private Integer syncInterval;
   private Boolean flushOnEveryBlock;
+  // ExtendedRecords are written with the default term dictionary, see TermDictionaryEncoding
+  private Boolean termDictionary;
+  // sum of the content hashes of the appended ExtendedRecords, shared with the part writers
+  private LongAdder contentHash;
 
+  @SuppressWarnings("unchecked")
   public <T> SyncDataFileWriter<T> createSyncDataFileWriter() throws IOException {
-    DataFileWriter<T> dataFileWriter = new DataFileWriter<>(new SpecificDatumWriter<>(schema));
+    boolean useTermDictionary = Boolean.TRUE.equals(termDictionary);
+    if (useTermDictionary && !ExtendedRecord.getClassSchema().equals(schema)) {
+      throw new IllegalArgumentException("Only ExtendedRecord can be written with the term dictionary");
+    }
+    if (contentHash != null && !ExtendedRecord.getClassSchema().equals(schema)) {
+      throw new IllegalArgumentException("Only ExtendedRecord can be written with the content hash");
+    }
+
+    Schema fileSchema = useTermDictionary ? TermDictionaryEncoding.createSchema(TermDictionary.DEFAULT) : schema;
+    DatumWriter<T> datumWriter = useTermDictionary
+        ? (DatumWriter<T>) TermDictionaryEncoding.writer(TermDictionary.DEFAULT)
+        : new SpecificDatumWriter<>(schema);
+    DataFileWriter<T> dataFileWriter = new DataFileWriter<>(datumWriter);
 
-    dataFileWriter.setCodec(CodecFactory.fromString(codec));
+    dataFileWriter.setCodec(AvroCodecUtils.fromString(codec));
     Optional.ofNullable(flushOnEveryBlock).ifPresent(dataFileWriter::setFlushOnEveryBlock);
     Optional.ofNullable(syncInterval).ifPresent(dataFileWriter::setSyncInterval);
-    dataFileWriter.create(schema, new BufferedOutputStream(outputStream));
+    dataFileWriter.create(fileSchema, new BufferedOutputStream(outputStream));
+
+    return new SyncDataFileWriter<>(dataFileWriter,
+        os -> toBuilder().outputStream(os).build().createSyncDataFileWriter(), createContentHashListener());
+  }
 
-    return new SyncDataFileWriter<>(dataFileWriter);
+  /**
+   * Adds the content hash of every record, seeded with the record id, to the sum, so the sum doesn't depend on the
+   * order of the records, which is different for every parallel conversion, see {@link HashUtils#getContentHash}
+   */
+  private <T> Consumer<T> createContentHashListener() {
+    if (contentHash == null) {
+      return null;
+    }
+    return record -> {
+      ExtendedRecord er = (ExtendedRecord) record;
+      contentHash.add(HashUtils.getContentHash(er, er.getId()));
+    };
   }
 }
@@ -1,17 +1,21 @@
 package org.gbif.converters.parser.xml;
 
-import java.io.File;
+import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.function.Function;
-import java.util.function.Predicate;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.function.Supplier;
 
 import org.gbif.converters.converter.SyncDataFileWriter;
 import org.gbif.converters.parser.xml.parsing.extendedrecord.ConverterTask;
@@ -20,19 +24,33 @@ import org.gbif.converters.parser.xml.parsing.extendedrecord.ParserFileUtils;
 import org.gbif.converters.parser.xml.parsing.validators.UniquenessValidator;
 import org.gbif.pipelines.io.avro.ExtendedRecord;
 
+import org.apache.avro.file.DataFileStream;
+import org.apache.avro.specific.SpecificDatumReader;
+
+import com.google.common.base.Stopwatch;
 import com.google.common.base.Strings;
+import com.google.common.io.ByteStreams;
 import lombok.AllArgsConstructor;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
-/** Parsing xml response files or tar.xz archive and convert to ExtendedRecord avro file */
+/**
+ * Parsing xml response files or tar.xz archive and convert to ExtendedRecord avro file
+ *
+ * <p>Each thread of the executor encodes its records into its own avro part file in a local temp directory, so the
+ * threads don't wait for each other on a shared writer. When all responses are converted, the part files are appended
+ * to the output writer block by block, without decoding the records again.
+ */
 @Slf4j
-@AllArgsConstructor(staticName = "create")
+@RequiredArgsConstructor(staticName = "create")
 public class ExtendedRecordConverter {
 
-  private static final String FILE_PREFIX_RESPONSE = ".response";
-  private static final String FILE_PREFIX_XML = ".xml";
+  // Response files read ahead of the parsing threads, keeps memory bounded when decompressing is faster than parsing
+  private static final int MAX_BUFFERED_RESPONSES = 32;
 
   private final Executor executor;
+  private long maxIds = UniquenessValidator.DEFAULT_MAX_IDS;
+  private long expectedIds;
 
   private ExtendedRecordConverter(int parallelism) {
     this.executor = ExecutorPoolFactory.getInstance(parallelism);
@@ -42,43 +60,117 @@ public class ExtendedRecordConverter {
     return new ExtendedRecordConverter(parallelism);
   }
 
+  /** @param maxIds maximum number of record IDs validated for uniqueness, see {@link UniquenessValidator} */
+  public ExtendedRecordConverter maxIds(long maxIds) {
+    this.maxIds = maxIds;
+    return this;
+  }
+
+  /**
+   * @param expectedIds expected number of records, sizes the Bloom filter of the {@link UniquenessValidator}, if not
+   * set it is estimated from the size of the input
+   */
+  public ExtendedRecordConverter expectedIds(long expectedIds) {
+    this.expectedIds = expectedIds;
+    return this;
+  }
+
   /** @param inputPath path to directory with response files or a tar.xz archive */
   public long toAvro(String inputPath, SyncDataFileWriter<ExtendedRecord> writer) {
     if (Strings.isNullOrEmpty(inputPath)) {
       throw new ParsingException("Input or output stream must not be empty or null!");
     }
 
-    File inputFile = ParserFileUtils.uncompressAndGetInputFile(inputPath);
+    Map<Thread, Part> parts = new ConcurrentHashMap<>();
+    Path partsDir = null;
+    try (UniquenessValidator validator = UniquenessValidator.getNewInstance(
+        getExpectedIds(inputPath), UniquenessValidator.DEFAULT_FPP, maxIds)) {
 
-    try (UniquenessValidator validator = UniquenessValidator.getNewInstance()) {
-      List<File> files = getInputFiles(inputFile);
+      Path dir = Files.createTempDirectory("xml-avro-parts-");
+      partsDir = dir;
+      Supplier<SyncDataFileWriter<ExtendedRecord>> threadWriter =
+          () -> parts.computeIfAbsent(Thread.currentThread(), t -> Part.create(writer, dir)).writer;
 
       AtomicLong counter = new AtomicLong(0);
-
-
-      Function<File, ConverterTask> taskFn = f -> new ConverterTask(f, writer, validator, counter);
-
-      // Run async process - read a file, convert to ExtendedRecord and write to Avro
-      CompletableFuture[] futures = files.stream()
-              .map(file -> CompletableFuture.runAsync(taskFn.apply(file), executor))
-              .toArray(CompletableFuture[]::new);
+      Semaphore buffered = new Semaphore(MAX_BUFFERED_RESPONSES);
+      List<CompletableFuture<Void>> futures = new ArrayList<>();
+
+      // Read a response file from the folder or archive, parse it async, convert to ExtendedRecord and write to Avro
+      Stopwatch convertWatch = Stopwatch.createStarted();
+      ParserFileUtils.forEachResponse(inputPath, (name, is) -> {
+        byte[] response = ByteStreams.toByteArray(is);
+        buffered.acquireUninterruptibly();
+        ConverterTask task = new ConverterTask(response, threadWriter, validator, counter);
+        futures.add(CompletableFuture.runAsync(task, executor).whenComplete((r, e) -> buffered.release()));
+      });
 
       // Wait all threads
-      CompletableFuture.allOf(futures).get();
+      CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get();
+      convertWatch.stop();
+
+      // Merge the part files of the threads block by block
+      Stopwatch mergeWatch = Stopwatch.createStarted();
+      SpecificDatumReader<ExtendedRecord> datumReader = new SpecificDatumReader<>(ExtendedRecord.class);
+      for (Part part : parts.values()) {
+        part.writer.close();
+        try (InputStream is = new BufferedInputStream(Files.newInputStream(part.path));
+            DataFileStream<ExtendedRecord> stream = new DataFileStream<>(is, datumReader)) {
+          writer.appendAllFrom(stream);
+        }
+      }
+      mergeWatch.stop();
+
+      log.info("Converted [{}] records, [{}] part files - convert: {} ms, merge: {} ms", counter.get(), parts.size(),
+          convertWatch.elapsed(TimeUnit.MILLISECONDS), mergeWatch.elapsed(TimeUnit.MILLISECONDS));
 
       return counter.get();
 
     } catch (Exception ex) {
       log.error(ex.getMessage(), ex);
       throw new ParsingException(ex);
+    } finally {
+      deleteParts(parts, partsDir);
     }
   }
 
-  /** Traverse the input directory and gets all the files.*/
-  private List<File> getInputFiles(File inputhFile) throws IOException {
-    Predicate<Path> prefixPr = x -> x.toString().endsWith(FILE_PREFIX_RESPONSE) || x.toString().endsWith(FILE_PREFIX_XML);
-    try(Stream<Path> walk = Files.walk(inputhFile.toPath()).filter(file -> file.toFile().isFile() && prefixPr.test(file))) {
-      return walk.map(Path::toFile).collect(Collectors.toList());
+  private long getExpectedIds(String inputPath) {
+    long expected = expectedIds > 0 ? expectedIds : ParserFileUtils.estimateRecords(inputPath);
+    log.info("Expecting about [{}] records", expected);
+    return Math.min(expected, maxIds);
+  }
+
+  private static void deleteParts(Map<Thread, Part> parts, Path partsDir) {
+    for (Part part : parts.values()) {
+      try {
+        part.writer.close();
+        Files.deleteIfExists(part.path);
+      } catch (IOException ex) {
+        log.warn("Can't delete the part file {}", part.path, ex);
+      }
+    }
+    if (partsDir != null) {
+      try {
+        Files.deleteIfExists(partsDir);
+      } catch (IOException ex) {
+        log.warn("Can't delete the directory {}", partsDir, ex);
+      }
+    }
+  }
+
+  /** Avro part file of a single thread */
+  @AllArgsConstructor
+  private static class Part {
+
+    private final Path path;
+    private final SyncDataFileWriter<ExtendedRecord> writer;
+
+    private static Part create(SyncDataFileWriter<ExtendedRecord> writer, Path dir) {
+      try {
+        Path path = Files.createTempFile(dir, "part-", ".avro");
+        return new Part(path, writer.createPartWriter(Files.newOutputStream(path)));
+      } catch (IOException ex) {
+        throw new UncheckedIOException(ex);
+      }
     }
   }
 }
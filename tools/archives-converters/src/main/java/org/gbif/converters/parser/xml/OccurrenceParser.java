@@ -15,21 +15,19 @@
  */
 package org.gbif.converters.parser.xml;
 
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
-import java.util.Optional;
-import java.util.regex.Pattern;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 import java.util.zip.GZIPInputStream;
 
 import org.gbif.api.exception.ServiceUnavailableException;
@@ -38,34 +36,30 @@ import org.gbif.converters.parser.xml.model.RawOccurrenceRecord;
 import org.gbif.converters.parser.xml.parsing.RawXmlOccurrence;
 import org.gbif.converters.parser.xml.parsing.response.file.ParsedSearchResponse;
 import org.gbif.converters.parser.xml.parsing.xml.XmlFragmentParser;
-import org.gbif.converters.parser.xml.util.XmlSanitizingReader;
-import org.gbif.utils.file.CharsetDetection;
+import org.gbif.converters.parser.xml.util.XmlCharsetDetector;
 
 import org.apache.commons.digester.Digester;
 import org.apache.commons.digester.NodeCreateRule;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
-import com.sun.org.apache.xerces.internal.impl.io.MalformedByteSequenceException;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.TransformerException;
 import lombok.extern.slf4j.Slf4j;
 
 /**
  * Entry point into the parsing of raw occurrence records as retrieved from publishers. Will attempt
- * to determine both XML encodings and schema type. Parse happens in two steps - first extracts each
- * record element into a RawXmlOccurrence, and then parses each of those into RawOccurrenceRecords.
+ * to determine both XML encodings (see {@link XmlCharsetDetector}) and schema type. Parse happens in two steps - first
+ * extracts each record element into a RawXmlOccurrence, and then parses each of those into RawOccurrenceRecords.
  */
 @Slf4j
 public class OccurrenceParser {
 
-  private static final String ENCONDING_EQ = "encoding=";
-  private static final Pattern ENCODING_PATTERN = Pattern.compile(ENCONDING_EQ);
-  private static final Pattern REPLACE_QUOTES_PAT = Pattern.compile("[\"']");
-
   public static final String ADD_RECORD_AS_XML = "addRecordAsXml";
   public static final String SET_ABCD_1_HEADER = "setAbcd1Header";
 
+  private final AtomicLong reparseCounter = new AtomicLong(0);
+
   public static List<RawXmlOccurrence> parse(File file) {
     return new OccurrenceParser().parseFile(file);
   }
@@ -117,22 +111,24 @@ public class OccurrenceParser {
     }
   }
 
-  private ParsedSearchResponse read(File gzipFile, Charset charset) {
-    ParsedSearchResponse responseBody = null;
-    log.debug("Trying charset [{}]", charset);
+  /**
+   * Decompresses and parses the response once, if the charset isn't known yet it is detected from a bounded prefix of
+   * the decompressed stream
+   */
+  private ParsedSearchResponse read(File gzipFile, AtomicReference<Charset> charset) {
     try (FileInputStream fis = new FileInputStream(gzipFile);
-        GZIPInputStream inputStream = new GZIPInputStream(fis);
-        BufferedReader inputReader = new BufferedReader(new XmlSanitizingReader(
-            new InputStreamReader(inputStream, charset)))) {
-      responseBody = new ParsedSearchResponse();
-      parse(new InputSource(inputReader), responseBody);
-      log.debug("Success with charset [{}] - skipping any others", charset);
+        GZIPInputStream gzipStream = new GZIPInputStream(fis);
+        BufferedInputStream inputStream = new BufferedInputStream(gzipStream, XmlCharsetDetector.PREFIX_SIZE)) {
+      if (charset.get() == null) {
+        charset.set(XmlCharsetDetector.detect(inputStream));
+      }
+      log.debug("Using charset [{}]", charset.get());
+      ParsedSearchResponse responseBody = new ParsedSearchResponse();
+      parse(new InputSource(XmlCharsetDetector.newReader(inputStream, charset.get())), responseBody);
       return responseBody;
     } catch (SAXException e) {
-      log.debug("SAX exception when parsing gzipFile [{}] using encoding [{}] - trying another charset",
-          gzipFile.getAbsolutePath(), charset, e);
-    } catch (MalformedByteSequenceException e) {
-      log.debug("Malformed utf-8 byte when parsing with encoding [{}] - trying another charset", charset);
+      log.debug("SAX exception when parsing gzipFile [{}] using encoding [{}]", gzipFile.getAbsolutePath(),
+          charset.get(), e);
     } catch (IOException ex) {
       log.warn("Error reading input files", ex);
     } catch (ParserConfigurationException e) {
@@ -141,70 +137,41 @@ public class OccurrenceParser {
     } catch (TransformerException e) {
       log.warn("Could not create parsing transformer for [{}] - skipping gzipFile", gzipFile.getAbsolutePath(), e);
     }
-    return responseBody;
+    return null;
   }
 
-  /** Parses a single response gzipFile and returns a List of the contained RawXmlOccurrences. */
+  /**
+   * Parses a single response gzipFile and returns a List of the contained RawXmlOccurrences. The charset is detected
+   * once, see {@link XmlCharsetDetector}, and malformed bytes are replaced. Only if the xml can't be parsed at all, the
+   * file is parsed one more time as latin1 (ISO-8859-1), which can decode any byte sequence.
+   */
   public List<RawXmlOccurrence> parseResponseFileToRawXml(File gzipFile) {
 
     log.debug(">> parseResponseFileToRawXml [{}]", gzipFile.getAbsolutePath());
-    try {
-      Optional<ParsedSearchResponse> responseBody =
-          getCharsets(gzipFile).stream().map(charset -> read(gzipFile, charset))
-              .filter(Objects::nonNull).findFirst();
-      if (!responseBody.isPresent()) {
-        log.warn("Could not parse gzipFile (malformed parsing) - skipping gzipFile [{}]", gzipFile.getAbsolutePath());
+    AtomicReference<Charset> charset = new AtomicReference<>();
+    ParsedSearchResponse responseBody = read(gzipFile, charset);
+
+    if (responseBody == null && charset.get() != null && !StandardCharsets.ISO_8859_1.equals(charset.get())) {
+      if (reparseCounter.incrementAndGet() == 1) {
+        log.info("Response files which can't be parsed in their charset are parsed again as [{}], see getReparseCount",
+            StandardCharsets.ISO_8859_1);
       }
-      log.debug("<< parseResponseFileToRawXml [{}]", gzipFile.getAbsolutePath());
-      return responseBody.map(ParsedSearchResponse::getRecords).orElse(Collections.emptyList());
-    } catch (IOException e) {
-      log.warn("Could not find response gzipFile [{}] - skipping gzipFile", gzipFile.getAbsolutePath(), e);
+      log.debug("Could not parse gzipFile [{}] as [{}], parsing it again as [{}]", gzipFile.getAbsolutePath(),
+          charset.get(), StandardCharsets.ISO_8859_1);
+      charset.set(StandardCharsets.ISO_8859_1);
+      responseBody = read(gzipFile, charset);
     }
-    return Collections.emptyList();
-  }
-
-  /**
-   * Utility method to extract character encodings from a gzip file. Charsets are a nightmare and
-   * users can't be trusted, so strategy is try these encodings in order until one of them
-   * (hopefully) works (note the last two could be repeats of the first two): - utf-8 - latin1
-   * (iso-8859-1) - the declared encoding from the parsing itself - a guess at detecting the charset
-   * from the raw gzipFile bytes
-   */
-  private static List<Charset> getCharsets(File gzipFile) throws IOException {
-    List<Charset> charsets =
-        Stream.of(StandardCharsets.UTF_8, StandardCharsets.ISO_8859_1).collect(Collectors.toList());
 
-    // read parsing declaration
-    try (FileInputStream fis = new FileInputStream(gzipFile);
-        GZIPInputStream inputStream = new GZIPInputStream(fis);
-        InputStreamReader inputStreamReader = new InputStreamReader(inputStream, Charset.defaultCharset());
-        BufferedReader bufferedReader = new BufferedReader(inputStreamReader)) {
-      boolean gotEncoding = false;
-      int lineCount = 0;
-      while (bufferedReader.ready() && !gotEncoding && lineCount < 5) {
-        String line = bufferedReader.readLine();
-        lineCount++;
-        if (line != null && line.contains(ENCONDING_EQ)) {
-          String encoding = ENCODING_PATTERN.split(line, 0)[1];
-          // drop trailing ?>
-          encoding = encoding.substring(0, encoding.length() - 2);
-          // drop quotes
-          encoding = REPLACE_QUOTES_PAT.matcher(encoding).replaceAll("").trim();
-          log.debug("Found encoding [{}] in parsing declaration", encoding);
-          try {
-            charsets.add(Charset.forName(encoding));
-          } catch (Exception e) {
-            log.debug(
-                "Could not find supported charset matching detected encoding of [{}] - trying other guesses instead",
-                encoding);
-          }
-          gotEncoding = true;
-        }
-      }
+    if (responseBody == null) {
+      log.warn("Could not parse gzipFile (malformed parsing) - skipping gzipFile [{}]", gzipFile.getAbsolutePath());
     }
-    // attempt detection from bytes
-    charsets.add(CharsetDetection.detectEncoding(gzipFile));
-    return charsets;
+    log.debug("<< parseResponseFileToRawXml [{}], charset [{}]", gzipFile.getAbsolutePath(), charset.get());
+    return responseBody == null ? Collections.emptyList() : responseBody.getRecords();
+  }
+
+  /** Number of times a response file had to be parsed again by this parser, ideally it is 0 */
+  public long getReparseCount() {
+    return reparseCounter.get();
   }
 
   /**
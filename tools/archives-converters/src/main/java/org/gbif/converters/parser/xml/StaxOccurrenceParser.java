@@ -0,0 +1,238 @@
+package org.gbif.converters.parser.xml;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+import org.gbif.api.vocabulary.OccurrenceSchemaType;
+import org.gbif.converters.parser.xml.constants.ExtractionSimpleXPaths;
+import org.gbif.converters.parser.xml.constants.ResponseElementEnum;
+import org.gbif.converters.parser.xml.model.RawOccurrenceRecord;
+import org.gbif.converters.parser.xml.parsing.RawXmlOccurrence;
+import org.gbif.converters.parser.xml.parsing.response.file.ResponseSchemaDetector;
+import org.gbif.converters.parser.xml.parsing.xml.XmlFragment;
+import org.gbif.converters.parser.xml.parsing.xml.XmlFragmentParser;
+import org.gbif.converters.parser.xml.util.XmlCharsetDetector;
+
+import org.xml.sax.helpers.AttributesImpl;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Streaming alternative to {@link OccurrenceParser}. Reads ABCD and DwC responses with a StAX reader in a single pass,
+ * each record element is buffered as an {@link XmlFragment}, fed straight into the record Digester and emitted to the
+ * consumer, so a response is never held in memory as a whole and records are never parsed twice.
+ *
+ * <p>The xml of a record is the same as of {@link OccurrenceParser}, but the institution code, collection code and
+ * catalog number of a {@link RawXmlOccurrence} are filled from the record, {@link OccurrenceParser} leaves them null.
+ *
+ * <pre>{@code
+ * new StaxOccurrenceParser().parseFile(file, (xml, records) -> records.forEach(...));
+ * }</pre>
+ */
+@Slf4j
+public class StaxOccurrenceParser {
+
+  private static final Set<String> RECORD_ELEMENTS =
+      new HashSet<>(
+          Arrays.asList(
+              ExtractionSimpleXPaths.ABCD_RECORD_ELEMENT,
+              ExtractionSimpleXPaths.DWC_1_0_RECORD_ELEMENT,
+              ExtractionSimpleXPaths.DWC_MANIS_RECORD_ELEMENT,
+              ExtractionSimpleXPaths.DWC_1_4_RECORD_ELEMENT,
+              ExtractionSimpleXPaths.DWC_2009_RECORD_ELEMENT));
+
+  private final XMLInputFactory factory;
+
+  public StaxOccurrenceParser() {
+    factory = XMLInputFactory.newInstance();
+    factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+    factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+  }
+
+  /**
+   * Parses a xml file of uncompressed ABCD or DwC occurrences
+   *
+   * @param file xml response file
+   * @param consumer receives each record as xml and as parsed {@link RawOccurrenceRecord}s
+   * @return number of parsed xml records
+   * @throws ParsingException if there were any problems during parsing the file
+   */
+  public long parseFile(File file, BiConsumer<RawXmlOccurrence, List<RawOccurrenceRecord>> consumer) {
+    try (InputStream inputStream = new FileInputStream(file)) {
+      return parseStream(inputStream, consumer);
+    } catch (IOException ex) {
+      throw new ParsingException("Parsing failed", ex);
+    }
+  }
+
+  /**
+   * Parses a stream of uncompressed ABCD or DwC occurrences, the charset is detected once from a bounded prefix of the
+   * stream, see {@link XmlCharsetDetector}, malformed bytes are replaced and invalid xml chars are dropped
+   *
+   * @param is stream to parse
+   * @param consumer receives each record as xml and as parsed {@link RawOccurrenceRecord}s
+   * @return number of parsed xml records
+   * @throws ParsingException if there were any problems during parsing the stream
+   */
+  public long parseStream(InputStream is, BiConsumer<RawXmlOccurrence, List<RawOccurrenceRecord>> consumer) {
+    Objects.requireNonNull(is, "is can't be null");
+    try {
+      return parseReader(XmlCharsetDetector.newReader(is), consumer);
+    } catch (IOException ex) {
+      throw new ParsingException("Parsing failed", ex);
+    }
+  }
+
+  /**
+   * Parses already decoded ABCD or DwC occurrences
+   *
+   * @param reader reader to parse
+   * @param consumer receives each record as xml and as parsed {@link RawOccurrenceRecord}s
+   * @return number of parsed xml records
+   * @throws ParsingException if there were any problems during parsing the stream
+   */
+  public long parseReader(Reader reader, BiConsumer<RawXmlOccurrence, List<RawOccurrenceRecord>> consumer) {
+    Objects.requireNonNull(reader, "reader can't be null");
+    try {
+      return parse(factory.createXMLStreamReader(reader), consumer);
+    } catch (XMLStreamException ex) {
+      throw new ParsingException("Parsing failed", ex);
+    }
+  }
+
+  private long parse(XMLStreamReader reader, BiConsumer<RawXmlOccurrence, List<RawOccurrenceRecord>> consumer)
+      throws XMLStreamException {
+    ResponseSchemaDetector schemaDetector = new ResponseSchemaDetector();
+    OccurrenceSchemaType schemaType = null;
+    Map<ResponseElementEnum, String> responseElements = null;
+    XmlFragment abcd1Header = null;
+    long counter = 0;
+
+    try {
+      while (reader.hasNext()) {
+        if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+          continue;
+        }
+
+        String name = reader.getLocalName();
+        if (ExtractionSimpleXPaths.ABCD_HEADER_ELEMENT.equals(name)) {
+          abcd1Header = readFragment(reader);
+        } else if (RECORD_ELEMENTS.contains(name)) {
+          XmlFragment fragment = readFragment(reader);
+          if (abcd1Header != null) {
+            fragment = wrapAbcd1(abcd1Header, fragment);
+          }
+
+          String xml = fragment.toXml();
+          log.debug("Serialized record: [{}]", xml);
+
+          if (schemaType == null) {
+            schemaType = schemaDetector.detectSchema(xml);
+            if (schemaType != null) {
+              log.debug("Setting schema to [{}]", schemaType);
+              responseElements = schemaDetector.getResponseElements(schemaType);
+            }
+          }
+
+          if (responseElements != null) {
+            RawXmlOccurrence record = new RawXmlOccurrence();
+            record.setSchemaType(schemaType);
+            record.setInstitutionCode(getText(fragment, responseElements, ResponseElementEnum.INSTITUTION_CODE));
+            record.setCollectionCode(getText(fragment, responseElements, ResponseElementEnum.COLLECTION_CODE));
+            record.setCatalogNumber(getText(fragment, responseElements, ResponseElementEnum.CATALOG_NUMBER));
+            record.setXml(xml);
+
+            consumer.accept(record, XmlFragmentParser.parseRecord(fragment, schemaType));
+            counter++;
+          }
+        }
+      }
+    } finally {
+      reader.close();
+    }
+    return counter;
+  }
+
+  /** Reads the element the reader points at, including all its children, and leaves the reader at its end tag */
+  private static XmlFragment readFragment(XMLStreamReader reader) throws XMLStreamException {
+    XmlFragment fragment = new XmlFragment();
+    int depth = 0;
+    int event = reader.getEventType();
+    while (true) {
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        fragment.startElement(reader.getLocalName(), readAttributes(reader));
+        depth++;
+      } else if (event == XMLStreamConstants.END_ELEMENT) {
+        fragment.endElement(reader.getLocalName());
+        depth--;
+      } else if ((event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA)
+          && !reader.isWhiteSpace()) {
+        // whitespace only text between elements is dropped, the same way NodeCreateRule does
+        fragment.characters(reader.getText());
+      }
+
+      if (depth == 0 || !reader.hasNext()) {
+        break;
+      }
+      event = reader.next();
+    }
+    return fragment;
+  }
+
+  /**
+   * Attributes are stored without namespaces, except the predefined xml prefix, like xml:lang, which is kept by the DOM
+   * serialization too. Namespace declarations are never reported by StAX.
+   */
+  private static AttributesImpl readAttributes(XMLStreamReader reader) {
+    AttributesImpl attributes = new AttributesImpl();
+    for (int i = 0; i < reader.getAttributeCount(); i++) {
+      String name = reader.getAttributeLocalName(i);
+      if (XMLConstants.XML_NS_URI.equals(reader.getAttributeNamespace(i))) {
+        String qName = XMLConstants.XML_NS_PREFIX + ":" + name;
+        attributes.addAttribute(XMLConstants.XML_NS_URI, name, qName, "CDATA", reader.getAttributeValue(i));
+      } else {
+        attributes.addAttribute("", name, name, "CDATA", reader.getAttributeValue(i));
+      }
+    }
+    return attributes;
+  }
+
+  /** ABCD 1.2 keeps the source institution in a header, which is copied into every record */
+  private static XmlFragment wrapAbcd1(XmlFragment abcd1Header, XmlFragment record) {
+    XmlFragment fragment = new XmlFragment();
+    fragment.startElement("occurrence");
+    fragment.startElement("DataSource");
+    fragment.append(abcd1Header);
+    fragment.endElement("DataSource");
+    fragment.append(record);
+    fragment.endElement("occurrence");
+    return fragment;
+  }
+
+  /**
+   * Response elements are kept as "<ElementName" for string searching, the bracket is dropped here. The DOM based
+   * parser searches the nodes with the bracket and never finds them.
+   */
+  private static String getText(
+      XmlFragment fragment, Map<ResponseElementEnum, String> responseElements, ResponseElementEnum element) {
+    String value = responseElements.get(element);
+    return value == null ? null : fragment.getFirstText(value.substring(1));
+  }
+}
@@ -17,6 +17,14 @@ public class ExtractionSimpleXPaths {
   public static final String DWC_1_4_RECORD_XPATH = "*/DarwinRecord";
   public static final String DWC_2009_RECORD_XPATH = "*/SimpleDarwinRecord";
 
+  // local names of the same elements, used by the streaming parser
+  public static final String ABCD_RECORD_ELEMENT = "Unit";
+  public static final String ABCD_HEADER_ELEMENT = "OriginalSource";
+  public static final String DWC_1_0_RECORD_ELEMENT = "record";
+  public static final String DWC_MANIS_RECORD_ELEMENT = "record";
+  public static final String DWC_1_4_RECORD_ELEMENT = "DarwinRecord";
+  public static final String DWC_2009_RECORD_ELEMENT = "SimpleDarwinRecord";
+
   public static final String DWC_1_0_RECORD = "<record";
   public static final String DWC_1_0_INSTITUTION = "<InstitutionCode";
   public static final String DWC_1_0_COLLECTION = "<CollectionCode";
@@ -1,60 +1,60 @@
 package org.gbif.converters.parser.xml.parsing.extendedrecord;
 
-import java.io.File;
+import java.io.ByteArrayInputStream;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 import org.gbif.converters.converter.SyncDataFileWriter;
-import org.gbif.converters.parser.xml.OccurrenceParser;
+import org.gbif.converters.parser.xml.StaxOccurrenceParser;
 import org.gbif.converters.parser.xml.model.RawOccurrenceRecord;
 import org.gbif.converters.parser.xml.parsing.validators.UniquenessValidator;
-import org.gbif.converters.parser.xml.parsing.xml.XmlFragmentParser;
 import org.gbif.pipelines.io.avro.ExtendedRecord;
 
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 /**
- * The task for CompletableFuture which reads a xml response file, parses and converts to
- * ExtendedRecord avro file
+ * The task for CompletableFuture which parses the content of a xml response file and converts to
+ * ExtendedRecord avro file. The writer is requested in the thread running the task, so each thread can append to its
+ * own avro part file.
  */
 @Slf4j
 @AllArgsConstructor
 public class ConverterTask implements Runnable {
 
-  private final File inputFile;
-  private final SyncDataFileWriter<ExtendedRecord> dataFileWriter;
+  private final byte[] response;
+  private final Supplier<SyncDataFileWriter<ExtendedRecord>> writerSupplier;
   private final UniquenessValidator validator;
   private final AtomicLong counter;
 
   /**
-   * Converts list of {@link org.gbif.converters.parser.xml.parsing.RawXmlOccurrence} into list of {@link
+   * Streams {@link org.gbif.converters.parser.xml.parsing.RawXmlOccurrence}s as lists of {@link
    * RawOccurrenceRecord} and appends AVRO file
    */
   @Override
   public void run() {
-    new OccurrenceParser()
-        .parseFile(inputFile)
-        .stream()
-        .map(XmlFragmentParser::parseRecord)
-        .forEach(this::appendRawOccurrenceRecords);
+    SyncDataFileWriter<ExtendedRecord> dataFileWriter = writerSupplier.get();
+    new StaxOccurrenceParser().parseStream(new ByteArrayInputStream(response),
+        (xml, records) -> appendRawOccurrenceRecords(records, dataFileWriter));
   }
 
   /**
    * Converts list of {@link RawOccurrenceRecord} into list of {@link ExtendedRecord} and appends AVRO file
    */
-  private void appendRawOccurrenceRecords(List<RawOccurrenceRecord> records) {
+  private void appendRawOccurrenceRecords(List<RawOccurrenceRecord> records,
+      SyncDataFileWriter<ExtendedRecord> dataFileWriter) {
     records
         .stream()
         .map(ExtendedRecordConverter::from)
         .filter(extendedRecord -> validator.isUnique(extendedRecord.getId()))
-        .forEach(this::appendExtendedRecord);
+        .forEach(record -> appendExtendedRecord(record, dataFileWriter));
   }
 
   /**
    * Converts {@link ExtendedRecord#getId} into id hash, appends AVRO file and counts the number of records
    */
-  private void appendExtendedRecord(ExtendedRecord record) {
+  private void appendExtendedRecord(ExtendedRecord record, SyncDataFileWriter<ExtendedRecord> dataFileWriter) {
     if (!record.getId().equals(ExtendedRecordConverter.getRecordIdError())) {
       dataFileWriter.append(record);
       counter.incrementAndGet();
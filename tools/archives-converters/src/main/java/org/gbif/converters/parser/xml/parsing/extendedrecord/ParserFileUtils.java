@@ -1,63 +1,157 @@
 package org.gbif.converters.parser.xml.parsing.extendedrecord;
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
-import java.util.function.BinaryOperator;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.gbif.converters.parser.xml.ParsingException;
 
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.apache.commons.compress.compressors.xz.XZCompressorInputStream;
+
 import lombok.AccessLevel;
 import lombok.NoArgsConstructor;
-import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
 @NoArgsConstructor(access = AccessLevel.PRIVATE)
 public class ParserFileUtils {
 
-  private static final BinaryOperator<String> UNCOMPRESS =
-      (inPath, outPath) -> String.format("tar -xf %s -C %s", inPath, outPath);
-  private static final String ARCHIVE_PREFIX = ".tar.xz";
-  private static final String TMP_PATH = "/tmp/";
+  private static final String ARCHIVE_XZ = ".tar.xz";
+  private static final String ARCHIVE_GZ = ".tar.gz";
+  private static final String ARCHIVE_TGZ = ".tgz";
+  private static final String EXT_RESPONSE = ".response";
+  private static final String EXT_XML = ".xml";
+  private static final int BUFFER_SIZE = 64 * 1024;
+  // An ABCD unit takes about 3kb of xml, archives of xml responses compress 10-20 times
+  private static final long BYTES_PER_RECORD = 2 * 1024L;
+  private static final long ARCHIVE_COMPRESSION_RATIO = 20L;
+
+  /** Receives a single response file, the stream is only valid during the call and must not be closed */
+  @FunctionalInterface
+  public interface ResponseConsumer {
+
+    void accept(String name, InputStream inputStream) throws IOException;
+  }
 
   /**
+   * Streams every *.response or *.xml file of a directory or a tar.xz (tar.gz) archive to the consumer. Archive entries
+   * are decompressed in-process and handed over one by one, nothing is extracted to disk.
+   *
    * @param inputPath path to a folder with xmls or a tar.xz archive
-   * @return the new File object, path to xml files folder
+   * @param consumer receives the name and the content of each response file
+   * @return number of response files
    */
-  public static File uncompressAndGetInputFile(String inputPath) {
-    // Check directory
+  public static long forEachResponse(String inputPath, ResponseConsumer consumer) {
+    File inputFile = getInputFile(inputPath);
+    try {
+      if (inputFile.isFile()) {
+        return forEachArchiveEntry(inputFile, consumer);
+      }
+      return forEachFile(inputFile, consumer);
+    } catch (IOException ex) {
+      throw new ParsingException("Could not read " + inputFile.getAbsolutePath(), ex);
+    }
+  }
+
+  /**
+   * Estimates the number of records from the size of the response files or the archive, without reading them. The
+   * estimate is rather too high than too low, it is meant for sizing, e.g. the Bloom filter of the uniqueness validator.
+   *
+   * @param inputPath path to a folder with xmls or a tar.xz archive
+   * @return estimated number of records, at least 1
+   */
+  public static long estimateRecords(String inputPath) {
+    File inputFile = getInputFile(inputPath);
+    if (inputFile.isFile()) {
+      return Math.max(inputFile.length() * ARCHIVE_COMPRESSION_RATIO / BYTES_PER_RECORD, 1L);
+    }
+    try (Stream<Path> walk = Files.walk(inputFile.toPath())) {
+      long bytes = walk.filter(p -> p.toFile().isFile() && isResponse(p.toString()))
+          .mapToLong(p -> p.toFile().length())
+          .sum();
+      return Math.max(bytes / BYTES_PER_RECORD, 1L);
+    } catch (IOException ex) {
+      throw new ParsingException("Could not read " + inputFile.getAbsolutePath(), ex);
+    }
+  }
+
+  private static File getInputFile(String inputPath) {
     File inputFile = new File(inputPath);
     if (!inputFile.exists()) {
       throw new ParsingException("Directory or file " + inputFile.getAbsolutePath() + " does not exist");
     }
+    return inputFile;
+  }
 
-    // Uncompress if it is a tar.xz
-    if (inputFile.isFile()) {
-      if (!inputFile.getPath().endsWith(ARCHIVE_PREFIX)) {
-        throw new ParsingException("Wrong archive extension -" + inputFile.getAbsolutePath());
+  /** Streams the response files of a tar.xz or tar.gz archive, entry by entry */
+  private static long forEachArchiveEntry(File inputFile, ResponseConsumer consumer) throws IOException {
+    log.info("Streaming the archive {}", inputFile.getAbsolutePath());
+    long counter = 0;
+    try (InputStream fis = new BufferedInputStream(new FileInputStream(inputFile), BUFFER_SIZE);
+        InputStream cis = decompress(inputFile, fis);
+        TarArchiveInputStream tis = new TarArchiveInputStream(cis)) {
+      TarArchiveEntry entry;
+      while ((entry = tis.getNextTarEntry()) != null) {
+        if (entry.isFile() && isResponse(entry.getName())) {
+          consumer.accept(entry.getName(), new NonClosingInputStream(tis));
+          counter++;
+        }
       }
-      return uncompress(inputFile);
     }
+    log.info("The archive has been read, {} response files", counter);
+    return counter;
+  }
 
-    return inputFile;
+  /** Streams the response files of a directory, file by file */
+  private static long forEachFile(File inputFile, ResponseConsumer consumer) throws IOException {
+    List<Path> files;
+    try (Stream<Path> walk = Files.walk(inputFile.toPath())) {
+      files = walk.filter(p -> p.toFile().isFile() && isResponse(p.toString())).collect(Collectors.toList());
+    }
+    for (Path file : files) {
+      try (InputStream is = new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE)) {
+        consumer.accept(file.toString(), new NonClosingInputStream(is));
+      }
+    }
+    return files.size();
   }
 
-  /**
-   * Uncompress a tar.xz archive
-   *
-   * @param inputFile - *.tar.xz file
-   * @return the new File object, path to uncompressed files folder
-   */
-  @SneakyThrows
-  public static File uncompress(File inputFile) {
-    File parentFile = new File(inputFile.getParentFile(), TMP_PATH);
-    Files.createDirectories(parentFile.toPath());
-    String cmd = UNCOMPRESS.apply(inputFile.getAbsolutePath(), parentFile.getAbsolutePath());
+  private static InputStream decompress(File inputFile, InputStream is) throws IOException {
+    String path = inputFile.getPath();
+    if (path.endsWith(ARCHIVE_XZ)) {
+      return new XZCompressorInputStream(is);
+    }
+    if (path.endsWith(ARCHIVE_GZ) || path.endsWith(ARCHIVE_TGZ)) {
+      return new GzipCompressorInputStream(is);
+    }
+    throw new ParsingException("Wrong archive extension -" + inputFile.getAbsolutePath());
+  }
 
-    log.info("Uncompressing a tar.xz archive {}", cmd);
-    Runtime.getRuntime().exec(cmd).waitFor();
-    log.info("The archive has been uncompressed");
+  private static boolean isResponse(String name) {
+    return name.endsWith(EXT_RESPONSE) || name.endsWith(EXT_XML);
+  }
 
-    return parentFile;
+  /** Keeps consumers from closing the archive stream together with an entry */
+  private static class NonClosingInputStream extends FilterInputStream {
+
+    private NonClosingInputStream(InputStream in) {
+      super(in);
+    }
+
+    @Override
+    public void close() {
+      // the underlying stream is closed by its owner
+    }
   }
 }
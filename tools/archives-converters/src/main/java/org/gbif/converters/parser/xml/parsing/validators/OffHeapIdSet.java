@@ -0,0 +1,191 @@
+package org.gbif.converters.parser.xml.parsing.validators;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Exact set of ids kept off the java heap. The id bytes are appended to pages memory-mapped from a temp file, so the
+ * OS can write them out under memory pressure, and an open addressing table in direct memory keeps the hash and the
+ * offset of every id.
+ *
+ * <p>When the caller already knows that an id is new, e.g. from a Bloom filter, {@link #addNew(byte[], int)} only looks
+ * for a free slot and never reads stored ids back. The class is not thread safe.
+ *
+ * <p>The table takes 12 bytes of direct memory per slot and grows up to the size needed for the maximum number of ids,
+ * about 16 bytes per id. Adding more ids than the maximum fails instead of allocating more memory.
+ */
+class OffHeapIdSet implements AutoCloseable {
+
+  private static final int PAGE_SIZE = 64 * 1024 * 1024;
+  private static final int MIN_CAPACITY = 1 << 10;
+  private static final int MAX_CAPACITY = 1 << 27;
+  private static final double LOAD_FACTOR = 0.75;
+
+  /** Upper limit of the maximum number of ids, the table can't have more than {@link #MAX_CAPACITY} slots */
+  static final long MAX_IDS = (long) (MAX_CAPACITY * LOAD_FACTOR);
+
+  private final long maxIds;
+  private final int maxCapacity;
+  private final Path file;
+  private final FileChannel channel;
+  private final List<MappedByteBuffer> pages = new ArrayList<>();
+  private long arenaSize;
+
+  // offsets are stored + 1, so 0 marks a free slot
+  private IntBuffer hashes;
+  private LongBuffer offsets;
+  private int capacity;
+  private int size;
+
+  /**
+   * @param expectedIds number of ids the table is sized for upfront
+   * @param maxIds maximum number of ids, from 1 to {@link #MAX_IDS}
+   */
+  OffHeapIdSet(long expectedIds, long maxIds) throws IOException {
+    if (maxIds < 1 || maxIds > MAX_IDS) {
+      throw new IllegalArgumentException("The maximum number of ids must be from 1 to " + MAX_IDS + " - " + maxIds);
+    }
+    this.maxIds = maxIds;
+    this.maxCapacity = capacityFor(maxIds);
+    this.capacity = capacityFor(Math.min(expectedIds, maxIds));
+    this.hashes = ByteBuffer.allocateDirect(capacity * Integer.BYTES).asIntBuffer();
+    this.offsets = ByteBuffer.allocateDirect(capacity * Long.BYTES).asLongBuffer();
+    this.file = Files.createTempFile("uniqueness-", ".ids");
+    this.channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+  }
+
+  /** @return true if the id wasn't in the set */
+  boolean add(byte[] id, int hash) {
+    return add(id, hash, true);
+  }
+
+  /** Adds an id which is known to be absent, without comparing it to stored ids */
+  void addNew(byte[] id, int hash) {
+    add(id, hash, false);
+  }
+
+  int size() {
+    return size;
+  }
+
+  private boolean add(byte[] id, int hash, boolean compare) {
+    int mask = capacity - 1;
+    int slot = hash & mask;
+    long offset;
+    while ((offset = offsets.get(slot)) != 0) {
+      if (compare && hashes.get(slot) == hash && equalsAt(offset - 1, id)) {
+        return false;
+      }
+      slot = (slot + 1) & mask;
+    }
+
+    if (size == maxIds) {
+      throw new IllegalStateException("The id store is full - " + size + " ids, raise the maximum number of ids");
+    }
+    hashes.put(slot, hash);
+    offsets.put(slot, append(id) + 1);
+    size++;
+    if (size > capacity * LOAD_FACTOR && capacity < maxCapacity) {
+      grow();
+    }
+    return true;
+  }
+
+  /** Writes the length and the bytes of the id, an entry never spans two pages */
+  private long append(byte[] id) {
+    int entrySize = Integer.BYTES + id.length;
+    if (entrySize > PAGE_SIZE) {
+      throw new IllegalArgumentException("ID is too long - " + id.length + " bytes");
+    }
+    int position = (int) (arenaSize % PAGE_SIZE);
+    if (position + entrySize > PAGE_SIZE) {
+      arenaSize += PAGE_SIZE - position;
+      position = 0;
+    }
+    long offset = arenaSize;
+    MappedByteBuffer page = page(offset);
+    page.putInt(position, id.length);
+    for (int i = 0; i < id.length; i++) {
+      page.put(position + Integer.BYTES + i, id[i]);
+    }
+    arenaSize += entrySize;
+    return offset;
+  }
+
+  private boolean equalsAt(long offset, byte[] id) {
+    MappedByteBuffer page = page(offset);
+    int position = (int) (offset % PAGE_SIZE);
+    if (page.getInt(position) != id.length) {
+      return false;
+    }
+    for (int i = 0; i < id.length; i++) {
+      if (page.get(position + Integer.BYTES + i) != id[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private MappedByteBuffer page(long offset) {
+    int index = (int) (offset / PAGE_SIZE);
+    while (pages.size() <= index) {
+      try {
+        pages.add(channel.map(FileChannel.MapMode.READ_WRITE, (long) pages.size() * PAGE_SIZE, PAGE_SIZE));
+      } catch (IOException ex) {
+        throw new IllegalStateException("Can't map the id store " + file, ex);
+      }
+    }
+    return pages.get(index);
+  }
+
+  /** Doubles the table, stored hashes are reused, so ids are never read back */
+  private void grow() {
+    IntBuffer oldHashes = hashes;
+    LongBuffer oldOffsets = offsets;
+    int oldCapacity = capacity;
+
+    capacity = capacity << 1;
+    hashes = ByteBuffer.allocateDirect(capacity * Integer.BYTES).asIntBuffer();
+    offsets = ByteBuffer.allocateDirect(capacity * Long.BYTES).asLongBuffer();
+
+    int mask = capacity - 1;
+    for (int i = 0; i < oldCapacity; i++) {
+      long offset = oldOffsets.get(i);
+      if (offset != 0) {
+        int hash = oldHashes.get(i);
+        int slot = hash & mask;
+        while (offsets.get(slot) != 0) {
+          slot = (slot + 1) & mask;
+        }
+        hashes.put(slot, hash);
+        offsets.put(slot, offset);
+      }
+    }
+  }
+
+  private static int capacityFor(long expectedIds) {
+    long required = (long) Math.ceil(expectedIds / LOAD_FACTOR);
+    int capacity = MIN_CAPACITY;
+    while (capacity < required && capacity < MAX_CAPACITY) {
+      capacity <<= 1;
+    }
+    return capacity;
+  }
+
+  /** Mapped pages are released by the garbage collector, the file is deleted straight away */
+  @Override
+  public void close() throws IOException {
+    pages.clear();
+    channel.close();
+    Files.deleteIfExists(file);
+  }
+}
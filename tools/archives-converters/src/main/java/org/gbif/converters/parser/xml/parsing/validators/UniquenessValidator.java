@@ -1,59 +1,94 @@
 package org.gbif.converters.parser.xml.parsing.validators;
 
-import java.time.LocalDateTime;
-import java.time.ZoneOffset;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.Objects;
 
-import org.mapdb.DB;
-import org.mapdb.DBMaker;
-import org.mapdb.HTreeMap;
-import org.mapdb.Serializer;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import lombok.extern.slf4j.Slf4j;
 
 /**
- * Validates the uniqueness of the String IDs passed using a map backed by a temp file. It uses the
- * mapdb library to implement the map (http://www.mapdb.org/).
+ * Validates the uniqueness of the String IDs passed in two tiers. A Bloom filter sized from the expected number of IDs
+ * answers the common "definitely new" case in memory, such IDs are stored without being compared to anything. Only
+ * possible duplicates are checked against the exact {@link OffHeapIdSet}, which keeps the IDs off the java heap in a
+ * memory-mapped temp file.
+ *
+ * <p>More IDs than expected are still validated exactly, only the false-positive rate of the Bloom filter grows, so
+ * more IDs go to the exact store. The exact store takes about 16 bytes of direct memory per ID and is limited to a
+ * maximum number of IDs, {@link #isUnique(String)} fails with an {@link IllegalStateException} when it is reached.
  *
  * <p>This class is intended to be used per process that needs this validation, so a new instance
- * has to be created each time. At the moment of creating the instance, a {@link DB} backed by a
- * temp file is created.
+ * has to be created each time. The validator is thread safe.
  *
  * <p>Keep in mind that {@link UniquenessValidator#close()} has to be called when finishing the
  * validation in order to release the resources used. Also notice that the class implements the
  * {@link AutoCloseable} interface.
  */
+@Slf4j
 public class UniquenessValidator implements AutoCloseable {
 
-  private final DB dbDisk;
-  private final HTreeMap.KeySet<String> setOnDisk;
+  public static final long DEFAULT_EXPECTED_IDS = 10_000_000L;
+  public static final double DEFAULT_FPP = 0.01d;
+  // About 800MB of direct memory for the exact store
+  public static final long DEFAULT_MAX_IDS = 50_000_000L;
+  public static final long MAX_IDS = OffHeapIdSet.MAX_IDS;
 
-  private UniquenessValidator() {
+  // The exact store grows on demand, so it doesn't reserve memory for large expected numbers upfront
+  private static final long MAX_INITIAL_STORE_IDS = 1_000_000L;
+  private static final HashFunction HASH_FUNCTION = Hashing.murmur3_32();
 
-    // create database in disk.
-    // The fileChannelEnable is set to be used only when mmap is not supported (mapdb does it
-    // internally).
-    // cleanerHackEnable is a workaround for a JVM bug
-    // (https://jankotek.gitbooks.io/mapdb/content/performance/).
-    dbDisk =
-        DBMaker.tempFileDB()
-            .fileMmapEnableIfSupported()
-            .cleanerHackEnable()
-            .fileChannelEnable()
-            .make();
+  private final BloomFilter<byte[]> filter;
+  private final OffHeapIdSet store;
 
-    // prefix name to create the map
-    long time = LocalDateTime.now().toEpochSecond(ZoneOffset.UTC);
+  private boolean closed;
+  private long checked;
+  private long possibleDuplicates;
+  private long duplicates;
 
-    // map to store the values
-    setOnDisk = dbDisk.hashSet(time + "-disk").serializer(Serializer.STRING).createOrOpen();
+  private UniquenessValidator(long expectedIds, double fpp, long maxIds) {
+    filter = BloomFilter.create(Funnels.byteArrayFunnel(), expectedIds, fpp);
+    try {
+      store = new OffHeapIdSet(Math.min(expectedIds, MAX_INITIAL_STORE_IDS), maxIds);
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
   }
 
   /**
-   * Creates a new instance.
+   * Creates a new instance sized for {@link #DEFAULT_EXPECTED_IDS} with a false-positive rate of {@link
+   * #DEFAULT_FPP}, which validates up to {@link #DEFAULT_MAX_IDS}.
    *
    * @return {@link UniquenessValidator}
    */
   public static UniquenessValidator getNewInstance() {
-    return new UniquenessValidator();
+    return getNewInstance(DEFAULT_EXPECTED_IDS, DEFAULT_FPP);
+  }
+
+  /**
+   * Creates a new instance, the Bloom filter takes about {@code -expectedIds * ln(fpp) / ln(2)^2} bits of heap.
+   *
+   * @param expectedIds expected number of IDs, e.g. the number of records of the dataset
+   * @param fpp false-positive rate of the Bloom filter, the share of new IDs checked in the exact store
+   * @return {@link UniquenessValidator}
+   */
+  public static UniquenessValidator getNewInstance(long expectedIds, double fpp) {
+    return getNewInstance(expectedIds, fpp, DEFAULT_MAX_IDS);
+  }
+
+  /**
+   * Creates a new instance, the Bloom filter takes about {@code -expectedIds * ln(fpp) / ln(2)^2} bits of heap.
+   *
+   * @param expectedIds expected number of IDs, e.g. the number of records of the dataset
+   * @param fpp false-positive rate of the Bloom filter, the share of new IDs checked in the exact store
+   * @param maxIds maximum number of IDs to validate, from 1 to {@link #MAX_IDS}
+   * @return {@link UniquenessValidator}
+   */
+  public static UniquenessValidator getNewInstance(long expectedIds, double fpp, long maxIds) {
+    return new UniquenessValidator(Math.max(expectedIds, 1L), fpp, maxIds);
   }
 
   /**
@@ -61,17 +96,41 @@ public class UniquenessValidator implements AutoCloseable {
    *
    * @param id ID to validate. This parameter is required and cannot be null.
    * @return true if the ID is unique, false otherwise
+   * @throws IllegalStateException if a new ID exceeds the maximum number of IDs
    */
-  public boolean isUnique(String id) {
+  public synchronized boolean isUnique(String id) {
     Objects.requireNonNull(id, "ID is required");
-    // this set returns false when a value is inserted
-    return setOnDisk.add(id);
+    checked++;
+
+    byte[] bytes = id.getBytes(StandardCharsets.UTF_8);
+    int hash = HASH_FUNCTION.hashBytes(bytes).asInt();
+
+    if (!filter.mightContain(bytes)) {
+      filter.put(bytes);
+      store.addNew(bytes, hash);
+      return true;
+    }
+
+    possibleDuplicates++;
+    boolean isUnique = store.add(bytes, hash);
+    if (!isUnique) {
+      duplicates++;
+    }
+    return isUnique;
   }
 
   @Override
-  public void close() {
-    if (!dbDisk.isClosed()) {
-      dbDisk.close();
+  public synchronized void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    log.info("Validated [{}] IDs, [{}] checked in the exact store, [{}] duplicates", checked, possibleDuplicates,
+        duplicates);
+    try {
+      store.close();
+    } catch (IOException ex) {
+      log.warn("Can't delete the id store", ex);
     }
   }
 }
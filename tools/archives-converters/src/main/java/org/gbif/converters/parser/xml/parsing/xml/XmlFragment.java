@@ -0,0 +1,167 @@
+package org.gbif.converters.parser.xml.parsing.xml;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * Buffered, namespace free events of a single record element, captured while streaming a response file. A fragment
+ * can be replayed into any SAX {@link ContentHandler}, such as a Commons Digester, which saves serializing the record
+ * to a string and parsing it again, or it can be serialized to the same xml string the DOM based parser produces.
+ */
+public class XmlFragment {
+
+  private static final Attributes NO_ATTRIBUTES = new AttributesImpl();
+
+  private enum Type {
+    START,
+    TEXT,
+    END
+  }
+
+  private static class Event {
+
+    private final Type type;
+    private final String value;
+    private final Attributes attributes;
+
+    private Event(Type type, String value, Attributes attributes) {
+      this.type = type;
+      this.value = value;
+      this.attributes = attributes;
+    }
+  }
+
+  private final List<Event> events = new ArrayList<>();
+
+  public void startElement(String name, Attributes attributes) {
+    events.add(new Event(Type.START, name, attributes == null ? NO_ATTRIBUTES : attributes));
+  }
+
+  public void startElement(String name) {
+    startElement(name, NO_ATTRIBUTES);
+  }
+
+  public void characters(String text) {
+    events.add(new Event(Type.TEXT, text, null));
+  }
+
+  public void endElement(String name) {
+    events.add(new Event(Type.END, name, null));
+  }
+
+  /** Appends all events of the other fragment, used to wrap an ABCD 1.2 header and a record together */
+  public void append(XmlFragment other) {
+    events.addAll(other.events);
+  }
+
+  public boolean isEmpty() {
+    return events.isEmpty();
+  }
+
+  /**
+   * Returns the text of the first element with the given name in document order, or null if the fragment doesn't
+   * contain such element
+   */
+  public String getFirstText(String elementName) {
+    for (int i = 0; i < events.size(); i++) {
+      Event event = events.get(i);
+      if (event.type == Type.START && event.value.equals(elementName)) {
+        StringBuilder sb = new StringBuilder();
+        int depth = 0;
+        for (int j = i + 1; j < events.size() && depth >= 0; j++) {
+          Event next = events.get(j);
+          if (next.type == Type.START) {
+            depth++;
+          } else if (next.type == Type.END) {
+            depth--;
+          } else {
+            sb.append(next.value);
+          }
+        }
+        return sb.toString();
+      }
+    }
+    return null;
+  }
+
+  /** Fires the buffered events as a complete document into the handler */
+  public void replay(ContentHandler handler) throws SAXException {
+    handler.startDocument();
+    for (Event event : events) {
+      switch (event.type) {
+        case START:
+          handler.startElement("", event.value, event.value, event.attributes);
+          break;
+        case TEXT:
+          char[] chars = event.value.toCharArray();
+          handler.characters(chars, 0, chars.length);
+          break;
+        case END:
+          handler.endElement("", event.value, event.value);
+          break;
+        default:
+          break;
+      }
+    }
+    handler.endDocument();
+  }
+
+  /**
+   * Serializes the fragment without namespaces or xml declaration, empty elements are closed in place. Element and
+   * attribute names have no prefixes, except the names stored with the predefined xml prefix, the same way as the DOM
+   * serialization of OccurrenceParser.
+   */
+  public String toXml() {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < events.size(); i++) {
+      Event event = events.get(i);
+      if (event.type == Type.START) {
+        sb.append('<').append(event.value);
+        for (int a = 0; a < event.attributes.getLength(); a++) {
+          sb.append(' ').append(event.attributes.getQName(a)).append("=\"");
+          escape(sb, event.attributes.getValue(a), true);
+          sb.append('"');
+        }
+        boolean closed = i + 1 < events.size() && events.get(i + 1).type == Type.END;
+        if (closed) {
+          sb.append("/>");
+          i++;
+        } else {
+          sb.append('>');
+        }
+      } else if (event.type == Type.TEXT) {
+        escape(sb, event.value, false);
+      } else {
+        sb.append("</").append(event.value).append('>');
+      }
+    }
+    return sb.toString();
+  }
+
+  private static void escape(StringBuilder sb, String value, boolean attribute) {
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+        case '&':
+          sb.append("&amp;");
+          break;
+        case '<':
+          sb.append("&lt;");
+          break;
+        case '>':
+          sb.append("&gt;");
+          break;
+        case '"':
+          sb.append(attribute ? "&quot;" : "\"");
+          break;
+        default:
+          sb.append(c);
+      }
+    }
+  }
+}
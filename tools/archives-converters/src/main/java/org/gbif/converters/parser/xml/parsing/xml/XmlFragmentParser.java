@@ -20,6 +20,7 @@ import java.io.IOException;
 import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -52,11 +53,23 @@ import lombok.extern.slf4j.Slf4j;
 
 /**
  * Methods for parsing {@link RawXmlOccurrence}s and {@link UniqueIdentifier}s from xml fragments.
+ *
+ * <p>Every thread keeps a Digester with the rules and the SAX parser of each schema type, which is reset and reused for
+ * the next record, creating them costs more than parsing a typical record.
  */
 @Slf4j
 public class XmlFragmentParser {
 
   private static final Map<OccurrenceSchemaType, RuleSet> RULE_SETS = Maps.newHashMap();
+  private static final ThreadLocal<Map<OccurrenceSchemaType, Digester>> DIGESTERS =
+      ThreadLocal.withInitial(() -> new EnumMap<>(OccurrenceSchemaType.class));
+
+  /** Feeds a record into a Digester */
+  @FunctionalInterface
+  private interface DigesterInput {
+
+    void parse(Digester digester) throws IOException, SAXException;
+  }
 
   // static class, should never be instantiated
   private XmlFragmentParser() {}
@@ -105,20 +118,62 @@ public class XmlFragmentParser {
     return records;
   }
 
+  /**
+   * Parses a record captured by the streaming parser, the buffered events are fed straight into the Digester, without
+   * serializing and parsing the xml again
+   */
+  public static List<RawOccurrenceRecord> parseRecord(XmlFragment fragment, OccurrenceSchemaType schemaType) {
+    List<RawOccurrenceRecord> records = null;
+    try {
+      records = parseRecord(fragment::replay, schemaType);
+    } catch (IOException e) {
+      log.warn("IOException parsing xml fragment", e);
+    } catch (SAXException e) {
+      log.warn("SAXException parsing xml fragment", e);
+    }
+    return forceIdentifiers(records);
+  }
+
   private static List<RawOccurrenceRecord> parseRecord(
       InputSource inputSource, OccurrenceSchemaType schemaType) throws IOException, SAXException {
+    return parseRecord(digester -> digester.parse(inputSource), schemaType);
+  }
+
+  /**
+   * Parses a record with the Digester of the thread for the schema type. The Digester is taken out of the pool while
+   * parsing, so a failed parse can't leave a Digester in an unknown state for the next record, a new one is created
+   * instead.
+   */
+  private static List<RawOccurrenceRecord> parseRecord(DigesterInput input, OccurrenceSchemaType schemaType)
+      throws IOException, SAXException {
+    Map<OccurrenceSchemaType, Digester> digesters = DIGESTERS.get();
+    Digester digester = digesters.remove(schemaType);
+    if (digester == null) {
+      digester = createDigester(schemaType);
+    }
+
     RawOccurrenceRecordBuilder builder = new RawOccurrenceRecordBuilder();
-    Digester digester = new Digester();
-    digester.setNamespaceAware(true);
-    digester.setValidating(false);
+    digester.clear();
     digester.push(builder);
-    digester.addRuleSet(RULE_SETS.get(schemaType));
-    digester.parse(inputSource);
+    input.parse(digester);
+    digesters.put(schemaType, digester);
 
     builder.resolvePriorities();
     return builder.generateRawOccurrenceRecords();
   }
 
+  private static Digester createDigester(OccurrenceSchemaType schemaType) {
+    Digester digester = new Digester();
+    digester.setNamespaceAware(true);
+    digester.setValidating(false);
+    digester.addRuleSet(getRuleSet(schemaType));
+    return digester;
+  }
+
+  static RuleSet getRuleSet(OccurrenceSchemaType schemaType) {
+    return RULE_SETS.get(schemaType);
+  }
+
   /**
    * This method is a hack to return a single result where ScientificName matches the given
    * unitQualifier. This behaviour is only relevant for ABCD 2.06 - the others all produce a single
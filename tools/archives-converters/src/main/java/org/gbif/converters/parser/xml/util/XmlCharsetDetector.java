@@ -0,0 +1,165 @@
+package org.gbif.converters.parser.xml.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Determines the charset of a xml response once, from a bounded prefix of the decompressed stream, instead of parsing
+ * the whole response again for every candidate charset. Charsets are a nightmare and users can't be trusted, so the
+ * strategy is, in order:
+ *
+ * <ul>
+ *   <li>a byte order mark, or the UTF-16 byte pattern of {@code <?}
+ *   <li>bytes that are not valid UTF-8 are read with the declared encoding, or as latin1 (ISO-8859-1) if the
+ *       declaration is missing or claims UTF-8
+ *   <li>bytes that are valid multibyte UTF-8 are read as UTF-8, whatever the declaration says
+ *   <li>the declared encoding from the xml declaration
+ *   <li>UTF-8
+ * </ul>
+ *
+ * Bytes past the prefix that don't fit the charset are replaced rather than failing the parse.
+ */
+@Slf4j
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class XmlCharsetDetector {
+
+  public static final int PREFIX_SIZE = 64 * 1024;
+
+  private static final Pattern ENCODING_PATTERN = Pattern.compile("encoding\\s*=\\s*[\"']([A-Za-z0-9._:\\-]+)[\"']");
+
+  /**
+   * Detects the charset and returns a reader decoding the stream with it, malformed input is replaced and invalid xml
+   * characters are dropped
+   */
+  public static Reader newReader(InputStream is) throws IOException {
+    BufferedInputStream bis = new BufferedInputStream(is, PREFIX_SIZE);
+    return newReader(bis, detect(bis));
+  }
+
+  /** Returns a reader decoding the stream with the charset, malformed input is replaced and invalid xml characters are dropped */
+  public static Reader newReader(InputStream is, Charset charset) {
+    CharsetDecoder decoder = charset.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    return new BufferedReader(new XmlSanitizingReader(new InputStreamReader(is, decoder)));
+  }
+
+  /** Reads up to {@link #PREFIX_SIZE} bytes and resets the stream, so nothing is consumed */
+  public static Charset detect(BufferedInputStream is) throws IOException {
+    is.mark(PREFIX_SIZE);
+    byte[] prefix = new byte[PREFIX_SIZE];
+    int length = 0;
+    int read;
+    while (length < PREFIX_SIZE && (read = is.read(prefix, length, PREFIX_SIZE - length)) != -1) {
+      length += read;
+    }
+    is.reset();
+    return detect(prefix, length);
+  }
+
+  static Charset detect(byte[] prefix, int length) {
+    Optional<Charset> bom = detectBom(prefix, length);
+    if (bom.isPresent()) {
+      log.debug("Found charset [{}] from byte order mark", bom.get());
+      return bom.get();
+    }
+
+    Optional<Charset> declared = detectDeclared(prefix, length);
+
+    if (!isValidUtf8(prefix, length)) {
+      Charset charset = declared.filter(x -> !x.equals(StandardCharsets.UTF_8)).orElse(StandardCharsets.ISO_8859_1);
+      log.debug("Bytes are not valid UTF-8, using charset [{}]", charset);
+      return charset;
+    }
+
+    if (hasNonAscii(prefix, length)) {
+      log.debug("Bytes are valid multibyte UTF-8, ignoring declared charset [{}]", declared.orElse(null));
+      return StandardCharsets.UTF_8;
+    }
+
+    return declared.orElse(StandardCharsets.UTF_8);
+  }
+
+  private static Optional<Charset> detectBom(byte[] b, int length) {
+    if (length >= 3 && (b[0] & 0xFF) == 0xEF && (b[1] & 0xFF) == 0xBB && (b[2] & 0xFF) == 0xBF) {
+      return Optional.of(StandardCharsets.UTF_8);
+    }
+    if (length >= 2 && (b[0] & 0xFF) == 0xFE && (b[1] & 0xFF) == 0xFF) {
+      return Optional.of(StandardCharsets.UTF_16BE);
+    }
+    if (length >= 2 && (b[0] & 0xFF) == 0xFF && (b[1] & 0xFF) == 0xFE) {
+      return Optional.of(StandardCharsets.UTF_16LE);
+    }
+    if (length >= 4 && b[0] == 0 && b[1] == '<' && b[2] == 0 && b[3] == '?') {
+      return Optional.of(StandardCharsets.UTF_16BE);
+    }
+    if (length >= 4 && b[0] == '<' && b[1] == 0 && b[2] == '?' && b[3] == 0) {
+      return Optional.of(StandardCharsets.UTF_16LE);
+    }
+    return Optional.empty();
+  }
+
+  /** Reads the encoding of the xml declaration, if there is one and the JVM supports it */
+  private static Optional<Charset> detectDeclared(byte[] prefix, int length) {
+    String head = new String(prefix, 0, length, StandardCharsets.ISO_8859_1);
+    int start = head.indexOf("<?xml");
+    int end = head.indexOf("?>", start + 1);
+    if (start < 0 || end < 0) {
+      return Optional.empty();
+    }
+    Matcher matcher = ENCODING_PATTERN.matcher(head.substring(start, end));
+    if (!matcher.find()) {
+      return Optional.empty();
+    }
+    String encoding = matcher.group(1);
+    log.debug("Found encoding [{}] in xml declaration", encoding);
+    try {
+      return Optional.of(Charset.forName(encoding));
+    } catch (Exception e) {
+      log.debug("Could not find supported charset matching declared encoding of [{}]", encoding);
+      return Optional.empty();
+    }
+  }
+
+  /** A multibyte sequence cut by the end of the prefix doesn't count as malformed */
+  private static boolean isValidUtf8(byte[] prefix, int length) {
+    CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPORT)
+        .onUnmappableCharacter(CodingErrorAction.REPORT);
+    ByteBuffer in = ByteBuffer.wrap(prefix, 0, length);
+    CharBuffer out = CharBuffer.allocate(1024);
+    CoderResult result;
+    do {
+      out.clear();
+      result = decoder.decode(in, out, false);
+    } while (result.isOverflow());
+    return !result.isError();
+  }
+
+  private static boolean hasNonAscii(byte[] prefix, int length) {
+    for (int i = 0; i < length; i++) {
+      if (prefix[i] < 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
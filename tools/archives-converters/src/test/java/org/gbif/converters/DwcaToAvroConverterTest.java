@@ -3,6 +3,9 @@ package org.gbif.converters;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 
 import org.gbif.pipelines.io.avro.ExtendedRecord;
 
@@ -44,4 +47,60 @@ public class DwcaToAvroConverterTest {
 
   }
 
+  @Test
+  public void parallelConversionTest() throws IOException {
+
+    // When
+    DwcaToAvroConverter.create().parallelism(3).inputPath(inpPath).outputPath(outPath).convert();
+
+    // Should
+    File verbatim = new File(outPath);
+    Assert.assertTrue(verbatim.exists());
+    Assert.assertEquals(307, count(verbatim));
+    Assert.assertFalse(new File(inpPath + "verbatim_part-1.avro").exists());
+
+    Files.deleteIfExists(verbatim.toPath());
+  }
+
+  @Test
+  public void parallelConversionSameRecordsTest() throws IOException {
+
+    // State
+    File verbatim = new File(outPath);
+    DwcaToAvroConverter.create().inputPath(inpPath).outputPath(outPath).convert();
+    List<ExtendedRecord> expected = read(verbatim);
+    Files.deleteIfExists(verbatim.toPath());
+
+    // When
+    DwcaToAvroConverter.create().parallelism(2).inputPath(inpPath).outputPath(outPath).convert();
+
+    // Should
+    Assert.assertEquals(expected, read(verbatim));
+    Assert.assertFalse(new File(verbatim.getParentFile(), "plants_dwcaverbatim_part-1.avro").exists());
+
+    Files.deleteIfExists(verbatim.toPath());
+  }
+
+  /** Reads the records sorted by id, the parallel conversion doesn't keep the order */
+  private List<ExtendedRecord> read(File file) throws IOException {
+    List<ExtendedRecord> records = new ArrayList<>();
+    DatumReader<ExtendedRecord> datumReader = new SpecificDatumReader<>(ExtendedRecord.class);
+    try (DataFileReader<ExtendedRecord> dataFileReader = new DataFileReader<>(file, datumReader)) {
+      dataFileReader.forEach(records::add);
+    }
+    records.sort(Comparator.comparing(ExtendedRecord::getId));
+    return records;
+  }
+
+  private long count(File file) throws IOException {
+    long count = 0;
+    DatumReader<ExtendedRecord> datumReader = new SpecificDatumReader<>(ExtendedRecord.class);
+    try (DataFileReader<ExtendedRecord> dataFileReader = new DataFileReader<>(file, datumReader)) {
+      while (dataFileReader.hasNext()) {
+        dataFileReader.next();
+        count++;
+      }
+    }
+    return count;
+  }
 }
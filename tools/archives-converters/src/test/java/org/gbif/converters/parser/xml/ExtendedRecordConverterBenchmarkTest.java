@@ -0,0 +1,128 @@
+package org.gbif.converters.parser.xml;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import org.gbif.converters.converter.SyncDataFileWriter;
+import org.gbif.converters.converter.SyncDataFileWriterBuilder;
+import org.gbif.pipelines.io.avro.ExtendedRecord;
+
+import org.apache.avro.file.CodecFactory;
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.specific.SpecificDatumReader;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.io.ByteStreams;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Converts a directory of synthetic ABCD 2.06 responses with one and with several threads, each thread writes its own
+ * avro part file. Logs the number of records per second.
+ */
+@Slf4j
+public class ExtendedRecordConverterBenchmarkTest {
+
+  // increase them to benchmark with a higher volume of data
+  private static final int FILES = 100;
+  private static final int UNITS_PER_FILE = 40;
+  private static final int THREADS = 4;
+
+  private static final String TEMPLATE = "/responses/abcd206/abcd206_all_simple_fields.gz";
+  private static final String UNIT_START = "<Unit>";
+  private static final String UNIT_END = "</Unit>";
+  private static final String UNIT_ID = "<UnitID>5834</UnitID>";
+  private static final String UNIT_GUID = "<UnitGUID>0123456789ABCD</UnitGUID>";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  /** Repeats the unit of the template response with unique unit ids and guids */
+  private File createResponses() throws Exception {
+    String template;
+    try (InputStream is = new GZIPInputStream(getClass().getResourceAsStream(TEMPLATE))) {
+      template = new String(ByteStreams.toByteArray(is), StandardCharsets.UTF_8);
+    }
+    int unitStart = template.indexOf(UNIT_START);
+    int unitEnd = template.indexOf(UNIT_END) + UNIT_END.length();
+    String head = template.substring(0, unitStart);
+    String unit = template.substring(unitStart, unitEnd);
+    String tail = template.substring(unitEnd);
+
+    File dir = folder.newFolder("responses");
+    for (int i = 0; i < FILES; i++) {
+      StringBuilder response = new StringBuilder(head);
+      for (int j = 0; j < UNITS_PER_FILE; j++) {
+        String id = i + "-" + j;
+        response.append(unit.replace(UNIT_ID, "<UnitID>" + id + "</UnitID>")
+            .replace(UNIT_GUID, "<UnitGUID>" + id + "</UnitGUID>"));
+      }
+      response.append(tail);
+      byte[] bytes = response.toString().getBytes(StandardCharsets.UTF_8);
+      Files.write(new File(dir, "response." + i + ".xml").toPath(), bytes);
+    }
+    return dir;
+  }
+
+  private long run(File responses, int threads) throws Exception {
+    File verbatim = folder.newFile("verbatim-" + threads + ".avro");
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      Stopwatch watch = Stopwatch.createStarted();
+      long converted;
+      try (OutputStream output = new FileOutputStream(verbatim);
+          SyncDataFileWriter<ExtendedRecord> writer = createWriter(output)) {
+        converted = ExtendedRecordConverter.create(executor).toAvro(responses.getAbsolutePath(), writer);
+      }
+      long ms = Math.max(watch.stop().elapsed(TimeUnit.MILLISECONDS), 1L);
+      log.info("{} threads: {} records in {} ms, {} records/s", threads, converted, ms, converted * 1000L / ms);
+
+      long read = 0;
+      try (DataFileReader<ExtendedRecord> reader =
+          new DataFileReader<>(verbatim, new SpecificDatumReader<>(ExtendedRecord.class))) {
+        while (reader.hasNext()) {
+          reader.next();
+          read++;
+        }
+      }
+      Assert.assertEquals(converted, read);
+      return converted;
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void singleVsPerThreadPartsTest() throws Exception {
+    // State
+    File responses = createResponses();
+
+    // When
+    long single = run(responses, 1);
+    long parallel = run(responses, THREADS);
+
+    // Should
+    Assert.assertEquals(FILES * UNITS_PER_FILE, single);
+    Assert.assertEquals(FILES * UNITS_PER_FILE, parallel);
+  }
+
+  private static SyncDataFileWriter<ExtendedRecord> createWriter(OutputStream output) throws Exception {
+    return SyncDataFileWriterBuilder.builder()
+        .schema(ExtendedRecord.getClassSchema())
+        .codec(CodecFactory.snappyCodec().toString())
+        .outputStream(output)
+        .build()
+        .createSyncDataFileWriter();
+  }
+}
@@ -0,0 +1,159 @@
+package org.gbif.converters.parser.xml;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.gbif.api.vocabulary.OccurrenceSchemaType;
+import org.gbif.converters.parser.xml.model.RawOccurrenceRecord;
+import org.gbif.converters.parser.xml.parsing.RawXmlOccurrence;
+import org.gbif.converters.parser.xml.parsing.xml.XmlFragmentParser;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class StaxOccurrenceParserTest {
+
+  private static final String[] RESPONSES = {
+      "/responses/abcd12/abcd12_all_simple_fields.gz",
+      "/responses/abcd12/abcd12_multi_ids_preferred_true.gz",
+      "/responses/abcd206/abcd206_all_simple_fields.gz",
+      "/responses/abcd206/abcd206_multi_ids_no_preferred.gz",
+      "/responses/abcd206/abcd206_images.gz",
+      "/responses/dwc10/dwc10_all_simple_fields.gz",
+      "/responses/dwc14/dwc14_all_simple_fields.gz",
+      "/responses/dwc14/dwc14_typification.gz",
+      "/responses/dwc2009/dwc2009_simple_fields.gz",
+      "/responses/dwc_manis/dwc_manis_all_simple_fields.gz"
+  };
+
+  @Test
+  public void sameResultAsDigesterParserTest() throws IOException {
+    for (String response : RESPONSES) {
+
+      // State
+      File file = new File(getClass().getResource(response).getFile());
+      List<RawXmlOccurrence> expectedXml = new OccurrenceParser().parseResponseFileToRawXml(file);
+      List<RawOccurrenceRecord> expected = new ArrayList<>();
+      expectedXml.forEach(x -> expected.addAll(XmlFragmentParser.parseRecord(x)));
+
+      // When
+      List<RawXmlOccurrence> resultXml = new ArrayList<>();
+      List<RawOccurrenceRecord> result = new ArrayList<>();
+      long count;
+      try (InputStream is = new GZIPInputStream(new FileInputStream(file))) {
+        count = new StaxOccurrenceParser().parseStream(is, (xml, records) -> {
+          resultXml.add(xml);
+          result.addAll(records);
+        });
+      }
+
+      // Should
+      assertEquals(response, expectedXml.size(), count);
+      for (int i = 0; i < expectedXml.size(); i++) {
+        assertEquals(response, expectedXml.get(i).getSchemaType(), resultXml.get(i).getSchemaType());
+        assertEquals(response, expectedXml.get(i).getXml(), resultXml.get(i).getXml());
+      }
+      assertEquals(response, expected.size(), result.size());
+      for (int i = 0; i < expected.size(); i++) {
+        assertEquals(response, expected.get(i).getId(), result.get(i).getId());
+        assertEquals(response, expected.get(i).getInstitutionCode(), result.get(i).getInstitutionCode());
+        assertEquals(response, expected.get(i).getCatalogueNumber(), result.get(i).getCatalogueNumber());
+        assertEquals(response, expected.get(i).getScientificName(), result.get(i).getScientificName());
+        assertEquals(response, expected.get(i).getOccurrenceDate(), result.get(i).getOccurrenceDate());
+        assertEquals(response, expected.get(i).getLatitude(), result.get(i).getLatitude());
+        assertEquals(response, expected.get(i).getUnitQualifier(), result.get(i).getUnitQualifier());
+        assertEquals(response, expected.get(i).getIdentifierRecords().size(),
+            result.get(i).getIdentifierRecords().size());
+        assertEquals(response, expected.get(i).getImageRecords().size(), result.get(i).getImageRecords().size());
+      }
+    }
+  }
+
+  @Test
+  public void recordCodesTest() throws IOException {
+
+    // State
+    File file = new File(getClass().getResource("/responses/dwc14/dwc14_all_simple_fields.gz").getFile());
+
+    // When
+    List<RawXmlOccurrence> result = new ArrayList<>();
+    try (InputStream is = new GZIPInputStream(new FileInputStream(file))) {
+      new StaxOccurrenceParser().parseStream(is, (xml, records) -> result.add(xml));
+    }
+    List<RawXmlOccurrence> expected = new OccurrenceParser().parseResponseFileToRawXml(file);
+
+    // Should
+    // the DOM based parser never fills the record codes
+    assertNull(expected.get(0).getInstitutionCode());
+    assertNull(expected.get(0).getCollectionCode());
+    assertNull(expected.get(0).getCatalogNumber());
+    assertEquals(1, result.size());
+    assertEquals(OccurrenceSchemaType.DWC_1_4, result.get(0).getSchemaType());
+    assertEquals("UGENT", result.get(0).getInstitutionCode());
+    assertEquals("vertebrata", result.get(0).getCollectionCode());
+    assertEquals("50058", result.get(0).getCatalogNumber());
+  }
+
+  @Test
+  public void namespacePrefixesTest() {
+    // State
+    String response = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+        + "<response xmlns=\"http://rs.tdwg.org/tapir/1.0\"><search>"
+        + "<dwr:DarwinRecordSet xmlns:dwr=\"http://rs.tdwg.org/dwc/dwcrecord/\" "
+        + "xmlns:dwc=\"http://rs.tdwg.org/dwc/terms/\" xmlns:dc=\"http://purl.org/dc/terms/\" "
+        + "xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\">"
+        + "<dwr:SimpleDarwinRecord><dc:modified xml:lang=\"en\">2009</dc:modified>"
+        + "<dwc:institutionCode>I</dwc:institutionCode><dwc:collectionCode>C</dwc:collectionCode>"
+        + "<dwc:catalogNumber>1</dwc:catalogNumber><dwc:locality xsi:nil=\"true\"/>"
+        + "<dwc:scientificName>Abies alba &gt; Mill.</dwc:scientificName></dwr:SimpleDarwinRecord>"
+        + "</dwr:DarwinRecordSet></search></response>";
+    byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+
+    // When
+    List<RawXmlOccurrence> result = new ArrayList<>();
+    new StaxOccurrenceParser().parseStream(new ByteArrayInputStream(bytes), (xml, records) -> result.add(xml));
+    List<RawXmlOccurrence> expected = new OccurrenceParser().parseStream(new ByteArrayInputStream(bytes));
+
+    // Should
+    assertEquals(1, result.size());
+    assertEquals(OccurrenceSchemaType.DWC_2009, result.get(0).getSchemaType());
+    assertEquals("<SimpleDarwinRecord><modified xml:lang=\"en\">2009</modified><institutionCode>I</institutionCode>"
+        + "<collectionCode>C</collectionCode><catalogNumber>1</catalogNumber><locality nil=\"true\"/>"
+        + "<scientificName>Abies alba &gt; Mill.</scientificName></SimpleDarwinRecord>", result.get(0).getXml());
+    assertEquals(expected.get(0).getXml(), result.get(0).getXml());
+  }
+
+  @Test
+  public void problematicCharsetsTest() throws IOException {
+    // State
+    String[] responses = {
+        "/responses/problematic/dwc_manis_iso8859-1.gz",
+        "/responses/problematic/dwc_manis_no_encoding.gz",
+        "/responses/problematic/dwc_10_utf8_badcase.gz",
+        "/responses/problematic/spanish_bad_xml.gz"
+    };
+    long[] expected = {900L, 900L, 21L, 2L};
+
+    for (int i = 0; i < responses.length; i++) {
+      File file = new File(getClass().getResource(responses[i]).getFile());
+
+      // When
+      long count;
+      try (InputStream is = new GZIPInputStream(new FileInputStream(file))) {
+        count = new StaxOccurrenceParser().parseStream(is, (xml, records) -> {});
+      }
+
+      // Should
+      assertEquals(responses[i], expected[i], count);
+    }
+  }
+}
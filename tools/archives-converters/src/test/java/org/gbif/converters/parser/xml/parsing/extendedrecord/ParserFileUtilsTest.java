@@ -0,0 +1,150 @@
+package org.gbif.converters.parser.xml.parsing.extendedrecord;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+import org.gbif.converters.parser.xml.ParsingException;
+import org.gbif.converters.parser.xml.StaxOccurrenceParser;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.apache.commons.compress.compressors.xz.XZCompressorOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.io.ByteStreams;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ParserFileUtilsTest {
+
+  private static final int FILES = 500;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private byte[] readResponse() throws IOException {
+    String fileName = getClass().getResource("/responses/dwc14/dwc14_all_simple_fields.gz").getFile();
+    try (InputStream is = new GZIPInputStream(new FileInputStream(fileName))) {
+      return ByteStreams.toByteArray(is);
+    }
+  }
+
+  /** Writes many small response files into a tar archive, with a directory and a file to skip */
+  private void writeTar(TarArchiveOutputStream tos, byte[] response) throws IOException {
+    tos.putArchiveEntry(new TarArchiveEntry("dataset/"));
+    tos.closeArchiveEntry();
+    TarArchiveEntry skipped = new TarArchiveEntry("dataset/.DS_Store");
+    skipped.setSize(1);
+    tos.putArchiveEntry(skipped);
+    tos.write(0);
+    tos.closeArchiveEntry();
+    for (int i = 0; i < FILES; i++) {
+      TarArchiveEntry entry = new TarArchiveEntry("dataset/" + i + "/dataset_" + i + ".response");
+      entry.setSize(response.length);
+      tos.putArchiveEntry(entry);
+      tos.write(response);
+      tos.closeArchiveEntry();
+    }
+    tos.finish();
+  }
+
+  private void assertResponses(String inputPath) {
+    // When
+    Set<String> names = new HashSet<>();
+    AtomicLong records = new AtomicLong();
+    StaxOccurrenceParser parser = new StaxOccurrenceParser();
+    long count = ParserFileUtils.forEachResponse(inputPath, (name, is) -> {
+      names.add(name);
+      records.addAndGet(parser.parseStream(is, (xml, rors) -> {}));
+    });
+
+    // Should
+    assertEquals(FILES, count);
+    assertEquals(FILES, names.size());
+    assertEquals(FILES, records.get());
+  }
+
+  @Test
+  public void xzArchiveTest() throws IOException {
+    // State
+    File archive = new File(folder.getRoot(), "dataset.tar.xz");
+    try (OutputStream os = new FileOutputStream(archive);
+        TarArchiveOutputStream tos = new TarArchiveOutputStream(new XZCompressorOutputStream(os))) {
+      writeTar(tos, readResponse());
+    }
+
+    // Should
+    assertResponses(archive.getAbsolutePath());
+    assertEquals(1, folder.getRoot().list().length);
+  }
+
+  @Test
+  public void gzipArchiveTest() throws IOException {
+    // State
+    File archive = new File(folder.getRoot(), "dataset.tar.gz");
+    try (OutputStream os = new FileOutputStream(archive);
+        TarArchiveOutputStream tos = new TarArchiveOutputStream(new GzipCompressorOutputStream(os))) {
+      writeTar(tos, readResponse());
+    }
+
+    // Should
+    assertResponses(archive.getAbsolutePath());
+  }
+
+  @Test
+  public void directoryTest() throws IOException {
+    // State
+    byte[] response = readResponse();
+    for (int i = 0; i < FILES; i++) {
+      File dir = folder.newFolder(String.valueOf(i));
+      Files.write(new File(dir, "dataset_" + i + ".response").toPath(), response);
+    }
+    assertTrue(new File(folder.getRoot(), ".DS_Store").createNewFile());
+
+    // Should
+    assertResponses(folder.getRoot().getAbsolutePath());
+  }
+
+  @Test(expected = ParsingException.class)
+  public void wrongExtensionTest() {
+    String inputPath =
+        getClass().getResource("/responses/pages/7ef15372-1387-11e2-bb2e-00145eb45e9a/61.zip").getFile();
+    ParserFileUtils.forEachResponse(inputPath, (name, is) -> {});
+  }
+
+  @Test
+  public void estimateRecordsTest() {
+    // State
+    String dir = getClass().getResource("/responses/pages/7ef15372-1387-11e2-bb2e-00145eb45e9a/").getFile();
+    AtomicLong records = new AtomicLong();
+    StaxOccurrenceParser parser = new StaxOccurrenceParser();
+    ParserFileUtils.forEachResponse(dir, (name, is) -> records.addAndGet(parser.parseStream(is, (xml, rors) -> {})));
+
+    // When
+    long dirEstimate = ParserFileUtils.estimateRecords(dir);
+    long archiveEstimate = ParserFileUtils.estimateRecords(dir + "61.tar.xz");
+
+    // Should
+    assertEquals(21, records.get());
+    assertTrue(dirEstimate >= records.get() && dirEstimate < records.get() * 4);
+    assertTrue(archiveEstimate >= records.get() && archiveEstimate < records.get() * 4);
+  }
+
+  @Test(expected = ParsingException.class)
+  public void absentPathTest() {
+    ParserFileUtils.forEachResponse("absent", (name, is) -> {});
+  }
+}
@@ -0,0 +1,82 @@
+package org.gbif.converters.parser.xml.parsing.validators;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/** Tests the {@link OffHeapIdSet}. */
+public class OffHeapIdSetTest {
+
+  private static byte[] bytes(String id) {
+    return id.getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void growingSetTest() throws IOException {
+    // State
+    int n = 100_000;
+
+    try (OffHeapIdSet set = new OffHeapIdSet(10, OffHeapIdSet.MAX_IDS)) {
+
+      // When
+      for (int i = 0; i < n; i++) {
+        Assert.assertTrue(set.add(bytes("id-" + i), i));
+      }
+
+      // Should
+      Assert.assertEquals(n, set.size());
+      for (int i = 0; i < n; i++) {
+        Assert.assertFalse(set.add(bytes("id-" + i), i));
+      }
+      Assert.assertEquals(n, set.size());
+    }
+  }
+
+  @Test
+  public void hashCollisionTest() throws IOException {
+    try (OffHeapIdSet set = new OffHeapIdSet(10, OffHeapIdSet.MAX_IDS)) {
+
+      // When
+      set.addNew(bytes("a"), 42);
+
+      // Should
+      Assert.assertTrue(set.add(bytes("b"), 42));
+      Assert.assertTrue(set.add(bytes("aa"), 42));
+      Assert.assertFalse(set.add(bytes("a"), 42));
+      Assert.assertFalse(set.add(bytes("b"), 42));
+      Assert.assertEquals(3, set.size());
+    }
+  }
+
+  @Test
+  public void maxIdsTest() throws IOException {
+    // State
+    int maxIds = 10_000;
+
+    try (OffHeapIdSet set = new OffHeapIdSet(10, maxIds)) {
+      for (int i = 0; i < maxIds; i++) {
+        set.add(bytes("id-" + i), i);
+      }
+
+      // When
+      boolean duplicate = set.add(bytes("id-0"), 0);
+      try {
+        set.add(bytes("id-" + maxIds), maxIds);
+        Assert.fail("The id store must be full");
+      } catch (IllegalStateException ex) {
+
+        // Should
+        Assert.assertTrue(ex.getMessage().contains("raise the maximum number of ids"));
+      }
+      Assert.assertFalse(duplicate);
+      Assert.assertEquals(maxIds, set.size());
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void maxIdsAboveLimitTest() throws IOException {
+    new OffHeapIdSet(10, OffHeapIdSet.MAX_IDS + 1).close();
+  }
+}
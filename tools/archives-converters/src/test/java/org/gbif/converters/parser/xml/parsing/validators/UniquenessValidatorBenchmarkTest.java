@@ -0,0 +1,75 @@
+package org.gbif.converters.parser.xml.parsing.validators;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mapdb.DB;
+import org.mapdb.DBMaker;
+import org.mapdb.HTreeMap;
+import org.mapdb.Serializer;
+
+import com.google.common.base.Stopwatch;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Compares the probe throughput of the {@link UniquenessValidator} with the MapDB only implementation it replaced, on
+ * synthetic id streams. Logs the number of probes per second.
+ */
+@Slf4j
+public class UniquenessValidatorBenchmarkTest {
+
+  // increase it to benchmark with a higher volume of data
+  private static final int N = 200_000;
+  // every 100th id is repeated
+  private static final int DUPLICATE_EVERY = 100;
+
+  private static String[] ids() {
+    String[] ids = new String[N];
+    for (int i = 0; i < N; i++) {
+      ids[i] = i % DUPLICATE_EVERY == 0 && i > 0 ? ids[i - DUPLICATE_EVERY / 2] : UUID.randomUUID().toString();
+    }
+    return ids;
+  }
+
+  private static long run(String name, String[] ids, Predicate<String> isUnique) {
+    Stopwatch watch = Stopwatch.createStarted();
+    long duplicates = 0;
+    for (String id : ids) {
+      if (!isUnique.test(id)) {
+        duplicates++;
+      }
+    }
+    long ms = Math.max(watch.stop().elapsed(TimeUnit.MILLISECONDS), 1L);
+    log.info("{}: {} probes in {} ms, {} probes/s", name, ids.length, ms, ids.length * 1000L / ms);
+    return duplicates;
+  }
+
+  @Test
+  public void bloomFilterAndOffHeapVsMapDbTest() {
+    // State
+    String[] ids = ids();
+    long expectedDuplicates = (N - 1) / DUPLICATE_EVERY;
+
+    // When
+    long mapDbDuplicates;
+    DB db = DBMaker.tempFileDB().fileMmapEnableIfSupported().cleanerHackEnable().fileChannelEnable().make();
+    try {
+      HTreeMap.KeySet<String> set = db.hashSet("benchmark").serializer(Serializer.STRING).createOrOpen();
+      mapDbDuplicates = run("MapDB", ids, set::add);
+    } finally {
+      db.close();
+    }
+
+    long validatorDuplicates;
+    try (UniquenessValidator validator = UniquenessValidator.getNewInstance(N, UniquenessValidator.DEFAULT_FPP)) {
+      validatorDuplicates = run("Bloom filter and off-heap store", ids, validator::isUnique);
+    }
+
+    // Should
+    Assert.assertEquals(expectedDuplicates, mapDbDuplicates);
+    Assert.assertEquals(expectedDuplicates, validatorDuplicates);
+  }
+}
@@ -31,5 +31,6 @@ public class BadXmlCharsParserTest extends ParserTestCase {
     String fileName = getClass().getResource("/responses/problematic/spanish_bad_xml.gz").getFile();
     List<RawXmlOccurrence> records = occurrenceParser.parseResponseFileToRawXml(new File(fileName));
     assertEquals(2, records.size());
+    assertEquals(0, occurrenceParser.getReparseCount());
   }
 }
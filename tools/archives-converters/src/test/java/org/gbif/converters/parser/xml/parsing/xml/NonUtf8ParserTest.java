@@ -35,5 +35,6 @@ public class NonUtf8ParserTest extends ParserTestCase {
         getClass().getResource("/responses/problematic/dwc_10_utf8_badcase.gz").getFile();
     List<RawXmlOccurrence> records = occurrenceParser.parseResponseFileToRawXml(new File(fileName));
     assertEquals(21, records.size());
+    assertEquals(0, occurrenceParser.getReparseCount());
   }
 }
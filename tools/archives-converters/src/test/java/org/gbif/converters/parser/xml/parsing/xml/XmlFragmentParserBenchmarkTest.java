@@ -0,0 +1,67 @@
+package org.gbif.converters.parser.xml.parsing.xml;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.gbif.api.vocabulary.OccurrenceSchemaType;
+import org.gbif.converters.parser.xml.OccurrenceParser;
+import org.gbif.converters.parser.xml.parsing.RawXmlOccurrence;
+
+import org.junit.Test;
+
+import com.google.common.base.Stopwatch;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Compares the speed of parsing a record with the reused Digester of the thread and with a new Digester per record,
+ * which is what the parser did before, for each supported schema version. Logs the number of records per second, the
+ * results are compared in {@link XmlFragmentParserTest}.
+ */
+@Slf4j
+public class XmlFragmentParserBenchmarkTest {
+
+  // increase it to benchmark with a higher volume of data
+  private static final int N = 2_000;
+
+  private static final String[][] RESPONSES = {
+      {"ABCD_1_2", "responses/abcd12/abcd12_all_simple_fields.gz"},
+      {"ABCD_2_0_6", "responses/abcd206/abcd206_all_simple_fields.gz"},
+      {"DWC_1_0", "responses/dwc10/dwc10_all_simple_fields.gz"},
+      {"DWC_1_4", "responses/dwc14/dwc14_all_simple_fields.gz"},
+      {"DWC_2009", "responses/dwc2009/dwc2009_simple_fields.gz"},
+      {"DWC_MANIS", "responses/dwc_manis/dwc_manis_all_simple_fields.gz"}
+  };
+
+  private static long perSecond(Stopwatch watch) {
+    return N * 1000L / Math.max(watch.elapsed(TimeUnit.MILLISECONDS), 1L);
+  }
+
+  @Test
+  public void reusedVsNewDigesterTest() throws Exception {
+    for (String[] response : RESPONSES) {
+      // State
+      OccurrenceSchemaType schemaType = OccurrenceSchemaType.valueOf(response[0]);
+      File file = new File(getClass().getClassLoader().getResource(response[1]).getFile());
+      RawXmlOccurrence xmlRecord = new OccurrenceParser().parseResponseFileToRawXml(file).get(0);
+      byte[] xml = xmlRecord.getXml().getBytes(StandardCharsets.UTF_8);
+
+      // When
+      Stopwatch newWatch = Stopwatch.createStarted();
+      for (int i = 0; i < N; i++) {
+        XmlFragmentParserTest.parseWithNewDigester(xml, schemaType);
+      }
+      newWatch.stop();
+
+      Stopwatch reusedWatch = Stopwatch.createStarted();
+      for (int i = 0; i < N; i++) {
+        XmlFragmentParser.parseRecord(xml, schemaType);
+      }
+      reusedWatch.stop();
+
+      // Should
+      log.info("{}: new Digester {} records/s, reused Digester {} records/s", schemaType, perSecond(newWatch),
+          perSecond(reusedWatch));
+    }
+  }
+}
@@ -1,12 +1,18 @@
 package org.gbif.converters.parser.xml.parsing.xml;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
 
 import org.gbif.api.vocabulary.OccurrenceSchemaType;
+import org.gbif.converters.parser.xml.OccurrenceParser;
 import org.gbif.converters.parser.xml.identifier.OccurrenceKeyHelper;
 import org.gbif.converters.parser.xml.identifier.PublisherProvidedUniqueIdentifier;
 import org.gbif.converters.parser.xml.identifier.Triplet;
@@ -14,16 +20,81 @@ import org.gbif.converters.parser.xml.identifier.UniqueIdentifier;
 import org.gbif.converters.parser.xml.model.RawOccurrenceRecord;
 import org.gbif.converters.parser.xml.parsing.RawXmlOccurrence;
 
+import org.apache.commons.digester.Digester;
 import org.junit.Test;
+import org.xml.sax.InputSource;
 
 import com.google.common.io.Resources;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 public class XmlFragmentParserTest {
 
+  private static final String[] RESPONSES = {
+      "responses/abcd12/abcd12_all_simple_fields.gz",
+      "responses/abcd206/abcd206_all_simple_fields.gz",
+      "responses/dwc10/dwc10_all_simple_fields.gz",
+      "responses/dwc14/dwc14_all_simple_fields.gz",
+      "responses/dwc2009/dwc2009_simple_fields.gz",
+      "responses/dwc_manis/dwc_manis_all_simple_fields.gz"
+  };
+
+  /** The parser before the Digesters were reused, a Digester and its rules are created for every record */
+  static List<RawOccurrenceRecord> parseWithNewDigester(byte[] xml, OccurrenceSchemaType schemaType)
+      throws Exception {
+    RawOccurrenceRecordBuilder builder = new RawOccurrenceRecordBuilder();
+    Digester digester = new Digester();
+    digester.setNamespaceAware(true);
+    digester.setValidating(false);
+    digester.push(builder);
+    digester.addRuleSet(XmlFragmentParser.getRuleSet(schemaType));
+    digester.parse(new InputSource(new ByteArrayInputStream(xml)));
+
+    builder.resolvePriorities();
+    return builder.generateRawOccurrenceRecords();
+  }
+
+  /** The records have no equals, the serialized form compares all the fields */
+  private static byte[] serialize(List<RawOccurrenceRecord> records) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (ObjectOutputStream oos = new ObjectOutputStream(out)) {
+      for (RawOccurrenceRecord record : records) {
+        oos.writeObject(record);
+      }
+    }
+    return out.toByteArray();
+  }
+
+  @Test
+  public void reusedDigesterSameAsNewDigesterTest() throws Exception {
+    // State
+    List<RawXmlOccurrence> fragments = new ArrayList<>();
+    for (String response : RESPONSES) {
+      File file = new File(getClass().getClassLoader().getResource(response).getFile());
+      fragments.addAll(new OccurrenceParser().parseResponseFileToRawXml(file));
+    }
+    RawXmlOccurrence multi = createFakeOcc(
+        Resources.toString(Resources.getResource("id_extraction/abcd2_multi.xml"), StandardCharsets.UTF_8));
+    multi.setSchemaType(OccurrenceSchemaType.ABCD_2_0_6);
+    fragments.add(multi);
+
+    // When, twice to parse every schema after the others with the Digesters of the thread
+    for (int i = 0; i < 2; i++) {
+      for (RawXmlOccurrence fragment : fragments) {
+        byte[] xml = fragment.getXml().getBytes(StandardCharsets.UTF_8);
+        List<RawOccurrenceRecord> expected = parseWithNewDigester(xml, fragment.getSchemaType());
+        List<RawOccurrenceRecord> result = XmlFragmentParser.parseRecord(xml, fragment.getSchemaType());
+
+        // Should
+        assertFalse(result.isEmpty());
+        assertArrayEquals(fragment.getSchemaType().toString(), serialize(expected), serialize(result));
+      }
+    }
+  }
+
   @Test
   public void testUtf8a() throws IOException {
     // note the collector name has an u umlaut
@@ -0,0 +1,65 @@
+package org.gbif.converters.parser.xml.util;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class XmlCharsetDetectorTest {
+
+  private Charset detect(String response) throws IOException {
+    String fileName = getClass().getResource(response).getFile();
+    try (BufferedInputStream is =
+        new BufferedInputStream(new GZIPInputStream(new FileInputStream(fileName)), XmlCharsetDetector.PREFIX_SIZE)) {
+      return XmlCharsetDetector.detect(is);
+    }
+  }
+
+  private Charset detect(String xml, Charset charset) {
+    byte[] bytes = xml.getBytes(charset);
+    return XmlCharsetDetector.detect(bytes, bytes.length);
+  }
+
+  @Test
+  public void latin1DeclaredAsUtf8Test() throws IOException {
+    assertEquals(StandardCharsets.ISO_8859_1, detect("/responses/problematic/dwc_10_utf8_badcase.gz"));
+  }
+
+  @Test
+  public void latin1DeclaredTest() throws IOException {
+    assertEquals(StandardCharsets.ISO_8859_1, detect("/responses/problematic/dwc_manis_iso8859-1.gz"));
+  }
+
+  @Test
+  public void utf8ResponseTest() throws IOException {
+    assertEquals(StandardCharsets.UTF_8, detect("/responses/problematic/spanish_bad_xml.gz"));
+  }
+
+  @Test
+  public void multibyteUtf8DeclaredAsLatin1Test() {
+    // State
+    String xml = "<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?><a>Sánchez</a>";
+
+    // Should
+    assertEquals(StandardCharsets.UTF_8, detect(xml, StandardCharsets.UTF_8));
+    assertEquals(StandardCharsets.ISO_8859_1, detect(xml, StandardCharsets.ISO_8859_1));
+  }
+
+  @Test
+  public void noDeclarationTest() {
+    assertEquals(StandardCharsets.UTF_8, detect("<a>b</a>", StandardCharsets.US_ASCII));
+    assertEquals(StandardCharsets.ISO_8859_1, detect("<a>Sánchez</a>", StandardCharsets.ISO_8859_1));
+  }
+
+  @Test
+  public void utf16Test() {
+    assertEquals(StandardCharsets.UTF_16LE, detect("<?xml version=\"1.0\"?><a/>", StandardCharsets.UTF_16LE));
+    assertEquals(StandardCharsets.UTF_16BE, detect("<?xml version=\"1.0\"?><a/>", StandardCharsets.UTF_16BE));
+  }
+}
@@ -0,0 +1,384 @@
+package org.gbif.pipelines.maven;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.apache.avro.Schema;
+import org.apache.avro.Schema.Field;
+
+/**
+ * Generates the source of a Beam coder for an avro generated class, the coder encodes and decodes the fields directly
+ * in the schema order, using the {@link org.apache.avro.specific.SpecificRecord} get and put methods by field position
+ * and Beam coders of the field types
+ *
+ * <p>For a record:
+ *
+ * <pre>{@code
+ * public class BasicRecordCoder extends org.apache.beam.sdk.coders.CustomCoder<BasicRecord> {
+ *
+ *   private static final org.apache.beam.sdk.coders.Coder<java.lang.String> C0 = ...StringUtf8Coder.of();
+ *
+ *   public void encode(BasicRecord value, java.io.OutputStream out) throws java.io.IOException {
+ *     C0.encode((java.lang.String) value.get(0), out);
+ *     ...
+ *   }
+ *
+ *   public BasicRecord decode(java.io.InputStream in) throws java.io.IOException {
+ *     BasicRecord value = new BasicRecord();
+ *     value.put(0, C0.decode(in));
+ *     ...
+ *   }
+ * }
+ * }</pre>
+ *
+ * <p>Enums are encoded by the symbol position. Only strings generated as java.lang.String, primitives, records,
+ * enums, arrays, maps and nullable unions are supported, no coder is generated for a schema with any other type.
+ */
+class AvroCoderGenerator {
+
+  static final String SUFFIX = "Coder";
+
+  private static final String SCHEMA = "public static final org.apache.avro.Schema SCHEMA$ =";
+
+  private static final String CODERS = "org.apache.beam.sdk.coders.";
+  private static final String CODER = CODERS + "Coder";
+
+  private AvroCoderGenerator() {}
+
+  /**
+   * Reads the schema of an avro generated class from the SCHEMA$ field, the schema json may be split into several
+   * string literals
+   *
+   * @param lines java class source lines
+   */
+  static Optional<Schema> readSchema(List<String> lines) {
+    return lines.stream()
+        .filter(line -> line.trim().startsWith(SCHEMA))
+        .findFirst()
+        .map(line -> new Schema.Parser().parse(literals(line.substring(line.indexOf(".parse(")))));
+  }
+
+  /**
+   * Generates the coder source for a record or an enum schema
+   *
+   * @param schema schema of the avro generated class
+   * @return the coder java source, empty if the schema has an unsupported type
+   */
+  static Optional<String> generate(Schema schema) {
+    if (schema.getType() == Schema.Type.ENUM) {
+      return Optional.of(generateEnum(schema));
+    }
+    if (schema.getType() == Schema.Type.RECORD && isSupported(schema, new HashSet<>())) {
+      return Optional.of(generateRecord(schema));
+    }
+    return Optional.empty();
+  }
+
+  /** Checks all field types */
+  private static boolean isSupported(Schema schema, Set<String> visited) {
+    switch (schema.getType()) {
+      case STRING:
+        return "String".equals(schema.getProp("avro.java.string"));
+      case INT:
+      case LONG:
+      case FLOAT:
+      case DOUBLE:
+      case BOOLEAN:
+      case ENUM:
+        return true;
+      case ARRAY:
+        return isSupported(schema.getElementType(), visited);
+      case MAP:
+        return "String".equals(schema.getProp("avro.java.string")) && isSupported(schema.getValueType(), visited);
+      case UNION:
+        return nullableType(schema) != null && isSupported(nullableType(schema), visited);
+      case RECORD:
+        // a record referenced again is checked by the first reference
+        return !visited.add(schema.getFullName())
+            || schema.getFields().stream().allMatch(f -> isSupported(f.schema(), visited));
+      default:
+        return false;
+    }
+  }
+
+  /** Returns the not null type of a union with null and one other type, or null for any other union */
+  private static Schema nullableType(Schema union) {
+    List<Schema> types = union.getTypes();
+    if (types.size() != 2) {
+      return null;
+    }
+    if (types.get(0).getType() == Schema.Type.NULL) {
+      return types.get(1).getType() == Schema.Type.NULL ? null : types.get(1);
+    }
+    return types.get(1).getType() == Schema.Type.NULL ? types.get(0) : null;
+  }
+
+  private static String javaType(Schema schema) {
+    switch (schema.getType()) {
+      case STRING:
+        return "java.lang.String";
+      case INT:
+        return "java.lang.Integer";
+      case LONG:
+        return "java.lang.Long";
+      case FLOAT:
+        return "java.lang.Float";
+      case DOUBLE:
+        return "java.lang.Double";
+      case BOOLEAN:
+        return "java.lang.Boolean";
+      case ARRAY:
+        return "java.util.List<" + javaType(schema.getElementType()) + ">";
+      case MAP:
+        return "java.util.Map<java.lang.String," + javaType(schema.getValueType()) + ">";
+      case UNION:
+        return javaType(nullableType(schema));
+      default:
+        return schema.getFullName();
+    }
+  }
+
+  private static String coder(Schema schema) {
+    switch (schema.getType()) {
+      case STRING:
+        return CODERS + "StringUtf8Coder.of()";
+      case INT:
+        return CODERS + "VarIntCoder.of()";
+      case LONG:
+        return CODERS + "VarLongCoder.of()";
+      case FLOAT:
+        return CODERS + "FloatCoder.of()";
+      case DOUBLE:
+        return CODERS + "DoubleCoder.of()";
+      case BOOLEAN:
+        return CODERS + "BooleanCoder.of()";
+      case ARRAY:
+        return CODERS + "ListCoder.of(" + coder(schema.getElementType()) + ")";
+      case MAP:
+        return CODERS + "MapCoder.of(" + CODERS + "StringUtf8Coder.of(), " + coder(schema.getValueType()) + ")";
+      case UNION:
+        return CODERS + "NullableCoder.of(" + coder(nullableType(schema)) + ")";
+      default:
+        return schema.getFullName() + SUFFIX + ".of()";
+    }
+  }
+
+  private static String generateRecord(Schema schema) {
+    String name = schema.getName();
+    String coderName = name + SUFFIX;
+    String encodeSignature = " value, java.io.OutputStream out) throws java.io.IOException {\n";
+
+    // One coder constant per distinct field type
+    Map<String, String> coders = new LinkedHashMap<>();
+    Map<String, String> types = new LinkedHashMap<>();
+    List<String> fieldCoders = new ArrayList<>();
+    for (Field field : schema.getFields()) {
+      String expression = coder(field.schema());
+      String constant = coders.get(expression);
+      if (constant == null) {
+        constant = "C" + coders.size();
+        coders.put(expression, constant);
+        types.put(constant, javaType(field.schema()));
+      }
+      fieldCoders.add("Fields." + constant);
+    }
+
+    StringBuilder sb = new StringBuilder();
+    header(sb, schema, coderName, CODERS + "CustomCoder<" + name + ">");
+    factories(sb, name, coderName);
+
+    // a coder is equal to a deserialized copy of the coder, like an AtomicCoder
+    sb.append("  @Override\n")
+        .append("  public boolean equals(Object other) {\n")
+        .append("    return other != null && other.getClass() == getClass();\n")
+        .append("  }\n\n")
+        .append("  @Override\n")
+        .append("  public int hashCode() {\n")
+        .append("    return getClass().hashCode();\n")
+        .append("  }\n\n");
+
+    sb.append("  @Override\n")
+        .append("  public void encode(").append(name).append(encodeSignature)
+        .append("    if (value == null) {\n")
+        .append("      throw new ").append(CODERS).append("CoderException(\"cannot encode a null ").append(name)
+        .append("\");\n")
+        .append("    }\n");
+    for (Field field : schema.getFields()) {
+      sb.append("    ").append(fieldCoders.get(field.pos())).append(".encode((").append(javaType(field.schema()))
+          .append(") value.get(").append(field.pos()).append("), out);\n");
+    }
+    sb.append("  }\n\n");
+
+    sb.append("  @Override\n")
+        .append("  public ").append(name).append(" decode(java.io.InputStream in) throws java.io.IOException {\n")
+        .append("    ").append(name).append(" value = new ").append(name).append("();\n");
+    for (Field field : schema.getFields()) {
+      sb.append("    value.put(").append(field.pos()).append(", ").append(fieldCoders.get(field.pos()))
+          .append(".decode(in));\n");
+    }
+    sb.append("    return value;\n")
+        .append("  }\n\n");
+
+    sb.append("  @Override\n")
+        .append("  public void verifyDeterministic() throws NonDeterministicException {\n");
+    Optional<String> reason = nonDeterministicReason(schema, new HashSet<>());
+    if (reason.isPresent()) {
+      sb.append("    throw new NonDeterministicException(this, \"").append(reason.get()).append("\");\n");
+    } else {
+      sb.append("    // no maps and no floating point fields\n");
+    }
+    sb.append("  }\n\n");
+
+    // Nested records can be recursive, the outer classes do not depend on each other at class initialization
+    sb.append("  /** Coders of the field types, initialized on the first use */\n")
+        .append("  private static class Fields {\n");
+    coders.forEach((expression, constant) ->
+        sb.append("    private static final ").append(CODER).append('<').append(types.get(constant)).append("> ")
+            .append(constant).append(" =\n        ").append(expression).append(";\n"));
+    sb.append("  }\n")
+        .append("}\n");
+    return sb.toString();
+  }
+
+  /** Maps have no stable order and floating point encodings are not guaranteed to be deterministic */
+  private static Optional<String> nonDeterministicReason(Schema schema, Set<String> visited) {
+    switch (schema.getType()) {
+      case MAP:
+        return Optional.of("map field");
+      case FLOAT:
+      case DOUBLE:
+        return Optional.of("floating point field");
+      case ARRAY:
+        return nonDeterministicReason(schema.getElementType(), visited);
+      case UNION:
+        return nonDeterministicReason(nullableType(schema), visited);
+      case RECORD:
+        if (!visited.add(schema.getFullName())) {
+          return Optional.empty();
+        }
+        return schema.getFields().stream()
+            .map(f -> nonDeterministicReason(f.schema(), visited).map(r -> f.name() + ": " + r))
+            .filter(Optional::isPresent)
+            .map(Optional::get)
+            .findFirst();
+      default:
+        return Optional.empty();
+    }
+  }
+
+  private static String generateEnum(Schema schema) {
+    String name = schema.getName();
+    String coderName = name + SUFFIX;
+
+    StringBuilder sb = new StringBuilder();
+    header(sb, schema, coderName, CODERS + "AtomicCoder<" + name + ">");
+
+    sb.append("  private static final ").append(name).append("[] VALUES = ").append(name).append(".values();\n\n");
+
+    factories(sb, name, coderName);
+
+    sb.append("  @Override\n")
+        .append("  public void encode(").append(name).append(" value, java.io.OutputStream out)")
+        .append(" throws java.io.IOException {\n")
+        .append("    if (value == null) {\n")
+        .append("      throw new ").append(CODERS).append("CoderException(\"cannot encode a null ").append(name)
+        .append("\");\n")
+        .append("    }\n")
+        .append("    ").append(CODERS).append("VarIntCoder.of().encode(value.ordinal(), out);\n")
+        .append("  }\n\n");
+
+    sb.append("  @Override\n")
+        .append("  public ").append(name).append(" decode(java.io.InputStream in) throws java.io.IOException {\n")
+        .append("    int ordinal = ").append(CODERS).append("VarIntCoder.of().decode(in);\n")
+        .append("    if (ordinal < 0 || ordinal >= VALUES.length) {\n")
+        .append("      throw new ").append(CODERS).append("CoderException(\"unknown ").append(name)
+        .append(" ordinal \" + ordinal);\n")
+        .append("    }\n")
+        .append("    return VALUES[ordinal];\n")
+        .append("  }\n\n");
+
+    sb.append("  @Override\n")
+        .append("  public void verifyDeterministic() {\n")
+        .append("    // the symbol position is deterministic\n")
+        .append("  }\n")
+        .append("}\n");
+    return sb.toString();
+  }
+
+  private static void header(StringBuilder sb, Schema schema, String coderName, String superClass) {
+    sb.append("/**\n")
+        .append(" * Autogenerated by pipelines-maven-plugin\n")
+        .append(" *\n")
+        .append(" * DO NOT EDIT DIRECTLY\n")
+        .append(" */\n");
+    if (schema.getNamespace() != null) {
+      sb.append("package ").append(schema.getNamespace()).append(";\n\n");
+    }
+    sb.append("/** Beam coder of {@link ").append(schema.getName()).append("}, generated from the schema */\n")
+        .append("@SuppressWarnings(\"all\")\n")
+        .append("public class ").append(coderName).append(" extends ").append(superClass).append(" {\n\n")
+        .append("  private static final ").append(coderName).append(" INSTANCE = new ").append(coderName)
+        .append("();\n\n");
+  }
+
+  private static void factories(StringBuilder sb, String name, String coderName) {
+    sb.append("  public static ").append(coderName).append(" of() {\n")
+        .append("    return INSTANCE;\n")
+        .append("  }\n\n")
+        .append("  /** Used by the {@link ").append(CODERS).append("DefaultCoder} annotation of the class */\n")
+        .append("  public static ").append(CODERS).append("CoderProvider getCoderProvider() {\n")
+        .append("    return ").append(CODERS).append("CoderProviders.forCoder(\n")
+        .append("        org.apache.beam.sdk.values.TypeDescriptor.of(").append(name).append(".class), INSTANCE);\n")
+        .append("  }\n\n");
+  }
+
+  /** Concatenates and unescapes the java string literals of a source line, as written by the avro compiler */
+  private static String literals(String line) {
+    StringBuilder sb = new StringBuilder(line.length());
+    boolean inLiteral = false;
+    for (int i = 0; i < line.length(); i++) {
+      char c = line.charAt(i);
+      if (c == '"') {
+        inLiteral = !inLiteral;
+        continue;
+      }
+      if (!inLiteral) {
+        continue;
+      }
+      if (c != '\\') {
+        sb.append(c);
+        continue;
+      }
+      char next = line.charAt(++i);
+      switch (next) {
+        case 'n':
+          sb.append('\n');
+          break;
+        case 't':
+          sb.append('\t');
+          break;
+        case 'r':
+          sb.append('\r');
+          break;
+        case 'b':
+          sb.append('\b');
+          break;
+        case 'f':
+          sb.append('\f');
+          break;
+        case 'u':
+          sb.append((char) Integer.parseInt(line.substring(i + 1, i + 5), 16));
+          i += 4;
+          break;
+        default:
+          sb.append(next);
+      }
+    }
+    return sb.toString();
+  }
+}
@@ -6,6 +6,7 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Optional;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -20,7 +21,15 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 /**
  * Mojo class adds new annotations and Issue interface to avro generated classes
  *
- * <p>Adds Beam Avro annotation:
+ * <p>Generates a Beam coder per avro generated class, see {@link AvroCoderGenerator}, and adds Beam coder annotation:
+ *
+ * <pre>{@code
+ * import org.apache.beam.sdk.coders.DefaultCoder;
+ *
+ * @DefaultCoder(BasicRecordCoder.class)
+ * }</pre>
+ *
+ * <p>or Beam Avro annotation, if no coder was generated for the class schema:
  *
  * <pre>{@code
  * import org.apache.beam.sdk.coders.AvroCoder;
@@ -86,10 +95,12 @@ public class AvroPostprocessMojo extends AbstractMojo {
     List<String> lines = getLines(path);
     List<Integer> idxs = getIdx(lines);
 
+    Optional<String> coder = createCoder(path, lines);
+
     addOverrideMethod(lines, idxs);
     addIssueRecordInterface(lines, idxs);
     addRecordInterface(lines, idxs);
-    addAvroCodecAnnotation(lines, idxs);
+    addAvroCodecAnnotation(lines, idxs, coder);
 
     writeFile(path, lines, idxs);
   }
@@ -126,21 +137,49 @@ public class AvroPostprocessMojo extends AbstractMojo {
   }
 
   /**
-   * Adds @DefaultCoder(AvroCoder.class) annotation to class
+   * Adds @DefaultCoder annotation to class, with the generated coder or with AvroCoder.class if no coder was generated
    *
    * @param lines java class source lines
    * @param idxs excepted line indexes
+   * @param coder simple name of the generated coder class
    */
-  private void addAvroCodecAnnotation(List<String> lines, List<Integer> idxs) {
+  private void addAvroCodecAnnotation(List<String> lines, List<Integer> idxs, Optional<String> coder) {
     int beforeIdx = idxs.get(0);
     if (beforeIdx != -1) {
-      String imports =
-          "import org.apache.beam.sdk.coders.AvroCoder;\nimport org.apache.beam.sdk.coders.DefaultCoder;";
-      lines.add(beforeIdx, imports);
-      lines.add(beforeIdx + 1, "@DefaultCoder(AvroCoder.class)");
+      if (coder.isPresent()) {
+        lines.add(beforeIdx, "import org.apache.beam.sdk.coders.DefaultCoder;");
+        lines.add(beforeIdx + 1, "@DefaultCoder(" + coder.get() + ".class)");
+      } else {
+        String imports =
+            "import org.apache.beam.sdk.coders.AvroCoder;\nimport org.apache.beam.sdk.coders.DefaultCoder;";
+        lines.add(beforeIdx, imports);
+        lines.add(beforeIdx + 1, "@DefaultCoder(AvroCoder.class)");
+      }
     }
   }
 
+  /**
+   * Generates a Beam coder next to an avro generated class, which encodes the fields in the schema order
+   *
+   * @param path path to a java class
+   * @param lines java class source lines
+   * @return simple name of the generated coder class, empty if the class has no supported schema
+   */
+  private Optional<String> createCoder(Path path, List<String> lines) {
+    return AvroCoderGenerator.readSchema(lines)
+        .flatMap(schema -> AvroCoderGenerator.generate(schema).map(source -> {
+          String coder = schema.getName() + AvroCoderGenerator.SUFFIX;
+          Path coderPath = path.resolveSibling(coder + ".java");
+          try {
+            Files.write(coderPath, source.getBytes(UTF_8));
+          } catch (IOException ex) {
+            throw new IllegalStateException(ex.getMessage(), ex);
+          }
+          getLog().info("Generated - " + coderPath.toString());
+          return coder;
+        }));
+  }
+
   /**
    * Adds Issues and Record interface extension to a class
    *